@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides Data Access methods for the versions of the form definitions
+ */
+public final class CacheVersionDAO implements ICacheVersionDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO genatt_cache_version ( id_resource, resource_type, version ) "
+            + " SELECT DISTINCT ent.id_resource, ent.resource_type, 0 FROM genatt_entry ent ";
+    private static final String SQL_FILTER_NO_VERSION = " NOT EXISTS ( SELECT cv.version FROM genatt_cache_version cv "
+            + " WHERE cv.id_resource = ent.id_resource AND cv.resource_type = ent.resource_type ) ";
+    private static final String SQL_QUERY_INSERT_BY_RESOURCE = SQL_QUERY_INSERT + " WHERE ent.id_resource = ? AND ent.resource_type = ? AND "
+            + SQL_FILTER_NO_VERSION;
+    private static final String SQL_QUERY_INSERT_BY_ID_ENTRY = SQL_QUERY_INSERT + " WHERE ent.id_entry = ? AND " + SQL_FILTER_NO_VERSION;
+    private static final String SQL_QUERY_INSERT_BY_ID_FIELD = SQL_QUERY_INSERT
+            + " INNER JOIN genatt_field f ON ( f.id_entry = ent.id_entry ) WHERE f.id_field = ? AND " + SQL_FILTER_NO_VERSION;
+    private static final String SQL_QUERY_INSERT_ALL = SQL_QUERY_INSERT + " WHERE " + SQL_FILTER_NO_VERSION;
+    private static final String SQL_QUERY_SELECT = "SELECT version FROM genatt_cache_version WHERE id_resource = ? AND resource_type = ? ";
+    private static final String SQL_QUERY_INCREMENT = "UPDATE genatt_cache_version SET version = version + 1 ";
+    private static final String SQL_QUERY_INCREMENT_BY_RESOURCE = SQL_QUERY_INCREMENT + " WHERE id_resource = ? AND resource_type = ? ";
+    private static final String SQL_QUERY_INCREMENT_BY_ID_ENTRY = SQL_QUERY_INCREMENT + " WHERE EXISTS ( SELECT ent.id_entry FROM genatt_entry ent "
+            + " WHERE ent.id_entry = ? AND ent.id_resource = genatt_cache_version.id_resource AND ent.resource_type = genatt_cache_version.resource_type ) ";
+    private static final String SQL_QUERY_INCREMENT_BY_ID_FIELD = SQL_QUERY_INCREMENT
+            + " WHERE EXISTS ( SELECT f.id_field FROM genatt_field f, genatt_entry ent WHERE f.id_field = ? AND f.id_entry = ent.id_entry "
+            + " AND ent.id_resource = genatt_cache_version.id_resource AND ent.resource_type = genatt_cache_version.resource_type ) ";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int load( int nIdResource, String strResourceType, Plugin plugin )
+    {
+        int nVersion = -1;
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdResource );
+            daoUtil.setString( 2, strResourceType );
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) )
+            {
+                nVersion = daoUtil.getInt( 1 );
+            }
+        }
+
+        return nVersion;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void increment( int nIdResource, String strResourceType, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_BY_RESOURCE, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdResource );
+            daoUtil.setString( 2, strResourceType );
+            daoUtil.executeUpdate( );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_BY_RESOURCE, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdResource );
+            daoUtil.setString( 2, strResourceType );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void incrementByIdEntry( int nIdEntry, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_BY_ID_ENTRY, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdEntry );
+            daoUtil.executeUpdate( );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_BY_ID_ENTRY, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdEntry );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void incrementByIdField( int nIdField, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_BY_ID_FIELD, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdField );
+            daoUtil.executeUpdate( );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_BY_ID_FIELD, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdField );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void incrementAll( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_ALL, plugin ) )
+        {
+            daoUtil.executeUpdate( );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT, plugin ) )
+        {
+            daoUtil.executeUpdate( );
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides instances management methods for the versions of the form definitions. The versions are shared by all the nodes of a cluster
+ * through the database : each modification of a form definition increments its version, so that the nodes which have cached the form definition know
+ * it is stale.
+ */
+public final class CacheVersionHome
+{
+    // Static variable pointed at the DAO instance
+    private static ICacheVersionDAO _dao = SpringContextService.getBean( "genericattributes.cacheVersionDAO" );
+    private static Plugin _plugin;
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private CacheVersionHome( )
+    {
+    }
+
+    /**
+     * Get the version of the form definition of a resource. The lookup never writes : a resource whose form definition was never modified has no
+     * stored version, and its version is 0.
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @return the version
+     */
+    public static int findVersion( int nIdResource, String strResourceType )
+    {
+        return Math.max( 0, _dao.load( nIdResource, strResourceType, getPlugin( ) ) );
+    }
+
+    /**
+     * Increment the version of the form definition of a resource. The version of a resource with entries is created by the first modification of its
+     * form definition.
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     */
+    public static void increment( int nIdResource, String strResourceType )
+    {
+        _dao.increment( nIdResource, strResourceType, getPlugin( ) );
+    }
+
+    /**
+     * Increment the version of the form definition of the resource of an entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     */
+    public static void incrementByIdEntry( int nIdEntry )
+    {
+        _dao.incrementByIdEntry( nIdEntry, getPlugin( ) );
+    }
+
+    /**
+     * Increment the version of the form definition of the resource of a field
+     * 
+     * @param nIdField
+     *            the id of the field
+     */
+    public static void incrementByIdField( int nIdField )
+    {
+        _dao.incrementByIdField( nIdField, getPlugin( ) );
+    }
+
+    /**
+     * Increment the version of the form definitions of all the resources
+     */
+    public static void incrementAll( )
+    {
+        _dao.incrementAll( getPlugin( ) );
+    }
+
+    /**
+     * Get the generic attributes plugin
+     * 
+     * @return The generic attributes plugin
+     */
+    private static Plugin getPlugin( )
+    {
+        if ( _plugin == null )
+        {
+            _plugin = GenericAttributesUtils.getPlugin( );
+        }
+
+        return _plugin;
+    }
+}
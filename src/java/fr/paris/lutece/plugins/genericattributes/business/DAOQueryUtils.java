@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * Utilities for the DAOs which build their queries dynamically. The queries are built once per shape (the criteria used, not their values) and
+ * only contain bind parameters, so that the drivers and the databases can reuse their prepared statements. The lists of ids are bound with a number
+ * of parameters rounded up to a few bucket sizes, the extra parameters repeating the last id. The long lists of ids are split in chunks of at most
+ * {@link #MAX_CHUNK_SIZE} ids.
+ */
+final class DAOQueryUtils
+{
+    /**
+     * The maximum number of query shapes cached by a DAO
+     */
+    static final int MAX_CACHED_SHAPES = 512;
+
+    /**
+     * The maximum number of ids bound in a single query by the bulk loaders
+     */
+    static final int MAX_CHUNK_SIZE = 256;
+
+    private static final int MIN_BUCKET_SIZE = 4;
+    private static final String PLACEHOLDER = "?";
+    private static final String PLACEHOLDER_SEPARATOR = ",";
+
+    /**
+     * Private constructor
+     */
+    private DAOQueryUtils( )
+    {
+    }
+
+    /**
+     * Get the query of a shape from a cache, building it if it is not cached yet
+     * 
+     * @param <K>
+     *            the type of the shape
+     * @param mapQueryByShape
+     *            the cache of the queries by shape
+     * @param shape
+     *            the shape
+     * @param queryBuilder
+     *            the builder of the query of the shape
+     * @return the query
+     */
+    static <K> String getQuery( Map<K, String> mapQueryByShape, K shape, Supplier<String> queryBuilder )
+    {
+        String strQuery = mapQueryByShape.get( shape );
+
+        if ( strQuery == null )
+        {
+            strQuery = queryBuilder.get( );
+
+            // Shapes depending on free values (order by) must not fill the memory
+            if ( mapQueryByShape.size( ) < MAX_CACHED_SHAPES )
+            {
+                mapQueryByShape.put( shape, strQuery );
+            }
+        }
+
+        return strQuery;
+    }
+
+    /**
+     * Compute the shape of a query from the presence of its criteria
+     * 
+     * @param criteria
+     *            true for each criterion present in the query
+     * @return the shape, one bit per criterion
+     */
+    static int getShape( boolean... criteria )
+    {
+        int nShape = 0;
+
+        for ( int i = 0; i < criteria.length; i++ )
+        {
+            if ( criteria [i] )
+            {
+                nShape |= 1 << i;
+            }
+        }
+
+        return nShape;
+    }
+
+    /**
+     * Get the number of parameters used to bind a list of ids : the smallest power of two greater or equal to the size of the list
+     * 
+     * @param nSize
+     *            the size of the list
+     * @return the number of parameters
+     */
+    static int getBucketSize( int nSize )
+    {
+        int nBucketSize = MIN_BUCKET_SIZE;
+
+        while ( nBucketSize < nSize )
+        {
+            nBucketSize <<= 1;
+        }
+
+        return nBucketSize;
+    }
+
+    /**
+     * Get the placeholders of a list of parameters
+     * 
+     * @param nCount
+     *            the number of parameters
+     * @return the placeholders, separated by commas
+     */
+    static String getPlaceholders( int nCount )
+    {
+        StringBuilder sbPlaceholders = new StringBuilder( nCount * 2 );
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            if ( i > 0 )
+            {
+                sbPlaceholders.append( PLACEHOLDER_SEPARATOR );
+            }
+
+            sbPlaceholders.append( PLACEHOLDER );
+        }
+
+        return sbPlaceholders.toString( );
+    }
+
+    /**
+     * Split a list of ids in chunks of at most {@link #MAX_CHUNK_SIZE} ids. The duplicate ids are removed and the order of the ids is kept.
+     * 
+     * @param listId
+     *            the ids
+     * @return the chunks
+     */
+    static List<List<Integer>> getChunks( List<Integer> listId )
+    {
+        List<Integer> listIdDistinct = new ArrayList<>( new LinkedHashSet<>( listId ) );
+        List<List<Integer>> listChunk = new ArrayList<>( );
+
+        for ( int nStart = 0; nStart < listIdDistinct.size( ); nStart += MAX_CHUNK_SIZE )
+        {
+            listChunk.add( listIdDistinct.subList( nStart, Math.min( nStart + MAX_CHUNK_SIZE, listIdDistinct.size( ) ) ) );
+        }
+
+        return listChunk;
+    }
+
+    /**
+     * Bind a list of ids to parameters, repeating the last id up to the bucket size
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nIndex
+     *            the index of the first parameter
+     * @param listId
+     *            the ids, not empty
+     * @param nBucketSize
+     *            the number of parameters
+     * @return the index of the parameter following the list
+     */
+    static int setIdList( DAOUtil daoUtil, int nIndex, List<Integer> listId, int nBucketSize )
+    {
+        int nLastId = listId.get( listId.size( ) - 1 );
+
+        for ( int i = 0; i < nBucketSize; i++ )
+        {
+            daoUtil.setInt( nIndex + i, ( i < listId.size( ) ) ? listId.get( i ) : nLastId );
+        }
+
+        return nIndex + nBucketSize;
+    }
+
+    /**
+     * Run a query on a list of ids, chunk by chunk
+     * 
+     * @param listId
+     *            the ids
+     * @param queryBuilder
+     *            the builder of the query of a chunk, from the placeholders of the ids of the chunk
+     * @param nOccurrences
+     *            the number of times the placeholders of the ids appear in the query
+     * @param plugin
+     *            the plugin
+     * @param rowReader
+     *            the reader of the rows of a select query, or null for an update query
+     */
+    static void executeByChunk( List<Integer> listId, UnaryOperator<String> queryBuilder, int nOccurrences, Plugin plugin, Consumer<DAOUtil> rowReader )
+    {
+        for ( List<Integer> listIdChunk : getChunks( listId ) )
+        {
+            int nBucketSize = getBucketSize( listIdChunk.size( ) );
+
+            try ( DAOUtil daoUtil = new DAOUtil( queryBuilder.apply( getPlaceholders( nBucketSize ) ), plugin ) )
+            {
+                int nIndex = 1;
+
+                for ( int i = 0; i < nOccurrences; i++ )
+                {
+                    nIndex = setIdList( daoUtil, nIndex, listIdChunk, nBucketSize );
+                }
+
+                if ( rowReader == null )
+                {
+                    daoUtil.executeUpdate( );
+                }
+                else
+                {
+                    daoUtil.executeQuery( );
+
+                    while ( daoUtil.next( ) )
+                    {
+                        rowReader.accept( daoUtil );
+                    }
+                }
+            }
+        }
+    }
+}
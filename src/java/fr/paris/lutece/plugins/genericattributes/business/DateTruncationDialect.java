@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.util.Locale;
+
+/**
+ * The SQL expressions truncating a date to the first day of its day, week (starting on monday) or month, for the supported databases
+ */
+enum DateTruncationDialect
+{
+    MYSQL( "DATE( %1$s )", "DATE( DATE_SUB( %1$s, INTERVAL WEEKDAY( %1$s ) DAY ) )", "DATE( DATE_SUB( %1$s, INTERVAL DAYOFMONTH( %1$s ) - 1 DAY ) )" ),
+    POSTGRESQL( "CAST( DATE_TRUNC( 'day', %1$s ) AS DATE )", "CAST( DATE_TRUNC( 'week', %1$s ) AS DATE )", "CAST( DATE_TRUNC( 'month', %1$s ) AS DATE )" ),
+    ORACLE( "CAST( TRUNC( %1$s, 'DD' ) AS DATE )", "CAST( TRUNC( %1$s, 'IW' ) AS DATE )", "CAST( TRUNC( %1$s, 'MM' ) AS DATE )" );
+
+    private final String _strDayFormat;
+    private final String _strWeekFormat;
+    private final String _strMonthFormat;
+
+    /**
+     * Constructor
+     * 
+     * @param strDayFormat
+     *            the format of the expression truncating a date to its day
+     * @param strWeekFormat
+     *            the format of the expression truncating a date to its week
+     * @param strMonthFormat
+     *            the format of the expression truncating a date to its month
+     */
+    DateTruncationDialect( String strDayFormat, String strWeekFormat, String strMonthFormat )
+    {
+        _strDayFormat = strDayFormat;
+        _strWeekFormat = strWeekFormat;
+        _strMonthFormat = strMonthFormat;
+    }
+
+    /**
+     * Get the dialect of a database. MySQL and MariaDB are the default, HSQLDB shares the dialect of Oracle.
+     * 
+     * @param strDatabaseProductName
+     *            the name of the database product, as given by the JDBC driver
+     * @return the dialect
+     */
+    static DateTruncationDialect of( String strDatabaseProductName )
+    {
+        String strName = ( strDatabaseProductName == null ) ? "" : strDatabaseProductName.toLowerCase( Locale.ROOT );
+
+        if ( strName.contains( "postgres" ) )
+        {
+            return POSTGRESQL;
+        }
+
+        if ( strName.contains( "oracle" ) || strName.contains( "hsql" ) )
+        {
+            return ORACLE;
+        }
+
+        return MYSQL;
+    }
+
+    /**
+     * Get the expression truncating a date column to the first day of its period
+     * 
+     * @param strColumn
+     *            the date column
+     * @param nPeriod
+     *            the period : {@link ResponseStatisticHome#PERIOD_DAY}, {@link ResponseStatisticHome#PERIOD_WEEK} or
+     *            {@link ResponseStatisticHome#PERIOD_MONTH}
+     * @return the expression
+     */
+    String truncate( String strColumn, int nPeriod )
+    {
+        switch( nPeriod )
+        {
+            case ResponseStatisticHome.PERIOD_WEEK:
+                return String.format( _strWeekFormat, strColumn );
+            case ResponseStatisticHome.PERIOD_MONTH:
+                return String.format( _strMonthFormat, strColumn );
+            default:
+                return String.format( _strDayFormat, strColumn );
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import fr.paris.lutece.plugins.genericattributes.service.EntryEventPublisher;
+import fr.paris.lutece.plugins.genericattributes.service.FormDefinitionCacheService;
+import fr.paris.lutece.plugins.genericattributes.util.CopyEntryEventParam;
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.portal.business.event.ResourceEvent;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * Copies trees of entries with set-based queries. The copied entries are processed level by level : each level of entries is inserted in a
+ * single batch, then their fields, regular expressions and reference items, then the next level is loaded from the children and the conditional
+ * questions of the level. The mappings from the copied ids to the ids of the copies are kept to link the copies together and to notify the
+ * listeners. An instance must only be used for one copy and is not thread safe.
+ */
+final class EntryCopier
+{
+    private final IEntryDAO _entryDAO = SpringContextService.getBean( "genericattributes.entryDAO" );
+    private final IFieldDAO _fieldDAO = SpringContextService.getBean( "genericattributes.fieldDAO" );
+    private final IReferenceItemFieldDao _referenceItemFieldDAO = SpringContextService.getBean( "genericattributes.referenceItemFieldDao" );
+    private final Plugin _plugin = GenericAttributesUtils.getPlugin( );
+
+    // Ids of the copies, mapped by copied id, in the order of the copy
+    private final Map<Integer, Integer> _mapIdEntry = new LinkedHashMap<>( );
+    private final Map<Integer, Integer> _mapIdField = new HashMap<>( );
+
+    // Copies, mapped by copied id
+    private final Map<Integer, Entry> _mapEntryCopy = new HashMap<>( );
+    private final Map<Integer, Field> _mapFieldCopy = new HashMap<>( );
+
+    /**
+     * Copy entries with their fields, children and conditional questions
+     * 
+     * @param listEntry
+     *            the entries to copy, with the resource, parent and field of their copies
+     * @return the copies of the entries
+     */
+    List<Entry> copyEntries( List<Entry> listEntry )
+    {
+        List<Entry> listCopy = listEntry.stream( ).map( entry -> (Entry) entry.clone( ) ).collect( Collectors.toList( ) );
+
+        copyLevels( listEntry, listCopy );
+
+        return listCopy;
+    }
+
+    /**
+     * Copy a field with its regular expressions, reference item and conditional questions. The id of the copy is set on the field
+     * 
+     * @param field
+     *            the field to copy, with the entry of its copy
+     */
+    void copyField( Field field )
+    {
+        int nIdField = field.getIdField( );
+
+        copyFields( Collections.singletonList( field ) );
+
+        EntryFilter filter = new EntryFilter( );
+        filter.setIdFieldDepend( nIdField );
+
+        List<Entry> listEntry = _entryDAO.selectEntryListByFilter( filter, _plugin );
+        copyLevels( listEntry, listEntry.stream( ).map( this::prepareCopy ).collect( Collectors.toList( ) ) );
+    }
+
+    /**
+     * Invalidate the form definitions of the copies
+     */
+    void invalidateCopies( )
+    {
+        Map<String, Entry> mapEntryByResource = new HashMap<>( );
+
+        for ( Entry entry : _mapEntryCopy.values( ) )
+        {
+            mapEntryByResource.putIfAbsent( entry.getIdResource( ) + ":" + entry.getResourceType( ), entry );
+        }
+
+        for ( Entry entry : mapEntryByResource.values( ) )
+        {
+            FormDefinitionCacheService.getInstance( ).invalidate( entry.getIdResource( ), entry.getResourceType( ) );
+        }
+    }
+
+    /**
+     * Publish the creation of each copied entry, once the copy is committed. The parameter of each event holds the id mappings of the whole copy
+     */
+    void publishCopies( )
+    {
+        for ( Map.Entry<Integer, Integer> idEntry : _mapIdEntry.entrySet( ) )
+        {
+            ResourceEvent event = new ResourceEvent( );
+            event.setIdResource( String.valueOf( idEntry.getValue( ) ) );
+            event.setTypeResource( _mapEntryCopy.get( idEntry.getKey( ) ).getResourceType( ) );
+            event.setParam( new CopyEntryEventParam( idEntry.getKey( ), _mapIdEntry, _mapIdField ) );
+            EntryEventPublisher.getInstance( ).publishAdded( event );
+        }
+    }
+
+    /**
+     * Copy entries and their descendants, level by level
+     * 
+     * @param listEntry
+     *            the entries of the first level
+     * @param listCopy
+     *            the copies of the entries of the first level, not yet inserted
+     */
+    private void copyLevels( List<Entry> listEntry, List<Entry> listCopy )
+    {
+        while ( !listEntry.isEmpty( ) )
+        {
+            List<Integer> listIdEntry = listEntry.stream( ).map( Entry::getIdEntry ).collect( Collectors.toList( ) );
+
+            _entryDAO.insertBatch( listCopy, _plugin );
+
+            for ( int i = 0; i < listEntry.size( ); i++ )
+            {
+                _mapIdEntry.put( listIdEntry.get( i ), listCopy.get( i ).getIdEntry( ) );
+                _mapEntryCopy.put( listIdEntry.get( i ), listCopy.get( i ) );
+            }
+
+            List<Field> listField = _fieldDAO.loadMultipleByEntryIdList( listIdEntry, _plugin );
+
+            for ( Field field : listField )
+            {
+                field.setParentEntry( _mapEntryCopy.get( field.getParentEntry( ).getIdEntry( ) ) );
+            }
+
+            copyFields( listField );
+
+            List<Integer> listIdNextLevel = _entryDAO.selectIdChildrenAndConditionalQuestions( listIdEntry, _plugin ).stream( )
+                    .filter( nIdEntry -> !_mapIdEntry.containsKey( nIdEntry ) ).distinct( ).collect( Collectors.toList( ) );
+
+            listEntry = _entryDAO.loadMultiple( listIdNextLevel, _plugin );
+            listCopy = listEntry.stream( ).map( this::prepareCopy ).collect( Collectors.toList( ) );
+        }
+    }
+
+    /**
+     * Copy fields with their regular expressions and reference items. The ids of the copies are set on the fields
+     * 
+     * @param listField
+     *            the fields to copy, with the entries of their copies
+     */
+    private void copyFields( List<Field> listField )
+    {
+        List<Integer> listIdField = listField.stream( ).map( Field::getIdField ).collect( Collectors.toList( ) );
+
+        _fieldDAO.insertBatch( listField, _plugin );
+
+        for ( int i = 0; i < listField.size( ); i++ )
+        {
+            _mapIdField.put( listIdField.get( i ), listField.get( i ).getIdField( ) );
+            _mapFieldCopy.put( listIdField.get( i ), listField.get( i ) );
+        }
+
+        Map<Integer, List<Integer>> mapRegularExpression = new HashMap<>( );
+
+        for ( Map.Entry<Integer, List<Integer>> regularExpressions : _fieldDAO.selectRegularExpressionKeyByFieldIdList( listIdField, _plugin )
+                .entrySet( ) )
+        {
+            mapRegularExpression.put( _mapIdField.get( regularExpressions.getKey( ) ), regularExpressions.getValue( ) );
+        }
+
+        _fieldDAO.insertVerifyByBatch( mapRegularExpression, _plugin );
+
+        Map<Integer, Integer> mapItem = new HashMap<>( );
+
+        for ( Map.Entry<Integer, Integer> item : _referenceItemFieldDAO.loadItemByFieldIdList( listIdField, _plugin ).entrySet( ) )
+        {
+            mapItem.put( _mapIdField.get( item.getKey( ) ), item.getValue( ) );
+        }
+
+        _referenceItemFieldDAO.insertBatch( mapItem, _plugin );
+    }
+
+    /**
+     * Prepare the copy of a child or of a conditional question of a copied entry : the copy is linked to the copy of its parent or of its field
+     * and gets its resource
+     * 
+     * @param entry
+     *            the entry to copy
+     * @return the copy, not yet inserted
+     */
+    private Entry prepareCopy( Entry entry )
+    {
+        Entry entryCopy = (Entry) entry.clone( );
+        Entry entryResource = null;
+
+        if ( entry.getParent( ) != null && _mapEntryCopy.containsKey( entry.getParent( ).getIdEntry( ) ) )
+        {
+            entryResource = _mapEntryCopy.get( entry.getParent( ).getIdEntry( ) );
+            entryCopy.setParent( entryResource );
+        }
+
+        if ( entry.getFieldDepend( ) != null && _mapFieldCopy.containsKey( entry.getFieldDepend( ).getIdField( ) ) )
+        {
+            Field fieldCopy = _mapFieldCopy.get( entry.getFieldDepend( ).getIdField( ) );
+            entryCopy.setFieldDepend( fieldCopy );
+            entryResource = fieldCopy.getParentEntry( );
+        }
+
+        if ( entryResource != null )
+        {
+            entryCopy.setIdResource( entryResource.getIdResource( ) );
+            entryCopy.setResourceType( entryResource.getResourceType( ) );
+        }
+
+        return entryCopy;
+    }
+}
@@ -38,12 +38,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 /**
@@ -96,6 +98,23 @@ public final class EntryDAO implements IEntryDAO
     private static final String SQL_QUERY_SELECT_ENTRY_VALUE = "SELECT title FROM genatt_response INNER JOIN genatt_field ON genatt_response.id_field = genatt_field.id_field "
             + "	WHERE genatt_response.id_entry = ? AND genatt_response.id_response = ? AND title IS NOT NULL  ORDER BY genatt_response.id_entry ";
     private static final String SQL_QUERY_FIND_BY_PRIMARY_KEY_LIST = SQL_QUERY_SELECT_ENTRY_ATTRIBUTES + " AND ent.id_entry IN ( ";
+    private static final String SQL_QUERY_SELECT_ENTRY_BY_RESOURCE = SQL_QUERY_SELECT_ENTRY_ATTRIBUTES + SQL_FILTER_ID_RESOURCE + SQL_FILTER_RESOURCE_TYPE
+            + SQL_ORDER_BY_POSITION;
+    private static final String SQL_QUERY_NUMBER_CONDITIONAL_QUESTION_LIST = "SELECT f1.id_entry, COUNT(e2.id_entry) "
+            + "FROM genatt_field f1,genatt_entry e2 WHERE e2.id_field_depend=f1.id_field AND f1.id_entry IN ( ";
+    private static final String SQL_GROUP_BY_ID_ENTRY = " ) GROUP BY f1.id_entry ";
+    private static final String SQL_QUERY_SELECT_ID_CHILDREN = "SELECT id_entry FROM genatt_entry WHERE id_parent IN ( ";
+    private static final String SQL_QUERY_SELECT_ID_CONDITIONAL_QUESTIONS = " ) UNION SELECT e.id_entry FROM genatt_entry e, genatt_field f "
+            + " WHERE e.id_field_depend = f.id_field AND f.id_entry IN ( ";
+    private static final String SQL_QUERY_DELETE_BY_LIST = "DELETE FROM genatt_entry WHERE id_entry IN ( ";
+    private static final String SQL_CLOSE_PARENTHESIS = " ) ";
+    private static final String SQL_QUERY_MAX_POSITION_CONDITIONAL_BY_LIST_ID_FIELD = "SELECT id_field_depend, MAX(pos_conditional) FROM genatt_entry "
+            + " WHERE id_field_depend IN ( ";
+    private static final String SQL_GROUP_BY_ID_FIELD_DEPEND = " ) GROUP BY id_field_depend ";
+
+    // Queries of the filters, by shape
+    private final Map<Integer, String> _mapQuerySelectByShape = new ConcurrentHashMap<>( );
+    private final Map<Integer, String> _mapQueryCountByShape = new ConcurrentHashMap<>( );
 
     /**
      * {@inheritDoc}
@@ -105,55 +124,132 @@ public final class EntryDAO implements IEntryDAO
     {
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
         {
-            int nIndex = 1;
-            daoUtil.setInt( nIndex++, entry.getIdResource( ) );
-            daoUtil.setString( nIndex++, entry.getResourceType( ) );
-            daoUtil.setInt( nIndex++, entry.getEntryType( ).getIdType( ) );
+            setInsertParameters( daoUtil, entry, newPosition( entry, plugin ), newPositionConditional( entry, plugin ) );
+            daoUtil.executeUpdate( );
 
-            if ( entry.getParent( ) != null )
-            {
-                daoUtil.setInt( nIndex++, entry.getParent( ).getIdEntry( ) );
-            }
-            else
+            if ( daoUtil.nextGeneratedKey( ) )
             {
-                daoUtil.setIntNull( nIndex++ );
+                entry.setIdEntry( daoUtil.getGeneratedKeyInt( 1 ) );
             }
+        }
 
-            daoUtil.setString( nIndex++, entry.getCode( ) );
-            daoUtil.setString( nIndex++, trimEntryTitle( entry ) );
-            daoUtil.setString( nIndex++, entry.getHelpMessage( ) );
-            daoUtil.setString( nIndex++, entry.getComment( ) );
-            daoUtil.setBoolean( nIndex++, entry.isMandatory( ) );
-            daoUtil.setBoolean( nIndex++, entry.isFieldInLine( ) );
+        return entry.getIdEntry( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertBatch( List<Entry> listEntry, Plugin plugin )
+    {
+        if ( listEntry.isEmpty( ) )
+        {
+            return;
+        }
 
-            daoUtil.setInt( nIndex++, newPosition( entry, plugin ) );
+        // The positions are read once per resource and per field, then incremented in the order of the list
+        Map<String, Integer> mapPosition = new HashMap<>( );
+        Map<Integer, Integer> mapPositionConditional = selectMaxPositionConditional( listEntry.stream( ).filter( e -> e.getFieldDepend( ) != null )
+                .map( e -> e.getFieldDepend( ).getIdField( ) ).collect( Collectors.toList( ) ), plugin );
+        int [ ] listPosition = new int [ listEntry.size( )];
+        int [ ] listPositionConditional = new int [ listEntry.size( )];
 
-            if ( entry.getFieldDepend( ) != null )
+        for ( int i = 0; i < listEntry.size( ); i++ )
+        {
+            Entry entry = listEntry.get( i );
+
+            if ( entry.getFieldDepend( ) == null )
             {
-                daoUtil.setInt( nIndex++, entry.getFieldDepend( ).getIdField( ) );
+                listPosition [i] = mapPosition.compute( entry.getIdResource( ) + entry.getResourceType( ),
+                        ( strKey, nPosition ) -> ( nPosition == null ) ? newPosition( entry, plugin ) : ( nPosition + 1 ) );
             }
             else
             {
-                daoUtil.setIntNull( nIndex++ );
+                listPositionConditional [i] = mapPositionConditional.merge( entry.getFieldDepend( ).getIdField( ), 1, Integer::sum );
             }
+        }
 
-            daoUtil.setBoolean( nIndex++, entry.isUnique( ) );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
+        {
+            for ( int i = 0; i < listEntry.size( ); i++ )
+            {
+                setInsertParameters( daoUtil, listEntry.get( i ), listPosition [i], listPositionConditional [i] );
+                daoUtil.addBatch( );
+            }
 
-            daoUtil.setString( nIndex++, ( entry.getCSSClass( ) == null ) ? StringUtils.EMPTY : entry.getCSSClass( ) );
-            daoUtil.setInt( nIndex++, newPositionConditional( entry, plugin ) );
-            daoUtil.setString( nIndex++, entry.getErrorMessage( ) );
-            daoUtil.setBoolean( nIndex++, entry.isOnlyDisplayInBack( ) );
-            daoUtil.setBoolean( nIndex++, entry.isIndexed( ) );
+            daoUtil.executeBatch( );
 
-            daoUtil.executeUpdate( );
+            // The generated keys are returned in the order of the batch
+            for ( Entry entry : listEntry )
+            {
+                if ( !daoUtil.nextGeneratedKey( ) )
+                {
+                    throw new AppException( "The batch insert of " + listEntry.size( ) + " entries did not return a key for each entry" );
+                }
+
+                entry.setIdEntry( daoUtil.getGeneratedKeyInt( 1 ) );
+            }
 
             if ( daoUtil.nextGeneratedKey( ) )
             {
-                entry.setIdEntry( daoUtil.getGeneratedKeyInt( 1 ) );
+                throw new AppException( "The batch insert of " + listEntry.size( ) + " entries returned more keys than entries" );
             }
         }
+    }
 
-        return entry.getIdEntry( );
+    /**
+     * Set the parameters of the insert query
+     * 
+     * @param daoUtil
+     *            the daoUtil of the insert query
+     * @param entry
+     *            the entry to insert
+     * @param nPosition
+     *            the position of the entry
+     * @param nPositionConditional
+     *            the position of the entry in the conditional questions of its field
+     */
+    private void setInsertParameters( DAOUtil daoUtil, Entry entry, int nPosition, int nPositionConditional )
+    {
+        int nIndex = 1;
+        daoUtil.setInt( nIndex++, entry.getIdResource( ) );
+        daoUtil.setString( nIndex++, entry.getResourceType( ) );
+        daoUtil.setInt( nIndex++, entry.getEntryType( ).getIdType( ) );
+
+        if ( entry.getParent( ) != null )
+        {
+            daoUtil.setInt( nIndex++, entry.getParent( ).getIdEntry( ) );
+        }
+        else
+        {
+            daoUtil.setIntNull( nIndex++ );
+        }
+
+        daoUtil.setString( nIndex++, entry.getCode( ) );
+        daoUtil.setString( nIndex++, trimEntryTitle( entry ) );
+        daoUtil.setString( nIndex++, entry.getHelpMessage( ) );
+        daoUtil.setString( nIndex++, entry.getComment( ) );
+        daoUtil.setBoolean( nIndex++, entry.isMandatory( ) );
+        daoUtil.setBoolean( nIndex++, entry.isFieldInLine( ) );
+
+        daoUtil.setInt( nIndex++, nPosition );
+
+        if ( entry.getFieldDepend( ) != null )
+        {
+            daoUtil.setInt( nIndex++, entry.getFieldDepend( ).getIdField( ) );
+        }
+        else
+        {
+            daoUtil.setIntNull( nIndex++ );
+        }
+
+        daoUtil.setBoolean( nIndex++, entry.isUnique( ) );
+
+        daoUtil.setString( nIndex++, ( entry.getCSSClass( ) == null ) ? StringUtils.EMPTY : entry.getCSSClass( ) );
+        daoUtil.setInt( nIndex++, nPositionConditional );
+        daoUtil.setString( nIndex++, entry.getErrorMessage( ) );
+        daoUtil.setBoolean( nIndex++, entry.isOnlyDisplayInBack( ) );
+        daoUtil.setBoolean( nIndex, entry.isIndexed( ) );
     }
 
     /**
@@ -189,19 +285,39 @@ public final class EntryDAO implements IEntryDAO
         {
             return list;
         }
-        String query = SQL_QUERY_FIND_BY_PRIMARY_KEY_LIST + idList.stream( ).distinct( ).map( i -> "?" ).collect( Collectors.joining( "," ) ) + " )";
 
-        try ( DAOUtil daoUtil = new DAOUtil( query, plugin ) )
+        List<List<Integer>> listChunk = DAOQueryUtils.getChunks( idList );
+        Map<Integer, Entry> mapEntry = new HashMap<>( );
+
+        for ( List<Integer> listIdChunk : listChunk )
         {
-            for ( int i = 0; i < idList.size( ); i++ )
+            int nBucketSize = DAOQueryUtils.getBucketSize( listIdChunk.size( ) );
+            String query = SQL_QUERY_FIND_BY_PRIMARY_KEY_LIST + DAOQueryUtils.getPlaceholders( nBucketSize ) + " )";
+
+            try ( DAOUtil daoUtil = new DAOUtil( query, plugin ) )
             {
-                daoUtil.setInt( i + 1, idList.get( i ) );
+                DAOQueryUtils.setIdList( daoUtil, 1, listIdChunk, nBucketSize );
+                daoUtil.executeQuery( );
+
+                while ( daoUtil.next( ) )
+                {
+                    Entry entry = getEntryValues( daoUtil );
+                    mapEntry.put( entry.getIdEntry( ), entry );
+                }
             }
-            daoUtil.executeQuery( );
+        }
 
-            while ( daoUtil.next( ) )
+        // Keep the order of the ids
+        for ( List<Integer> listIdChunk : listChunk )
+        {
+            for ( Integer nIdEntry : listIdChunk )
             {
-                list.add( getEntryValues( daoUtil ) );
+                Entry entry = mapEntry.get( nIdEntry );
+
+                if ( entry != null )
+                {
+                    list.add( entry );
+                }
             }
         }
         return list;
@@ -297,24 +413,9 @@ public final class EntryDAO implements IEntryDAO
     public List<Entry> selectEntryListByFilter( EntryFilter filter, Plugin plugin )
     {
         List<Entry> entryList = new ArrayList<>( );
+        String strQuery = DAOQueryUtils.getQuery( _mapQuerySelectByShape, getFilterShape( filter ), ( ) -> buildSelectEntryListByFilterQuery( filter ) );
 
-        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_ENTRY_BY_FILTER );
-        appendFilter( sbSQL, filter.containsIdResource( ), SQL_FILTER_ID_RESOURCE );
-        appendFilter( sbSQL, filter.containsResourceType( ), SQL_FILTER_RESOURCE_TYPE );
-        appendFilter( sbSQL, filter.containsIdEntryParent( ), SQL_FILTER_ID_PARENT );
-        appendFilter( sbSQL, filter.containsEntryParentNull( ), SQL_FILTER_ID_PARENT_IS_NULL );
-        appendFilter( sbSQL, filter.containsIdIsGroup( ), SQL_FILTER_IS_GROUP );
-        appendFilter( sbSQL, filter.containsIdField( ), SQL_FILTER_ID_FIELD_DEPEND );
-        appendFilter( sbSQL, filter.containsFieldDependNull( ), SQL_FILTER_ID_FIELD_DEPEND_IS_NULL );
-        appendFilter( sbSQL, filter.containsIdEntryType( ), SQL_FILTER_ID_TYPE );
-        appendFilter( sbSQL, filter.containsIdIsComment( ), SQL_FILTER_IS_COMMENT );
-        appendFilter( sbSQL, filter.containsIsOnlyDisplayInBack( ), SQL_FILTER_IS_ONLY_DISPLAY_IN_BACK );
-        appendFilter( sbSQL, filter.containsIsIndexed( ), SQL_FILTER_IS_INDEXED );
-
-        sbSQL.append( SQL_GROUP_BY_ENTRY_ENTRY_TYPE );
-        sbSQL.append( SQL_ORDER_BY_POSITION );
-
-        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, plugin ) )
         {
             int nIndex = 1;
 
@@ -371,25 +472,48 @@ public final class EntryDAO implements IEntryDAO
             }
 
         }
-        for ( Entry entryCreated : entryList )
-        {
-            entryCreated.setNumberConditionalQuestion( numberConditionalQuestion( entryCreated.getIdEntry( ), plugin ) );
-        }
+        setNumberConditionalQuestion( entryList, plugin );
+
         return entryList;
     }
 
-    private void appendFilter( StringBuilder sb, boolean append, String value )
+    /**
+     * Build the query selecting the entries which verify a filter
+     * 
+     * @param filter
+     *            the filter
+     * @return the query
+     */
+    private String buildSelectEntryListByFilterQuery( EntryFilter filter )
     {
-        sb.append( append ? value : StringUtils.EMPTY );
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_ENTRY_BY_FILTER );
+        appendFilter( sbSQL, filter.containsIdResource( ), SQL_FILTER_ID_RESOURCE );
+        appendFilter( sbSQL, filter.containsResourceType( ), SQL_FILTER_RESOURCE_TYPE );
+        appendFilter( sbSQL, filter.containsIdEntryParent( ), SQL_FILTER_ID_PARENT );
+        appendFilter( sbSQL, filter.containsEntryParentNull( ), SQL_FILTER_ID_PARENT_IS_NULL );
+        appendFilter( sbSQL, filter.containsIdIsGroup( ), SQL_FILTER_IS_GROUP );
+        appendFilter( sbSQL, filter.containsIdField( ), SQL_FILTER_ID_FIELD_DEPEND );
+        appendFilter( sbSQL, filter.containsFieldDependNull( ), SQL_FILTER_ID_FIELD_DEPEND_IS_NULL );
+        appendFilter( sbSQL, filter.containsIdEntryType( ), SQL_FILTER_ID_TYPE );
+        appendFilter( sbSQL, filter.containsIdIsComment( ), SQL_FILTER_IS_COMMENT );
+        appendFilter( sbSQL, filter.containsIsOnlyDisplayInBack( ), SQL_FILTER_IS_ONLY_DISPLAY_IN_BACK );
+        appendFilter( sbSQL, filter.containsIsIndexed( ), SQL_FILTER_IS_INDEXED );
+
+        sbSQL.append( SQL_GROUP_BY_ENTRY_ENTRY_TYPE );
+        sbSQL.append( SQL_ORDER_BY_POSITION );
+
+        return sbSQL.toString( );
     }
 
     /**
-     * {@inheritDoc}
+     * Build the query counting the entries which verify a filter
+     * 
+     * @param filter
+     *            the filter
+     * @return the query
      */
-    @Override
-    public int selectNumberEntryByFilter( EntryFilter filter, Plugin plugin )
+    private String buildSelectNumberEntryByFilterQuery( EntryFilter filter )
     {
-        int nNumberEntry = 0;
         StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_NUMBER_ENTRY_BY_FILTER );
         appendFilter( sbSQL, filter.containsIdResource( ), SQL_FILTER_ID_RESOURCE );
         appendFilter( sbSQL, filter.containsIdEntryParent( ), SQL_FILTER_ID_PARENT );
@@ -404,7 +528,38 @@ public final class EntryDAO implements IEntryDAO
         sbSQL.append( SQL_GROUP_BY_POSITION );
         sbSQL.append( SQL_ORDER_BY_POSITION );
 
-        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
+        return sbSQL.toString( );
+    }
+
+    /**
+     * Get the shape of the queries of a filter, that is the criteria of the filter which are used
+     * 
+     * @param filter
+     *            the filter
+     * @return the shape of the queries of the filter
+     */
+    private static int getFilterShape( EntryFilter filter )
+    {
+        return DAOQueryUtils.getShape( filter.containsIdResource( ), filter.containsResourceType( ), filter.containsIdEntryParent( ),
+                filter.containsEntryParentNull( ), filter.containsIdIsGroup( ), filter.containsIdField( ), filter.containsFieldDependNull( ),
+                filter.containsIdEntryType( ), filter.containsIdIsComment( ), filter.containsIsOnlyDisplayInBack( ), filter.containsIsIndexed( ) );
+    }
+
+    private void appendFilter( StringBuilder sb, boolean append, String value )
+    {
+        sb.append( append ? value : StringUtils.EMPTY );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int selectNumberEntryByFilter( EntryFilter filter, Plugin plugin )
+    {
+        int nNumberEntry = 0;
+        String strQuery = DAOQueryUtils.getQuery( _mapQueryCountByShape, getFilterShape( filter ), ( ) -> buildSelectNumberEntryByFilterQuery( filter ) );
+
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, plugin ) )
         {
             int nIndex = 1;
 
@@ -479,10 +634,30 @@ public final class EntryDAO implements IEntryDAO
             }
 
         }
-        for ( Entry entryCreated : listResult )
+        setNumberConditionalQuestion( listResult, plugin );
+
+        return listResult;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Entry> selectEntryListByResource( int nIdResource, String strResourceType, Plugin plugin )
+    {
+        List<Entry> listResult = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ENTRY_BY_RESOURCE, plugin ) )
         {
-            entryCreated.setNumberConditionalQuestion( numberConditionalQuestion( entryCreated.getIdEntry( ), plugin ) );
+            daoUtil.setInt( 1, nIdResource );
+            daoUtil.setString( 2, strResourceType );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listResult.add( getEntryValues( daoUtil ) );
+            }
         }
+
         return listResult;
     }
 
@@ -610,6 +785,31 @@ public final class EntryDAO implements IEntryDAO
         return nPos;
     }
 
+    /**
+     * Select the maximum positions of the conditional questions of fields
+     * 
+     * @param listIdField
+     *            the ids of the fields
+     * @param plugin
+     *            the plugin
+     * @return the maximum positions of the conditional questions, mapped by field id, 0 for a field without conditional question
+     */
+    private Map<Integer, Integer> selectMaxPositionConditional( List<Integer> listIdField, Plugin plugin )
+    {
+        Map<Integer, Integer> mapPosition = new HashMap<>( );
+
+        for ( Integer nIdField : listIdField )
+        {
+            mapPosition.put( nIdField, CONSTANT_ZERO );
+        }
+
+        DAOQueryUtils.executeByChunk( listIdField,
+                strPlaceholders -> SQL_QUERY_MAX_POSITION_CONDITIONAL_BY_LIST_ID_FIELD + strPlaceholders + SQL_GROUP_BY_ID_FIELD_DEPEND, 1, plugin,
+                daoUtil -> mapPosition.put( daoUtil.getInt( 1 ), daoUtil.getInt( 2 ) ) );
+
+        return mapPosition;
+    }
+
     /**
      * Return the number of conditional question who are associate to the entry
      * 
@@ -635,6 +835,47 @@ public final class EntryDAO implements IEntryDAO
         return nNumberConditionalQuestion;
     }
 
+    /**
+     * Set the number of conditional questions of each entry of a list with a query per chunk of entries
+     * 
+     * @param listEntry
+     *            the list of entries
+     * @param plugin
+     *            the plugin
+     */
+    private void setNumberConditionalQuestion( List<Entry> listEntry, Plugin plugin )
+    {
+        if ( listEntry.isEmpty( ) )
+        {
+            return;
+        }
+
+        List<Integer> listIdEntry = listEntry.stream( ).map( Entry::getIdEntry ).collect( Collectors.toList( ) );
+        Map<Integer, Integer> mapNumberConditionalQuestion = new HashMap<>( );
+
+        for ( List<Integer> listIdChunk : DAOQueryUtils.getChunks( listIdEntry ) )
+        {
+            int nBucketSize = DAOQueryUtils.getBucketSize( listIdChunk.size( ) );
+            String strQuery = SQL_QUERY_NUMBER_CONDITIONAL_QUESTION_LIST + DAOQueryUtils.getPlaceholders( nBucketSize ) + SQL_GROUP_BY_ID_ENTRY;
+
+            try ( DAOUtil daoUtil = new DAOUtil( strQuery, plugin ) )
+            {
+                DAOQueryUtils.setIdList( daoUtil, 1, listIdChunk, nBucketSize );
+                daoUtil.executeQuery( );
+
+                while ( daoUtil.next( ) )
+                {
+                    mapNumberConditionalQuestion.merge( daoUtil.getInt( 1 ), daoUtil.getInt( 2 ), Integer::sum );
+                }
+            }
+        }
+
+        for ( Entry entry : listEntry )
+        {
+            entry.setNumberConditionalQuestion( mapNumberConditionalQuestion.getOrDefault( entry.getIdEntry( ), 0 ) );
+        }
+    }
+
     /**
      * Get values of an entry from the current row of a daoUtil. The class to daoUtil.next( ) will NOT be made by this method.
      * 
@@ -765,4 +1006,28 @@ public final class EntryDAO implements IEntryDAO
 
         return val;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> selectIdChildrenAndConditionalQuestions( List<Integer> listIdEntry, Plugin plugin )
+    {
+        List<Integer> listIdDescendant = new ArrayList<>( );
+        DAOQueryUtils.executeByChunk( listIdEntry,
+                strPlaceholders -> SQL_QUERY_SELECT_ID_CHILDREN + strPlaceholders + SQL_QUERY_SELECT_ID_CONDITIONAL_QUESTIONS + strPlaceholders
+                        + SQL_CLOSE_PARENTHESIS,
+                2, plugin, daoUtil -> listIdDescendant.add( daoUtil.getInt( 1 ) ) );
+
+        return listIdDescendant;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteByIdList( List<Integer> listIdEntry, Plugin plugin )
+    {
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_DELETE_BY_LIST + strPlaceholders + SQL_CLOSE_PARENTHESIS, 1, plugin, null );
+    }
 }
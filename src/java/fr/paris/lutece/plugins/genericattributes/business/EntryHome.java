@@ -33,19 +33,26 @@
  */
 package fr.paris.lutece.plugins.genericattributes.business;
 
+import fr.paris.lutece.plugins.genericattributes.service.EntryEventPublisher;
+import fr.paris.lutece.plugins.genericattributes.service.FormDefinitionCacheService;
 import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
 import fr.paris.lutece.plugins.genericattributes.util.CopyEntryEventParam;
 import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import fr.paris.lutece.portal.business.event.ResourceEvent;
 import fr.paris.lutece.portal.business.file.FileHome;
-import fr.paris.lutece.portal.service.event.ResourceEventManager;
+import fr.paris.lutece.portal.business.regularexpression.RegularExpression;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.util.sql.TransactionManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * This class provides instances management methods (create, find, ...) for Entry objects
@@ -72,7 +79,10 @@ public final class EntryHome
      */
     public static int create( Entry entry )
     {
-        return _dao.insert( entry, getPlugin( ) );
+        int nIdEntry = _dao.insert( entry, getPlugin( ) );
+        FormDefinitionCacheService.getInstance( ).invalidate( entry.getIdResource( ), entry.getResourceType( ) );
+
+        return nIdEntry;
     }
 
     /**
@@ -84,58 +94,41 @@ public final class EntryHome
      */
     public static Entry copy( Entry entry )
     {
-        int oldId = entry.getIdEntry( );
-        Entry entryCopy = (Entry) entry.clone( );
-        List<Field> listField = FieldHome.getFieldListByIdEntry( entry.getIdEntry( ) );
+        return copyAll( Collections.singletonList( entry ) ).get( 0 );
+    }
+
+    /**
+     * Copy entries, with their fields, children and conditional questions. The whole copy is done with batched inserts in a single transaction, for
+     * instance to copy all the entries of a form. Once committed, a creation event is published for each copied entry, with a
+     * {@link CopyEntryEventParam} holding the id mappings of the whole copy
+     * 
+     * @param listEntry
+     *            The entries to copy, with the resource, parent and field of their copies
+     * @return the copies of the entries, in the same order
+     */
+    public static List<Entry> copyAll( List<Entry> listEntry )
+    {
+        EntryCopier copier = new EntryCopier( );
+        List<Entry> listCopy;
 
         TransactionManager.beginTransaction( getPlugin( ) );
 
         try
         {
-            entryCopy.setIdEntry( create( entry ) );
-
-            for ( Field field : listField )
-            {
-                field = FieldHome.findByPrimaryKey( field.getIdField( ) );
-
-                for ( Entry entryConditionnal : field.getConditionalQuestions( ) )
-                {
-                    entryConditionnal.setIdResource( entry.getIdResource( ) );
-                    entryConditionnal.setResourceType( entry.getResourceType( ) );
-                }
-
-                field.setParentEntry( entryCopy );
-                FieldHome.copy( field );
-            }
-
-            if ( Boolean.TRUE.equals( entryCopy.getEntryType( ).getGroup( ) ) )
-            {
-                for ( Entry entryChild : entry.getChildren( ) )
-                {
-                    entryChild = EntryHome.findByPrimaryKey( entryChild.getIdEntry( ) );
-                    if ( entryChild != null )
-                    {
-                        entryChild.setParent( entryCopy );
-                        entryChild.setIdResource( entryCopy.getIdResource( ) );
-                        entryChild.setResourceType( entryCopy.getResourceType( ) );
-                        copy( entryChild );
-                    }
-                }
-            }
-            ResourceEvent event = new ResourceEvent( );
-            event.setIdResource( String.valueOf( entryCopy.getIdEntry( ) ) );
-            event.setTypeResource( entry.getResourceType( ) );
-            event.setParam( new CopyEntryEventParam( oldId ) );
-            ResourceEventManager.fireAddedResource( event );
+            listCopy = copier.copyEntries( listEntry );
+            copier.invalidateCopies( );
 
             TransactionManager.commitTransaction( getPlugin( ) );
-            return entryCopy;
         }
         catch( Exception e )
         {
             TransactionManager.rollBack( getPlugin( ) );
             throw new AppException( e.getMessage( ), e );
         }
+
+        copier.publishCopies( );
+
+        return listCopy;
     }
 
     /**
@@ -147,84 +140,127 @@ public final class EntryHome
     public static void update( Entry entry )
     {
         _dao.store( entry, getPlugin( ) );
+        // The entry may have been moved to another resource
+        FormDefinitionCacheService.getInstance( ).invalidate( entry.getIdResource( ), entry.getResourceType( ) );
         ResourceEvent event = new ResourceEvent( );
         event.setIdResource( String.valueOf( entry.getIdEntry( ) ) );
         event.setTypeResource( entry.getResourceType( ) );
-        ResourceEventManager.fireUpdatedResource( event );
+        EntryEventPublisher.getInstance( ).publishUpdated( event );
     }
 
     /**
-     * Remove the entry whose identifier is specified in parameter
+     * Remove the entry whose identifier is specified in parameter. When the caller is in a transaction of the plugin, the whole removal joins it and
+     * is committed or rolled back with it.
      * 
      * @param nIdEntry
      *            The entry Id
      */
     public static void remove( int nIdEntry )
     {
-        Entry entry = findByPrimaryKey( nIdEntry );
+        removeEntry( nIdEntry, null );
+    }
 
-        if ( entry != null )
+    /**
+     * Remove the entry whose identifier is specified in parameter, with its children, its conditional questions and all their fields and responses.
+     * The responses are removed first by chunks, each in its own transaction, then the entries and their fields are removed with set-based
+     * queries in a single transaction. The caller must not be in a transaction of the plugin : the chunks would join it, and the responses removed
+     * before a failure would not be committed.
+     * 
+     * @param nIdEntry
+     *            The entry Id
+     * @param listener
+     *            The listener notified of the progress of the removal of the responses, may be null
+     * @throws AppException
+     *             if the caller is in a transaction of the plugin
+     */
+    public static void remove( int nIdEntry, IRemovalProgressListener listener )
+    {
+        ResponseHome.checkNotInTransaction( );
+        removeEntry( nIdEntry, listener );
+    }
+
+    /**
+     * Remove an entry with its children, its conditional questions and all their fields and responses
+     * 
+     * @param nIdEntry
+     *            The entry Id
+     * @param listener
+     *            The listener notified of the progress of the removal of the responses, may be null
+     */
+    private static void removeEntry( int nIdEntry, IRemovalProgressListener listener )
+    {
+        Entry entry = _dao.load( nIdEntry, getPlugin( ) );
+
+        if ( entry == null )
         {
-            TransactionManager.beginTransaction( getPlugin( ) );
+            return;
+        }
 
-            try
-            {
-                for ( Field field : entry.getFields( ) )
-                {
-                    if ( IEntryTypeService.FIELD_DOWNLOADABLE_FILE.equals( field.getCode( ) ) )
-                    {
-                        FileHome.remove( Integer.valueOf( field.getValue( ) ) );
-                    }
-                    if ( IEntryTypeService.FIELD_ANSWER_CHOICE.equals( field.getCode( ) ) )
-                    {
-                        ReferenceItemFieldHome.removeByField( field.getIdField( ) );
-                    }
-                    FieldHome.remove( field.getIdField( ) );
-                }
+        List<Integer> listIdEntry = findIdEntryClosure( nIdEntry );
 
-                // Remove the Responses of an Entry
-                removeEntryResponses( nIdEntry );
+        ResponseHome.removeByEntryIdListInChunks( listIdEntry, listener );
 
-                for ( Entry entryChild : entry.getChildren( ) )
+        TransactionManager.beginTransaction( getPlugin( ) );
+
+        try
+        {
+            for ( Field field : FieldHome.getFieldListByListIdEntry( listIdEntry ) )
+            {
+                if ( IEntryTypeService.FIELD_DOWNLOADABLE_FILE.equals( field.getCode( ) ) )
                 {
-                    remove( entryChild.getIdEntry( ) );
+                    FileHome.remove( Integer.valueOf( field.getValue( ) ) );
                 }
+            }
 
-                _dao.delete( nIdEntry, getPlugin( ) );
-
-                ResourceEvent event = new ResourceEvent( );
-                event.setIdResource( String.valueOf( nIdEntry ) );
-                event.setTypeResource( entry.getResourceType( ) );
-                ResourceEventManager.fireDeletedResource( event );
+            ReferenceItemFieldHome.removeByEntryIdList( listIdEntry );
+            ResponseStatisticHome.removeByEntryIdList( listIdEntry );
+            FieldHome.removeByEntryIdList( listIdEntry );
 
-                TransactionManager.commitTransaction( getPlugin( ) );
-            }
-            catch( Exception e )
+            for ( Integer nIdEntryRemoved : listIdEntry )
             {
-                TransactionManager.rollBack( getPlugin( ) );
-                throw new AppException( e.getMessage( ), e );
+                SequenceHome.remove( nIdEntryRemoved );
             }
+
+            _dao.deleteByIdList( listIdEntry, getPlugin( ) );
+            FormDefinitionCacheService.getInstance( ).invalidate( entry.getIdResource( ), entry.getResourceType( ) );
+
+            TransactionManager.commitTransaction( getPlugin( ) );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+
+        for ( Integer nIdEntryRemoved : listIdEntry )
+        {
+            ResourceEvent event = new ResourceEvent( );
+            event.setIdResource( String.valueOf( nIdEntryRemoved ) );
+            event.setTypeResource( entry.getResourceType( ) );
+            EntryEventPublisher.getInstance( ).publishDeleted( event );
         }
     }
 
     /**
-     * Remove the Responses of an Entry
+     * Find the ids of an entry and of all its descendants, children and conditional questions, level by level
      * 
      * @param nIdEntry
-     *            The identifier of the Entry to remove
+     *            The entry Id
+     * @return the ids of the entry and of its descendants
      */
-    private static void removeEntryResponses( int nIdEntry )
+    private static List<Integer> findIdEntryClosure( int nIdEntry )
     {
-        ResponseFilter responseFilter = new ResponseFilter( );
-        responseFilter.setIdEntry( nIdEntry );
-        List<Response> listResponse = ResponseHome.getResponseList( responseFilter );
-        if ( listResponse != null && !listResponse.isEmpty( ) )
+        Set<Integer> setIdEntry = new LinkedHashSet<>( );
+        List<Integer> listIdLevel = Collections.singletonList( nIdEntry );
+
+        while ( !listIdLevel.isEmpty( ) )
         {
-            for ( Response response : listResponse )
-            {
-                ResponseHome.remove( response.getIdResponse( ) );
-            }
+            setIdEntry.addAll( listIdLevel );
+            listIdLevel = _dao.selectIdChildrenAndConditionalQuestions( listIdLevel, getPlugin( ) ).stream( ).filter( id -> !setIdEntry.contains( id ) )
+                    .distinct( ).collect( Collectors.toList( ) );
         }
+
+        return new ArrayList<>( setIdEntry );
     }
 
     // /////////////////////////////////////////////////////////////////////////
@@ -239,7 +275,14 @@ public final class EntryHome
      */
     public static Entry findByPrimaryKey( int nKey )
     {
-        Entry entry = _dao.load( nKey, getPlugin( ) );
+        Entry entry = FormDefinitionCacheService.getInstance( ).getEntryFromCache( nKey );
+
+        if ( entry != null )
+        {
+            return entry;
+        }
+
+        entry = _dao.load( nKey, getPlugin( ) );
 
         if ( entry != null )
         {
@@ -299,19 +342,53 @@ public final class EntryHome
      */
     public static List<Entry> findEntriesWithoutParent( int nIdResource, String strResourceType )
     {
-        List<Entry> listEntry = _dao.findEntriesWithoutParent( getPlugin( ), nIdResource, strResourceType );
+        return getFormDefinition( nIdResource, strResourceType ).getRootEntries( );
+    }
+
+    /**
+     * Loads the whole graph of entries, fields and conditional questions associated with a given resource. The graph is built from a fixed number of
+     * queries, whatever the number of entries of the resource, and is then kept in the form definition cache.
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            The resource type
+     * @return the form definition of the resource
+     */
+    public static FormDefinition getFormDefinition( int nIdResource, String strResourceType )
+    {
+        FormDefinitionCacheService cacheService = FormDefinitionCacheService.getInstance( );
+        FormDefinition formDefinition = cacheService.getFromCache( nIdResource, strResourceType );
 
-        for ( Entry entry : listEntry )
+        if ( formDefinition == null )
         {
-            if ( entry != null )
-            {
-                EntryFilter filter = new EntryFilter( );
-                filter.setIdEntryParent( entry.getIdEntry( ) );
-                entry.setChildren( getEntryList( filter ) );
-            }
+            long lGeneration = cacheService.getGeneration( );
+            int nVersion = cacheService.getVersion( nIdResource, strResourceType );
+            formDefinition = loadFormDefinition( nIdResource, strResourceType );
+            cacheService.putInCache( formDefinition, lGeneration, nVersion );
         }
 
-        return listEntry;
+        return formDefinition;
+    }
+
+    /**
+     * Loads the graph of entries, fields and conditional questions of a resource from the database
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            The resource type
+     * @return the form definition of the resource
+     */
+    private static FormDefinition loadFormDefinition( int nIdResource, String strResourceType )
+    {
+        List<Entry> listEntry = _dao.selectEntryListByResource( nIdResource, strResourceType, getPlugin( ) );
+        List<Integer> listIdEntry = listEntry.stream( ).map( Entry::getIdEntry ).collect( Collectors.toList( ) );
+
+        List<Field> listField = FieldHome.getFieldListByListIdEntry( listIdEntry );
+        Map<Integer, List<RegularExpression>> mapRegularExpression = FieldHome.getRegularExpressionListByResource( nIdResource, strResourceType );
+
+        return new FormDefinition( nIdResource, strResourceType, listEntry, listField, mapRegularExpression );
     }
 
     /**
@@ -347,6 +424,7 @@ public final class EntryHome
     public static void decrementOrderByOne( int nOrder, int nIdField, int nIdResource, String strResourceType )
     {
         _dao.decrementOrderByOne( getPlugin( ), nOrder, nIdField, nIdResource, strResourceType );
+        FormDefinitionCacheService.getInstance( ).invalidate( nIdResource, strResourceType );
     }
 
     /**
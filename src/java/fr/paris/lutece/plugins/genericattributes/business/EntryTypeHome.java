@@ -33,6 +33,7 @@
  */
 package fr.paris.lutece.plugins.genericattributes.business;
 
+import fr.paris.lutece.plugins.genericattributes.service.FormDefinitionCacheService;
 import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
@@ -116,5 +117,7 @@ public final class EntryTypeHome
     public static void update( EntryType entryType )
     {
         _dao.store( entryType, getPlugin( ) );
+        // The entry types are embedded in the cached entries
+        FormDefinitionCacheService.getInstance( ).resetCache( );
     }
 }
@@ -36,7 +36,10 @@ package fr.paris.lutece.plugins.genericattributes.business;
 import java.sql.Date;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -44,6 +47,7 @@ import org.apache.commons.collections.CollectionUtils;
 import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.service.image.ImageResourceManager;
 import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 /**
@@ -63,25 +67,40 @@ public final class FieldDAO implements IFieldDAO
     private static final String SQL_QUERY_DELETE_VERIF_BY = "DELETE FROM genatt_verify_by WHERE id_field = ? and id_expression= ?";
     private static final String SQL_QUERY_UPDATE = "UPDATE genatt_field SET "
             + "id_field=?,id_entry=?,code=?,title=?,value=?,default_value=?,pos=?,value_type_date=?,no_display_title=?,comment=?,id_file_key=? WHERE id_field = ?";
-    private static final String SQL_QUERY_SELECT_FIELD_BY_ID_ENTRY = SQL_QUERY_SELECT_ALL + " WHERE id_entry = ? ORDER BY pos";
-    private static final String SQL_QUERY_NEW_POSITION = "SELECT MAX(pos)" + " FROM genatt_field ";
+    private static final String SQL_QUERY_SELECT_FIELD_BY_ID_ENTRY = SQL_QUERY_SELECT_ALL + " WHERE id_entry = ? ORDER BY pos, id_field";
+    private static final String SQL_QUERY_NEW_POSITION = "SELECT MAX(pos)" + " FROM genatt_field WHERE id_entry = ? ";
     private static final String SQL_QUERY_SELECT_REGULAR_EXPRESSION_BY_ID_FIELD = "SELECT id_expression " + " FROM genatt_verify_by where id_field=?";
     private static final String SQL_QUERY_COUNT_FIELD_BY_ID_REGULAR_EXPRESSION = "SELECT COUNT(id_field) " + " FROM genatt_verify_by where id_expression = ?";
     private static final String SQL_QUERY_SELECT_FIELD_BY_LIST_ID_ENTRY = SQL_QUERY_SELECT_ALL + " WHERE id_entry IN ";
+    private static final String SQL_ORDER_BY_POSITION = " ORDER BY pos, id_field ";
+    private static final String SQL_QUERY_DELETE_VERIFY_BY_BY_LIST_ID_ENTRY = "DELETE FROM genatt_verify_by WHERE id_field IN "
+            + " ( SELECT id_field FROM genatt_field WHERE id_entry IN ( ";
+    private static final String SQL_QUERY_DELETE_BY_LIST_ID_ENTRY = "DELETE FROM genatt_field WHERE id_entry IN ( ";
+    private static final String SQL_QUERY_MAX_POSITION_BY_LIST_ID_ENTRY = "SELECT id_entry, MAX(pos) FROM genatt_field WHERE id_entry IN ( ";
+    private static final String SQL_GROUP_BY_ID_ENTRY = " ) GROUP BY id_entry ";
+    private static final String SQL_QUERY_SELECT_REGULAR_EXPRESSION_BY_LIST_ID_FIELD = "SELECT id_field, id_expression FROM genatt_verify_by WHERE id_field IN ( ";
+    private static final String SQL_QUERY_SELECT_REGULAR_EXPRESSION_BY_RESOURCE = "SELECT vb.id_field, vb.id_expression "
+            + " FROM genatt_verify_by vb, genatt_field f, genatt_entry ent "
+            + " WHERE vb.id_field = f.id_field AND f.id_entry = ent.id_entry AND ent.id_resource = ? AND ent.resource_type = ? ";
     
     private static final String PUBLIC_IMAGE_RESOURCE = "public_image_resource";
     /**
-     * Generates a new field position
+     * Generates a new field position, after the positions of the other fields of the entry. The maximum position is read from the index on
+     * ( id_entry, pos ). Concurrent inserts in the same entry may get the same position : the fields are then ordered by id, that is by creation
+     * order.
      * 
+     * @param nIdEntry
+     *            the id of the entry of the field
      * @param plugin
      *            the plugin
-     * @return the new entry position
+     * @return the new field position
      */
-    private int newPosition( Plugin plugin )
+    private int newPosition( int nIdEntry, Plugin plugin )
     {
         int nPos;
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_NEW_POSITION, plugin ) )
         {
+            daoUtil.setInt( 1, nIdEntry );
             daoUtil.executeQuery( );
 
             if ( !daoUtil.next( ) )
@@ -100,26 +119,15 @@ public final class FieldDAO implements IFieldDAO
      * {@inheritDoc}
      */
     @Override
-    public synchronized int insert( Field field, Plugin plugin )
+    public int insert( Field field, Plugin plugin )
     {
-        field.setPosition( newPosition( plugin ) );
+        field.setPosition( newPosition( field.getParentEntry( ).getIdEntry( ), plugin ) );
 
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
         {
-            int nIndex = 1;
-            daoUtil.setInt( nIndex++, field.getParentEntry( ).getIdEntry( ) );
-            daoUtil.setString( nIndex++, field.getCode( ) );
-            daoUtil.setString( nIndex++, field.getTitle( ) );
-            daoUtil.setString( nIndex++, field.getValue( ) );
-            daoUtil.setBoolean( nIndex++, field.isDefaultValue( ) );
-            daoUtil.setInt( nIndex++, field.getPosition( ) );
-            daoUtil.setDate( nIndex++, ( field.getValueTypeDate( ) == null ) ? null : new Date( field.getValueTypeDate( ).getTime( ) ) );
-            daoUtil.setBoolean( nIndex++, field.isNoDisplayTitle( ) );
-            daoUtil.setString( nIndex++, field.getComment( ) );
-            daoUtil.setString( nIndex++, ( field.getFileImage( ) == null ) ? null : field.getFileImage( ).getFileKey( ) );
-            
-
+            setInsertParameters( daoUtil, field );
             daoUtil.executeUpdate( );
+
             if ( daoUtil.nextGeneratedKey( ) )
             {
                 field.setIdField( daoUtil.getGeneratedKeyInt( 1 ) );
@@ -128,6 +136,81 @@ public final class FieldDAO implements IFieldDAO
         return field.getIdField( );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertBatch( List<Field> listField, Plugin plugin )
+    {
+        if ( listField.isEmpty( ) )
+        {
+            return;
+        }
+
+        // The maximum positions are read once per entry, then incremented in the order of the list
+        List<Integer> listIdEntry = listField.stream( ).map( f -> f.getParentEntry( ).getIdEntry( ) ).collect( Collectors.toList( ) );
+        Map<Integer, Integer> mapPosition = new HashMap<>( );
+
+        for ( Integer nIdEntry : listIdEntry )
+        {
+            mapPosition.put( nIdEntry, 0 );
+        }
+
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_MAX_POSITION_BY_LIST_ID_ENTRY + strPlaceholders + SQL_GROUP_BY_ID_ENTRY, 1,
+                plugin, daoUtil -> mapPosition.put( daoUtil.getInt( 1 ), daoUtil.getInt( 2 ) ) );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
+        {
+            for ( Field field : listField )
+            {
+                field.setPosition( mapPosition.merge( field.getParentEntry( ).getIdEntry( ), 1, Integer::sum ) );
+                setInsertParameters( daoUtil, field );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+
+            // The generated keys are returned in the order of the batch
+            for ( Field field : listField )
+            {
+                if ( !daoUtil.nextGeneratedKey( ) )
+                {
+                    throw new AppException( "The batch insert of " + listField.size( ) + " fields did not return a key for each field" );
+                }
+
+                field.setIdField( daoUtil.getGeneratedKeyInt( 1 ) );
+            }
+
+            if ( daoUtil.nextGeneratedKey( ) )
+            {
+                throw new AppException( "The batch insert of " + listField.size( ) + " fields returned more keys than fields" );
+            }
+        }
+    }
+
+    /**
+     * Set the parameters of the insert query
+     * 
+     * @param daoUtil
+     *            the daoUtil of the insert query
+     * @param field
+     *            the field to insert
+     */
+    private void setInsertParameters( DAOUtil daoUtil, Field field )
+    {
+        int nIndex = 1;
+        daoUtil.setInt( nIndex++, field.getParentEntry( ).getIdEntry( ) );
+        daoUtil.setString( nIndex++, field.getCode( ) );
+        daoUtil.setString( nIndex++, field.getTitle( ) );
+        daoUtil.setString( nIndex++, field.getValue( ) );
+        daoUtil.setBoolean( nIndex++, field.isDefaultValue( ) );
+        daoUtil.setInt( nIndex++, field.getPosition( ) );
+        daoUtil.setDate( nIndex++, ( field.getValueTypeDate( ) == null ) ? null : new Date( field.getValueTypeDate( ).getTime( ) ) );
+        daoUtil.setBoolean( nIndex++, field.isNoDisplayTitle( ) );
+        daoUtil.setString( nIndex++, field.getComment( ) );
+        daoUtil.setString( nIndex, ( field.getFileImage( ) == null ) ? null : field.getFileImage( ).getFileKey( ) );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -283,6 +366,28 @@ public final class FieldDAO implements IFieldDAO
         return nNumberEntry != 0;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, List<Integer>> selectRegularExpressionKeyByResource( int nIdResource, String strResourceType, Plugin plugin )
+    {
+        Map<Integer, List<Integer>> mapRegularExpression = new HashMap<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_REGULAR_EXPRESSION_BY_RESOURCE, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdResource );
+            daoUtil.setString( 2, strResourceType );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                mapRegularExpression.computeIfAbsent( daoUtil.getInt( 1 ), k -> new ArrayList<>( ) ).add( daoUtil.getInt( 2 ) );
+            }
+        }
+
+        return mapRegularExpression;
+    }
+
     @Override
     public List<Field> loadMultipleByEntryIdList( List<Integer> idList, Plugin plugin )
     {
@@ -291,20 +396,34 @@ public final class FieldDAO implements IFieldDAO
         {
             return list;
         }
-        String query = SQL_QUERY_SELECT_FIELD_BY_LIST_ID_ENTRY + " ( " + idList.stream( ).distinct( ).map( i -> "?" ).collect( Collectors.joining( "," ) )
-                + " )";
 
-        try ( DAOUtil daoUtil = new DAOUtil( query, plugin ) )
+        List<List<Integer>> listChunk = DAOQueryUtils.getChunks( idList );
+        Map<Integer, List<Field>> mapFieldByIdEntry = new HashMap<>( );
+
+        for ( List<Integer> listIdChunk : listChunk )
         {
-            for ( int i = 0; i < idList.size( ); i++ )
+            int nBucketSize = DAOQueryUtils.getBucketSize( listIdChunk.size( ) );
+            String query = SQL_QUERY_SELECT_FIELD_BY_LIST_ID_ENTRY + " ( " + DAOQueryUtils.getPlaceholders( nBucketSize ) + " )" + SQL_ORDER_BY_POSITION;
+
+            try ( DAOUtil daoUtil = new DAOUtil( query, plugin ) )
             {
-                daoUtil.setInt( i + 1, idList.get( i ) );
+                DAOQueryUtils.setIdList( daoUtil, 1, listIdChunk, nBucketSize );
+                daoUtil.executeQuery( );
+
+                while ( daoUtil.next( ) )
+                {
+                    Field field = dataToObject( daoUtil );
+                    mapFieldByIdEntry.computeIfAbsent( field.getParentEntry( ).getIdEntry( ), k -> new ArrayList<>( ) ).add( field );
+                }
             }
-            daoUtil.executeQuery( );
+        }
 
-            while ( daoUtil.next( ) )
+        // Keep the order of the ids of the entries, then the order of the positions of the fields
+        for ( List<Integer> listIdChunk : listChunk )
+        {
+            for ( Integer nIdEntry : listIdChunk )
             {
-                list.add( dataToObject( daoUtil ) );
+                list.addAll( mapFieldByIdEntry.getOrDefault( nIdEntry, Collections.emptyList( ) ) );
             }
         }
         return list;
@@ -355,4 +474,55 @@ public final class FieldDAO implements IFieldDAO
         }
         return result;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteByEntryIdList( List<Integer> listIdEntry, Plugin plugin )
+    {
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_DELETE_VERIFY_BY_BY_LIST_ID_ENTRY + strPlaceholders + " ) )", 1, plugin,
+                null );
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_DELETE_BY_LIST_ID_ENTRY + strPlaceholders + " )", 1, plugin, null );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, List<Integer>> selectRegularExpressionKeyByFieldIdList( List<Integer> listIdField, Plugin plugin )
+    {
+        Map<Integer, List<Integer>> mapRegularExpression = new HashMap<>( );
+        DAOQueryUtils.executeByChunk( listIdField, strPlaceholders -> SQL_QUERY_SELECT_REGULAR_EXPRESSION_BY_LIST_ID_FIELD + strPlaceholders + " )", 1,
+                plugin, daoUtil -> mapRegularExpression.computeIfAbsent( daoUtil.getInt( 1 ), k -> new ArrayList<>( ) ).add( daoUtil.getInt( 2 ) ) );
+
+        return mapRegularExpression;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertVerifyByBatch( Map<Integer, List<Integer>> mapRegularExpression, Plugin plugin )
+    {
+        if ( mapRegularExpression.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_VERIF_BY, plugin ) )
+        {
+            for ( Map.Entry<Integer, List<Integer>> regularExpressions : mapRegularExpression.entrySet( ) )
+            {
+                for ( Integer nIdExpression : regularExpressions.getValue( ) )
+                {
+                    daoUtil.setInt( 1, regularExpressions.getKey( ) );
+                    daoUtil.setInt( 2, nIdExpression );
+                    daoUtil.addBatch( );
+                }
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
 }
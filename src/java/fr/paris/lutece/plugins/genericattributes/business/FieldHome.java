@@ -33,6 +33,7 @@
  */
 package fr.paris.lutece.plugins.genericattributes.business;
 
+import fr.paris.lutece.plugins.genericattributes.service.FormDefinitionCacheService;
 import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import fr.paris.lutece.portal.business.regularexpression.RegularExpression;
 import fr.paris.lutece.portal.service.plugin.Plugin;
@@ -42,7 +43,9 @@ import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.util.sql.TransactionManager;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 
@@ -76,42 +79,26 @@ public final class FieldHome
         {
             ReferenceItemFieldHome.create( field.getIdField( ), field.getLinkedItem( ).getId( ) );
         }
+        FormDefinitionCacheService.getInstance( ).invalidateByIdEntryAfterCommit( field.getParentEntry( ).getIdEntry( ) );
         return id;
     }
 
     /**
-     * Copy of an instance of field
+     * Copy of an instance of field, with its regular expressions, its reference item and its conditional questions
      * 
      * @param field
-     *            The instance of the Field who must copy
+     *            The instance of the Field who must copy, with the entry of its copy. The id of the copy is set on the field
      */
     public static void copy( Field field )
     {
-        Field fieldCopy = field;
-        int oldFieldId = field.getIdField( );
+        EntryCopier copier = new EntryCopier( );
 
         TransactionManager.beginTransaction( getPlugin( ) );
 
         try
         {
-            fieldCopy.setIdField( create( field ) );
+            copier.copyField( field );
 
-            for ( Entry entry : field.getConditionalQuestions( ) )
-            {
-                entry.setFieldDepend( fieldCopy );
-                EntryHome.copy( entry );
-            }
-
-            for ( RegularExpression regularExpression : field.getRegularExpressionList( ) )
-            {
-                createVerifyBy( fieldCopy.getIdField( ), regularExpression.getIdExpression( ) );
-            }
-
-            Integer idItem = ReferenceItemFieldHome.findIdItemByIdField( oldFieldId );
-            if ( idItem > 0 )
-            {
-                ReferenceItemFieldHome.create( fieldCopy.getIdField( ), idItem );
-            }
             TransactionManager.commitTransaction( getPlugin( ) );
         }
         catch( Exception e )
@@ -119,6 +106,10 @@ public final class FieldHome
             TransactionManager.rollBack( getPlugin( ) );
             throw new AppException( e.getMessage( ), e );
         }
+
+        FormDefinitionCacheService.getInstance( ).invalidateByIdEntryAfterCommit( field.getParentEntry( ).getIdEntry( ) );
+        copier.invalidateCopies( );
+        copier.publishCopies( );
     }
 
     /**
@@ -130,6 +121,8 @@ public final class FieldHome
     public static void update( Field field )
     {
         _dao.store( field, getPlugin( ) );
+        FormDefinitionCacheService.getInstance( ).invalidateByIdField( field.getIdField( ) );
+        FormDefinitionCacheService.getInstance( ).invalidateByIdEntry( field.getParentEntry( ).getIdEntry( ) );
     }
 
     /**
@@ -155,9 +148,24 @@ public final class FieldHome
             removeVerifyBy( nIdField, regularExpressionKey );
         }
 
+        // The field must still exist to find the form definition to invalidate
+        FormDefinitionCacheService.getInstance( ).invalidateByIdField( nIdField );
+        ResponseStatisticHome.removeByIdField( nIdField );
         _dao.delete( nIdField, getPlugin( ) );
     }
 
+    /**
+     * Remove all the fields of entries, with their regular expressions. The caller is in charge of removing the conditional questions and of
+     * invalidating the form definitions
+     * 
+     * @param listIdEntry
+     *            The ids of the entries
+     */
+    public static void removeByEntryIdList( List<Integer> listIdEntry )
+    {
+        _dao.deleteByEntryIdList( listIdEntry, getPlugin( ) );
+    }
+
     // /////////////////////////////////////////////////////////////////////////
     // Finders
 
@@ -170,7 +178,14 @@ public final class FieldHome
      */
     public static Field findByPrimaryKey( int nKey )
     {
-        Field field = _dao.load( nKey, getPlugin( ) );
+        Field field = FormDefinitionCacheService.getInstance( ).getFieldFromCache( nKey );
+
+        if ( field != null )
+        {
+            return field;
+        }
+
+        field = _dao.load( nKey, getPlugin( ) );
         if ( field == null )
         {
             return null;
@@ -184,27 +199,63 @@ public final class FieldHome
 
         if ( RegularExpressionService.getInstance( ).isAvailable( ) )
         {
-            List<Integer> listRegularExpressionKeyEntry = getListRegularExpressionKeyByIdField( nKey );
+            listRegularExpression = getRegularExpressionList( getListRegularExpressionKeyByIdField( nKey ) );
+        }
+
+        field.setRegularExpressionList( listRegularExpression );
 
-            if ( CollectionUtils.isNotEmpty( listRegularExpressionKeyEntry ) )
+        return field;
+    }
+
+    /**
+     * Load the regular expressions associated with the fields of all the entries of a resource
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @return the lists of regular expressions, mapped by field id
+     */
+    public static Map<Integer, List<RegularExpression>> getRegularExpressionListByResource( int nIdResource, String strResourceType )
+    {
+        Map<Integer, List<RegularExpression>> mapRegularExpression = new HashMap<>( );
+
+        if ( RegularExpressionService.getInstance( ).isAvailable( ) )
+        {
+            for ( Map.Entry<Integer, List<Integer>> entry : _dao.selectRegularExpressionKeyByResource( nIdResource, strResourceType, getPlugin( ) ).entrySet( ) )
             {
-                RegularExpression regularExpression = null;
+                mapRegularExpression.put( entry.getKey( ), getRegularExpressionList( entry.getValue( ) ) );
+            }
+        }
 
-                for ( Integer regularExpressionKey : listRegularExpressionKeyEntry )
-                {
-                    regularExpression = RegularExpressionService.getInstance( ).getRegularExpressionByKey( regularExpressionKey );
+        return mapRegularExpression;
+    }
 
-                    if ( regularExpression != null )
-                    {
-                        listRegularExpression.add( regularExpression );
-                    }
+    /**
+     * Get the regular expressions from their keys
+     * 
+     * @param listRegularExpressionKey
+     *            the list of regular expression keys
+     * @return the list of the regular expressions which exist
+     */
+    private static List<RegularExpression> getRegularExpressionList( List<Integer> listRegularExpressionKey )
+    {
+        List<RegularExpression> listRegularExpression = new ArrayList<>( );
+
+        if ( CollectionUtils.isNotEmpty( listRegularExpressionKey ) )
+        {
+            for ( Integer regularExpressionKey : listRegularExpressionKey )
+            {
+                RegularExpression regularExpression = RegularExpressionService.getInstance( ).getRegularExpressionByKey( regularExpressionKey );
+
+                if ( regularExpression != null )
+                {
+                    listRegularExpression.add( regularExpression );
                 }
             }
         }
 
-        field.setRegularExpressionList( listRegularExpression );
-
-        return field;
+        return listRegularExpression;
     }
 
     /**
@@ -230,6 +281,7 @@ public final class FieldHome
     public static void removeVerifyBy( int nIdField, int nIdExpression )
     {
         _dao.deleteVerifyBy( nIdField, nIdExpression, getPlugin( ) );
+        FormDefinitionCacheService.getInstance( ).invalidateByIdField( nIdField );
     }
 
     /**
@@ -243,6 +295,7 @@ public final class FieldHome
     public static void createVerifyBy( int nIdField, int nIdExpression )
     {
         _dao.insertVerifyBy( nIdField, nIdExpression, getPlugin( ) );
+        FormDefinitionCacheService.getInstance( ).invalidateByIdField( nIdField );
     }
 
     /**
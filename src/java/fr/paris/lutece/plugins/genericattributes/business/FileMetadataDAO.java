@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.collections.CollectionUtils;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides Data Access methods for the metadata of the files of the responses. The files belong to the core, like the files created
+ * by FileHome : the queries use the pool of the core, and never select the content of the files with their metadata.
+ */
+public final class FileMetadataDAO implements IFileMetadataDAO
+{
+    // Constants
+    private static final String SQL_QUERY_SELECT_BY_LIST_ID = "SELECT id_file, title, id_physical_file, file_size, mime_type FROM core_file WHERE id_file IN ( ";
+    private static final String SQL_QUERY_SELECT_VALUE = "SELECT file_value FROM core_physical_file WHERE id_physical_file = ? ";
+    private static final String SQL_CLOSE_PARENTHESIS = " )";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<File> selectByIdList( List<Integer> listIdFile )
+    {
+        List<File> listFiles = new ArrayList<>( );
+
+        if ( CollectionUtils.isEmpty( listIdFile ) )
+        {
+            return listFiles;
+        }
+
+        for ( List<Integer> listIdChunk : DAOQueryUtils.getChunks( listIdFile ) )
+        {
+            int nBucketSize = DAOQueryUtils.getBucketSize( listIdChunk.size( ) );
+
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_LIST_ID + DAOQueryUtils.getPlaceholders( nBucketSize ) + SQL_CLOSE_PARENTHESIS ) )
+            {
+                DAOQueryUtils.setIdList( daoUtil, 1, listIdChunk, nBucketSize );
+                daoUtil.executeQuery( );
+
+                while ( daoUtil.next( ) )
+                {
+                    int nIndex = 1;
+                    File file = new File( );
+                    file.setIdFile( daoUtil.getInt( nIndex++ ) );
+                    file.setTitle( daoUtil.getString( nIndex++ ) );
+
+                    int nIdPhysicalFile = daoUtil.getInt( nIndex++ );
+
+                    if ( nIdPhysicalFile > 0 )
+                    {
+                        file.setPhysicalFile( new LazyPhysicalFile( nIdPhysicalFile ) );
+                    }
+
+                    file.setSize( daoUtil.getInt( nIndex++ ) );
+                    file.setMimeType( daoUtil.getString( nIndex ) );
+                    listFiles.add( file );
+                }
+            }
+        }
+
+        return listFiles;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte [ ] loadPhysicalFileValue( int nIdPhysicalFile )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_VALUE ) )
+        {
+            daoUtil.setInt( 1, nIdPhysicalFile );
+            daoUtil.executeQuery( );
+
+            if ( !daoUtil.next( ) )
+            {
+                throw new AppException( getNotFoundMessage( nIdPhysicalFile ) );
+            }
+
+            return daoUtil.getBytes( 1 );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T readPhysicalFile( int nIdPhysicalFile, LazyPhysicalFile.ContentReader<T> reader ) throws IOException
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_VALUE ) )
+        {
+            daoUtil.setInt( 1, nIdPhysicalFile );
+            daoUtil.executeQuery( );
+
+            if ( !daoUtil.next( ) )
+            {
+                throw new AppException( getNotFoundMessage( nIdPhysicalFile ) );
+            }
+
+            // The stream is only valid while the result set is open
+            try ( InputStream inputStream = daoUtil.getBinaryStream( 1 ) )
+            {
+                return reader.read( inputStream );
+            }
+        }
+    }
+
+    /**
+     * Get the message of the error raised when the content of a physical file is read after its removal
+     * 
+     * @param nIdPhysicalFile
+     *            the id of the physical file
+     * @return the message
+     */
+    private static String getNotFoundMessage( int nIdPhysicalFile )
+    {
+        return "The physical file " + nIdPhysicalFile + " does not exist";
+    }
+}
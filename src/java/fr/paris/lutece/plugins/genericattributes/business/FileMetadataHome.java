@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides the metadata of the files of the responses, without their content. The content of a file is read on demand through its
+ * {@link LazyPhysicalFile}.
+ */
+public final class FileMetadataHome
+{
+    // Static variable pointed at the DAO instance
+    private static IFileMetadataDAO _dao = SpringContextService.getBean( "genericattributes.fileMetadataDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private FileMetadataHome( )
+    {
+    }
+
+    /**
+     * Find the metadata of a file
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @return the file, whose content is read on demand, or null if the file does not exist
+     */
+    public static File findByPrimaryKey( int nIdFile )
+    {
+        List<File> listFiles = _dao.selectByIdList( Collections.singletonList( nIdFile ) );
+
+        return listFiles.isEmpty( ) ? null : listFiles.get( 0 );
+    }
+
+    /**
+     * Find the metadata of files with a single query per chunk of ids
+     * 
+     * @param listIdFile
+     *            the ids of the files
+     * @return the files found, whose content is read on demand
+     */
+    public static List<File> findByIdList( List<Integer> listIdFile )
+    {
+        return _dao.selectByIdList( listIdFile );
+    }
+
+    /**
+     * Load the content of a physical file
+     * 
+     * @param nIdPhysicalFile
+     *            the id of the physical file
+     * @return the content, or null if the physical file has no content
+     * @throws fr.paris.lutece.portal.service.util.AppException
+     *             if the physical file does not exist
+     */
+    static byte [ ] loadPhysicalFileValue( int nIdPhysicalFile )
+    {
+        return _dao.loadPhysicalFileValue( nIdPhysicalFile );
+    }
+
+    /**
+     * Stream the content of a physical file
+     * 
+     * @param <T>
+     *            the type of the result
+     * @param nIdPhysicalFile
+     *            the id of the physical file
+     * @param reader
+     *            the reader of the content
+     * @return the result of the reader
+     * @throws IOException
+     *             if the reader fails
+     */
+    static <T> T readPhysicalFile( int nIdPhysicalFile, LazyPhysicalFile.ContentReader<T> reader ) throws IOException
+    {
+        return _dao.readPhysicalFile( nIdPhysicalFile, reader );
+    }
+}
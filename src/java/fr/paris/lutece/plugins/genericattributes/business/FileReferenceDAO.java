@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides Data Access methods for the reference counts of the files shared by the responses
+ */
+public final class FileReferenceDAO implements IFileReferenceDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO genatt_file_reference ( id_file, file_key, reference_count ) VALUES ( ?, ?, 1 ) ";
+    private static final String SQL_QUERY_SELECT_ID_FILE = "SELECT id_file FROM genatt_file_reference WHERE file_key = ? ORDER BY id_file ";
+    private static final String SQL_QUERY_SELECT_REFERENCE_COUNT = "SELECT reference_count FROM genatt_file_reference WHERE id_file = ? ";
+    private static final String SQL_QUERY_INCREMENT_REFERENCE_COUNT = "UPDATE genatt_file_reference SET reference_count = reference_count + ? WHERE id_file = ? ";
+    private static final String SQL_QUERY_UPDATE_KEY = "UPDATE genatt_file_reference SET file_key = ? WHERE id_file = ? ";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM genatt_file_reference WHERE id_file = ? ";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insert( int nIdFile, String strKey, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdFile );
+            daoUtil.setString( 2, strKey );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int selectIdFile( String strKey, Plugin plugin )
+    {
+        int nIdFile = -1;
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ID_FILE, plugin ) )
+        {
+            daoUtil.setString( 1, strKey );
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) )
+            {
+                nIdFile = daoUtil.getInt( 1 );
+            }
+        }
+
+        return nIdFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int loadReferenceCount( int nIdFile, Plugin plugin )
+    {
+        int nReferenceCount = -1;
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_REFERENCE_COUNT, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdFile );
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) )
+            {
+                nReferenceCount = daoUtil.getInt( 1 );
+            }
+        }
+
+        return nReferenceCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int incrementReferenceCount( int nIdFile, int nIncrement, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_REFERENCE_COUNT, plugin ) )
+        {
+            daoUtil.setInt( 1, nIncrement );
+            daoUtil.setInt( 2, nIdFile );
+
+            return daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeKey( int nIdFile, String strKey, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_KEY, plugin ) )
+        {
+            daoUtil.setString( 1, strKey );
+            daoUtil.setInt( 2, nIdFile );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( int nIdFile, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdFile );
+            daoUtil.executeUpdate( );
+        }
+    }
+}
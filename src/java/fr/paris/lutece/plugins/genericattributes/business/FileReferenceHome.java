@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides the reference counting of the files shared by the responses, found by a key computed from their content and their metadata.
+ * The references are owned by this plugin: a shared file must only be removed through the FileService of the plugin, which removes it with its
+ * last reference.
+ */
+public final class FileReferenceHome
+{
+    // Static variable pointed at the DAO instance
+    private static IFileReferenceDAO _dao = SpringContextService.getBean( "genericattributes.fileReferenceDAO" );
+    private static Plugin _plugin;
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private FileReferenceHome( )
+    {
+    }
+
+    /**
+     * Register a new file, referenced once
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param strKey
+     *            the key of the file
+     */
+    public static void create( int nIdFile, String strKey )
+    {
+        _dao.insert( nIdFile, strKey, getPlugin( ) );
+    }
+
+    /**
+     * Add a reference to the file with a key, if there is one. The reference count stays locked until the end of the transaction.
+     * 
+     * @param strKey
+     *            the key
+     * @return the id of the referenced file, or -1 if no file has this key
+     */
+    public static int acquire( String strKey )
+    {
+        int nIdFile = _dao.selectIdFile( strKey, getPlugin( ) );
+
+        // The file may have been released in the meantime
+        if ( nIdFile >= 0 && _dao.incrementReferenceCount( nIdFile, 1, getPlugin( ) ) > 0 )
+        {
+            return nIdFile;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Remove a reference to a file. The reference count of the file is removed with its last reference.
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @return the number of remaining references, 0 if the file must be removed, or -1 if the references to the file are not counted
+     */
+    public static int release( int nIdFile )
+    {
+        // The update locks the reference count until the end of the transaction
+        if ( _dao.incrementReferenceCount( nIdFile, -1, getPlugin( ) ) == 0 )
+        {
+            // A file stored before the references were counted
+            return -1;
+        }
+
+        int nReferenceCount = _dao.loadReferenceCount( nIdFile, getPlugin( ) );
+
+        if ( nReferenceCount <= 0 )
+        {
+            _dao.delete( nIdFile, getPlugin( ) );
+
+            return 0;
+        }
+
+        return nReferenceCount;
+    }
+
+    /**
+     * Get the number of references to a file
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @return the number of references, or -1 if the references to the file are not counted
+     */
+    public static int getReferenceCount( int nIdFile )
+    {
+        return _dao.loadReferenceCount( nIdFile, getPlugin( ) );
+    }
+
+    /**
+     * Update the key of a file whose content or metadata changed
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param strKey
+     *            the new key of the file
+     */
+    public static void updateKey( int nIdFile, String strKey )
+    {
+        _dao.storeKey( nIdFile, strKey, getPlugin( ) );
+    }
+
+    /**
+     * Remove the reference count of a file, whatever its number of references
+     * 
+     * @param nIdFile
+     *            the id of the file
+     */
+    public static void remove( int nIdFile )
+    {
+        _dao.delete( nIdFile, getPlugin( ) );
+    }
+
+    /**
+     * Get the generic attributes plugin
+     * 
+     * @return The generic attributes plugin
+     */
+    private static Plugin getPlugin( )
+    {
+        if ( _plugin == null )
+        {
+            _plugin = GenericAttributesUtils.getPlugin( );
+        }
+
+        return _plugin;
+    }
+}
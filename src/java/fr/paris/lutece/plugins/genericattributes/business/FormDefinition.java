@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.regularexpression.RegularExpression;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Graph of all the entries, fields and conditional questions of a resource. The graph is built in memory from a fixed number of set-based queries
+ * (see {@link EntryHome#getFormDefinition(int, String)}).
+ */
+public class FormDefinition implements Serializable
+{
+    private static final long serialVersionUID = 4790613370297532145L;
+
+    private final int _nIdResource;
+    private final String _strResourceType;
+    private final List<Entry> _listEntry;
+    private final List<Entry> _listRootEntry = new ArrayList<>( );
+    private final Map<Integer, Entry> _mapEntry = new HashMap<>( );
+    private final Map<Integer, Field> _mapField = new HashMap<>( );
+
+    /**
+     * Builds the graph of a resource
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @param listEntry
+     *            all the entries of the resource, ordered by position
+     * @param listField
+     *            all the fields of the entries
+     * @param mapRegularExpression
+     *            the regular expressions of the fields, mapped by field id
+     */
+    FormDefinition( int nIdResource, String strResourceType, List<Entry> listEntry, List<Field> listField,
+            Map<Integer, List<RegularExpression>> mapRegularExpression )
+    {
+        _nIdResource = nIdResource;
+        _strResourceType = strResourceType;
+        _listEntry = listEntry;
+
+        for ( Entry entry : listEntry )
+        {
+            entry.setChildren( new ArrayList<>( ) );
+            entry.setFields( new ArrayList<>( ) );
+            entry.setNumberConditionalQuestion( 0 );
+            _mapEntry.put( entry.getIdEntry( ), entry );
+        }
+
+        List<Field> listFieldSorted = new ArrayList<>( listField );
+        listFieldSorted.sort( Comparator.comparingInt( Field::getPosition ).thenComparingInt( Field::getIdField ) );
+
+        for ( Field field : listFieldSorted )
+        {
+            field.setConditionalQuestions( new ArrayList<>( ) );
+            field.setRegularExpressionList( new ArrayList<>( mapRegularExpression.getOrDefault( field.getIdField( ), Collections.emptyList( ) ) ) );
+            _mapField.put( field.getIdField( ), field );
+
+            Entry entry = _mapEntry.get( field.getParentEntry( ).getIdEntry( ) );
+
+            if ( entry != null )
+            {
+                entry.getFields( ).add( field );
+            }
+        }
+
+        for ( Entry entry : listEntry )
+        {
+            Entry entryParent = ( entry.getParent( ) != null ) ? _mapEntry.get( entry.getParent( ).getIdEntry( ) ) : null;
+            Field fieldDepend = ( entry.getFieldDepend( ) != null ) ? _mapField.get( entry.getFieldDepend( ).getIdField( ) ) : null;
+
+            if ( entryParent != null )
+            {
+                entryParent.getChildren( ).add( entry );
+            }
+
+            if ( fieldDepend != null )
+            {
+                fieldDepend.getConditionalQuestions( ).add( entry );
+
+                Entry entryOwner = _mapEntry.get( fieldDepend.getParentEntry( ).getIdEntry( ) );
+
+                if ( entryOwner != null )
+                {
+                    entryOwner.setNumberConditionalQuestion( entryOwner.getNumberConditionalQuestion( ) + 1 );
+                }
+            }
+
+            if ( entry.getParent( ) == null && entry.getFieldDepend( ) == null )
+            {
+                _listRootEntry.add( entry );
+            }
+        }
+    }
+
+    /**
+     * Get the id of the resource
+     * 
+     * @return the id of the resource
+     */
+    public int getIdResource( )
+    {
+        return _nIdResource;
+    }
+
+    /**
+     * Get the resource type
+     * 
+     * @return the resource type
+     */
+    public String getResourceType( )
+    {
+        return _strResourceType;
+    }
+
+    /**
+     * Get the entries without parent and which are not conditional questions, ordered by position. Their children, fields and conditional questions are
+     * loaded.
+     * 
+     * @return the list of the root entries
+     */
+    public List<Entry> getRootEntries( )
+    {
+        return _listRootEntry;
+    }
+
+    /**
+     * Get all the entries of the resource, ordered by position
+     * 
+     * @return the list of all the entries
+     */
+    public List<Entry> getEntries( )
+    {
+        return _listEntry;
+    }
+
+    /**
+     * Get an entry of the resource
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @return the entry, or null if it does not belong to the resource
+     */
+    public Entry getEntry( int nIdEntry )
+    {
+        return _mapEntry.get( nIdEntry );
+    }
+
+    /**
+     * Get a field of the resource
+     * 
+     * @param nIdField
+     *            the id of the field
+     * @return the field, or null if it does not belong to the resource
+     */
+    public Field getField( int nIdField )
+    {
+        return _mapField.get( nIdField );
+    }
+
+    /**
+     * Creates a copy of an entry of the resource, so that the copy can be modified without altering this form definition. The fields of the entry
+     * are copied with their regular expressions and conditional questions, the children of the entry are copied with their fields. The conditional
+     * questions and the children are copied without their own children and conditional questions.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @return the copy of the entry, or null if it does not belong to the resource
+     */
+    public Entry copyEntry( int nIdEntry )
+    {
+        Entry entry = _mapEntry.get( nIdEntry );
+
+        if ( entry == null )
+        {
+            return null;
+        }
+
+        Entry entryCopy = copyEntryAttributes( entry );
+        List<Field> listField = new ArrayList<>( entry.getFields( ).size( ) );
+        List<Entry> listChildren = new ArrayList<>( entry.getChildren( ).size( ) );
+
+        for ( Field field : entry.getFields( ) )
+        {
+            listField.add( copyField( field.getIdField( ) ) );
+        }
+
+        for ( Entry entryChild : entry.getChildren( ) )
+        {
+            listChildren.add( copyEntryWithFields( entryChild ) );
+        }
+
+        entryCopy.setFields( listField );
+        entryCopy.setChildren( listChildren );
+
+        return entryCopy;
+    }
+
+    /**
+     * Creates a copy of a field of the resource, so that the copy can be modified without altering this form definition. The field is copied with
+     * its regular expressions and its conditional questions, which are copied with their fields but without their own children and conditional
+     * questions.
+     * 
+     * @param nIdField
+     *            the id of the field
+     * @return the copy of the field, or null if it does not belong to the resource
+     */
+    public Field copyField( int nIdField )
+    {
+        Field field = _mapField.get( nIdField );
+
+        if ( field == null )
+        {
+            return null;
+        }
+
+        Field fieldCopy = copyFieldAttributes( field );
+        List<Entry> listConditionalQuestions = new ArrayList<>( field.getConditionalQuestions( ).size( ) );
+
+        for ( Entry entryConditional : field.getConditionalQuestions( ) )
+        {
+            listConditionalQuestions.add( copyEntryWithFields( entryConditional ) );
+        }
+
+        fieldCopy.setRegularExpressionList( copyRegularExpressions( field.getRegularExpressionList( ) ) );
+        fieldCopy.setConditionalQuestions( listConditionalQuestions );
+
+        return fieldCopy;
+    }
+
+    /**
+     * Creates a deep copy of this form definition. The entries, fields, entry types and regular expressions of the copy are new instances, so the
+     * copy can be modified without altering this form definition.
+     * 
+     * @return the copy of this form definition
+     */
+    public FormDefinition copy( )
+    {
+        List<Entry> listEntry = new ArrayList<>( _listEntry.size( ) );
+        List<Field> listField = new ArrayList<>( _mapField.size( ) );
+        Map<Integer, List<RegularExpression>> mapRegularExpression = new HashMap<>( );
+
+        for ( Entry entry : _listEntry )
+        {
+            listEntry.add( copyEntryAttributes( entry ) );
+        }
+
+        for ( Field field : _mapField.values( ) )
+        {
+            listField.add( copyFieldAttributes( field ) );
+            mapRegularExpression.put( field.getIdField( ), copyRegularExpressions( field.getRegularExpressionList( ) ) );
+        }
+
+        return new FormDefinition( _nIdResource, _strResourceType, listEntry, listField, mapRegularExpression );
+    }
+
+    /**
+     * Copy an entry with its fields. The children of the entry and the conditional questions of the fields are not copied.
+     * 
+     * @param entry
+     *            the entry to copy
+     * @return the copy of the entry
+     */
+    private static Entry copyEntryWithFields( Entry entry )
+    {
+        Entry entryCopy = copyEntryAttributes( entry );
+        List<Field> listField = new ArrayList<>( entry.getFields( ).size( ) );
+
+        for ( Field field : entry.getFields( ) )
+        {
+            Field fieldCopy = copyFieldAttributes( field );
+            fieldCopy.setRegularExpressionList( copyRegularExpressions( field.getRegularExpressionList( ) ) );
+            fieldCopy.setConditionalQuestions( new ArrayList<>( ) );
+            listField.add( fieldCopy );
+        }
+
+        entryCopy.setFields( listField );
+        entryCopy.setChildren( new ArrayList<>( ) );
+
+        return entryCopy;
+    }
+
+    /**
+     * Copy the attributes of an entry. The children, fields and conditional questions are not copied.
+     * 
+     * @param entry
+     *            the entry to copy
+     * @return the copy of the entry
+     */
+    private static Entry copyEntryAttributes( Entry entry )
+    {
+        Entry entryCopy = (Entry) entry.clone( );
+
+        if ( entry.getEntryType( ) != null )
+        {
+            EntryType entryType = entry.getEntryType( );
+            EntryType entryTypeCopy = new EntryType( );
+            entryTypeCopy.setIdType( entryType.getIdType( ) );
+            entryTypeCopy.setTitle( entryType.getTitle( ) );
+            entryTypeCopy.setGroup( entryType.getGroup( ) );
+            entryTypeCopy.setComment( entryType.getComment( ) );
+            entryTypeCopy.setBeanName( entryType.getBeanName( ) );
+            entryTypeCopy.setMyLuteceUser( entryType.getMyLuteceUser( ) );
+            entryTypeCopy.setIconName( entryType.getIconName( ) );
+            entryTypeCopy.setPlugin( entryType.getPlugin( ) );
+            entryTypeCopy.setOrder( entryType.getOrder( ) );
+            entryTypeCopy.setInactive( entryType.isInactive( ) );
+            entryCopy.setEntryType( entryTypeCopy );
+        }
+
+        if ( entry.getParent( ) != null )
+        {
+            Entry entryParent = new Entry( );
+            entryParent.setIdEntry( entry.getParent( ).getIdEntry( ) );
+            entryCopy.setParent( entryParent );
+        }
+
+        if ( entry.getFieldDepend( ) != null )
+        {
+            Field fieldDepend = new Field( );
+            fieldDepend.setIdField( entry.getFieldDepend( ).getIdField( ) );
+            entryCopy.setFieldDepend( fieldDepend );
+        }
+
+        entryCopy.setError( null );
+
+        return entryCopy;
+    }
+
+    /**
+     * Copy the attributes of a field. The regular expressions and the conditional questions are not copied. The fields of a form definition are
+     * never linked to a reference item.
+     * 
+     * @param field
+     *            the field to copy
+     * @return the copy of the field
+     */
+    private static Field copyFieldAttributes( Field field )
+    {
+        Field fieldCopy = new Field( );
+        fieldCopy.setIdField( field.getIdField( ) );
+
+        Entry entryParent = new Entry( );
+        entryParent.setIdEntry( field.getParentEntry( ).getIdEntry( ) );
+        fieldCopy.setParentEntry( entryParent );
+
+        fieldCopy.setCode( field.getCode( ) );
+        fieldCopy.setTitle( field.getTitle( ) );
+        fieldCopy.setValue( field.getValue( ) );
+        fieldCopy.setComment( field.getComment( ) );
+        fieldCopy.setPosition( field.getPosition( ) );
+        fieldCopy.setDefaultValue( field.isDefaultValue( ) );
+        fieldCopy.setValueTypeDate( ( field.getValueTypeDate( ) == null ) ? null : new Date( field.getValueTypeDate( ).getTime( ) ) );
+        fieldCopy.setNoDisplayTitle( field.isNoDisplayTitle( ) );
+
+        if ( field.getFileImage( ) != null )
+        {
+            File fileImage = new File( );
+            fileImage.setFileKey( field.getFileImage( ).getFileKey( ) );
+            fileImage.setUrl( field.getFileImage( ).getUrl( ) );
+            fieldCopy.setFileImage( fileImage );
+        }
+
+        return fieldCopy;
+    }
+
+    /**
+     * Copy regular expressions
+     * 
+     * @param listRegularExpression
+     *            the regular expressions to copy
+     * @return the copies of the regular expressions
+     */
+    private static List<RegularExpression> copyRegularExpressions( List<RegularExpression> listRegularExpression )
+    {
+        List<RegularExpression> listRegularExpressionCopy = new ArrayList<>( listRegularExpression.size( ) );
+
+        for ( RegularExpression regularExpression : listRegularExpression )
+        {
+            RegularExpression regularExpressionCopy = new RegularExpression( );
+            regularExpressionCopy.setIdExpression( regularExpression.getIdExpression( ) );
+            regularExpressionCopy.setTitle( regularExpression.getTitle( ) );
+            regularExpressionCopy.setValue( regularExpression.getValue( ) );
+            regularExpressionCopy.setValidExemple( regularExpression.getValidExemple( ) );
+            regularExpressionCopy.setInformationMessage( regularExpression.getInformationMessage( ) );
+            regularExpressionCopy.setErrorMessage( regularExpression.getErrorMessage( ) );
+            listRegularExpressionCopy.add( regularExpressionCopy );
+        }
+
+        return listRegularExpressionCopy;
+    }
+}
@@ -33,6 +33,9 @@
  */
 package fr.paris.lutece.plugins.genericattributes.business;
 
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.util.filesystem.FileSystemUtil;
 
 import org.apache.commons.fileupload.FileItem;
@@ -43,14 +46,30 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
- * GenAttFileItem : builds a new fileItem
+ * GenAttFileItem : builds a new fileItem. The content of the item is kept in memory, or in a temporary file for the items spooled to disk.
  */
 public class GenAttFileItem implements FileItem
 {
     private static final long serialVersionUID = -8540841906551362771L;
+    private static final String PROPERTY_SPOOL_THRESHOLD = "genericattributes.upload.spool.threshold";
+    private static final int DEFAULT_SPOOL_THRESHOLD = 65536;
+    private static final String SPOOL_FILE_PREFIX = "genatt-upload-";
+    private static final String SPOOL_FILE_SUFFIX = ".tmp";
+
+    // Largest array the JVMs can allocate
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8L;
     private byte [ ] _bValue;
+    private transient SoftReference<byte [ ]> _refValue;
+    private java.io.File _spoolFile;
+    private long _lSize;
     private String _strFileName;
     private String _strFieldName;
     private int _nIdResponse;
@@ -67,6 +86,7 @@ public class GenAttFileItem implements FileItem
     public GenAttFileItem( byte [ ] bValue, String strFileName )
     {
         _bValue = bValue;
+        _lSize = ( bValue != null ) ? bValue.length : 0;
         _strFileName = strFileName;
     }
 
@@ -83,6 +103,7 @@ public class GenAttFileItem implements FileItem
     public GenAttFileItem( byte [ ] bValue, String strFileName, int nIdResponse )
     {
         _bValue = bValue;
+        _lSize = ( bValue != null ) ? bValue.length : 0;
         _strFileName = strFileName;
         _nIdResponse = nIdResponse;
     }
@@ -102,11 +123,59 @@ public class GenAttFileItem implements FileItem
     public GenAttFileItem( byte [ ] bValue, String strFileName, String strFieldName, int nIdResponse )
     {
         _bValue = bValue;
+        _lSize = ( bValue != null ) ? bValue.length : 0;
         _strFileName = strFileName;
         _strFieldName = strFieldName;
         _nIdResponse = nIdResponse;
     }
 
+    /**
+     * Creates a new file item from an uploaded file item. A content larger than the spool threshold is copied to a temporary file instead of being
+     * kept in memory. The temporary file is removed by {@link #delete()}.
+     * 
+     * @param fileItem
+     *            the uploaded file item, left untouched
+     * @return the file item
+     * @throws IOException
+     *             if the content cannot be spooled
+     */
+    public static GenAttFileItem spool( FileItem fileItem ) throws IOException
+    {
+        if ( fileItem instanceof GenAttFileItem )
+        {
+            return (GenAttFileItem) fileItem;
+        }
+
+        GenAttFileItem genAttFileItem;
+
+        if ( fileItem.getSize( ) <= AppPropertiesService.getPropertyInt( PROPERTY_SPOOL_THRESHOLD, DEFAULT_SPOOL_THRESHOLD ) )
+        {
+            genAttFileItem = new GenAttFileItem( fileItem.get( ), fileItem.getName( ), fileItem.getFieldName( ), 0 );
+        }
+        else
+        {
+            java.io.File spoolFile = java.io.File.createTempFile( SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX );
+
+            try ( InputStream inputStream = fileItem.getInputStream( ) )
+            {
+                Files.copy( inputStream, spoolFile.toPath( ), StandardCopyOption.REPLACE_EXISTING );
+            }
+            catch( IOException e )
+            {
+                Files.deleteIfExists( spoolFile.toPath( ) );
+                throw e;
+            }
+
+            genAttFileItem = new GenAttFileItem( null, fileItem.getName( ), fileItem.getFieldName( ), 0 );
+            genAttFileItem._spoolFile = spoolFile;
+            genAttFileItem._lSize = spoolFile.length( );
+        }
+
+        genAttFileItem.setHeaders( fileItem.getHeaders( ) );
+
+        return genAttFileItem;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -114,15 +183,82 @@ public class GenAttFileItem implements FileItem
     public void delete( )
     {
         _bValue = null;
+        _refValue = null;
+
+        if ( _spoolFile != null )
+        {
+            try
+            {
+                Files.deleteIfExists( _spoolFile.toPath( ) );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( "Unable to delete the spooled upload " + _spoolFile, e );
+            }
+
+            _spoolFile = null;
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc} The content of a spooled item is read once, then kept as long as the memory allows it.
+     * 
+     * @throws AppException
+     *             if the content of a spooled item is too large for an array or cannot be read
      */
     @Override
     public byte [ ] get( )
     {
-        return _bValue;
+        if ( _spoolFile == null )
+        {
+            return _bValue;
+        }
+
+        byte [ ] bValue = ( _refValue != null ) ? _refValue.get( ) : null;
+
+        if ( bValue == null )
+        {
+            bValue = readSpoolFile( );
+            _refValue = new SoftReference<>( bValue );
+        }
+
+        return bValue;
+    }
+
+    /**
+     * Read the content of the spooled item straight into an array of its size
+     * 
+     * @return the content
+     * @throws AppException
+     *             if the content is too large for an array or cannot be read
+     */
+    private byte [ ] readSpoolFile( )
+    {
+        if ( _lSize > MAX_ARRAY_SIZE )
+        {
+            throw new AppException( "The spooled upload " + _spoolFile + " is too large to be read in memory : " + _lSize + " bytes" );
+        }
+
+        try ( FileChannel channel = FileChannel.open( _spoolFile.toPath( ), StandardOpenOption.READ ) )
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( (int) _lSize );
+
+            while ( buffer.hasRemaining( ) && channel.read( buffer ) != -1 )
+            {
+                // read until the buffer is full
+            }
+
+            if ( buffer.hasRemaining( ) )
+            {
+                throw new IOException( "The spooled upload has been truncated" );
+            }
+
+            return buffer.array( );
+        }
+        catch( IOException e )
+        {
+            throw new AppException( "Unable to read the spooled upload " + _spoolFile + " : " + e.getMessage( ), e );
+        }
     }
 
     /**
@@ -149,6 +285,11 @@ public class GenAttFileItem implements FileItem
     @Override
     public InputStream getInputStream( ) throws IOException
     {
+        if ( _spoolFile != null )
+        {
+            return Files.newInputStream( _spoolFile.toPath( ) );
+        }
+
         return new ByteArrayInputStream( _bValue );
     }
 
@@ -176,7 +317,7 @@ public class GenAttFileItem implements FileItem
     @Override
     public long getSize( )
     {
-        return _bValue.length;
+        return _lSize;
     }
 
     /**
@@ -185,7 +326,7 @@ public class GenAttFileItem implements FileItem
     @Override
     public String getString( )
     {
-        return new String( _bValue );
+        return new String( get( ) );
     }
 
     /**
@@ -194,7 +335,7 @@ public class GenAttFileItem implements FileItem
     @Override
     public String getString( String encoding ) throws UnsupportedEncodingException
     {
-        return new String( _bValue, encoding );
+        return new String( get( ), encoding );
     }
 
     /**
@@ -222,7 +363,7 @@ public class GenAttFileItem implements FileItem
     @Override
     public boolean isInMemory( )
     {
-        return true;
+        return _spoolFile == null;
     }
 
     /**
@@ -260,7 +401,32 @@ public class GenAttFileItem implements FileItem
     @Override
     public void write( java.io.File file ) throws Exception
     {
-        // nothing
+        if ( _spoolFile == null )
+        {
+            Files.write( file.toPath( ), _bValue );
+
+            return;
+        }
+
+        // The content of a spooled item is transferred from file to file without passing through the heap
+        try ( FileChannel source = FileChannel.open( _spoolFile.toPath( ), StandardOpenOption.READ );
+                FileChannel target = FileChannel.open( file.toPath( ), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            long lPosition = 0;
+
+            while ( lPosition < _lSize )
+            {
+                long lTransferred = source.transferTo( lPosition, _lSize - lPosition, target );
+
+                if ( lTransferred <= 0 )
+                {
+                    throw new IOException( "The spooled upload " + _spoolFile + " has been truncated" );
+                }
+
+                lPosition += lTransferred;
+            }
+        }
     }
 
     /**
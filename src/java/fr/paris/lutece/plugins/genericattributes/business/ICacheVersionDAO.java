@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+/**
+ * ICacheVersionDAO Interface
+ */
+public interface ICacheVersionDAO
+{
+    /**
+     * Load the version of the form definition of a resource
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @param plugin
+     *            the plugin
+     * @return the version, or -1 if there is no version for the resource
+     */
+    int load( int nIdResource, String strResourceType, Plugin plugin );
+
+    /**
+     * Increment the version of the form definition of a resource. The version is created first if the resource has entries and no version yet.
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @param plugin
+     *            the plugin
+     */
+    void increment( int nIdResource, String strResourceType, Plugin plugin );
+
+    /**
+     * Increment the version of the form definition of the resource of an entry. The version is created first if it does not exist yet.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param plugin
+     *            the plugin
+     */
+    void incrementByIdEntry( int nIdEntry, Plugin plugin );
+
+    /**
+     * Increment the version of the form definition of the resource of a field. The version is created first if it does not exist yet.
+     * 
+     * @param nIdField
+     *            the id of the field
+     * @param plugin
+     *            the plugin
+     */
+    void incrementByIdField( int nIdField, Plugin plugin );
+
+    /**
+     * Increment the version of the form definitions of all the resources. The versions of the resources with entries are created first if they do
+     * not exist yet.
+     * 
+     * @param plugin
+     *            the plugin
+     */
+    void incrementAll( Plugin plugin );
+}
@@ -54,6 +54,16 @@ public interface IEntryDAO
      */
     int insert( Entry entry, Plugin plugin );
 
+    /**
+     * Insert new records in the table, in a single batch. The ids of the new records are set on the entries
+     *
+     * @param listEntry
+     *            the entries to insert
+     * @param plugin
+     *            the plugin
+     */
+    void insertBatch( List<Entry> listEntry, Plugin plugin );
+
     /**
      * Update the entry in the table
      *
@@ -134,6 +144,20 @@ public interface IEntryDAO
      */
     List<Entry> findEntriesWithoutParent( Plugin plugin, int nIdResource, String strResourceType );
 
+    /**
+     * Load all the entries (root entries, children and conditional questions) associated with a given resource, ordered by position. The number of
+     * conditional questions of the entries is not computed.
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @param plugin
+     *            the plugin
+     * @return the list of all the entries of the resource
+     */
+    List<Entry> selectEntryListByResource( int nIdResource, String strResourceType, Plugin plugin );
+
     /**
      * Finds the entry (conditional question) with a given order, idDependField and the id of the resource
      * 
@@ -188,4 +212,25 @@ public interface IEntryDAO
      * @return entry value
      */
     String getEntryValueByIdResponse( Plugin plugin, int nIdEntry, int nIdResponse );
+
+    /**
+     * Select the ids of the children and of the conditional questions of entries
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     * @param plugin
+     *            the plugin
+     * @return the ids of the children and of the conditional questions of the entries
+     */
+    List<Integer> selectIdChildrenAndConditionalQuestions( List<Integer> listIdEntry, Plugin plugin );
+
+    /**
+     * Delete entries
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByIdList( List<Integer> listIdEntry, Plugin plugin );
 }
@@ -36,6 +36,7 @@ package fr.paris.lutece.plugins.genericattributes.business;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * IFieldDAO Interface
@@ -53,6 +54,16 @@ public interface IFieldDAO
      */
     int insert( Field field, Plugin plugin );
 
+    /**
+     * Insert new records in the table, in a single batch. The ids and the positions of the new records are set on the fields
+     *
+     * @param listField
+     *            the fields to insert
+     * @param plugin
+     *            the plugin
+     */
+    void insertBatch( List<Field> listField, Plugin plugin );
+
     /**
      * Update the field in the table
      *
@@ -144,6 +155,19 @@ public interface IFieldDAO
      */
     boolean isRegularExpressionIsUse( int nIdExpression, Plugin plugin );
 
+    /**
+     * Load the keys of the regular expressions associated with the fields of all the entries of a resource
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @param plugin
+     *            the plugin
+     * @return the lists of regular expression keys, mapped by field id
+     */
+    Map<Integer, List<Integer>> selectRegularExpressionKeyByResource( int nIdResource, String strResourceType, Plugin plugin );
+
     /**
      * Load all the fields by list of id_enrty.
      * 
@@ -161,4 +185,35 @@ public interface IFieldDAO
      * @return
      */
     List<Field> loadByCode( String code, Plugin plugin );
+
+    /**
+     * Delete the fields of entries, with their regular expressions
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByEntryIdList( List<Integer> listIdEntry, Plugin plugin );
+
+    /**
+     * Load the key of all the regular expressions associated to fields
+     * 
+     * @param listIdField
+     *            the ids of the fields
+     * @param plugin
+     *            the plugin
+     * @return the keys of the regular expressions, mapped by field id
+     */
+    Map<Integer, List<Integer>> selectRegularExpressionKeyByFieldIdList( List<Integer> listIdField, Plugin plugin );
+
+    /**
+     * Insert associations between fields and regular expressions, in a single batch
+     * 
+     * @param mapRegularExpression
+     *            the keys of the regular expressions, mapped by field id
+     * @param plugin
+     *            the plugin
+     */
+    void insertVerifyByBatch( Map<Integer, List<Integer>> mapRegularExpression, Plugin plugin );
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.io.IOException;
+import java.util.List;
+
+import fr.paris.lutece.portal.business.file.File;
+
+/**
+ * IFileMetadataDAO Interface
+ */
+public interface IFileMetadataDAO
+{
+    /**
+     * Load the metadata of files, without their content. The physical files of the files are {@link LazyPhysicalFile}s.
+     * 
+     * @param listIdFile
+     *            the ids of the files
+     * @return the files found
+     */
+    List<File> selectByIdList( List<Integer> listIdFile );
+
+    /**
+     * Load the content of a physical file
+     * 
+     * @param nIdPhysicalFile
+     *            the id of the physical file
+     * @return the content, or null if the physical file has no content
+     * @throws fr.paris.lutece.portal.service.util.AppException
+     *             if the physical file does not exist
+     */
+    byte [ ] loadPhysicalFileValue( int nIdPhysicalFile );
+
+    /**
+     * Stream the content of a physical file
+     * 
+     * @param <T>
+     *            the type of the result
+     * @param nIdPhysicalFile
+     *            the id of the physical file
+     * @param reader
+     *            the reader of the content
+     * @return the result of the reader
+     * @throws IOException
+     *             if the reader fails
+     * @throws fr.paris.lutece.portal.service.util.AppException
+     *             if the physical file does not exist
+     */
+    <T> T readPhysicalFile( int nIdPhysicalFile, LazyPhysicalFile.ContentReader<T> reader ) throws IOException;
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+/**
+ * IFileReferenceDAO Interface
+ */
+public interface IFileReferenceDAO
+{
+    /**
+     * Insert the reference count of a file, referenced once
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param strKey
+     *            the key of the file, computed from its content and its metadata
+     * @param plugin
+     *            the plugin
+     */
+    void insert( int nIdFile, String strKey, Plugin plugin );
+
+    /**
+     * Find a file from its key
+     * 
+     * @param strKey
+     *            the key of the file
+     * @param plugin
+     *            the plugin
+     * @return the id of the first file with this key, or -1 if there is none
+     */
+    int selectIdFile( String strKey, Plugin plugin );
+
+    /**
+     * Load the number of references to a file
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param plugin
+     *            the plugin
+     * @return the number of references, or -1 if the references to the file are not counted
+     */
+    int loadReferenceCount( int nIdFile, Plugin plugin );
+
+    /**
+     * Increment the number of references to a file
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param nIncrement
+     *            the increment
+     * @param plugin
+     *            the plugin
+     * @return the number of updated rows, 0 if the references to the file are not counted
+     */
+    int incrementReferenceCount( int nIdFile, int nIncrement, Plugin plugin );
+
+    /**
+     * Update the key of a file
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param strKey
+     *            the new key of the file
+     * @param plugin
+     *            the plugin
+     */
+    void storeKey( int nIdFile, String strKey, Plugin plugin );
+
+    /**
+     * Delete the reference count of a file
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param plugin
+     *            the plugin
+     */
+    void delete( int nIdFile, Plugin plugin );
+}
@@ -34,6 +34,7 @@
 package fr.paris.lutece.plugins.genericattributes.business;
 
 import java.util.List;
+import java.util.Map;
 
 import fr.paris.lutece.plugins.referencelist.business.ReferenceItem;
 import fr.paris.lutece.portal.service.plugin.Plugin;
@@ -97,4 +98,35 @@ public interface IReferenceItemFieldDao
      *            the plugin
      */
     Integer loadItemByField( int idField, Plugin plugin );
+
+    /**
+     * Remove the records of all the fields of entries.
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByEntryIdList( List<Integer> listIdEntry, Plugin plugin );
+
+    /**
+     * Load the items of fields
+     * 
+     * @param listIdField
+     *            the ids of the fields
+     * @param plugin
+     *            the plugin
+     * @return the ids of the items, mapped by field id
+     */
+    Map<Integer, Integer> loadItemByFieldIdList( List<Integer> listIdField, Plugin plugin );
+
+    /**
+     * Insert new records in the table, in a single batch.
+     * 
+     * @param mapItem
+     *            the ids of the items, mapped by field id
+     * @param plugin
+     *            the plugin
+     */
+    void insertBatch( Map<Integer, Integer> mapItem, Plugin plugin );
 }
@@ -36,6 +36,8 @@ package fr.paris.lutece.plugins.genericattributes.business;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  *
@@ -54,6 +56,16 @@ public interface IResponseDAO
      */
     void insert( Response response, Plugin plugin );
 
+    /**
+     * Insert new records in the table with a single batch. The generated ids are set on the responses.
+     * 
+     * @param listResponse
+     *            the responses to insert
+     * @param plugin
+     *            the plugin
+     */
+    void insertBatch( List<Response> listResponse, Plugin plugin );
+
     /**
      * Load the data of the response from the table
      * 
@@ -97,15 +109,51 @@ public interface IResponseDAO
     List<Response> selectListByFilter( ResponseFilter filter, Plugin plugin );
 
     /**
-     * return a list of statistic on the entry
+     * Read the responses who verify the filter one by one, without keeping them in memory. The responses of a same entry share the same entry
+     * instance. With MySQL, the rows are only fetched by blocks if cursor fetch is enabled on the datasource (<code>useCursorFetch=true</code>).
      * 
-     * @param nIdEntry
-     *            the id of the entry
+     * @param filter
+     *            the filter
+     * @param consumer
+     *            the consumer of the responses, called for each response while the query is running
      * @param plugin
      *            the plugin
-     * @return return a list of statistic on the entry
      */
-    List<StatisticEntrySubmit> getStatisticByIdEntry( int nIdEntry, Plugin plugin );
+    void selectByFilter( ResponseFilter filter, Consumer<Response> consumer, Plugin plugin );
+
+    /**
+     * Load the entry, the field and the creation date of a response, which identify its response counters
+     * 
+     * @param nIdResponse
+     *            the id of the response
+     * @param plugin
+     *            the plugin
+     * @return the response with only the ids of its entry and field and its creation date, or null if the response does not exist
+     */
+    Response loadCounterKey( int nIdResponse, Plugin plugin );
+
+    /**
+     * Load the entries, the fields and the creation dates of responses, which identify their response counters
+     * 
+     * @param listIdResponse
+     *            the ids of the responses
+     * @param plugin
+     *            the plugin
+     * @return the responses with only the ids of their entry and field and their creation date
+     */
+    List<Response> loadCounterKeys( List<Integer> listIdResponse, Plugin plugin );
+
+    /**
+     * Count the responses to a field who verify the filter, by field and, if the filter groups them by day, week or month, by period. Only the
+     * resource, entry, field and entry code criteria of the filter are used.
+     * 
+     * @param filter
+     *            the filter
+     * @param plugin
+     *            the plugin
+     * @return the number of responses of each field, ordered by period and field
+     */
+    List<StatisticEntrySubmit> selectStatisticsByFilter( ResponseFilter filter, Plugin plugin );
 
     /**
      * Get the max number from a given id resource
@@ -117,4 +165,38 @@ public interface IResponseDAO
      * @return the max number
      */
     int getMaxNumber( int nIdEntry, Plugin plugin );
+
+    /**
+     * Count the responses of entries
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     * @param plugin
+     *            the plugin
+     * @return the number of responses of the entries
+     */
+    int countByEntryIdList( List<Integer> listIdEntry, Plugin plugin );
+
+    /**
+     * Select the files of the first responses of entries, ordered by id
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     * @param nLimit
+     *            the maximum number of responses to select
+     * @param plugin
+     *            the plugin
+     * @return the ids of the files of the responses (null for a response without file), mapped by response id
+     */
+    Map<Integer, Integer> selectIdFileByEntryIdList( List<Integer> listIdEntry, int nLimit, Plugin plugin );
+
+    /**
+     * Delete responses
+     * 
+     * @param listIdResponse
+     *            the ids of the responses
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByIdList( List<Integer> listIdResponse, Plugin plugin );
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * IResponseStatisticDAO Interface
+ */
+public interface IResponseStatisticDAO
+{
+    /**
+     * Insert the response counters of fields
+     * 
+     * @param nIdEntry
+     *            the id of the entry of the fields
+     * @param listStatistic
+     *            the counters to insert, with the id of the field and the number of responses
+     * @param plugin
+     *            the plugin
+     */
+    void insertFieldStatistics( int nIdEntry, List<StatisticEntrySubmit> listStatistic, Plugin plugin );
+
+    /**
+     * Insert the response counters of the fields of an entry, counting the responses of the entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param plugin
+     *            the plugin
+     */
+    void insertFieldStatisticsFromResponses( int nIdEntry, Plugin plugin );
+
+    /**
+     * Increment the response counter of a field
+     * 
+     * @param nIdField
+     *            the id of the field
+     * @param nIncrement
+     *            the increment, negative to decrement the counter
+     * @param plugin
+     *            the plugin
+     * @return the number of counters updated, 0 if the field has no counter yet
+     */
+    int incrementFieldStatistic( int nIdField, int nIncrement, Plugin plugin );
+
+    /**
+     * Insert the response counters of fields for periods
+     * 
+     * @param nIdEntry
+     *            the id of the entry of the fields
+     * @param nPeriod
+     *            the type of the periods
+     * @param listStatistic
+     *            the counters to insert, with the id of the field, the first day of the period and the number of responses
+     * @param plugin
+     *            the plugin
+     */
+    void insertPeriodStatistics( int nIdEntry, int nPeriod, List<StatisticEntrySubmit> listStatistic, Plugin plugin );
+
+    /**
+     * Increment the response counter of a field for a period
+     * 
+     * @param nIdField
+     *            the id of the field
+     * @param nPeriod
+     *            the type of the period
+     * @param datePeriod
+     *            the first day of the period
+     * @param nIncrement
+     *            the increment, negative to decrement the counter
+     * @param plugin
+     *            the plugin
+     * @return the number of counters updated, 0 if the field has no counter for the period yet
+     */
+    int incrementPeriodStatistic( int nIdField, int nPeriod, Date datePeriod, int nIncrement, Plugin plugin );
+
+    /**
+     * Load the response counters of the fields of an entry, ordered by field position
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param plugin
+     *            the plugin
+     * @return the counters of the fields
+     */
+    List<StatisticEntrySubmit> selectByIdEntry( int nIdEntry, Plugin plugin );
+
+    /**
+     * Load the response counters of the fields of an entry for periods, ordered by period and field position
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param nPeriod
+     *            the type of the periods
+     * @param plugin
+     *            the plugin
+     * @return the counters of the fields, by period
+     */
+    List<StatisticEntrySubmit> selectByIdEntryAndPeriod( int nIdEntry, int nPeriod, Plugin plugin );
+
+    /**
+     * Read the field and the creation date of the responses of an entry which have a field and a creation date
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param consumer
+     *            the consumer of the id of the field and of the creation date of each response
+     * @param plugin
+     *            the plugin
+     */
+    void selectResponseDates( int nIdEntry, BiConsumer<Integer, Timestamp> consumer, Plugin plugin );
+
+    /**
+     * Delete the counters of the fields of entries
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByEntryIdList( List<Integer> listIdEntry, Plugin plugin );
+
+    /**
+     * Delete the counters of a field
+     * 
+     * @param nIdField
+     *            the id of the field
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByIdField( int nIdField, Plugin plugin );
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+/**
+ * ISequenceDAO Interface
+ */
+public interface ISequenceDAO
+{
+    /**
+     * Insert the sequence of an entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param nNextValue
+     *            the next value of the sequence
+     * @param plugin
+     *            the plugin
+     */
+    void insert( int nIdEntry, int nNextValue, Plugin plugin );
+
+    /**
+     * Load the next value of the sequence of an entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param plugin
+     *            the plugin
+     * @return the next value of the sequence, or -1 if the entry has no sequence
+     */
+    int load( int nIdEntry, Plugin plugin );
+
+    /**
+     * Increment the next value of the sequence of an entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param nIncrement
+     *            the increment
+     * @param plugin
+     *            the plugin
+     * @return the number of updated rows, 0 if the entry has no sequence
+     */
+    int increment( int nIdEntry, int nIncrement, Plugin plugin );
+
+    /**
+     * Lock the row of an entry until the end of the current transaction, so that the creations of its sequence are serialized
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param plugin
+     *            the plugin
+     */
+    void lockEntry( int nIdEntry, Plugin plugin );
+
+    /**
+     * Delete the sequence of an entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param plugin
+     *            the plugin
+     */
+    void delete( int nIdEntry, Plugin plugin );
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
+import fr.paris.lutece.portal.service.util.AppException;
+
+/**
+ * A physical file whose content is read from the database only when it is needed. The content can be read as a whole with {@link #getValue()},
+ * or streamed with {@link #read(ContentReader)} without being kept in memory. Reading the content of a physical file removed meanwhile fails with
+ * an {@link AppException}. The content is read before the physical file is serialized, so that a deserialized copy holds it.
+ */
+public class LazyPhysicalFile extends PhysicalFile
+{
+    private static final long serialVersionUID = 4071394263713474155L;
+
+    private boolean _bLoaded;
+
+    /**
+     * Reads the content of a physical file
+     * 
+     * @param <T>
+     *            the type of the result
+     */
+    @FunctionalInterface
+    public interface ContentReader<T>
+    {
+        /**
+         * Read the content of a physical file
+         * 
+         * @param inputStream
+         *            the content, or null if the physical file has no content. The stream is closed by the caller
+         * @return the result
+         * @throws IOException
+         *             if the content cannot be read
+         */
+        T read( InputStream inputStream ) throws IOException;
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param nIdPhysicalFile
+     *            the id of the physical file
+     */
+    public LazyPhysicalFile( int nIdPhysicalFile )
+    {
+        setIdPhysicalFile( nIdPhysicalFile );
+    }
+
+    /**
+     * Get the content of the physical file, read from the database at the first call
+     * 
+     * @return the content, or null if the physical file has no content
+     * @throws AppException
+     *             if the content is not in memory and the physical file does not exist
+     */
+    @Override
+    public byte [ ] getValue( )
+    {
+        if ( !_bLoaded )
+        {
+            super.setValue( FileMetadataHome.loadPhysicalFileValue( getIdPhysicalFile( ) ) );
+            _bLoaded = true;
+        }
+
+        return super.getValue( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setValue( byte [ ] bValue )
+    {
+        super.setValue( bValue );
+        _bLoaded = true;
+    }
+
+    /**
+     * Check whether the content is in memory
+     * 
+     * @return true if the content was read or set
+     */
+    public boolean isLoaded( )
+    {
+        return _bLoaded;
+    }
+
+    /**
+     * Stream the content of the physical file. The content in memory is used if it was read or set, otherwise the content is streamed from the
+     * database without being kept.
+     * 
+     * @param <T>
+     *            the type of the result
+     * @param reader
+     *            the reader of the content
+     * @return the result of the reader
+     * @throws AppException
+     *             if the reader fails, or if the content is not in memory and the physical file does not exist
+     */
+    public <T> T read( ContentReader<T> reader )
+    {
+        try
+        {
+            if ( _bLoaded )
+            {
+                byte [ ] bValue = super.getValue( );
+
+                return reader.read( ( bValue != null ) ? new ByteArrayInputStream( bValue ) : null );
+            }
+
+            return FileMetadataHome.readPhysicalFile( getIdPhysicalFile( ), reader );
+        }
+        catch( IOException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Read the content before the physical file is serialized
+     * 
+     * @param outputStream
+     *            the output stream
+     * @throws IOException
+     *             if the physical file cannot be written
+     */
+    private void writeObject( ObjectOutputStream outputStream ) throws IOException
+    {
+        getValue( );
+        outputStream.defaultWriteObject( );
+    }
+}
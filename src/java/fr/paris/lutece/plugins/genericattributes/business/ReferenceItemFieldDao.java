@@ -34,7 +34,9 @@
 package fr.paris.lutece.plugins.genericattributes.business;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.sql.DAOUtil;
@@ -51,6 +53,9 @@ public class ReferenceItemFieldDao implements IReferenceItemFieldDao
     private static final String SQL_QUERY_DELETE_BY_FIELD = "DELETE FROM genatt_referenceitem_field WHERE id_field = ? ";
     private static final String SQL_QUERY_SELECT_FIELD_BY_ITEM = "SELECT id_field FROM genatt_referenceitem_field WHERE id_item = ? ";
     private static final String SQL_QUERY_SELECT_ITEM_BY_FIELD = "SELECT id_item FROM genatt_referenceitem_field WHERE id_field = ? ";
+    private static final String SQL_QUERY_DELETE_BY_LIST_ID_ENTRY = "DELETE FROM genatt_referenceitem_field WHERE id_field IN "
+            + " ( SELECT id_field FROM genatt_field WHERE id_entry IN ( ";
+    private static final String SQL_QUERY_SELECT_ITEM_BY_LIST_FIELD = "SELECT id_field, id_item FROM genatt_referenceitem_field WHERE id_field IN ( ";
 
     @Override
     public void insert( int idField, int idReferenceItem, Plugin plugin )
@@ -121,4 +126,41 @@ public class ReferenceItemFieldDao implements IReferenceItemFieldDao
 
         return idItem;
     }
+
+    @Override
+    public void deleteByEntryIdList( List<Integer> listIdEntry, Plugin plugin )
+    {
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_DELETE_BY_LIST_ID_ENTRY + strPlaceholders + " ) )", 1, plugin, null );
+    }
+
+    @Override
+    public Map<Integer, Integer> loadItemByFieldIdList( List<Integer> listIdField, Plugin plugin )
+    {
+        Map<Integer, Integer> mapItem = new HashMap<>( );
+        DAOQueryUtils.executeByChunk( listIdField, strPlaceholders -> SQL_QUERY_SELECT_ITEM_BY_LIST_FIELD + strPlaceholders + " )", 1, plugin,
+                daoUtil -> mapItem.put( daoUtil.getInt( 1 ), daoUtil.getInt( 2 ) ) );
+
+        return mapItem;
+    }
+
+    @Override
+    public void insertBatch( Map<Integer, Integer> mapItem, Plugin plugin )
+    {
+        if ( mapItem.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin ) )
+        {
+            for ( Map.Entry<Integer, Integer> item : mapItem.entrySet( ) )
+            {
+                daoUtil.setInt( 1, item.getKey( ) );
+                daoUtil.setInt( 2, item.getValue( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
 }
@@ -35,6 +35,7 @@ package fr.paris.lutece.plugins.genericattributes.business;
 
 import java.util.List;
 
+import fr.paris.lutece.plugins.genericattributes.service.FormDefinitionCacheService;
 import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
@@ -62,6 +63,7 @@ public class ReferenceItemFieldHome
     public static void create( int idField, int idItem )
     {
         _dao.insert( idField, idItem, _plugin );
+        FormDefinitionCacheService.getInstance( ).invalidateByIdField( idField );
     }
 
     /**
@@ -71,6 +73,10 @@ public class ReferenceItemFieldHome
      */
     public static void removeByItem( int idItem )
     {
+        for ( Integer idField : _dao.loadFieldByItem( idItem, _plugin ) )
+        {
+            FormDefinitionCacheService.getInstance( ).invalidateByIdField( idField );
+        }
         _dao.deleteByIdItem( idItem, _plugin );
     }
 
@@ -82,6 +88,18 @@ public class ReferenceItemFieldHome
     public static void removeByField( int idField )
     {
         _dao.deleteByIdField( idField, _plugin );
+        FormDefinitionCacheService.getInstance( ).invalidateByIdField( idField );
+    }
+
+    /**
+     * Deletes the records of all the fields of entries
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     */
+    public static void removeByEntryIdList( List<Integer> listIdEntry )
+    {
+        _dao.deleteByEntryIdList( listIdEntry, _plugin );
     }
 
     /**
@@ -37,6 +37,7 @@ import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
 
 import java.io.Serializable;
+import java.sql.Timestamp;
 
 import org.apache.commons.lang3.math.NumberUtils;
 
@@ -75,6 +76,7 @@ public class Response implements Serializable
     private File _file;
     private boolean _bIsImage;
     private int _nSortOrder;
+    private Timestamp _dateCreation;
 
     /**
      * Default constructor
@@ -330,4 +332,25 @@ public class Response implements Serializable
     {
         _nSortOrder = nSortOrder;
     }
+
+    /**
+     * Get the creation date of this response
+     * 
+     * @return the creation date of this response, null for the responses created before this date was stored
+     */
+    public Timestamp getDateCreation( )
+    {
+        return _dateCreation;
+    }
+
+    /**
+     * Set the creation date of this response
+     * 
+     * @param dateCreation
+     *            the creation date of this response
+     */
+    public void setDateCreation( Timestamp dateCreation )
+    {
+        _dateCreation = dateCreation;
+    }
 }
@@ -33,14 +33,28 @@
  */
 package fr.paris.lutece.plugins.genericattributes.business;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.service.database.PluginConnectionService;
 import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.util.sql.DAOUtil;
+import fr.paris.lutece.util.sql.Transaction;
+import fr.paris.lutece.util.sql.TransactionManager;
 
 /**
  * This class provides Data Access methods for Response objects
@@ -49,18 +63,17 @@ public final class ResponseDAO implements IResponseDAO
 {
     // Constants
     private static final String SQL_QUERY_SELECT_RESPONSE = "SELECT resp.id_response, resp.response_value, type.class_name, ent.id_type, ent.id_entry, ent.title, ent.code, "
-            + " resp.iteration_number, resp.id_field, resp.id_file, resp.status, resp.sort_order  FROM genatt_response resp";
+            + " resp.iteration_number, resp.id_field, resp.id_file, resp.status, resp.sort_order, resp.date_creation FROM genatt_response resp";
     private static final String SQL_QUERY_FIND_BY_PRIMARY_KEY = SQL_QUERY_SELECT_RESPONSE + ", genatt_entry ent, genatt_entry_type type "
             + " WHERE resp.id_response = ? and resp.id_entry = ent.id_entry and ent.id_type = type.id_type ";
     private static final String SQL_QUERY_SELECT_RESPONSE_BY_FILTER = SQL_QUERY_SELECT_RESPONSE + ", genatt_entry ent, genatt_entry_type type "
             + " WHERE resp.id_entry = ent.id_entry and ent.id_type = type.id_type ";
     private static final String SQL_QUERY_INSERT = "INSERT INTO genatt_response ( "
-            + " response_value, id_entry, iteration_number, id_field, id_file, status,sort_order ) VALUES ( ?,?,?,?,?,?,?)";
+            + " response_value, id_entry, iteration_number, id_field, id_file, status, sort_order, date_creation ) VALUES ( ?,?,?,?,?,?,?,? )";
     private static final String SQL_QUERY_UPDATE = "UPDATE genatt_response SET response_value = ?, id_entry = ?, iteration_number = ?, id_field = ?, id_file = ?, status = ?, sort_order = ? WHERE id_response = ?";
     private static final String SQL_QUERY_DELETE = "DELETE FROM genatt_response WHERE id_response = ? ";
-    private static final String SQL_QUERY_SELECT_COUNT_RESPONSE_BY_ID_ENTRY = " SELECT field.title, COUNT( resp.id_response )"
-            + " FROM genatt_entry e LEFT JOIN genatt_field field ON ( e.id_entry = field.id_entry ) LEFT JOIN genatt_response resp on ( resp.id_field = field.id_field ) "
-            + " WHERE e.id_entry = ? GROUP BY field.id_field ORDER BY field.pos ";
+    private static final String SQL_QUERY_SELECT_COUNTER_KEY = "SELECT id_response, id_entry, id_field, date_creation FROM genatt_response WHERE id_response = ? ";
+    private static final String SQL_QUERY_SELECT_COUNTER_KEYS = "SELECT id_response, id_entry, id_field, date_creation FROM genatt_response WHERE id_response IN ( ";
 
     // Special query in order to sort numerically and not alphabetically (thus
     // avoiding list like 1, 10, 11, 2, ... instead of 1, 2, ..., 10, 11)
@@ -73,53 +86,125 @@ public final class ResponseDAO implements IResponseDAO
     private static final String SQL_FILTER_RESPONSE_VALUE = " AND resp.response_value = ? ";
     private static final String SQL_FILTER_ID_RESPONSE = " resp.id_response ";
     private static final String SQL_FILTER_MULTI_ID_RESPONSE = "AND resp.id_response IN ";
+    private static final String SQL_FILTER_AFTER_ID_RESPONSE = " AND resp.id_response > ? ";
+    private static final String SQL_ORDER_BY_ID_RESPONSE = " ORDER BY resp.id_response ASC ";
+    private static final String SQL_LIMIT = " LIMIT ? ";
+    private static final String SQL_CLOSE_PARENTHESIS = " ) ";
+    private static final String SQL_QUERY_COUNT_BY_LIST_ID_ENTRY = "SELECT COUNT(*) FROM genatt_response WHERE id_entry IN ( ";
+    private static final String SQL_QUERY_SELECT_ID_FILE_BY_LIST_ID_ENTRY = "SELECT resp.id_response, resp.id_file FROM genatt_response resp WHERE resp.id_entry IN ( ";
+    private static final String SQL_QUERY_DELETE_BY_LIST = "DELETE FROM genatt_response WHERE id_response IN ( ";
+    private static final String SQL_QUERY_SELECT_STATISTICS = "SELECT resp.id_field, COUNT( resp.id_response ) ";
+    private static final String SQL_QUERY_SELECT_STATISTICS_FROM = " FROM genatt_response resp, genatt_entry ent WHERE resp.id_entry = ent.id_entry AND resp.id_field IS NOT NULL ";
+    private static final String SQL_FILTER_DATE_CREATION = " AND resp.date_creation IS NOT NULL ";
+    private static final String SQL_GROUP_BY_ID_FIELD = " GROUP BY resp.id_field ";
+    private static final String SQL_ORDER_BY_ID_FIELD = " ORDER BY resp.id_field ";
+    private static final String SQL_COLUMN_DATE_CREATION = "resp.date_creation";
+    private static final String SHAPE_SEPARATOR = "|";
     private static final String SQL_ORDER_BY = " ORDER BY ";
     private static final String SQL_ASC = " ASC ";
     private static final String SQL_DESC = " DESC ";
 
+    // Queries of the filters, by shape
+    private final Map<String, String> _mapQuerySelectByShape = new ConcurrentHashMap<>( );
+    private final Map<Integer, String> _mapQueryStatisticsByShape = new ConcurrentHashMap<>( );
+    private volatile DateTruncationDialect _dateTruncationDialect;
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void insert( Response response, Plugin plugin )
+    public void insert( Response response, Plugin plugin )
     {
-        int nIndex = 1;
-
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
         {
-            daoUtil.setString( nIndex++, removeInvalidChars( response.getResponseValue( ) ) );
-            daoUtil.setInt( nIndex++, response.getEntry( ).getIdEntry( ) );
-            daoUtil.setInt( nIndex++, response.getIterationNumber( ) );
+            setInsertParameters( daoUtil, response );
+            daoUtil.executeUpdate( );
 
-            if ( response.getField( ) != null )
-            {
-                daoUtil.setInt( nIndex++, response.getField( ).getIdField( ) );
-            }
-            else
+            if ( daoUtil.nextGeneratedKey( ) )
             {
-                daoUtil.setIntNull( nIndex++ );
+                response.setIdResponse( daoUtil.getGeneratedKeyInt( 1 ) );
             }
 
-            if ( response.getFile( ) != null )
-            {
-                daoUtil.setInt( nIndex++, response.getFile( ).getIdFile( ) );
-            }
-            else
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertBatch( List<Response> listResponse, Plugin plugin )
+    {
+        if ( listResponse.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
+        {
+            for ( Response response : listResponse )
             {
-                daoUtil.setIntNull( nIndex++ );
+                setInsertParameters( daoUtil, response );
+                daoUtil.addBatch( );
             }
 
-            daoUtil.setInt( nIndex++, Response.CONSTANT_STATUS_ACTIVE );
-            daoUtil.setInt( nIndex, response.getSortOrder( ) );
+            daoUtil.executeBatch( );
 
-            daoUtil.executeUpdate( );
-
-            if ( daoUtil.nextGeneratedKey( ) )
+            // The generated keys are returned in the order of the batch
+            for ( Response response : listResponse )
             {
+                if ( !daoUtil.nextGeneratedKey( ) )
+                {
+                    throw new AppException( "The batch insert of " + listResponse.size( ) + " responses did not return a key for each response" );
+                }
+
                 response.setIdResponse( daoUtil.getGeneratedKeyInt( 1 ) );
             }
+        }
+    }
 
+    /**
+     * Set the parameters of the insert query
+     * 
+     * @param daoUtil
+     *            the daoUtil of the insert query
+     * @param response
+     *            the response to insert
+     */
+    private void setInsertParameters( DAOUtil daoUtil, Response response )
+    {
+        int nIndex = 1;
+
+        daoUtil.setString( nIndex++, removeInvalidChars( response.getResponseValue( ) ) );
+        daoUtil.setInt( nIndex++, response.getEntry( ).getIdEntry( ) );
+        daoUtil.setInt( nIndex++, response.getIterationNumber( ) );
+
+        if ( response.getField( ) != null )
+        {
+            daoUtil.setInt( nIndex++, response.getField( ).getIdField( ) );
+        }
+        else
+        {
+            daoUtil.setIntNull( nIndex++ );
         }
+
+        if ( response.getFile( ) != null )
+        {
+            daoUtil.setInt( nIndex++, response.getFile( ).getIdFile( ) );
+        }
+        else
+        {
+            daoUtil.setIntNull( nIndex++ );
+        }
+
+        daoUtil.setInt( nIndex++, Response.CONSTANT_STATUS_ACTIVE );
+        daoUtil.setInt( nIndex++, response.getSortOrder( ) );
+
+        if ( response.getDateCreation( ) == null )
+        {
+            response.setDateCreation( new Timestamp( System.currentTimeMillis( ) ) );
+        }
+
+        daoUtil.setTimestamp( nIndex, response.getDateCreation( ) );
     }
 
     /**
@@ -205,6 +290,69 @@ public final class ResponseDAO implements IResponseDAO
     {
         List<Response> responseList = new ArrayList<>( );
 
+        try ( DAOUtil daoUtil = new DAOUtil( getSelectByFilterQuery( filter ), plugin ) )
+        {
+            setFilterParameters( daoUtil, filter );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                responseList.add( getResponseFromDAOUtil( daoUtil ) );
+            }
+
+        }
+
+        return responseList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void selectByFilter( ResponseFilter filter, Consumer<Response> consumer, Plugin plugin )
+    {
+        Map<Integer, Entry> mapEntry = new HashMap<>( );
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSelectByFilterQuery( filter ), plugin ) )
+        {
+            setFilterParameters( daoUtil, filter );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                consumer.accept( getResponseFromDAOUtil( daoUtil, mapEntry ) );
+            }
+        }
+    }
+
+    /**
+     * Get the query selecting the responses which verify a filter, from the cache of the queries by shape
+     * 
+     * @param filter
+     *            the filter
+     * @return the query
+     */
+    private String getSelectByFilterQuery( ResponseFilter filter )
+    {
+        int nCriteria = DAOQueryUtils.getShape( filter.containsIdResource( ), filter.containsIdEntry( ), filter.containsIdField( ),
+                filter.containsCodeEntry( ), filter.containsResponseValue( ), filter.containsAfterId( ), filter.containsLimit( ), filter.isOrderByAsc( ) );
+        int nBucketSize = filter.containsListIdResource( ) ? DAOQueryUtils.getBucketSize( filter.getListId( ).size( ) ) : 0;
+        String strShape = nCriteria + SHAPE_SEPARATOR + nBucketSize + SHAPE_SEPARATOR + ( filter.containsOrderBy( ) ? filter.getOrderBy( ) : StringUtils.EMPTY );
+
+        return DAOQueryUtils.getQuery( _mapQuerySelectByShape, strShape, ( ) -> buildSelectByFilterQuery( filter, nBucketSize ) );
+    }
+
+    /**
+     * Build the query selecting the responses which verify a filter
+     * 
+     * @param filter
+     *            the filter
+     * @param nBucketSize
+     *            the number of parameters of the list of ids
+     * @return the query
+     */
+    private String buildSelectByFilterQuery( ResponseFilter filter, int nBucketSize )
+    {
         StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_RESPONSE_BY_FILTER );
 
         if ( filter.containsIdResource( ) )
@@ -234,17 +382,164 @@ public final class ResponseDAO implements IResponseDAO
 
         if ( filter.containsListIdResource( ) )
         {
-            StringBuilder sb = new StringBuilder( SQL_FILTER_MULTI_ID_RESPONSE + " (" );
-            sb.append( filter.getListId( ).stream( ).map( String::valueOf ).collect( Collectors.joining( "," ) ) );
-            sb.append( ")" );
-            sbSQL.append( sb.toString( ) );
+            sbSQL.append( SQL_FILTER_MULTI_ID_RESPONSE ).append( " ( " );
+            sbSQL.append( DAOQueryUtils.getPlaceholders( nBucketSize ) );
+            sbSQL.append( SQL_CLOSE_PARENTHESIS );
+        }
+
+        if ( filter.containsAfterId( ) )
+        {
+            // Keyset pagination : the next page starts after the last id of the previous one
+            sbSQL.append( SQL_FILTER_AFTER_ID_RESPONSE );
+            sbSQL.append( SQL_ORDER_BY_ID_RESPONSE );
+        }
+        else
+        {
+            sbSQL.append( SQL_ORDER_BY );
+            sbSQL.append( ( filter.containsOrderBy( ) ) ? filter.getOrderBy( ) : SQL_FILTER_ID_RESPONSE );
+            sbSQL.append( ( filter.isOrderByAsc( ) ) ? SQL_ASC : SQL_DESC );
+        }
+
+        if ( filter.containsLimit( ) )
+        {
+            sbSQL.append( SQL_LIMIT );
+        }
+
+        return sbSQL.toString( );
+    }
+
+    /**
+     * Set the parameters of the query selecting the responses which verify a filter
+     * 
+     * @param daoUtil
+     *            the daoUtil of the query
+     * @param filter
+     *            the filter
+     */
+    private void setFilterParameters( DAOUtil daoUtil, ResponseFilter filter )
+    {
+        int nIndex = 1;
+
+        if ( filter.containsIdResource( ) )
+        {
+            daoUtil.setInt( nIndex++, filter.getIdResource( ) );
+        }
+
+        if ( filter.containsIdEntry( ) )
+        {
+            daoUtil.setInt( nIndex++, filter.getIdEntry( ) );
+        }
+
+        if ( filter.containsIdField( ) )
+        {
+            daoUtil.setInt( nIndex++, filter.getIdField( ) );
+        }
+
+        if ( filter.containsCodeEntry( ) )
+        {
+            daoUtil.setString( nIndex++, filter.getCodeEntry( ) );
+        }
+
+        if ( filter.containsResponseValue( ) )
+        {
+            daoUtil.setString( nIndex++, filter.getResponseValue( ) );
+        }
+
+        if ( filter.containsListIdResource( ) )
+        {
+            nIndex = DAOQueryUtils.setIdList( daoUtil, nIndex, filter.getListId( ), DAOQueryUtils.getBucketSize( filter.getListId( ).size( ) ) );
+        }
+
+        if ( filter.containsAfterId( ) )
+        {
+            daoUtil.setInt( nIndex++, filter.getAfterId( ) );
+        }
+
+        if ( filter.containsLimit( ) )
+        {
+            daoUtil.setInt( nIndex, filter.getLimit( ) );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response loadCounterKey( int nIdResponse, Plugin plugin )
+    {
+        Response response = null;
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_COUNTER_KEY, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdResponse );
+            daoUtil.executeQuery( );
+
+            if ( daoUtil.next( ) )
+            {
+                response = getCounterKey( daoUtil );
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Response> loadCounterKeys( List<Integer> listIdResponse, Plugin plugin )
+    {
+        List<Response> listResponse = new ArrayList<>( );
+        DAOQueryUtils.executeByChunk( listIdResponse, strPlaceholders -> SQL_QUERY_SELECT_COUNTER_KEYS + strPlaceholders + SQL_CLOSE_PARENTHESIS, 1,
+                plugin, daoUtil -> listResponse.add( getCounterKey( daoUtil ) ) );
+
+        return listResponse;
+    }
+
+    /**
+     * Read the entry, the field and the creation date of a response from the current row of a counter key query
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @return the response with only the ids of its entry and field and its creation date
+     */
+    private static Response getCounterKey( DAOUtil daoUtil )
+    {
+        int nIndex = 1;
+        Response response = new Response( );
+        response.setIdResponse( daoUtil.getInt( nIndex++ ) );
+
+        Entry entry = new Entry( );
+        entry.setIdEntry( daoUtil.getInt( nIndex++ ) );
+        response.setEntry( entry );
+
+        if ( daoUtil.getObject( nIndex ) != null )
+        {
+            Field field = new Field( );
+            field.setIdField( daoUtil.getInt( nIndex ) );
+            response.setField( field );
         }
 
-        sbSQL.append( SQL_ORDER_BY );
-        sbSQL.append( ( filter.containsOrderBy( ) ) ? filter.getOrderBy( ) : SQL_FILTER_ID_RESPONSE );
-        sbSQL.append( ( filter.isOrderByAsc( ) ) ? SQL_ASC : SQL_DESC );
+        nIndex++;
+        response.setDateCreation( daoUtil.getTimestamp( nIndex ) );
 
-        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<StatisticEntrySubmit> selectStatisticsByFilter( ResponseFilter filter, Plugin plugin )
+    {
+        List<StatisticEntrySubmit> listStatistic = new ArrayList<>( );
+        int nPeriod = ResponseStatisticHome.getPeriod( filter );
+        int nShape = DAOQueryUtils.getShape( filter.containsIdResource( ), filter.containsIdEntry( ), filter.containsIdField( ),
+                filter.containsCodeEntry( ) ) * 4 + nPeriod;
+        String strQuery = DAOQueryUtils.getQuery( _mapQueryStatisticsByShape, nShape,
+                ( ) -> buildSelectStatisticsByFilterQuery( filter, nPeriod, getDateTruncationDialect( plugin ) ) );
+
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, plugin ) )
         {
             int nIndex = 1;
 
@@ -265,51 +560,148 @@ public final class ResponseDAO implements IResponseDAO
 
             if ( filter.containsCodeEntry( ) )
             {
-                daoUtil.setString( nIndex++, filter.getCodeEntry( ) );
-            }
-
-            if ( filter.containsResponseValue( ) )
-            {
-                daoUtil.setString( nIndex++, filter.getResponseValue( ) );
+                daoUtil.setString( nIndex, filter.getCodeEntry( ) );
             }
 
             daoUtil.executeQuery( );
 
             while ( daoUtil.next( ) )
             {
-                responseList.add( getResponseFromDAOUtil( daoUtil ) );
-            }
+                StatisticEntrySubmit statistic = new StatisticEntrySubmit( );
+                statistic.setIdField( daoUtil.getInt( 1 ) );
+                statistic.setNumberResponse( daoUtil.getInt( 2 ) );
 
+                if ( nPeriod != 0 )
+                {
+                    statistic.setDateBucket( daoUtil.getDate( 3 ) );
+                }
+
+                listStatistic.add( statistic );
+            }
         }
 
-        return responseList;
+        return listStatistic;
     }
 
     /**
-     * {@inheritDoc}
+     * Build the query counting the responses which verify a filter, by field and period
+     * 
+     * @param filter
+     *            the filter
+     * @param nPeriod
+     *            the period, or 0 to count the responses by field only
+     * @param dialect
+     *            the dialect of the date truncation
+     * @return the query
      */
-    @Override
-    public List<StatisticEntrySubmit> getStatisticByIdEntry( int nIdEntry, Plugin plugin )
+    private String buildSelectStatisticsByFilterQuery( ResponseFilter filter, int nPeriod, DateTruncationDialect dialect )
     {
-        List<StatisticEntrySubmit> listStatisticEntrySubmit = new ArrayList<>( );
-        StatisticEntrySubmit statisticEntrySubmit;
+        String strPeriod = ( nPeriod != 0 ) ? dialect.truncate( SQL_COLUMN_DATE_CREATION, nPeriod ) : null;
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_STATISTICS );
 
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_COUNT_RESPONSE_BY_ID_ENTRY, plugin ) )
+        if ( strPeriod != null )
         {
-            daoUtil.setInt( 1, nIdEntry );
-            daoUtil.executeQuery( );
+            sbSQL.append( ", " ).append( strPeriod );
+        }
 
-            while ( daoUtil.next( ) )
+        sbSQL.append( SQL_QUERY_SELECT_STATISTICS_FROM );
+
+        if ( strPeriod != null )
+        {
+            sbSQL.append( SQL_FILTER_DATE_CREATION );
+        }
+
+        if ( filter.containsIdResource( ) )
+        {
+            sbSQL.append( SQL_FILTER_ID_RESOURCE );
+        }
+
+        if ( filter.containsIdEntry( ) )
+        {
+            sbSQL.append( SQL_FILTER_ID_ENTRY );
+        }
+
+        if ( filter.containsIdField( ) )
+        {
+            sbSQL.append( SQL_FILTER_ID_FIELD );
+        }
+
+        if ( filter.containsCodeEntry( ) )
+        {
+            sbSQL.append( SQL_FILTER_CODE_ENTRY );
+        }
+
+        if ( strPeriod != null )
+        {
+            sbSQL.append( SQL_GROUP_BY_ID_FIELD ).append( ", " ).append( strPeriod );
+            sbSQL.append( SQL_ORDER_BY ).append( strPeriod ).append( ", resp.id_field " );
+        }
+        else
+        {
+            sbSQL.append( SQL_GROUP_BY_ID_FIELD );
+            sbSQL.append( SQL_ORDER_BY_ID_FIELD );
+        }
+
+        return sbSQL.toString( );
+    }
+
+    /**
+     * Get the dialect of the date truncation of the database of the plugin, from the name of the database product. The name is read from the
+     * connection of the current transaction of the plugin if any, so that no second connection is taken from the pool of the plugin by a thread
+     * which already holds one.
+     * 
+     * @param plugin
+     *            the plugin
+     * @return the dialect
+     */
+    private DateTruncationDialect getDateTruncationDialect( Plugin plugin )
+    {
+        if ( _dateTruncationDialect == null )
+        {
+            Transaction transaction = TransactionManager.getCurrentTransaction( plugin );
+
+            if ( transaction != null )
             {
-                statisticEntrySubmit = new StatisticEntrySubmit( );
-                statisticEntrySubmit.setFieldLibelle( daoUtil.getString( 1 ) );
-                statisticEntrySubmit.setNumberResponse( daoUtil.getInt( 2 ) );
-                listStatisticEntrySubmit.add( statisticEntrySubmit );
+                _dateTruncationDialect = getDateTruncationDialect( transaction.getConnection( ) );
             }
+            else
+            {
+                PluginConnectionService connectionService = plugin.getConnectionService( );
+                Connection connection = connectionService.getConnection( );
 
+                try
+                {
+                    _dateTruncationDialect = getDateTruncationDialect( connection );
+                }
+                finally
+                {
+                    connectionService.freeConnection( connection );
+                }
+            }
         }
 
-        return listStatisticEntrySubmit;
+        return _dateTruncationDialect;
+    }
+
+    /**
+     * Get the dialect of the date truncation of the database of a connection
+     * 
+     * @param connection
+     *            the connection
+     * @return the dialect
+     */
+    private static DateTruncationDialect getDateTruncationDialect( Connection connection )
+    {
+        try
+        {
+            return DateTruncationDialect.of( connection.getMetaData( ).getDatabaseProductName( ) );
+        }
+        catch( SQLException e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+
+            return DateTruncationDialect.of( null );
+        }
     }
 
     /**
@@ -341,6 +733,20 @@ public final class ResponseDAO implements IResponseDAO
      * @return The response
      */
     private Response getResponseFromDAOUtil( DAOUtil daoUtil )
+    {
+        return getResponseFromDAOUtil( daoUtil, null );
+    }
+
+    /**
+     * Get a response from a DAOUtil, sharing the entries between the responses
+     * 
+     * @param daoUtil
+     *            The daoUtil to get data from. Note that the DAOUtil will NOT be free by this method
+     * @param mapEntry
+     *            the entries already read, by id. If null, a new entry is created for the response
+     * @return The response
+     */
+    private Response getResponseFromDAOUtil( DAOUtil daoUtil, Map<Integer, Entry> mapEntry )
     {
         int nIndex = 1;
 
@@ -349,16 +755,31 @@ public final class ResponseDAO implements IResponseDAO
 
         response.setResponseValue( daoUtil.getString( nIndex++ ) );
 
-        EntryType entryType = new EntryType( );
-        entryType.setBeanName( daoUtil.getString( nIndex++ ) );
-        entryType.setIdType( daoUtil.getInt( nIndex++ ) );
+        String strBeanName = daoUtil.getString( nIndex++ );
+        int nIdType = daoUtil.getInt( nIndex++ );
+        int nIdEntry = daoUtil.getInt( nIndex++ );
+        String strTitle = daoUtil.getString( nIndex++ );
+        String strCode = daoUtil.getString( nIndex++ );
+        Entry entry = ( mapEntry == null ) ? null : mapEntry.get( nIdEntry );
 
-        Entry entry = new Entry( );
+        if ( entry == null )
+        {
+            EntryType entryType = new EntryType( );
+            entryType.setBeanName( strBeanName );
+            entryType.setIdType( nIdType );
+
+            entry = new Entry( );
+            entry.setEntryType( entryType );
+            entry.setIdEntry( nIdEntry );
+            entry.setTitle( strTitle );
+            entry.setCode( strCode );
+
+            if ( mapEntry != null )
+            {
+                mapEntry.put( nIdEntry, entry );
+            }
+        }
 
-        entry.setEntryType( entryType );
-        entry.setIdEntry( daoUtil.getInt( nIndex++ ) );
-        entry.setTitle( daoUtil.getString( nIndex++ ) );
-        entry.setCode( daoUtil.getString( nIndex++ ) );
         response.setEntry( entry );
 
         response.setIterationNumber( daoUtil.getInt( nIndex++ ) );
@@ -383,7 +804,8 @@ public final class ResponseDAO implements IResponseDAO
 
         nIndex++;
         response.setStatus( daoUtil.getInt( nIndex++ ) );
-        response.setSortOrder( daoUtil.getInt( nIndex ) );
+        response.setSortOrder( daoUtil.getInt( nIndex++ ) );
+        response.setDateCreation( daoUtil.getTimestamp( nIndex ) );
         return response;
     }
 
@@ -422,4 +844,61 @@ public final class ResponseDAO implements IResponseDAO
 
         return sb.toString( );
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countByEntryIdList( List<Integer> listIdEntry, Plugin plugin )
+    {
+        int [ ] nCount = {
+                0
+        };
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_COUNT_BY_LIST_ID_ENTRY + strPlaceholders + SQL_CLOSE_PARENTHESIS, 1, plugin,
+                daoUtil -> nCount [0] += daoUtil.getInt( 1 ) );
+
+        return nCount [0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, Integer> selectIdFileByEntryIdList( List<Integer> listIdEntry, int nLimit, Plugin plugin )
+    {
+        Map<Integer, Integer> mapIdFile = new LinkedHashMap<>( );
+
+        if ( listIdEntry.isEmpty( ) )
+        {
+            return mapIdFile;
+        }
+
+        int nBucketSize = DAOQueryUtils.getBucketSize( listIdEntry.size( ) );
+        String strQuery = SQL_QUERY_SELECT_ID_FILE_BY_LIST_ID_ENTRY + DAOQueryUtils.getPlaceholders( nBucketSize ) + SQL_CLOSE_PARENTHESIS
+                + SQL_ORDER_BY_ID_RESPONSE + SQL_LIMIT;
+
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, plugin ) )
+        {
+            int nIndex = DAOQueryUtils.setIdList( daoUtil, 1, listIdEntry, nBucketSize );
+            daoUtil.setInt( nIndex, nLimit );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                mapIdFile.put( daoUtil.getInt( 1 ), ( daoUtil.getObject( 2 ) != null ) ? daoUtil.getInt( 2 ) : null );
+            }
+        }
+
+        return mapIdFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteByIdList( List<Integer> listIdResponse, Plugin plugin )
+    {
+        DAOQueryUtils.executeByChunk( listIdResponse, strPlaceholders -> SQL_QUERY_DELETE_BY_LIST + strPlaceholders + SQL_CLOSE_PARENTHESIS, 1, plugin,
+                null );
+    }
 }
@@ -38,6 +38,7 @@ import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -58,6 +59,38 @@ public class ResponseFilter
     private List<Integer> _listId;
     private String _strCodeEntry;
     private String _strResponseValue;
+    private int _nAfterId = GenericAttributesUtils.CONSTANT_ID_NULL;
+    private int _nLimit = GenericAttributesUtils.CONSTANT_ID_NULL;
+
+    /**
+     * Constructor
+     */
+    public ResponseFilter( )
+    {
+    }
+
+    /**
+     * Copy constructor
+     * 
+     * @param filter
+     *            the filter to copy
+     */
+    public ResponseFilter( ResponseFilter filter )
+    {
+        _nIdResource = filter._nIdResource;
+        _nIdField = filter._nIdField;
+        _nIdEntry = filter._nIdEntry;
+        _bGroupbyDay = filter._bGroupbyDay;
+        _bGroupbyWeek = filter._bGroupbyWeek;
+        _bGroupbyMonth = filter._bGroupbyMonth;
+        _strOrderBy = filter._strOrderBy;
+        _bIsOrderByAsc = filter._bIsOrderByAsc;
+        _listId = ( filter._listId == null ) ? null : new ArrayList<>( filter._listId );
+        _strCodeEntry = filter._strCodeEntry;
+        _strResponseValue = filter._strResponseValue;
+        _nAfterId = filter._nAfterId;
+        _nLimit = filter._nLimit;
+    }
 
     /**
      * Get the id of a resource in the filter
@@ -340,4 +373,67 @@ public class ResponseFilter
     {
         return StringUtils.isNotBlank( _strResponseValue );
     }
+
+    /**
+     * Get the id after which the responses are selected
+     * 
+     * @return the id after which the responses are selected
+     */
+    public int getAfterId( )
+    {
+        return _nAfterId;
+    }
+
+    /**
+     * Set the id after which the responses are selected. The responses are then ordered by id ascending, whatever the order of the filter, so that
+     * the id of the last response of a page can be given to select the next page.
+     * 
+     * @param nAfterId
+     *            the id after which the responses are selected
+     */
+    public void setAfterId( int nAfterId )
+    {
+        _nAfterId = nAfterId;
+    }
+
+    /**
+     * Check if the filter contains an id after which the responses are selected
+     * 
+     * @return true if it contains, false otherwise
+     */
+    public boolean containsAfterId( )
+    {
+        return ( _nAfterId != GenericAttributesUtils.CONSTANT_ID_NULL );
+    }
+
+    /**
+     * Get the maximum number of responses to select
+     * 
+     * @return the maximum number of responses to select
+     */
+    public int getLimit( )
+    {
+        return _nLimit;
+    }
+
+    /**
+     * Set the maximum number of responses to select
+     * 
+     * @param nLimit
+     *            the maximum number of responses to select
+     */
+    public void setLimit( int nLimit )
+    {
+        _nLimit = nLimit;
+    }
+
+    /**
+     * Check if the filter contains a maximum number of responses to select
+     * 
+     * @return true if it contains, false otherwise
+     */
+    public boolean containsLimit( )
+    {
+        return _nLimit > 0;
+    }
 }
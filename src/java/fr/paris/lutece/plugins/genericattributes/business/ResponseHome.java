@@ -33,14 +33,24 @@
  */
 package fr.paris.lutece.plugins.genericattributes.business;
 
+import fr.paris.lutece.plugins.genericattributes.service.ImageNormalizationService;
+import fr.paris.lutece.plugins.genericattributes.service.file.FileService;
 import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
-import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.plugins.genericattributes.util.TransactionUtils;
+import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.util.sql.TransactionManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 /**
  * This class provides instances management methods (create, find, ...) for Response objects
@@ -49,6 +59,7 @@ public final class ResponseHome
 {
     // Static variable pointed at the DAO instance
     private static IResponseDAO _dao = SpringContextService.getBean( "genericattributes.responseDAO" );
+    private static FileService _fileService = SpringContextService.getBean( FileService.BEAN_SERVICE );
     private static Plugin _plugin;
 
     /**
@@ -59,11 +70,12 @@ public final class ResponseHome
     }
 
     /**
-     * Creation of an instance of response
+     * Creation of an instance of response. When this method is called in a transaction opened by the caller with the TransactionManager, the image of
+     * the response is normalized only if the caller submits it once its transaction is committed.
      *
      * @param response
      *            The instance of the response which contains the informations to store
-     *
+     * @see ImageNormalizationService#submit(List)
      */
     public static void create( Response response )
     {
@@ -73,7 +85,7 @@ public final class ResponseHome
         {
             if ( response.getFile( ) != null )
             {
-                FileHome.create( response.getFile( ) );
+                _fileService.createFile( response.getFile( ) );
             }
 
             _dao.insert( response, getPlugin( ) );
@@ -84,6 +96,44 @@ public final class ResponseHome
             TransactionManager.rollBack( getPlugin( ) );
             throw new AppException( e.getMessage( ), e );
         }
+
+        ResponseStatisticHome.addResponses( Collections.singletonList( response ) );
+        TransactionUtils.runAfterCommit( getPlugin( ), ( ) -> ImageNormalizationService.getInstance( ).submit( Collections.singletonList( response ) ) );
+    }
+
+    /**
+     * Creation of several responses in a single transaction, for example all the responses of a form submission. The responses are inserted with a
+     * single batch and their files are created in the same transaction. When this method is called in a transaction opened by the caller with the
+     * TransactionManager, the images of the responses are normalized only if the caller submits them once its transaction is committed.
+     *
+     * @param listResponse
+     *            The responses to store
+     */
+    public static void createAll( List<Response> listResponse )
+    {
+        TransactionManager.beginTransaction( getPlugin( ) );
+
+        try
+        {
+            for ( Response response : listResponse )
+            {
+                if ( response.getFile( ) != null )
+                {
+                    _fileService.createFile( response.getFile( ) );
+                }
+            }
+
+            _dao.insertBatch( listResponse, getPlugin( ) );
+            TransactionManager.commitTransaction( getPlugin( ) );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+
+        ResponseStatisticHome.addResponses( listResponse );
+        TransactionUtils.runAfterCommit( getPlugin( ), ( ) -> ImageNormalizationService.getInstance( ).submit( listResponse ) );
     }
 
     /**
@@ -95,13 +145,18 @@ public final class ResponseHome
      */
     public static void update( Response response )
     {
+        Response responseOld;
+
         TransactionManager.beginTransaction( getPlugin( ) );
 
         try
         {
+            // Only the columns which identify the response counters are read back
+            responseOld = _dao.loadCounterKey( response.getIdResponse( ), getPlugin( ) );
+
             if ( response.getFile( ) != null )
             {
-                FileHome.update( response.getFile( ) );
+                _fileService.updateFile( response.getFile( ) );
             }
 
             _dao.store( response, getPlugin( ) );
@@ -112,6 +167,11 @@ public final class ResponseHome
             TransactionManager.rollBack( getPlugin( ) );
             throw new AppException( e.getMessage( ), e );
         }
+
+        if ( responseOld != null )
+        {
+            ResponseStatisticHome.updateResponse( responseOld, response );
+        }
     }
 
     /**
@@ -132,7 +192,7 @@ public final class ResponseHome
             {
                 if ( response.getFile( ) != null )
                 {
-                    FileHome.remove( response.getFile( ).getIdFile( ) );
+                    _fileService.removeFile( response.getFile( ).getIdFile( ) );
                 }
 
                 _dao.delete( nIdResponse, getPlugin( ) );
@@ -145,6 +205,101 @@ public final class ResponseHome
             TransactionManager.rollBack( getPlugin( ) );
             throw new AppException( e.getMessage( ), e );
         }
+
+        if ( response != null )
+        {
+            ResponseStatisticHome.removeResponse( response );
+        }
+    }
+
+    /**
+     * Remove the responses of entries, with their files. The responses are removed by chunks, each in its own transaction, so that the removal of
+     * entries with a large number of responses does not hold a single huge transaction. The caller must not be in a transaction of the plugin : the
+     * chunks would join it instead of being committed one by one.
+     * 
+     * @param listIdEntry
+     *            The ids of the entries
+     * @param listener
+     *            The listener notified after each chunk, may be null
+     * @throws AppException
+     *             if the caller is in a transaction of the plugin
+     */
+    public static void removeByEntryIdList( List<Integer> listIdEntry, IRemovalProgressListener listener )
+    {
+        checkNotInTransaction( );
+        removeByEntryIdListInChunks( listIdEntry, listener );
+    }
+
+    /**
+     * Check that the caller is not in a transaction of the plugin, before a removal committed by chunks
+     * 
+     * @throws AppException
+     *             if the caller is in a transaction of the plugin
+     */
+    static void checkNotInTransaction( )
+    {
+        if ( TransactionUtils.isInTransaction( getPlugin( ) ) )
+        {
+            throw new AppException( "A removal committed by chunks can not be run inside a transaction of the plugin " + getPlugin( ).getName( ) );
+        }
+    }
+
+    /**
+     * Remove the responses of entries by chunks. Each chunk is removed in its own transaction, or joins the transaction of the caller if any. The
+     * removed responses are removed from the counters of their fields in the transaction of their chunk.
+     * 
+     * @param listIdEntry
+     *            The ids of the entries
+     * @param listener
+     *            The listener notified after each chunk, may be null
+     */
+    static void removeByEntryIdListInChunks( List<Integer> listIdEntry, IRemovalProgressListener listener )
+    {
+        int nTotalResponses = _dao.countByEntryIdList( listIdEntry, getPlugin( ) );
+        int nRemovedResponses = 0;
+
+        for ( List<Integer> listIdEntryChunk : DAOQueryUtils.getChunks( listIdEntry ) )
+        {
+            while ( true )
+            {
+                Map<Integer, Integer> mapIdFile = _dao.selectIdFileByEntryIdList( listIdEntryChunk, DAOQueryUtils.MAX_CHUNK_SIZE, getPlugin( ) );
+
+                if ( mapIdFile.isEmpty( ) )
+                {
+                    break;
+                }
+
+                TransactionManager.beginTransaction( getPlugin( ) );
+
+                try
+                {
+                    for ( Integer nIdFile : mapIdFile.values( ) )
+                    {
+                        if ( nIdFile != null )
+                        {
+                            _fileService.removeFile( nIdFile );
+                        }
+                    }
+
+                    List<Integer> listIdResponse = new ArrayList<>( mapIdFile.keySet( ) );
+                    ResponseStatisticHome.removeResponsesInTransaction( _dao.loadCounterKeys( listIdResponse, getPlugin( ) ) );
+                    _dao.deleteByIdList( listIdResponse, getPlugin( ) );
+                    TransactionManager.commitTransaction( getPlugin( ) );
+                }
+                catch( Exception e )
+                {
+                    TransactionManager.rollBack( getPlugin( ) );
+                    throw new AppException( e.getMessage( ), e );
+                }
+
+                nRemovedResponses += mapIdFile.size( );
+
+                if ( listener != null )
+                {
+                    listener.onProgress( nRemovedResponses, nTotalResponses );
+                }
+            }
+        }
     }
 
     // /////////////////////////////////////////////////////////////////////////
@@ -162,6 +317,41 @@ public final class ResponseHome
         return _dao.load( nKey, getPlugin( ) );
     }
 
+    /**
+     * Load the metadata of the files of responses, e.g. their title, size and MIME type for a recap or an export, with a query per chunk of files.
+     * The content of the files is not read : it is read on demand through their {@link LazyPhysicalFile}.
+     * 
+     * @param listResponse
+     *            the responses, whose files are replaced by their metadata
+     */
+    public static void loadFileMetadata( List<Response> listResponse )
+    {
+        List<Integer> listIdFile = new ArrayList<>( );
+
+        for ( Response response : listResponse )
+        {
+            if ( response.getFile( ) != null )
+            {
+                listIdFile.add( response.getFile( ).getIdFile( ) );
+            }
+        }
+
+        Map<Integer, File> mapFiles = new HashMap<>( );
+
+        for ( File file : FileMetadataHome.findByIdList( listIdFile ) )
+        {
+            mapFiles.put( file.getIdFile( ), file );
+        }
+
+        for ( Response response : listResponse )
+        {
+            if ( response.getFile( ) != null && mapFiles.containsKey( response.getFile( ).getIdFile( ) ) )
+            {
+                response.setFile( mapFiles.get( response.getFile( ).getIdFile( ) ) );
+            }
+        }
+    }
+
     /**
      * Load the data of all the response who verify the filter and returns them in a list
      * 
@@ -175,7 +365,39 @@ public final class ResponseHome
     }
 
     /**
-     * return a list of statistic on the entry
+     * Get an iterator over the pages of the responses who verify the filter, ordered by id. Each page is loaded with a keyset query starting after
+     * the last id of the previous page, so that a deep page costs the same as the first one. The iterator works on a copy of the filter, which is
+     * left unchanged : the pages start after the id of the filter, if it is set.
+     * 
+     * @param filter
+     *            the filter
+     * @param nPageSize
+     *            the number of responses of a page
+     * @return the iterator over the pages of responses
+     */
+    public static Iterator<List<Response>> getResponsePageIterator( ResponseFilter filter, int nPageSize )
+    {
+        return new ResponsePageIterator( filter, nPageSize );
+    }
+
+    /**
+     * Read all the responses who verify the filter one by one, for example to export them. The responses are not kept in memory, so the memory
+     * used does not depend on the number of responses. The responses of a same entry share the same entry instance, which must not be modified.
+     * The rows are only fetched by blocks if the JDBC driver does : MySQL Connector/J reads the whole result set in memory unless cursor fetch is
+     * enabled on the datasource of the plugin, e.g. with <code>useCursorFetch=true&amp;defaultFetchSize=500</code> in the URL of the pool.
+     * 
+     * @param filter
+     *            the filter
+     * @param consumer
+     *            the consumer of the responses, called for each response while the query is running
+     */
+    public static void streamResponses( ResponseFilter filter, Consumer<Response> consumer )
+    {
+        _dao.selectByFilter( filter, consumer, getPlugin( ) );
+    }
+
+    /**
+     * return a list of statistic on the entry : the number of responses of each field of the entry, read from the response counters of the fields
      * 
      * @param nIdEntry
      *            the id of the entry
@@ -183,7 +405,37 @@ public final class ResponseHome
      */
     public static List<StatisticEntrySubmit> getStatisticByIdEntry( int nIdEntry )
     {
-        return _dao.getStatisticByIdEntry( nIdEntry, getPlugin( ) );
+        return ResponseStatisticHome.findByIdEntry( nIdEntry );
+    }
+
+    /**
+     * return a list of statistic on the entry by period : the number of responses of each field of the entry for each day, week or month with
+     * responses, read from the response counters of the fields
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param nPeriod
+     *            the period : {@link ResponseStatisticHome#PERIOD_DAY}, {@link ResponseStatisticHome#PERIOD_WEEK} or
+     *            {@link ResponseStatisticHome#PERIOD_MONTH}
+     * @return return a list of statistic on the entry, ordered by period
+     */
+    public static List<StatisticEntrySubmit> getStatisticByIdEntry( int nIdEntry, int nPeriod )
+    {
+        return ResponseStatisticHome.findByIdEntryAndPeriod( nIdEntry, nPeriod );
+    }
+
+    /**
+     * Get the number of responses of each field who verify the filter, counted by the database, and, if the filter groups the responses by day, week
+     * or month, of each period. The resource, entry, field and entry code criteria of the filter are used. Only the fields with responses are
+     * returned, without their title. The statistics of a single entry are cheaper to read with {@link #getStatisticByIdEntry(int, int)}.
+     * 
+     * @param filter
+     *            the filter
+     * @return the number of responses of each field, ordered by period and field
+     */
+    public static List<StatisticEntrySubmit> getStatisticList( ResponseFilter filter )
+    {
+        return _dao.selectStatisticsByFilter( filter, getPlugin( ) );
     }
 
     /**
@@ -212,4 +464,70 @@ public final class ResponseHome
 
         return _plugin;
     }
+
+    /**
+     * Iterator over the pages of the responses who verify a filter
+     */
+    private static final class ResponsePageIterator implements Iterator<List<Response>>
+    {
+        private final ResponseFilter _filter;
+        private final int _nPageSize;
+        private int _nLastId;
+        private List<Response> _listNextPage;
+        private boolean _bLastPage;
+
+        /**
+         * Constructor
+         * 
+         * @param filter
+         *            the filter
+         * @param nPageSize
+         *            the number of responses of a page
+         */
+        ResponsePageIterator( ResponseFilter filter, int nPageSize )
+        {
+            _filter = new ResponseFilter( filter );
+            _nPageSize = nPageSize;
+            _nLastId = filter.containsAfterId( ) ? filter.getAfterId( ) : 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext( )
+        {
+            if ( _listNextPage == null && !_bLastPage )
+            {
+                _filter.setAfterId( _nLastId );
+                _filter.setLimit( _nPageSize );
+                _listNextPage = getResponseList( _filter );
+                _bLastPage = !_filter.containsLimit( ) || _listNextPage.size( ) < _nPageSize;
+
+                if ( !_listNextPage.isEmpty( ) )
+                {
+                    _nLastId = _listNextPage.get( _listNextPage.size( ) - 1 ).getIdResponse( );
+                }
+            }
+
+            return _listNextPage != null && !_listNextPage.isEmpty( );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<Response> next( )
+        {
+            if ( !hasNext( ) )
+            {
+                throw new NoSuchElementException( );
+            }
+
+            List<Response> listPage = _listNextPage;
+            _listNextPage = null;
+
+            return listPage;
+        }
+    }
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * This class provides Data Access methods for the response counters of the fields
+ */
+public final class ResponseStatisticDAO implements IResponseStatisticDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT_FIELD = "INSERT INTO genatt_response_stat_field ( id_field, id_entry, number_response ) VALUES ( ?, ?, ? ) ";
+    private static final String SQL_QUERY_INSERT_FIELD_FROM_RESPONSES = "INSERT INTO genatt_response_stat_field ( id_field, id_entry, number_response ) "
+            + " SELECT field.id_field, field.id_entry, COUNT( resp.id_response ) FROM genatt_field field "
+            + " INNER JOIN genatt_response resp ON ( resp.id_field = field.id_field ) WHERE field.id_entry = ? GROUP BY field.id_field, field.id_entry ";
+    private static final String SQL_QUERY_INCREMENT_FIELD = "UPDATE genatt_response_stat_field SET number_response = number_response + ? WHERE id_field = ? ";
+    private static final String SQL_QUERY_INSERT_PERIOD = "INSERT INTO genatt_response_stat_period ( id_field, period, date_period, id_entry, number_response ) "
+            + " VALUES ( ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_INCREMENT_PERIOD = "UPDATE genatt_response_stat_period SET number_response = number_response + ? "
+            + " WHERE id_field = ? AND period = ? AND date_period = ? ";
+    private static final String SQL_QUERY_SELECT_BY_ID_ENTRY = "SELECT field.id_field, field.title, stat.number_response "
+            + " FROM genatt_entry e LEFT JOIN genatt_field field ON ( e.id_entry = field.id_entry ) "
+            + " LEFT JOIN genatt_response_stat_field stat ON ( stat.id_field = field.id_field ) WHERE e.id_entry = ? ORDER BY field.pos ";
+    private static final String SQL_QUERY_SELECT_BY_ID_ENTRY_AND_PERIOD = "SELECT field.id_field, field.title, stat.number_response, stat.date_period "
+            + " FROM genatt_response_stat_period stat INNER JOIN genatt_field field ON ( stat.id_field = field.id_field ) "
+            + " WHERE stat.id_entry = ? AND stat.period = ? ORDER BY stat.date_period, field.pos ";
+    private static final String SQL_QUERY_SELECT_RESPONSE_DATES = "SELECT id_field, date_creation FROM genatt_response "
+            + " WHERE id_entry = ? AND id_field IS NOT NULL AND date_creation IS NOT NULL ";
+    private static final String SQL_QUERY_DELETE_FIELD_BY_LIST_ID_ENTRY = "DELETE FROM genatt_response_stat_field WHERE id_entry IN ( ";
+    private static final String SQL_QUERY_DELETE_PERIOD_BY_LIST_ID_ENTRY = "DELETE FROM genatt_response_stat_period WHERE id_entry IN ( ";
+    private static final String SQL_QUERY_DELETE_FIELD_BY_ID_FIELD = "DELETE FROM genatt_response_stat_field WHERE id_field = ? ";
+    private static final String SQL_QUERY_DELETE_PERIOD_BY_ID_FIELD = "DELETE FROM genatt_response_stat_period WHERE id_field = ? ";
+    private static final String SQL_CLOSE_PARENTHESIS = " ) ";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertFieldStatistics( int nIdEntry, List<StatisticEntrySubmit> listStatistic, Plugin plugin )
+    {
+        if ( listStatistic.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_FIELD, plugin ) )
+        {
+            for ( StatisticEntrySubmit statistic : listStatistic )
+            {
+                daoUtil.setInt( 1, statistic.getIdField( ) );
+                daoUtil.setInt( 2, nIdEntry );
+                daoUtil.setInt( 3, statistic.getNumberResponse( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertFieldStatisticsFromResponses( int nIdEntry, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_FIELD_FROM_RESPONSES, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdEntry );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int incrementFieldStatistic( int nIdField, int nIncrement, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_FIELD, plugin ) )
+        {
+            daoUtil.setInt( 1, nIncrement );
+            daoUtil.setInt( 2, nIdField );
+
+            return daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertPeriodStatistics( int nIdEntry, int nPeriod, List<StatisticEntrySubmit> listStatistic, Plugin plugin )
+    {
+        if ( listStatistic.isEmpty( ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_PERIOD, plugin ) )
+        {
+            for ( StatisticEntrySubmit statistic : listStatistic )
+            {
+                daoUtil.setInt( 1, statistic.getIdField( ) );
+                daoUtil.setInt( 2, nPeriod );
+                daoUtil.setDate( 3, statistic.getDateBucket( ) );
+                daoUtil.setInt( 4, nIdEntry );
+                daoUtil.setInt( 5, statistic.getNumberResponse( ) );
+                daoUtil.addBatch( );
+            }
+
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int incrementPeriodStatistic( int nIdField, int nPeriod, Date datePeriod, int nIncrement, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_PERIOD, plugin ) )
+        {
+            daoUtil.setInt( 1, nIncrement );
+            daoUtil.setInt( 2, nIdField );
+            daoUtil.setInt( 3, nPeriod );
+            daoUtil.setDate( 4, datePeriod );
+
+            return daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<StatisticEntrySubmit> selectByIdEntry( int nIdEntry, Plugin plugin )
+    {
+        List<StatisticEntrySubmit> listStatistic = new ArrayList<>( );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_ID_ENTRY, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdEntry );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                // A field without counter has no response yet
+                StatisticEntrySubmit statistic = new StatisticEntrySubmit( );
+                statistic.setIdField( daoUtil.getInt( 1 ) );
+                statistic.setFieldLibelle( daoUtil.getString( 2 ) );
+                statistic.setNumberResponse( daoUtil.getInt( 3 ) );
+                listStatistic.add( statistic );
+            }
+        }
+
+        return listStatistic;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<StatisticEntrySubmit> selectByIdEntryAndPeriod( int nIdEntry, int nPeriod, Plugin plugin )
+    {
+        List<StatisticEntrySubmit> listStatistic = new ArrayList<>( );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_ID_ENTRY_AND_PERIOD, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdEntry );
+            daoUtil.setInt( 2, nPeriod );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                StatisticEntrySubmit statistic = new StatisticEntrySubmit( );
+                statistic.setIdField( daoUtil.getInt( 1 ) );
+                statistic.setFieldLibelle( daoUtil.getString( 2 ) );
+                statistic.setNumberResponse( daoUtil.getInt( 3 ) );
+                statistic.setDateBucket( daoUtil.getDate( 4 ) );
+                listStatistic.add( statistic );
+            }
+        }
+
+        return listStatistic;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void selectResponseDates( int nIdEntry, BiConsumer<Integer, Timestamp> consumer, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_RESPONSE_DATES, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdEntry );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                consumer.accept( daoUtil.getInt( 1 ), daoUtil.getTimestamp( 2 ) );
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteByEntryIdList( List<Integer> listIdEntry, Plugin plugin )
+    {
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_DELETE_FIELD_BY_LIST_ID_ENTRY + strPlaceholders + SQL_CLOSE_PARENTHESIS, 1,
+                plugin, null );
+        DAOQueryUtils.executeByChunk( listIdEntry, strPlaceholders -> SQL_QUERY_DELETE_PERIOD_BY_LIST_ID_ENTRY + strPlaceholders + SQL_CLOSE_PARENTHESIS, 1,
+                plugin, null );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteByIdField( int nIdField, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_FIELD_BY_ID_FIELD, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdField );
+            daoUtil.executeUpdate( );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_PERIOD_BY_ID_FIELD, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdField );
+            daoUtil.executeUpdate( );
+        }
+    }
+}
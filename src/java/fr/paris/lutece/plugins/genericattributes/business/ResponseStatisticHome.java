@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.plugins.genericattributes.util.TransactionUtils;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * This class maintains the response counters of the fields, in total and by day, week and month. The counters are updated when responses are
+ * created, updated or removed, so that the statistics of an entry are read without counting its responses.
+ */
+public final class ResponseStatisticHome
+{
+    /**
+     * Period of the counters by day
+     */
+    public static final int PERIOD_DAY = 1;
+
+    /**
+     * Period of the counters by week, starting on monday
+     */
+    public static final int PERIOD_WEEK = 2;
+
+    /**
+     * Period of the counters by month
+     */
+    public static final int PERIOD_MONTH = 3;
+
+    private static final int PERIOD_NONE = 0;
+    private static final int [ ] PERIODS = {
+            PERIOD_DAY, PERIOD_WEEK, PERIOD_MONTH
+    };
+    private static final int MAX_ATTEMPTS = 2;
+
+    // Static variable pointed at the DAO instance
+    private static IResponseStatisticDAO _dao = SpringContextService.getBean( "genericattributes.responseStatisticDAO" );
+    private static Plugin _plugin;
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private ResponseStatisticHome( )
+    {
+    }
+
+    /**
+     * Count created responses in the counters of their fields
+     * 
+     * @param listResponse
+     *            the created responses
+     */
+    public static void addResponses( List<Response> listResponse )
+    {
+        Map<StatisticKey, Integer> mapIncrement = new TreeMap<>( );
+
+        for ( Response response : listResponse )
+        {
+            addIncrements( mapIncrement, response.getField( ), response.getEntry( ), response.getDateCreation( ), 1 );
+        }
+
+        applyIncrements( mapIncrement );
+    }
+
+    /**
+     * Update the counters of the fields of an updated response, if its field has changed
+     * 
+     * @param responseOld
+     *            the response before its update
+     * @param response
+     *            the updated response
+     */
+    public static void updateResponse( Response responseOld, Response response )
+    {
+        int nIdFieldOld = ( responseOld.getField( ) != null ) ? responseOld.getField( ).getIdField( ) : -1;
+        int nIdField = ( response.getField( ) != null ) ? response.getField( ).getIdField( ) : -1;
+
+        if ( nIdFieldOld == nIdField )
+        {
+            return;
+        }
+
+        // The update does not change the creation date of the response
+        Map<StatisticKey, Integer> mapIncrement = new TreeMap<>( );
+        addIncrements( mapIncrement, responseOld.getField( ), responseOld.getEntry( ), responseOld.getDateCreation( ), -1 );
+        addIncrements( mapIncrement, response.getField( ), response.getEntry( ), responseOld.getDateCreation( ), 1 );
+        applyIncrements( mapIncrement );
+    }
+
+    /**
+     * Remove a removed response from the counters of its field
+     * 
+     * @param response
+     *            the removed response
+     */
+    public static void removeResponse( Response response )
+    {
+        Map<StatisticKey, Integer> mapIncrement = new TreeMap<>( );
+        addIncrements( mapIncrement, response.getField( ), response.getEntry( ), response.getDateCreation( ), -1 );
+        applyIncrements( mapIncrement );
+    }
+
+    /**
+     * Remove removed responses from the counters of their fields, in the transaction which removes them. Only a decrement is applied, which never
+     * creates a counter, so that it can not fail on a counter created concurrently ; the counters are locked until this transaction is committed.
+     * 
+     * @param listResponse
+     *            the removed responses, with their entry, field and creation date
+     */
+    static void removeResponsesInTransaction( List<Response> listResponse )
+    {
+        Map<StatisticKey, Integer> mapIncrement = new TreeMap<>( );
+
+        for ( Response response : listResponse )
+        {
+            addIncrements( mapIncrement, response.getField( ), response.getEntry( ), response.getDateCreation( ), -1 );
+        }
+
+        mapIncrement.values( ).removeIf( nIncrement -> nIncrement == 0 );
+        updateCounters( mapIncrement );
+    }
+
+    /**
+     * Remove the counters of the fields of entries
+     * 
+     * @param listIdEntry
+     *            the ids of the entries
+     */
+    public static void removeByEntryIdList( List<Integer> listIdEntry )
+    {
+        _dao.deleteByEntryIdList( listIdEntry, getPlugin( ) );
+    }
+
+    /**
+     * Remove the counters of a field
+     * 
+     * @param nIdField
+     *            the id of the field
+     */
+    public static void removeByIdField( int nIdField )
+    {
+        _dao.deleteByIdField( nIdField, getPlugin( ) );
+    }
+
+    /**
+     * Rebuild the counters of the fields of an entry from its responses. The responses created before their creation date was stored are only counted
+     * in the total counters.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     */
+    public static void rebuild( int nIdEntry )
+    {
+        Map<Integer, Map<StatisticKey, Integer>> mapCountByPeriod = new HashMap<>( );
+
+        _dao.selectResponseDates( nIdEntry, ( nIdField, dateCreation ) -> {
+            for ( int nPeriod : PERIODS )
+            {
+                StatisticKey key = new StatisticKey( nIdField, nIdEntry, nPeriod, getPeriodStart( dateCreation, nPeriod ) );
+                mapCountByPeriod.computeIfAbsent( nPeriod, p -> new HashMap<>( ) ).merge( key, 1, Integer::sum );
+            }
+        }, getPlugin( ) );
+
+        TransactionManager.beginTransaction( getPlugin( ) );
+
+        try
+        {
+            _dao.deleteByEntryIdList( Collections.singletonList( nIdEntry ), getPlugin( ) );
+            _dao.insertFieldStatisticsFromResponses( nIdEntry, getPlugin( ) );
+
+            for ( Map.Entry<Integer, Map<StatisticKey, Integer>> entryPeriod : mapCountByPeriod.entrySet( ) )
+            {
+                _dao.insertPeriodStatistics( nIdEntry, entryPeriod.getKey( ), toStatistics( entryPeriod.getValue( ) ), getPlugin( ) );
+            }
+
+            TransactionManager.commitTransaction( getPlugin( ) );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    // /////////////////////////////////////////////////////////////////////////
+    // Finders
+
+    /**
+     * Get the number of responses of each field of an entry, ordered by field position
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @return the number of responses of each field
+     */
+    public static List<StatisticEntrySubmit> findByIdEntry( int nIdEntry )
+    {
+        return _dao.selectByIdEntry( nIdEntry, getPlugin( ) );
+    }
+
+    /**
+     * Get the number of responses of each field of an entry by period, ordered by period and field position. Only the periods with responses are
+     * returned.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param nPeriod
+     *            the period : {@link #PERIOD_DAY}, {@link #PERIOD_WEEK} or {@link #PERIOD_MONTH}
+     * @return the number of responses of each field by period
+     */
+    public static List<StatisticEntrySubmit> findByIdEntryAndPeriod( int nIdEntry, int nPeriod )
+    {
+        return _dao.selectByIdEntryAndPeriod( nIdEntry, nPeriod, getPlugin( ) );
+    }
+
+    /**
+     * Get the period by which a filter groups the responses. When several periods are set, the shortest one is used.
+     * 
+     * @param filter
+     *            the filter
+     * @return the period, or 0 if the filter does not group the responses by period
+     */
+    static int getPeriod( ResponseFilter filter )
+    {
+        if ( filter.isGroupbyDay( ) )
+        {
+            return PERIOD_DAY;
+        }
+
+        if ( filter.isGroupbyWeek( ) )
+        {
+            return PERIOD_WEEK;
+        }
+
+        if ( filter.isGroupbyMonth( ) )
+        {
+            return PERIOD_MONTH;
+        }
+
+        return PERIOD_NONE;
+    }
+
+    /**
+     * Get the first day of the period of a date
+     * 
+     * @param date
+     *            the date
+     * @param nPeriod
+     *            the period
+     * @return the first day of the period
+     */
+    static Date getPeriodStart( Timestamp date, int nPeriod )
+    {
+        LocalDate localDate = date.toLocalDateTime( ).toLocalDate( );
+
+        switch( nPeriod )
+        {
+            case PERIOD_WEEK:
+                return Date.valueOf( localDate.with( TemporalAdjusters.previousOrSame( DayOfWeek.MONDAY ) ) );
+            case PERIOD_MONTH:
+                return Date.valueOf( localDate.withDayOfMonth( 1 ) );
+            default:
+                return Date.valueOf( localDate );
+        }
+    }
+
+    /**
+     * Add the increments of the counters of a response
+     * 
+     * @param mapIncrement
+     *            the increments, by counter
+     * @param field
+     *            the field of the response
+     * @param entry
+     *            the entry of the response
+     * @param dateCreation
+     *            the creation date of the response
+     * @param nIncrement
+     *            the increment
+     */
+    private static void addIncrements( Map<StatisticKey, Integer> mapIncrement, Field field, Entry entry, Timestamp dateCreation, int nIncrement )
+    {
+        // Only the responses to a field are counted
+        if ( field == null || entry == null )
+        {
+            return;
+        }
+
+        mapIncrement.merge( new StatisticKey( field.getIdField( ), entry.getIdEntry( ), PERIOD_NONE, null ), nIncrement, Integer::sum );
+
+        if ( dateCreation != null )
+        {
+            for ( int nPeriod : PERIODS )
+            {
+                mapIncrement.merge( new StatisticKey( field.getIdField( ), entry.getIdEntry( ), nPeriod, getPeriodStart( dateCreation, nPeriod ) ), nIncrement,
+                        Integer::sum );
+            }
+        }
+    }
+
+    /**
+     * Apply increments to the counters once the changes of the responses are committed, in a short transaction of their own, so that the counters are
+     * never locked until the end of the transaction of the caller. In a transaction opened by the caller with the TransactionManager, the increments
+     * are queued, and applied once the caller has committed and calls {@link TransactionUtils#runQueuedTasks()}, or dropped if it rolls back. A
+     * failure is logged and does not fail the change of the responses, whose counters can be rebuilt.
+     * 
+     * @param mapIncrement
+     *            the increments, by counter
+     */
+    private static void applyIncrements( Map<StatisticKey, Integer> mapIncrement )
+    {
+        mapIncrement.values( ).removeIf( nIncrement -> nIncrement == 0 );
+
+        if ( mapIncrement.isEmpty( ) )
+        {
+            return;
+        }
+
+        TransactionUtils.runAfterCommit( getPlugin( ), ( ) -> applyIncrementsWithRetry( mapIncrement ) );
+    }
+
+    /**
+     * Apply increments to the counters in their own transaction, retried once if a counter could not be created because a concurrent transaction
+     * created it first
+     * 
+     * @param mapIncrement
+     *            the increments, by counter
+     */
+    private static void applyIncrementsWithRetry( Map<StatisticKey, Integer> mapIncrement )
+    {
+        for ( int nAttempt = 1;; nAttempt++ )
+        {
+            try
+            {
+                applyIncrementsInTransaction( mapIncrement );
+
+                return;
+            }
+            catch( AppException e )
+            {
+                // Another node may have created a counter in the meantime
+                if ( nAttempt >= MAX_ATTEMPTS )
+                {
+                    AppLogService.error( "Unable to update the response statistics, they must be rebuilt : " + e.getMessage( ), e );
+
+                    return;
+                }
+
+                AppLogService.debug( e.getMessage( ), e );
+            }
+        }
+    }
+
+    /**
+     * Apply increments to the counters in a transaction
+     * 
+     * @param mapIncrement
+     *            the increments, by counter
+     */
+    private static void applyIncrementsInTransaction( Map<StatisticKey, Integer> mapIncrement )
+    {
+        TransactionManager.beginTransaction( getPlugin( ) );
+
+        try
+        {
+            updateCounters( mapIncrement );
+            TransactionManager.commitTransaction( getPlugin( ) );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Update the counters. The counters are updated in the order of their keys, so that concurrent transactions do not lock them in opposite orders.
+     * A missing counter is created by the first response, a response not counted yet is not removed from it.
+     * 
+     * @param mapIncrement
+     *            the increments, sorted by counter
+     */
+    private static void updateCounters( Map<StatisticKey, Integer> mapIncrement )
+    {
+        for ( Map.Entry<StatisticKey, Integer> entryIncrement : mapIncrement.entrySet( ) )
+        {
+            StatisticKey key = entryIncrement.getKey( );
+            int nIncrement = entryIncrement.getValue( );
+            int nUpdated = ( key._nPeriod == PERIOD_NONE ) ? _dao.incrementFieldStatistic( key._nIdField, nIncrement, getPlugin( ) )
+                    : _dao.incrementPeriodStatistic( key._nIdField, key._nPeriod, key._datePeriod, nIncrement, getPlugin( ) );
+
+            if ( nUpdated == 0 && nIncrement > 0 )
+            {
+                List<StatisticEntrySubmit> listStatistic = toStatistics( Collections.singletonMap( key, nIncrement ) );
+
+                if ( key._nPeriod == PERIOD_NONE )
+                {
+                    _dao.insertFieldStatistics( key._nIdEntry, listStatistic, getPlugin( ) );
+                }
+                else
+                {
+                    _dao.insertPeriodStatistics( key._nIdEntry, key._nPeriod, listStatistic, getPlugin( ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert counts by counter to statistics
+     * 
+     * @param mapCount
+     *            the counts, by counter
+     * @return the statistics
+     */
+    private static List<StatisticEntrySubmit> toStatistics( Map<StatisticKey, Integer> mapCount )
+    {
+        List<StatisticEntrySubmit> listStatistic = new ArrayList<>( mapCount.size( ) );
+
+        for ( Map.Entry<StatisticKey, Integer> entryCount : mapCount.entrySet( ) )
+        {
+            StatisticEntrySubmit statistic = new StatisticEntrySubmit( );
+            statistic.setIdField( entryCount.getKey( )._nIdField );
+            statistic.setDateBucket( entryCount.getKey( )._datePeriod );
+            statistic.setNumberResponse( entryCount.getValue( ) );
+            listStatistic.add( statistic );
+        }
+
+        return listStatistic;
+    }
+
+    /**
+     * Get the generic attributes plugin
+     * 
+     * @return The generic attributes plugin
+     */
+    private static Plugin getPlugin( )
+    {
+        if ( _plugin == null )
+        {
+            _plugin = GenericAttributesUtils.getPlugin( );
+        }
+
+        return _plugin;
+    }
+
+    /**
+     * Key of a counter : a field, and a period with its first day for the counters by period
+     */
+    static final class StatisticKey implements Comparable<StatisticKey>
+    {
+        private static final Comparator<StatisticKey> COMPARATOR = Comparator.<StatisticKey> comparingInt( key -> key._nIdField )
+                .thenComparingInt( key -> key._nPeriod ).thenComparing( key -> key._datePeriod, Comparator.nullsFirst( Comparator.naturalOrder( ) ) );
+
+        private final int _nIdField;
+        private final int _nIdEntry;
+        private final int _nPeriod;
+        private final Date _datePeriod;
+
+        /**
+         * Constructor
+         * 
+         * @param nIdField
+         *            the id of the field
+         * @param nIdEntry
+         *            the id of the entry of the field
+         * @param nPeriod
+         *            the period
+         * @param datePeriod
+         *            the first day of the period, null for the total counter
+         */
+        StatisticKey( int nIdField, int nIdEntry, int nPeriod, Date datePeriod )
+        {
+            _nIdField = nIdField;
+            _nIdEntry = nIdEntry;
+            _nPeriod = nPeriod;
+            _datePeriod = datePeriod;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo( StatisticKey other )
+        {
+            return COMPARATOR.compare( this, other );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals( Object object )
+        {
+            if ( !( object instanceof StatisticKey ) )
+            {
+                return false;
+            }
+
+            StatisticKey other = (StatisticKey) object;
+
+            return _nIdField == other._nIdField && _nPeriod == other._nPeriod && Objects.equals( _datePeriod, other._datePeriod );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode( )
+        {
+            return Objects.hash( _nIdField, _nPeriod, _datePeriod );
+        }
+    }
+}
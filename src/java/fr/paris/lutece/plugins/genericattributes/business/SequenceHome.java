@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.plugins.genericattributes.util.TransactionUtils;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * This class provides instances management methods for the sequences of the numbering entries. A sequence is stored in the database, so that all
+ * the nodes of a cluster share it.
+ */
+public final class SequenceHome
+{
+    private static final int MAX_ATTEMPTS = 2;
+
+    // Static variable pointed at the DAO instance
+    private static ISequenceDAO _dao = SpringContextService.getBean( "genericattributes.sequenceDAO" );
+    private static Plugin _plugin;
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private SequenceHome( )
+    {
+    }
+
+    /**
+     * Allocate a block of consecutive values of the sequence of an entry. The sequence of an entry is created on its first allocation, starting after
+     * the greatest value of the responses of the entry. The values are allocated in their own transaction when the caller is not in a transaction
+     * of the plugin: they are then consumed even if the caller later rolls back its changes, so the values saved in the responses may have gaps. A
+     * failed allocation is retried once in a new transaction. The allocation is refused in a transaction of the caller, whose rollback would release
+     * values already handed out: {@link #allocateInTransaction(int, int)} must then be used.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param nCount
+     *            the number of values to allocate
+     * @return the first value of the block
+     * @throws AppException
+     *             if the caller is in a transaction of the plugin
+     */
+    public static int allocate( int nIdEntry, int nCount )
+    {
+        if ( TransactionUtils.isInTransaction( getPlugin( ) ) )
+        {
+            throw new AppException( "The values of a sequence can not be allocated in their own transaction inside a transaction of the plugin "
+                    + getPlugin( ).getName( ) );
+        }
+
+        for ( int nAttempt = 1;; nAttempt++ )
+        {
+            try
+            {
+                return allocateInTransaction( nIdEntry, nCount );
+            }
+            catch( AppException e )
+            {
+                // Another node may have created the sequence in the meantime
+                if ( nAttempt >= MAX_ATTEMPTS )
+                {
+                    throw e;
+                }
+
+                AppLogService.debug( e.getMessage( ), e );
+            }
+        }
+    }
+
+    /**
+     * Remove the sequence of an entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     */
+    public static void remove( int nIdEntry )
+    {
+        _dao.delete( nIdEntry, getPlugin( ) );
+    }
+
+    /**
+     * Allocate a block of values of the sequence of an entry in the transaction of the caller, or in its own transaction if the caller is not in a
+     * transaction of the plugin. The sequence stays locked until the transaction of the caller ends, so that concurrent allocations wait for it: if
+     * the caller rolls back, the values are released and allocated again by the next allocation, which keeps the values saved in the responses
+     * gap-free. The creation of a sequence is serialized by a lock on the row of its entry, so that it never fails on a sequence created by a
+     * concurrent transaction. A failed allocation rolls back the transaction of the caller, and is not retried.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @param nCount
+     *            the number of values to allocate
+     * @return the first value of the block
+     */
+    public static int allocateInTransaction( int nIdEntry, int nCount )
+    {
+        TransactionManager.beginTransaction( getPlugin( ) );
+
+        try
+        {
+            // The update locks the sequence until the end of the transaction
+            if ( _dao.increment( nIdEntry, nCount, getPlugin( ) ) == 0 )
+            {
+                // The sequence is created by a single transaction at a time : the others wait for the lock, then increment it
+                _dao.lockEntry( nIdEntry, getPlugin( ) );
+
+                if ( _dao.increment( nIdEntry, nCount, getPlugin( ) ) == 0 )
+                {
+                    _dao.insert( nIdEntry, ResponseHome.findMaxNumber( nIdEntry ) + nCount, getPlugin( ) );
+                }
+            }
+
+            int nNextValue = _dao.load( nIdEntry, getPlugin( ) );
+            TransactionManager.commitTransaction( getPlugin( ) );
+
+            return nNextValue - nCount;
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Get the generic attributes plugin
+     * 
+     * @return The generic attributes plugin
+     */
+    private static Plugin getPlugin( )
+    {
+        if ( _plugin == null )
+        {
+            _plugin = GenericAttributesUtils.getPlugin( );
+        }
+
+        return _plugin;
+    }
+}
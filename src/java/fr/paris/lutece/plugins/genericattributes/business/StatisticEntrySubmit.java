@@ -33,6 +33,8 @@
  */
 package fr.paris.lutece.plugins.genericattributes.business;
 
+import java.sql.Date;
+
 /**
  *
  * StatisticEntrySubmit
@@ -42,6 +44,8 @@ public class StatisticEntrySubmit
 {
     private int _nNumberResponse;
     private String _strFieldLibelle;
+    private int _nIdField;
+    private Date _dateBucket;
 
     /**
      * return the number of response
@@ -83,4 +87,46 @@ public class StatisticEntrySubmit
     {
         _strFieldLibelle = fieldLibelle;
     }
+
+    /**
+     * return the id of the field
+     * 
+     * @return the id of the field
+     */
+    public int getIdField( )
+    {
+        return _nIdField;
+    }
+
+    /**
+     * set the id of the field
+     * 
+     * @param nIdField
+     *            the id of the field
+     */
+    public void setIdField( int nIdField )
+    {
+        _nIdField = nIdField;
+    }
+
+    /**
+     * return the first day of the period of the statistic, for the statistics grouped by day, week or month
+     * 
+     * @return the first day of the period, null for the statistics which are not grouped by period
+     */
+    public Date getDateBucket( )
+    {
+        return _dateBucket;
+    }
+
+    /**
+     * set the first day of the period of the statistic
+     * 
+     * @param dateBucket
+     *            the first day of the period
+     */
+    public void setDateBucket( Date dateBucket )
+    {
+        _dateBucket = dateBucket;
+    }
 }
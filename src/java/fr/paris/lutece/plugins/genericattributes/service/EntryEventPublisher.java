@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.plugins.genericattributes.util.TransactionUtils;
+import fr.paris.lutece.portal.business.event.ResourceEvent;
+import fr.paris.lutece.portal.service.event.ResourceEventManager;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Publishes the resource events of the entries and fields. The events are published once the transaction of the caller which made the changes
+ * is committed, and never if it is rolled back : after the commit of a Spring transaction, or, in a transaction opened with the
+ * TransactionManager, when the caller calls {@link TransactionUtils#runQueuedTasks()} once it has committed. Outside a transaction, they are
+ * published at once.
+ * <p>
+ * By default, the events are fired in the caller thread. If <code>genericattributes.events.async.enabled</code> is set, they are queued and fired
+ * by a background thread, so that the listeners do not slow down the caller. The updates of the same resource published within
+ * <code>genericattributes.events.async.coalesceDelay</code> milliseconds are merged into a single event, unless another event of that resource
+ * was published in between. The queue is bounded : when it stays full for more than <code>genericattributes.events.async.offerTimeout</code>
+ * milliseconds, the event is fired in the caller thread if no event of the same resource is still waiting, otherwise the caller waits for room in
+ * the queue. The events of a resource are thus always fired in the order they were published.
+ * </p>
+ * <p>
+ * The background thread is stopped by {@link #shutdown()} when the plugin context is closed : the events still queued are fired before it
+ * returns, and the events published afterwards are fired in the caller thread.
+ * </p>
+ */
+public final class EntryEventPublisher
+{
+    private static final String PROPERTY_ASYNC_ENABLED = "genericattributes.events.async.enabled";
+    private static final String PROPERTY_COALESCE_DELAY = "genericattributes.events.async.coalesceDelay";
+    private static final String PROPERTY_QUEUE_SIZE = "genericattributes.events.async.queueSize";
+    private static final String PROPERTY_OFFER_TIMEOUT = "genericattributes.events.async.offerTimeout";
+    private static final int DEFAULT_COALESCE_DELAY = 200;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_OFFER_TIMEOUT = 100;
+    private static final long SHUTDOWN_TIMEOUT = 10;
+    private static final String THREAD_NAME = "genericattributes-event-publisher";
+    private static final String KEY_SEPARATOR = "_";
+
+    // Queued by the shutdown to stop the background thread once the events queued before it are fired
+    private static final PendingEvent STOP = new PendingEvent( null, null );
+
+    private static final EntryEventPublisher INSTANCE = new EntryEventPublisher( );
+
+    private final boolean _bAsync;
+    private final long _lCoalesceDelay;
+    private final long _lOfferTimeout;
+    private final BlockingQueue<PendingEvent> _queue;
+    private final BiConsumer<EventType, ResourceEvent> _firer;
+    private final Thread _thread;
+    private volatile boolean _bShutdown;
+
+    // Number of events of each resource queued or being fired by the background thread
+    private final Map<String, Integer> _mapPendingCount = new ConcurrentHashMap<>( );
+    private final AtomicLong _lPublishedCount = new AtomicLong( );
+    private final AtomicLong _lCoalescedCount = new AtomicLong( );
+    private final AtomicLong _lCallerRunsCount = new AtomicLong( );
+    private final AtomicLong _lFailureCount = new AtomicLong( );
+
+    /**
+     * The kinds of events
+     */
+    enum EventType
+    {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+
+    /**
+     * Private constructor
+     */
+    private EntryEventPublisher( )
+    {
+        this( AppPropertiesService.getPropertyBoolean( PROPERTY_ASYNC_ENABLED, false ),
+                AppPropertiesService.getPropertyInt( PROPERTY_COALESCE_DELAY, DEFAULT_COALESCE_DELAY ),
+                AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_SIZE, DEFAULT_QUEUE_SIZE ),
+                AppPropertiesService.getPropertyInt( PROPERTY_OFFER_TIMEOUT, DEFAULT_OFFER_TIMEOUT ), EntryEventPublisher::fireToListeners );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param bAsync
+     *            true to fire the events in a background thread
+     * @param lCoalesceDelay
+     *            the delay in milliseconds during which the updates of the same resource are merged
+     * @param nQueueSize
+     *            the maximum number of queued events
+     * @param lOfferTimeout
+     *            the delay in milliseconds to wait for room in a full queue before the event is fired in the caller thread
+     * @param firer
+     *            fires an event to the listeners
+     */
+    EntryEventPublisher( boolean bAsync, long lCoalesceDelay, int nQueueSize, long lOfferTimeout, BiConsumer<EventType, ResourceEvent> firer )
+    {
+        _bAsync = bAsync;
+        _lCoalesceDelay = lCoalesceDelay;
+        _lOfferTimeout = lOfferTimeout;
+        _queue = new LinkedBlockingQueue<>( nQueueSize );
+        _firer = firer;
+
+        if ( _bAsync )
+        {
+            _thread = new Thread( this::processQueue, THREAD_NAME );
+            _thread.setDaemon( true );
+            _thread.start( );
+        }
+        else
+        {
+            _thread = null;
+        }
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return the instance of the service
+     */
+    public static EntryEventPublisher getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Stop the background thread, once the events already queued are fired. The events published afterwards are fired in the caller thread.
+     */
+    public void shutdown( )
+    {
+        if ( !_bAsync || _bShutdown )
+        {
+            return;
+        }
+
+        _bShutdown = true;
+
+        try
+        {
+            if ( !_queue.offer( STOP, SHUTDOWN_TIMEOUT, TimeUnit.SECONDS ) )
+            {
+                _thread.interrupt( );
+            }
+
+            _thread.join( TimeUnit.SECONDS.toMillis( SHUTDOWN_TIMEOUT ) );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+
+        if ( _thread.isAlive( ) )
+        {
+            AppLogService.error( "The generic attributes event publisher is still running after " + SHUTDOWN_TIMEOUT + " seconds" );
+            _thread.interrupt( );
+        }
+
+        fireRemainingEvents( );
+    }
+
+    /**
+     * Fire in the caller thread the events left in the queue once the background thread is stopped
+     */
+    private void fireRemainingEvents( )
+    {
+        List<PendingEvent> listRemaining = new ArrayList<>( );
+        _queue.drainTo( listRemaining );
+
+        for ( PendingEvent pendingEvent : listRemaining )
+        {
+            if ( pendingEvent != STOP )
+            {
+                fire( pendingEvent );
+                release( pendingEvent.getKey( ) );
+            }
+        }
+    }
+
+    /**
+     * Publish the creation of a resource
+     * 
+     * @param event
+     *            the event
+     */
+    public void publishAdded( ResourceEvent event )
+    {
+        publishAfterCommit( new PendingEvent( EventType.ADDED, event ) );
+    }
+
+    /**
+     * Publish the update of a resource
+     * 
+     * @param event
+     *            the event
+     */
+    public void publishUpdated( ResourceEvent event )
+    {
+        publishAfterCommit( new PendingEvent( EventType.UPDATED, event ) );
+    }
+
+    /**
+     * Publish the removal of a resource
+     * 
+     * @param event
+     *            the event
+     */
+    public void publishDeleted( ResourceEvent event )
+    {
+        publishAfterCommit( new PendingEvent( EventType.DELETED, event ) );
+    }
+
+    /**
+     * Check if the events are published asynchronously
+     * 
+     * @return true if the events are published asynchronously
+     */
+    public boolean isAsync( )
+    {
+        return _bAsync && !_bShutdown;
+    }
+
+    /**
+     * Get the number of events waiting in the queue
+     * 
+     * @return the number of events waiting in the queue
+     */
+    public int getQueueSize( )
+    {
+        return _queue.size( );
+    }
+
+    /**
+     * Get the number of events fired
+     * 
+     * @return the number of events fired
+     */
+    public long getPublishedCount( )
+    {
+        return _lPublishedCount.get( );
+    }
+
+    /**
+     * Get the number of updates merged into another update of the same resource
+     * 
+     * @return the number of merged updates
+     */
+    public long getCoalescedCount( )
+    {
+        return _lCoalescedCount.get( );
+    }
+
+    /**
+     * Get the number of events fired in the caller thread because the queue was full
+     * 
+     * @return the number of events fired in the caller thread because the queue was full
+     */
+    public long getCallerRunsCount( )
+    {
+        return _lCallerRunsCount.get( );
+    }
+
+    /**
+     * Get the number of events whose listeners failed
+     * 
+     * @return the number of events whose listeners failed
+     */
+    public long getFailureCount( )
+    {
+        return _lFailureCount.get( );
+    }
+
+    /**
+     * Publish an event once the transaction of the caller is committed
+     * 
+     * @param pendingEvent
+     *            the event
+     */
+    private void publishAfterCommit( PendingEvent pendingEvent )
+    {
+        TransactionUtils.runAfterCommit( GenericAttributesUtils.getPlugin( ), ( ) -> publish( pendingEvent ) );
+    }
+
+    /**
+     * Publish an event, in the caller thread or through the queue
+     * 
+     * @param pendingEvent
+     *            the event
+     */
+    private void publish( PendingEvent pendingEvent )
+    {
+        if ( !isAsync( ) )
+        {
+            fire( pendingEvent );
+
+            return;
+        }
+
+        String strKey = pendingEvent.getKey( );
+        _mapPendingCount.merge( strKey, 1, Integer::sum );
+
+        try
+        {
+            while ( !_queue.offer( pendingEvent, _lOfferTimeout, TimeUnit.MILLISECONDS ) )
+            {
+                if ( _bShutdown || _mapPendingCount.getOrDefault( strKey, 0 ) <= 1 )
+                {
+                    // Back pressure : the listeners do not keep up, the caller pays for its own event
+                    release( strKey );
+                    _lCallerRunsCount.incrementAndGet( );
+                    AppLogService.debug( "The queue of the generic attributes events is full, the event is fired in the caller thread" );
+                    fire( pendingEvent );
+
+                    return;
+                }
+
+                // An earlier event of the same resource is still waiting : the caller waits for room to keep the order of the events
+            }
+
+            if ( _bShutdown && !_thread.isAlive( ) )
+            {
+                // Queued while the shutdown was completing : no thread is left to fire it
+                fireRemainingEvents( );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            release( strKey );
+            fire( pendingEvent );
+        }
+    }
+
+    /**
+     * Release an event of a resource queued or being fired by the background thread
+     * 
+     * @param strKey
+     *            the key of the resource
+     */
+    private void release( String strKey )
+    {
+        _mapPendingCount.computeIfPresent( strKey, ( k, nCount ) -> ( nCount > 1 ) ? nCount - 1 : null );
+    }
+
+    /**
+     * Fire the queued events, batch after batch, until the shutdown. A batch gathers the events queued during the coalescing delay following its
+     * first event
+     */
+    private void processQueue( )
+    {
+        boolean bStop = false;
+
+        while ( !bStop && !Thread.currentThread( ).isInterrupted( ) )
+        {
+            Batch batch = new Batch( );
+            List<String> listKey = new ArrayList<>( );
+
+            try
+            {
+                PendingEvent pendingEvent = _queue.take( );
+
+                if ( pendingEvent == STOP )
+                {
+                    return;
+                }
+
+                batch.add( pendingEvent );
+                listKey.add( pendingEvent.getKey( ) );
+
+                long lDeadline = System.currentTimeMillis( ) + _lCoalesceDelay;
+                long lRemaining = _lCoalesceDelay;
+
+                while ( lRemaining > 0 )
+                {
+                    pendingEvent = _queue.poll( lRemaining, TimeUnit.MILLISECONDS );
+
+                    if ( pendingEvent == null )
+                    {
+                        break;
+                    }
+
+                    if ( pendingEvent == STOP )
+                    {
+                        bStop = true;
+
+                        break;
+                    }
+
+                    batch.add( pendingEvent );
+                    listKey.add( pendingEvent.getKey( ) );
+                    lRemaining = lDeadline - System.currentTimeMillis( );
+                }
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+            finally
+            {
+                // The events already taken from the queue are fired even if the thread is interrupted
+                batch.fire( );
+                listKey.forEach( this::release );
+            }
+        }
+    }
+
+    /**
+     * Fire an event to the listeners
+     * 
+     * @param pendingEvent
+     *            the event
+     */
+    private void fire( PendingEvent pendingEvent )
+    {
+        try
+        {
+            _firer.accept( pendingEvent._type, pendingEvent._event );
+            _lPublishedCount.incrementAndGet( );
+        }
+        catch( RuntimeException e )
+        {
+            if ( !_bAsync )
+            {
+                throw e;
+            }
+
+            // No caller to report to : the failure of a listener must not stop the other events
+            _lFailureCount.incrementAndGet( );
+            AppLogService.error( "Error while firing a generic attributes event : " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Fire an event to the listeners registered in the ResourceEventManager
+     * 
+     * @param type
+     *            the kind of event
+     * @param event
+     *            the event
+     */
+    private static void fireToListeners( EventType type, ResourceEvent event )
+    {
+        switch( type )
+        {
+            case ADDED:
+                ResourceEventManager.fireAddedResource( event );
+                break;
+            case UPDATED:
+                ResourceEventManager.fireUpdatedResource( event );
+                break;
+            default:
+                ResourceEventManager.fireDeletedResource( event );
+                break;
+        }
+    }
+
+    /**
+     * The events fired together by the background thread
+     */
+    private final class Batch
+    {
+        private final List<PendingEvent> _listEvent = new ArrayList<>( );
+        private final Map<String, Integer> _mapLastIndex = new HashMap<>( );
+
+        /**
+         * Add an event to the batch. An update replaces the previous event of the same resource in the batch if that event is an update too : the
+         * events of a resource are never reordered
+         * 
+         * @param pendingEvent
+         *            the event
+         */
+        void add( PendingEvent pendingEvent )
+        {
+            String strKey = pendingEvent.getKey( );
+            Integer nLastIndex = _mapLastIndex.get( strKey );
+
+            if ( pendingEvent._type == EventType.UPDATED && nLastIndex != null && _listEvent.get( nLastIndex )._type == EventType.UPDATED )
+            {
+                _listEvent.set( nLastIndex, pendingEvent );
+                _lCoalescedCount.incrementAndGet( );
+
+                return;
+            }
+
+            _mapLastIndex.put( strKey, _listEvent.size( ) );
+            _listEvent.add( pendingEvent );
+        }
+
+        /**
+         * Fire the events of the batch
+         */
+        void fire( )
+        {
+            _listEvent.forEach( EntryEventPublisher.this::fire );
+        }
+    }
+
+    /**
+     * An event waiting to be fired
+     */
+    private static final class PendingEvent
+    {
+        private final EventType _type;
+        private final ResourceEvent _event;
+
+        /**
+         * Constructor
+         * 
+         * @param type
+         *            the kind of event
+         * @param event
+         *            the event
+         */
+        PendingEvent( EventType type, ResourceEvent event )
+        {
+            _type = type;
+            _event = event;
+        }
+
+        /**
+         * Get the key of the resource of the event
+         * 
+         * @return the key of the resource
+         */
+        String getKey( )
+        {
+            return _event.getTypeResource( ) + KEY_SEPARATOR + _event.getIdResource( );
+        }
+    }
+}
@@ -0,0 +1,660 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.genericattributes.business.CacheVersionHome;
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.genericattributes.business.FormDefinition;
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.plugins.genericattributes.util.TransactionUtils;
+import fr.paris.lutece.portal.business.event.ResourceEvent;
+import fr.paris.lutece.portal.service.event.EventRessourceListener;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Cache of the form definitions, keyed by resource. The cached instances are never handed out : readers always get a copy, so they can modify what
+ * they get without altering the cache. The readers of a whole form definition get a deep copy of it, the readers of an entry or a field get a copy of
+ * this entry or field only. The cache is bounded and evicts the least recently used form definitions.
+ * <p>
+ * Each form definition has a version stored in the database (see {@link CacheVersionHome}), incremented on each modification by any node of the
+ * cluster. A cached form definition remembers the version it was loaded at and is discarded on read once the stored version has changed, so that a
+ * node never serves a form definition modified on another node for more than
+ * <code>genericattributes.formDefinitionCache.versionCheckDelay</code> milliseconds : the stored version is checked at most once per delay, or on
+ * every read if the delay is 0.
+ * </p>
+ */
+public final class FormDefinitionCacheService implements EventRessourceListener
+{
+    private static final String PROPERTY_CACHE_ENABLED = "genericattributes.formDefinitionCache.enabled";
+    private static final String PROPERTY_CACHE_MAX_SIZE = "genericattributes.formDefinitionCache.maxSize";
+    private static final String PROPERTY_VERSION_CHECK_DELAY = "genericattributes.formDefinitionCache.versionCheckDelay";
+    private static final int DEFAULT_CACHE_MAX_SIZE = 200;
+    private static final int DEFAULT_VERSION_CHECK_DELAY = 1000;
+    private static final String NAME = "genericattributes.formDefinitionCacheService";
+    private static final String KEY_SEPARATOR = "_";
+
+    private static final FormDefinitionCacheService INSTANCE = new FormDefinitionCacheService( );
+
+    private final boolean _bEnabled;
+    private final int _nMaxSize;
+    private final long _lVersionCheckDelay;
+    private final Map<String, CachedFormDefinition> _mapFormDefinition;
+    private final Map<Integer, String> _mapKeyByIdEntry = new HashMap<>( );
+    private final Map<Integer, String> _mapKeyByIdField = new HashMap<>( );
+    private final AtomicLong _lHitCount = new AtomicLong( );
+    private final AtomicLong _lMissCount = new AtomicLong( );
+    private final AtomicLong _lEvictionCount = new AtomicLong( );
+    private long _lGeneration;
+
+    /**
+     * Private constructor
+     */
+    private FormDefinitionCacheService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_CACHE_ENABLED, true );
+        _nMaxSize = AppPropertiesService.getPropertyInt( PROPERTY_CACHE_MAX_SIZE, DEFAULT_CACHE_MAX_SIZE );
+        _lVersionCheckDelay = AppPropertiesService.getPropertyInt( PROPERTY_VERSION_CHECK_DELAY, DEFAULT_VERSION_CHECK_DELAY );
+        _mapFormDefinition = new LinkedHashMap<String, CachedFormDefinition>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CachedFormDefinition> eldest )
+            {
+                if ( size( ) > _nMaxSize )
+                {
+                    unindex( eldest.getValue( ).getFormDefinition( ) );
+                    _lEvictionCount.incrementAndGet( );
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return the instance of the service
+     */
+    public static FormDefinitionCacheService getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Check if the cache is enabled
+     * 
+     * @return true if the cache is enabled
+     */
+    public boolean isCacheEnable( )
+    {
+        return _bEnabled;
+    }
+
+    /**
+     * Get the generation of the cache. The generation changes each time a form definition is invalidated. It must be read before loading a form
+     * definition and given back to {@link #putInCache(FormDefinition, long, int)}, so that a form definition modified during its loading is not
+     * cached.
+     * 
+     * @return the current generation
+     */
+    public synchronized long getGeneration( )
+    {
+        return _lGeneration;
+    }
+
+    /**
+     * Get the version of the form definition of a resource shared by the nodes of the cluster. It must be read before loading a form definition and
+     * given back to {@link #putInCache(FormDefinition, long, int)}, so that a form definition modified by another node during its loading is
+     * discarded on the next read.
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @return the version, or 0 if the cache is disabled
+     */
+    public int getVersion( int nIdResource, String strResourceType )
+    {
+        if ( !_bEnabled )
+        {
+            return 0;
+        }
+
+        return CacheVersionHome.findVersion( nIdResource, strResourceType );
+    }
+
+    /**
+     * Get a copy of the cached form definition of a resource
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @return a copy of the form definition, or null if it is not in the cache
+     */
+    public FormDefinition getFromCache( int nIdResource, String strResourceType )
+    {
+        FormDefinition formDefinition = getCached( getKey( nIdResource, strResourceType ), true );
+
+        // The cached instance is never modified, so it can be copied outside of the lock
+        return ( formDefinition == null ) ? null : formDefinition.copy( );
+    }
+
+    /**
+     * Get a copy of a cached entry
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     * @return a copy of the entry, or null if no cached form definition contains the entry
+     * @see FormDefinition#copyEntry(int)
+     */
+    public Entry getEntryFromCache( int nIdEntry )
+    {
+        String strKey;
+
+        synchronized( this )
+        {
+            strKey = _mapKeyByIdEntry.get( nIdEntry );
+        }
+
+        FormDefinition formDefinition = ( strKey == null ) ? null : getCached( strKey, false );
+
+        return ( formDefinition == null ) ? null : formDefinition.copyEntry( nIdEntry );
+    }
+
+    /**
+     * Get a copy of a cached field
+     * 
+     * @param nIdField
+     *            the id of the field
+     * @return a copy of the field, or null if no cached form definition contains the field
+     * @see FormDefinition#copyField(int)
+     */
+    public Field getFieldFromCache( int nIdField )
+    {
+        String strKey;
+
+        synchronized( this )
+        {
+            strKey = _mapKeyByIdField.get( nIdField );
+        }
+
+        FormDefinition formDefinition = ( strKey == null ) ? null : getCached( strKey, false );
+
+        return ( formDefinition == null ) ? null : formDefinition.copyField( nIdField );
+    }
+
+    /**
+     * Put a form definition in the cache. A copy of the form definition is cached, so the given instance can be modified afterwards.
+     * 
+     * @param formDefinition
+     *            the form definition
+     * @param lGeneration
+     *            the generation of the cache read before loading the form definition
+     * @param nVersion
+     *            the version of the form definition read before loading it
+     */
+    public void putInCache( FormDefinition formDefinition, long lGeneration, int nVersion )
+    {
+        if ( !_bEnabled )
+        {
+            return;
+        }
+
+        FormDefinition formDefinitionCopy = formDefinition.copy( );
+        String strKey = getKey( formDefinition.getIdResource( ), formDefinition.getResourceType( ) );
+
+        synchronized( this )
+        {
+            if ( lGeneration != _lGeneration )
+            {
+                return;
+            }
+
+            remove( strKey );
+
+            for ( Entry entry : formDefinitionCopy.getEntries( ) )
+            {
+                _mapKeyByIdEntry.put( entry.getIdEntry( ), strKey );
+
+                for ( Field field : entry.getFields( ) )
+                {
+                    _mapKeyByIdField.put( field.getIdField( ), strKey );
+                }
+            }
+
+            _mapFormDefinition.put( strKey, new CachedFormDefinition( formDefinitionCopy, nVersion ) );
+        }
+    }
+
+    /**
+     * Invalidate the form definition of a resource on all the nodes
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     */
+    public void invalidate( int nIdResource, String strResourceType )
+    {
+        CacheVersionHome.increment( nIdResource, strResourceType );
+
+        synchronized( this )
+        {
+            _lGeneration++;
+            remove( getKey( nIdResource, strResourceType ) );
+        }
+    }
+
+    /**
+     * Invalidate the form definition which contains an entry on all the nodes. The entry must still exist in the database.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     */
+    public void invalidateByIdEntry( int nIdEntry )
+    {
+        CacheVersionHome.incrementByIdEntry( nIdEntry );
+        invalidateLocallyByIdEntry( nIdEntry );
+    }
+
+    /**
+     * Invalidate the form definition which contains an entry on all the nodes, once the current transaction is committed. The version shared by the
+     * nodes is then incremented by a short statement of its own, instead of being locked until the end of the transaction, so that concurrent
+     * inserts in the same resource are not serialized on it. In a transaction opened with the TransactionManager, which has no completion callback,
+     * the form definition is invalidated at once, and again once the transaction is committed.
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     */
+    public void invalidateByIdEntryAfterCommit( int nIdEntry )
+    {
+        if ( !TransactionUtils.runAfterCommit( GenericAttributesUtils.getPlugin( ), ( ) -> invalidateByIdEntry( nIdEntry ) ) )
+        {
+            invalidateByIdEntry( nIdEntry );
+        }
+    }
+
+    /**
+     * Invalidate the form definition which contains a field on all the nodes. The field must still exist in the database.
+     * 
+     * @param nIdField
+     *            the id of the field
+     */
+    public void invalidateByIdField( int nIdField )
+    {
+        CacheVersionHome.incrementByIdField( nIdField );
+
+        synchronized( this )
+        {
+            _lGeneration++;
+            remove( _mapKeyByIdField.get( nIdField ) );
+        }
+    }
+
+    /**
+     * Remove all the form definitions from the cache on all the nodes
+     */
+    public void resetCache( )
+    {
+        CacheVersionHome.incrementAll( );
+
+        synchronized( this )
+        {
+            _lGeneration++;
+            _mapFormDefinition.clear( );
+            _mapKeyByIdEntry.clear( );
+            _mapKeyByIdField.clear( );
+        }
+    }
+
+    /**
+     * Get the minimal delay between two checks of the version of a cached form definition
+     * 
+     * @return the delay in milliseconds
+     */
+    public long getVersionCheckDelay( )
+    {
+        return _lVersionCheckDelay;
+    }
+
+    /**
+     * Get the number of form definitions in the cache
+     * 
+     * @return the number of form definitions in the cache
+     */
+    public synchronized int getCacheSize( )
+    {
+        return _mapFormDefinition.size( );
+    }
+
+    /**
+     * Get the number of reads which found their form definition in the cache
+     * 
+     * @return the number of hits
+     */
+    public long getHitCount( )
+    {
+        return _lHitCount.get( );
+    }
+
+    /**
+     * Get the number of reads by resource which did not find their form definition in the cache
+     * 
+     * @return the number of misses
+     */
+    public long getMissCount( )
+    {
+        return _lMissCount.get( );
+    }
+
+    /**
+     * Get the number of form definitions evicted because the cache was full
+     * 
+     * @return the number of evictions
+     */
+    public long getEvictionCount( )
+    {
+        return _lEvictionCount.get( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addedResource( ResourceEvent event )
+    {
+        invalidate( event );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deletedResource( ResourceEvent event )
+    {
+        invalidate( event );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updatedResource( ResourceEvent event )
+    {
+        invalidate( event );
+    }
+
+    /**
+     * Invalidate the form definition of the resource of an event, for example a form removed by its plugin. Only the form definition of the resource
+     * of the type of the event is invalidated, and only in the local cache. The events of the entries need no invalidation : the modifications of
+     * the entries already invalidate the form definitions on all the nodes.
+     * 
+     * @param event
+     *            the event
+     */
+    private void invalidate( ResourceEvent event )
+    {
+        int nIdResource = GenericAttributesUtils.convertStringToInt( event.getIdResource( ) );
+
+        if ( ( nIdResource == GenericAttributesUtils.CONSTANT_ID_NULL ) || ( event.getTypeResource( ) == null ) )
+        {
+            return;
+        }
+
+        String strKey = getKey( nIdResource, event.getTypeResource( ) );
+
+        synchronized( this )
+        {
+            _lGeneration++;
+            remove( strKey );
+        }
+    }
+
+    /**
+     * Invalidate the form definition which contains an entry on this node only
+     * 
+     * @param nIdEntry
+     *            the id of the entry
+     */
+    private synchronized void invalidateLocallyByIdEntry( int nIdEntry )
+    {
+        _lGeneration++;
+        remove( _mapKeyByIdEntry.get( nIdEntry ) );
+    }
+
+    /**
+     * Get a cached form definition, which must not be modified
+     * 
+     * @param strKey
+     *            the key of the form definition
+     * @param bCountMiss
+     *            true if a miss must be counted
+     * @return the cached form definition, or null if it is not in the cache
+     */
+    private FormDefinition getCached( String strKey, boolean bCountMiss )
+    {
+        CachedFormDefinition cachedFormDefinition;
+
+        synchronized( this )
+        {
+            cachedFormDefinition = _mapFormDefinition.get( strKey );
+        }
+
+        if ( cachedFormDefinition != null && !isUpToDate( cachedFormDefinition ) )
+        {
+            synchronized( this )
+            {
+                if ( _mapFormDefinition.get( strKey ) == cachedFormDefinition )
+                {
+                    remove( strKey );
+                }
+            }
+
+            cachedFormDefinition = null;
+        }
+
+        if ( cachedFormDefinition == null )
+        {
+            if ( bCountMiss )
+            {
+                _lMissCount.incrementAndGet( );
+            }
+
+            return null;
+        }
+
+        _lHitCount.incrementAndGet( );
+
+        return cachedFormDefinition.getFormDefinition( );
+    }
+
+    /**
+     * Check that a cached form definition has not been modified by any node since it was loaded
+     * 
+     * @param cachedFormDefinition
+     *            the cached form definition
+     * @return true if the cached form definition is up to date
+     */
+    private boolean isUpToDate( CachedFormDefinition cachedFormDefinition )
+    {
+        long lNow = System.currentTimeMillis( );
+
+        if ( lNow - cachedFormDefinition.getLastCheck( ) < _lVersionCheckDelay )
+        {
+            return true;
+        }
+
+        FormDefinition formDefinition = cachedFormDefinition.getFormDefinition( );
+        int nVersion = CacheVersionHome.findVersion( formDefinition.getIdResource( ), formDefinition.getResourceType( ) );
+
+        if ( nVersion != cachedFormDefinition.getVersion( ) )
+        {
+            return false;
+        }
+
+        cachedFormDefinition.setLastCheck( lNow );
+
+        return true;
+    }
+
+    /**
+     * Remove a form definition from the cache
+     * 
+     * @param strKey
+     *            the key of the form definition, may be null
+     */
+    private void remove( String strKey )
+    {
+        if ( strKey != null )
+        {
+            CachedFormDefinition cachedFormDefinition = _mapFormDefinition.remove( strKey );
+
+            if ( cachedFormDefinition != null )
+            {
+                unindex( cachedFormDefinition.getFormDefinition( ) );
+            }
+        }
+    }
+
+    /**
+     * Remove the entries and fields of a form definition from the indexes
+     * 
+     * @param formDefinition
+     *            the form definition
+     */
+    private void unindex( FormDefinition formDefinition )
+    {
+        for ( Entry entry : formDefinition.getEntries( ) )
+        {
+            _mapKeyByIdEntry.remove( entry.getIdEntry( ) );
+
+            for ( Field field : entry.getFields( ) )
+            {
+                _mapKeyByIdField.remove( field.getIdField( ) );
+            }
+        }
+    }
+
+    /**
+     * Build the key of the form definition of a resource
+     * 
+     * @param nIdResource
+     *            the id of the resource
+     * @param strResourceType
+     *            the resource type
+     * @return the key
+     */
+    private static String getKey( int nIdResource, String strResourceType )
+    {
+        return nIdResource + KEY_SEPARATOR + strResourceType;
+    }
+
+    /**
+     * A cached form definition with the version it was loaded at
+     */
+    private static final class CachedFormDefinition
+    {
+        private final FormDefinition _formDefinition;
+        private final int _nVersion;
+        private volatile long _lLastCheck;
+
+        /**
+         * Constructor
+         * 
+         * @param formDefinition
+         *            the form definition
+         * @param nVersion
+         *            the version of the form definition
+         */
+        CachedFormDefinition( FormDefinition formDefinition, int nVersion )
+        {
+            _formDefinition = formDefinition;
+            _nVersion = nVersion;
+            _lLastCheck = System.currentTimeMillis( );
+        }
+
+        /**
+         * @return the form definition
+         */
+        FormDefinition getFormDefinition( )
+        {
+            return _formDefinition;
+        }
+
+        /**
+         * @return the version of the form definition
+         */
+        int getVersion( )
+        {
+            return _nVersion;
+        }
+
+        /**
+         * @return the time of the last check of the version
+         */
+        long getLastCheck( )
+        {
+            return _lLastCheck;
+        }
+
+        /**
+         * @param lLastCheck
+         *            the time of the last check of the version
+         */
+        void setLastCheck( long lLastCheck )
+        {
+            _lLastCheck = lLastCheck;
+        }
+    }
+}
@@ -33,6 +33,7 @@
  */
 package fr.paris.lutece.plugins.genericattributes.service;
 
+import fr.paris.lutece.portal.service.event.ResourceEventManager;
 import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
 import fr.paris.lutece.portal.service.image.ImageResourceManager;
 import fr.paris.lutece.portal.service.plugin.PluginDefaultImplementation;
@@ -59,8 +60,12 @@ public class GenericAttributesPlugin extends PluginDefaultImplementation
         if ( AppPropertiesService.getPropertyBoolean( PROPERTY_INSECURE_IMAGES_ENABLE, false ) )
         {
             ImageResourceManager.registerProvider( new ResponseImageResourceProvider( ) );
+            ImageResourceManager.registerProvider( new ResponseImageResourceProvider( ResponseImageResourceProvider.VARIANT_THUMB ) );
+            ImageResourceManager.registerProvider( new ResponseImageResourceProvider( ResponseImageResourceProvider.VARIANT_MEDIUM ) );
         }
         
         FileImagePublicService.init( );
+
+        ResourceEventManager.register( FormDefinitionCacheService.getInstance( ) );
     }
 }
@@ -0,0 +1,553 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Bounded cache, on disk, of the variants of the images of the responses. When their size exceeds <code>genericattributes.image.cache.maxBytes</code>,
+ * the least recently used variants are removed.
+ * <p>
+ * The variants are stored in a directory of their own, created at startup in the directory <code>genericattributes.image.cache.dir</code>, by default
+ * a directory of the temporary directory, and locked by a marker file while the application runs. The directories of the previous runs, whose marker
+ * file is no longer locked, are removed at startup; no other file is ever removed, and several applications can share the same directory.
+ * </p>
+ * <p>
+ * A variant is stored with the version of the file it was produced from, and is only returned for the same version: a file modified without
+ * {@link #remove(int)}, e.g. by the core or by another node of a cluster, is produced again once its version changes. As the version is made of the
+ * metadata of the file, a variant also expires after <code>genericattributes.image.cache.timeToLive</code> seconds.
+ * </p>
+ */
+public final class ImageDerivativeCache
+{
+    private static final String PROPERTY_DIRECTORY = "genericattributes.image.cache.dir";
+    private static final String PROPERTY_MAX_BYTES = "genericattributes.image.cache.maxBytes";
+    private static final String PROPERTY_TIME_TO_LIVE = "genericattributes.image.cache.timeToLive";
+    private static final String DEFAULT_DIRECTORY = "genericattributes-images";
+    private static final long DEFAULT_MAX_BYTES = 104857600L;
+    private static final int DEFAULT_TIME_TO_LIVE = 600;
+    private static final String PROPERTY_TMP_DIR = "java.io.tmpdir";
+    private static final String RUN_DIRECTORY_PREFIX = "run-";
+    private static final String MARKER_FILE = ".lock";
+    private static final String KEY_SEPARATOR = "_";
+    private static final String EXTENSION_SEPARATOR = ".";
+    private static final String TEMPORARY_PREFIX = "tmp-";
+
+    private static final ImageDerivativeCache INSTANCE = new ImageDerivativeCache( );
+
+    private final Path _directory;
+    private final long _lMaxBytes;
+    private final long _lTimeToLive;
+    private final Map<String, Variant> _mapEntries = new LinkedHashMap<>( 16, 0.75f, true );
+    private final AtomicLong _lTotalBytes = new AtomicLong( );
+    private final AtomicLong _lHitCount = new AtomicLong( );
+    private final AtomicLong _lMissCount = new AtomicLong( );
+    private FileChannel _channelMarker;
+    private long _lGeneration;
+    private boolean _bShutdown;
+
+    /**
+     * Private constructor
+     */
+    private ImageDerivativeCache( )
+    {
+        this( getBaseDirectory( ), AppPropertiesService.getPropertyLong( PROPERTY_MAX_BYTES, DEFAULT_MAX_BYTES ),
+                AppPropertiesService.getPropertyInt( PROPERTY_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE ) * 1000L );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param baseDirectory
+     *            the directory in which the directory of the variants is created
+     * @param lMaxBytes
+     *            the maximum size of the variants
+     * @param lTimeToLive
+     *            the delay in milliseconds after which a variant expires
+     */
+    ImageDerivativeCache( Path baseDirectory, long lMaxBytes, long lTimeToLive )
+    {
+        _lMaxBytes = lMaxBytes;
+        _lTimeToLive = lTimeToLive;
+
+        Path directory = null;
+
+        try
+        {
+            Files.createDirectories( baseDirectory );
+            removeStaleDirectories( baseDirectory );
+
+            directory = Files.createTempDirectory( baseDirectory, RUN_DIRECTORY_PREFIX );
+            _channelMarker = FileChannel.open( directory.resolve( MARKER_FILE ), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+
+            if ( _channelMarker.tryLock( ) == null )
+            {
+                throw new IOException( "The marker file of " + directory + " is locked" );
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to initialize the image cache directory in " + baseDirectory, e );
+        }
+
+        _directory = directory;
+    }
+
+    /**
+     * Get the instance of the cache
+     * 
+     * @return the instance of the cache
+     */
+    public static ImageDerivativeCache getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Remove the variants and the directory of the cache, when the application stops
+     */
+    public void shutdown( )
+    {
+        synchronized( _mapEntries )
+        {
+            _bShutdown = true;
+            _lGeneration++;
+            _mapEntries.clear( );
+            _lTotalBytes.set( 0 );
+
+            if ( _directory != null )
+            {
+                deleteDirectory( _directory, _channelMarker );
+            }
+        }
+    }
+
+    /**
+     * Get the generation of the cache, to pass to {@link #put(int, String, String, long, String, byte[])}. The generation is read before the file is
+     * read to produce the variant, so that a variant produced from a file removed meanwhile is not stored.
+     * 
+     * @return the generation
+     */
+    public long getGeneration( )
+    {
+        synchronized( _mapEntries )
+        {
+            return _lGeneration;
+        }
+    }
+
+    /**
+     * Get a variant of the image of a file
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param strVariant
+     *            the name of the variant
+     * @param strVersion
+     *            the version of the file
+     * @return the path of the variant, whose extension is the format of the variant, or null if the variant of this version of the file is not in the
+     *         cache
+     */
+    public Path get( int nIdFile, String strVariant, String strVersion )
+    {
+        String strKey = getKey( nIdFile, strVariant );
+        Variant variant;
+
+        synchronized( _mapEntries )
+        {
+            variant = _mapEntries.get( strKey );
+
+            if ( ( variant != null )
+                    && ( !Objects.equals( variant._strVersion, strVersion ) || ( System.currentTimeMillis( ) - variant._lCreationTime > _lTimeToLive ) ) )
+            {
+                _mapEntries.remove( strKey );
+                _lTotalBytes.addAndGet( -variant._lSize );
+                delete( variant._path );
+                variant = null;
+            }
+        }
+
+        if ( variant == null )
+        {
+            _lMissCount.incrementAndGet( );
+
+            return null;
+        }
+
+        _lHitCount.incrementAndGet( );
+
+        return variant._path;
+    }
+
+    /**
+     * Put a variant of the image of a file in the cache. The variant is not stored if a file was removed from the cache since the generation was read.
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param strVariant
+     *            the name of the variant
+     * @param strVersion
+     *            the version of the file
+     * @param lGeneration
+     *            the generation of the cache read before the file, see {@link #getGeneration()}
+     * @param strFormat
+     *            the format of the variant
+     * @param bValue
+     *            the content of the variant
+     */
+    public void put( int nIdFile, String strVariant, String strVersion, long lGeneration, String strFormat, byte [ ] bValue )
+    {
+        if ( ( _directory == null ) || ( getGeneration( ) != lGeneration ) )
+        {
+            return;
+        }
+
+        String strKey = getKey( nIdFile, strVariant );
+        Path path = _directory.resolve( strKey + EXTENSION_SEPARATOR + strFormat );
+        Path pathTemporary;
+
+        try
+        {
+            // The variant is written aside, then moved under the lock, so that it is never read partially written
+            pathTemporary = Files.createTempFile( _directory, TEMPORARY_PREFIX, null );
+            Files.write( pathTemporary, bValue );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to store the image variant " + path, e );
+
+            return;
+        }
+
+        synchronized( _mapEntries )
+        {
+            if ( _bShutdown || ( _lGeneration != lGeneration ) )
+            {
+                // A file was removed while the variant was produced
+                delete( pathTemporary );
+
+                return;
+            }
+
+            try
+            {
+                Files.move( pathTemporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch( IOException e )
+            {
+                AppLogService.error( "Unable to store the image variant " + path, e );
+                delete( pathTemporary );
+
+                return;
+            }
+
+            Variant variantOld = _mapEntries.put( strKey, new Variant( path, bValue.length, strVersion ) );
+
+            if ( variantOld != null )
+            {
+                _lTotalBytes.addAndGet( -variantOld._lSize );
+
+                if ( !variantOld._path.equals( path ) )
+                {
+                    delete( variantOld._path );
+                }
+            }
+
+            _lTotalBytes.addAndGet( bValue.length );
+            evict( );
+        }
+    }
+
+    /**
+     * Remove all the variants of the image of a file, e.g. when its content changes
+     * 
+     * @param nIdFile
+     *            the id of the file
+     */
+    public void remove( int nIdFile )
+    {
+        String strPrefix = nIdFile + KEY_SEPARATOR;
+
+        synchronized( _mapEntries )
+        {
+            _lGeneration++;
+
+            Iterator<Map.Entry<String, Variant>> iterEntries = _mapEntries.entrySet( ).iterator( );
+
+            while ( iterEntries.hasNext( ) )
+            {
+                Map.Entry<String, Variant> entry = iterEntries.next( );
+
+                if ( entry.getKey( ).startsWith( strPrefix ) )
+                {
+                    iterEntries.remove( );
+                    _lTotalBytes.addAndGet( -entry.getValue( )._lSize );
+                    delete( entry.getValue( )._path );
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the size of the variants in the cache
+     * 
+     * @return the size in bytes
+     */
+    public long getTotalBytes( )
+    {
+        return _lTotalBytes.get( );
+    }
+
+    /**
+     * Get the number of variants found in the cache
+     * 
+     * @return the number of hits
+     */
+    public long getHitCount( )
+    {
+        return _lHitCount.get( );
+    }
+
+    /**
+     * Get the number of variants not found in the cache
+     * 
+     * @return the number of misses
+     */
+    public long getMissCount( )
+    {
+        return _lMissCount.get( );
+    }
+
+    /**
+     * Get the directory of the variants
+     * 
+     * @return the directory, or null if it could not be created
+     */
+    Path getDirectory( )
+    {
+        return _directory;
+    }
+
+    /**
+     * Remove the least recently used variants until the size of the cache is within its budget. Must be called holding the lock of the entries
+     */
+    private void evict( )
+    {
+        Iterator<Variant> iterVariants = _mapEntries.values( ).iterator( );
+
+        while ( ( _lTotalBytes.get( ) > _lMaxBytes ) && iterVariants.hasNext( ) )
+        {
+            Variant variant = iterVariants.next( );
+            iterVariants.remove( );
+            _lTotalBytes.addAndGet( -variant._lSize );
+            delete( variant._path );
+        }
+    }
+
+    /**
+     * Get the directory in which the directory of the variants is created
+     * 
+     * @return the directory
+     */
+    private static Path getBaseDirectory( )
+    {
+        String strDirectory = AppPropertiesService.getProperty( PROPERTY_DIRECTORY );
+
+        return ( strDirectory != null ) ? Paths.get( strDirectory ) : Paths.get( System.getProperty( PROPERTY_TMP_DIR ), DEFAULT_DIRECTORY );
+    }
+
+    /**
+     * Remove the directories of the variants of the previous runs, whose marker file is not locked by a running application
+     * 
+     * @param baseDirectory
+     *            the directory in which the directories of the variants are created
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    private static void removeStaleDirectories( Path baseDirectory ) throws IOException
+    {
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream( baseDirectory, RUN_DIRECTORY_PREFIX + "*" ) )
+        {
+            for ( Path directory : stream )
+            {
+                Path marker = directory.resolve( MARKER_FILE );
+
+                if ( !Files.isDirectory( directory ) || !Files.exists( marker ) )
+                {
+                    continue;
+                }
+
+                try ( FileChannel channel = FileChannel.open( marker, StandardOpenOption.WRITE ) )
+                {
+                    FileLock lock = channel.tryLock( );
+
+                    // The marker file of a running application is locked
+                    if ( lock != null )
+                    {
+                        deleteDirectory( directory, channel );
+                    }
+                }
+                catch( OverlappingFileLockException e )
+                {
+                    // The directory belongs to another application of the same virtual machine
+                    AppLogService.debug( "The image cache directory " + directory + " is in use" );
+                }
+                catch( IOException e )
+                {
+                    AppLogService.error( "Unable to remove the image cache directory " + directory, e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete a directory of variants, whose marker file is locked by a channel. The marker file is deleted last.
+     * 
+     * @param directory
+     *            the directory
+     * @param channelMarker
+     *            the channel locking the marker file
+     */
+    private static void deleteDirectory( Path directory, FileChannel channelMarker )
+    {
+        Path marker = directory.resolve( MARKER_FILE );
+
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream( directory ) )
+        {
+            for ( Path path : stream )
+            {
+                if ( !path.equals( marker ) )
+                {
+                    delete( path );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to list the image cache directory " + directory, e );
+        }
+
+        try
+        {
+            if ( channelMarker != null )
+            {
+                channelMarker.close( );
+            }
+
+            Files.deleteIfExists( marker );
+            Files.deleteIfExists( directory );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to remove the image cache directory " + directory, e );
+        }
+    }
+
+    /**
+     * Delete the file of a variant
+     * 
+     * @param path
+     *            the path of the variant
+     */
+    private static void delete( Path path )
+    {
+        try
+        {
+            Files.deleteIfExists( path );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to delete the image variant " + path, e );
+        }
+    }
+
+    /**
+     * Get the key of a variant
+     * 
+     * @param nIdFile
+     *            the id of the file
+     * @param strVariant
+     *            the name of the variant
+     * @return the key
+     */
+    private static String getKey( int nIdFile, String strVariant )
+    {
+        return nIdFile + KEY_SEPARATOR + strVariant;
+    }
+
+    /**
+     * A variant in the cache
+     */
+    private static final class Variant
+    {
+        private final Path _path;
+        private final long _lSize;
+        private final String _strVersion;
+        private final long _lCreationTime = System.currentTimeMillis( );
+
+        /**
+         * Constructor
+         * 
+         * @param path
+         *            the path of the variant
+         * @param lSize
+         *            the size of the variant
+         * @param strVersion
+         *            the version of the file of the variant
+         */
+        Variant( Path path, long lSize, String strVersion )
+        {
+            _path = path;
+            _lSize = lSize;
+            _strVersion = strVersion;
+        }
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.genericattributes.business.FieldHome;
+import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+import fr.paris.lutece.plugins.genericattributes.service.file.FileService;
+import fr.paris.lutece.plugins.genericattributes.util.ImageHeader;
+import fr.paris.lutece.plugins.genericattributes.util.ImageUtils;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.filesystem.FileSystemUtil;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Normalizes the images captured by the camera entries once their responses are stored : the images are downsized to the width and the height of
+ * the entry, and re-encoded without their metadata, in the format <code>genericattributes.image.normalization.format</code> if it is set.
+ * <p>
+ * The normalization is disabled by default, and enabled by <code>genericattributes.image.normalization.enabled</code>. The images are normalized
+ * by a pool of <code>genericattributes.image.normalization.poolSize</code> threads, fed by a queue of
+ * <code>genericattributes.image.normalization.queueSize</code> images. The request threads never normalize the images : when the queue is full,
+ * the image is kept as it was sent. The images of more than <code>genericattributes.image.normalization.maxPixels</code> pixels are not decoded, and
+ * kept as they were sent.
+ * </p>
+ * <p>
+ * Only the images of the created responses are normalized, once : the updated responses are left unchanged, so that an image is never re-encoded
+ * twice. The pool is declared as a Spring bean, and stopped with the context of the application.
+ * </p>
+ */
+public final class ImageNormalizationService
+{
+    private static final String PROPERTY_ENABLED = "genericattributes.image.normalization.enabled";
+    private static final String PROPERTY_POOL_SIZE = "genericattributes.image.normalization.poolSize";
+    private static final String PROPERTY_QUEUE_SIZE = "genericattributes.image.normalization.queueSize";
+    private static final String PROPERTY_FORMAT = "genericattributes.image.normalization.format";
+    private static final String PROPERTY_QUALITY = "genericattributes.image.normalization.quality";
+    private static final String PROPERTY_MAX_PIXELS = "genericattributes.image.normalization.maxPixels";
+    private static final int DEFAULT_POOL_SIZE = 2;
+    private static final int DEFAULT_QUEUE_SIZE = 20;
+    private static final int DEFAULT_QUALITY = 85;
+    private static final long DEFAULT_MAX_PIXELS = 40000000L;
+    private static final long SHUTDOWN_TIMEOUT = 10;
+    private static final float QUALITY_SCALE = 100f;
+    private static final String FORMAT_JPG = "jpg";
+    private static final String EXTENSION_SEPARATOR = ".";
+    private static final String THREAD_NAME = "genericattributes-image-normalization-";
+
+    private static final ImageNormalizationService INSTANCE = new ImageNormalizationService( );
+
+    private final boolean _bEnabled;
+    private final String _strFormat;
+    private final float _fQuality;
+    private final long _lMaxPixels;
+    private final ThreadPoolExecutor _executor;
+    private final AtomicLong _lNormalizedCount = new AtomicLong( );
+    private final AtomicLong _lRejectedCount = new AtomicLong( );
+    private final AtomicLong _lFailureCount = new AtomicLong( );
+    private final AtomicLong _lTotalLatency = new AtomicLong( );
+    private final AtomicLong _lMaxLatency = new AtomicLong( );
+
+    /**
+     * Private constructor
+     */
+    private ImageNormalizationService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        String strFormat = AppPropertiesService.getProperty( PROPERTY_FORMAT, StringUtils.EMPTY ).trim( ).toLowerCase( Locale.ENGLISH );
+        _strFormat = FORMAT_JPG.equals( strFormat ) ? ImageUtils.FORMAT_JPEG : strFormat;
+        _fQuality = AppPropertiesService.getPropertyInt( PROPERTY_QUALITY, DEFAULT_QUALITY ) / QUALITY_SCALE;
+        _lMaxPixels = AppPropertiesService.getPropertyLong( PROPERTY_MAX_PIXELS, DEFAULT_MAX_PIXELS );
+
+        if ( _bEnabled )
+        {
+            int nPoolSize = AppPropertiesService.getPropertyInt( PROPERTY_POOL_SIZE, DEFAULT_POOL_SIZE );
+            AtomicInteger nThreadNumber = new AtomicInteger( );
+
+            _executor = new ThreadPoolExecutor( nPoolSize, nPoolSize, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>( AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_SIZE, DEFAULT_QUEUE_SIZE ) ), runnable -> {
+                        Thread thread = new Thread( runnable, THREAD_NAME + nThreadNumber.incrementAndGet( ) );
+                        thread.setDaemon( true );
+                        thread.setPriority( Thread.MIN_PRIORITY );
+
+                        return thread;
+                    } );
+        }
+        else
+        {
+            _executor = null;
+        }
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return the instance of the service
+     */
+    public static ImageNormalizationService getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Stop the pool. The images being normalized are finished, the queued images are dropped and kept as they were sent
+     */
+    public void shutdown( )
+    {
+        if ( !_bEnabled )
+        {
+            return;
+        }
+
+        List<Runnable> listDropped = new ArrayList<>( );
+        _executor.getQueue( ).drainTo( listDropped );
+        _executor.shutdown( );
+        _lRejectedCount.addAndGet( listDropped.size( ) );
+
+        try
+        {
+            if ( !_executor.awaitTermination( SHUTDOWN_TIMEOUT, TimeUnit.SECONDS ) )
+            {
+                AppLogService.error( "The image normalization pool is still running after " + SHUTDOWN_TIMEOUT + " seconds" );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+    }
+
+    /**
+     * Queue the normalization of the images of created responses. Only the images captured by a camera entry, whose content is still held by the
+     * response, are normalized. The responses must be committed : the creation of the responses in a transaction of the caller is followed by a call
+     * to this method once the transaction is committed.
+     * 
+     * @param listResponse
+     *            the stored responses
+     */
+    public void submit( List<Response> listResponse )
+    {
+        if ( !_bEnabled )
+        {
+            return;
+        }
+
+        for ( Response response : listResponse )
+        {
+            File file = response.getFile( );
+
+            if ( !response.getIsImage( ) || ( file == null ) || ( file.getPhysicalFile( ) == null ) || ( file.getPhysicalFile( ).getValue( ) == null )
+                    || ( response.getEntry( ) == null ) )
+            {
+                continue;
+            }
+
+            NormalizationTask task = new NormalizationTask( file.getIdFile( ), file.getPhysicalFile( ).getIdPhysicalFile( ),
+                    file.getPhysicalFile( ).getValue( ), response.getEntry( ).getIdEntry( ), response.getEntry( ).getFields( ) );
+
+            try
+            {
+                _executor.execute( task );
+            }
+            catch( RejectedExecutionException e )
+            {
+                // The request thread never does the work : the image is kept as it was sent
+                _lRejectedCount.incrementAndGet( );
+                AppLogService.debug( "The queue of the image normalization is full, the image of the file " + file.getIdFile( ) + " is kept" );
+            }
+        }
+    }
+
+    /**
+     * Check if the normalization is enabled
+     * 
+     * @return true if the normalization is enabled
+     */
+    public boolean isEnabled( )
+    {
+        return _bEnabled;
+    }
+
+    /**
+     * Get the number of images waiting in the queue
+     * 
+     * @return the number of images waiting in the queue
+     */
+    public int getQueueSize( )
+    {
+        return _bEnabled ? _executor.getQueue( ).size( ) : 0;
+    }
+
+    /**
+     * Get the number of images being normalized
+     * 
+     * @return the number of images being normalized
+     */
+    public int getActiveCount( )
+    {
+        return _bEnabled ? _executor.getActiveCount( ) : 0;
+    }
+
+    /**
+     * Get the number of images normalized
+     * 
+     * @return the number of images normalized
+     */
+    public long getNormalizedCount( )
+    {
+        return _lNormalizedCount.get( );
+    }
+
+    /**
+     * Get the number of images kept as they were sent because the queue was full
+     * 
+     * @return the number of images not queued
+     */
+    public long getRejectedCount( )
+    {
+        return _lRejectedCount.get( );
+    }
+
+    /**
+     * Get the number of images whose normalization failed
+     * 
+     * @return the number of failures
+     */
+    public long getFailureCount( )
+    {
+        return _lFailureCount.get( );
+    }
+
+    /**
+     * Get the average delay between the submission of an image and the end of its normalization
+     * 
+     * @return the average latency in milliseconds
+     */
+    public long getAverageLatency( )
+    {
+        long lCount = _lNormalizedCount.get( );
+
+        return ( lCount == 0 ) ? 0 : ( _lTotalLatency.get( ) / lCount );
+    }
+
+    /**
+     * Get the longest delay between the submission of an image and the end of its normalization
+     * 
+     * @return the maximum latency in milliseconds
+     */
+    public long getMaxLatency( )
+    {
+        return _lMaxLatency.get( );
+    }
+
+    /**
+     * Normalize the image of a task
+     * 
+     * @param task
+     *            the task of the image
+     * @return true if the normalized image was stored
+     */
+    private boolean normalize( NormalizationTask task )
+    {
+        ImageHeader header = ImageHeader.read( new ByteArrayInputStream( task._bValue ) );
+
+        if ( header == null )
+        {
+            return false;
+        }
+
+        List<Field> listFields = ( ( task._listFields != null ) && !task._listFields.isEmpty( ) ) ? task._listFields
+                : FieldHome.getFieldListByIdEntry( task._nIdEntry );
+        String strFormat = StringUtils.isNotEmpty( _strFormat ) ? _strFormat : header.getFormat( );
+
+        try
+        {
+            byte [ ] bNormalized = normalize( task._bValue, header, getDimension( listFields, IEntryTypeService.FIELD_WIDTH ),
+                    getDimension( listFields, IEntryTypeService.FIELD_HEIGHT ), strFormat, _fQuality, _lMaxPixels );
+
+            if ( bNormalized == null )
+            {
+                AppLogService.debug( "The image of the file " + task._nIdFile + " is kept as it was sent" );
+
+                return false;
+            }
+
+            return store( task, bNormalized, strFormat.equals( header.getFormat( ) ) ? null : strFormat );
+        }
+        catch( IOException e )
+        {
+            _lFailureCount.incrementAndGet( );
+            AppLogService.error( "Unable to normalize the image of the file " + task._nIdFile, e );
+
+            return false;
+        }
+    }
+
+    /**
+     * Normalize an image. The image is decoded only if its header is within the limit of pixels
+     * 
+     * @param bValue
+     *            the image
+     * @param header
+     *            the header of the image
+     * @param nMaxWidth
+     *            the maximum width, or a negative value for no limit
+     * @param nMaxHeight
+     *            the maximum height, or a negative value for no limit
+     * @param strFormat
+     *            the format of the normalized image
+     * @param fQuality
+     *            the quality of the compression between 0 and 1, for the JPEG format
+     * @param lMaxPixels
+     *            the maximum number of pixels of an image to decode
+     * @return the normalized image, or null if the image has too many pixels or cannot be decoded or encoded
+     * @throws IOException
+     *             if the image cannot be decoded or encoded
+     */
+    static byte [ ] normalize( byte [ ] bValue, ImageHeader header, int nMaxWidth, int nMaxHeight, String strFormat, float fQuality, long lMaxPixels )
+            throws IOException
+    {
+        if ( header.getPixelCount( ) > lMaxPixels )
+        {
+            return null;
+        }
+
+        BufferedImage image = ImageIO.read( new ByteArrayInputStream( bValue ) );
+
+        if ( image == null )
+        {
+            return null;
+        }
+
+        return ImageUtils.encode( ImageUtils.resize( image, nMaxWidth, nMaxHeight, strFormat ), strFormat, fQuality );
+    }
+
+    /**
+     * Get a dimension of the images of an entry
+     * 
+     * @param listFields
+     *            the fields of the entry
+     * @param strCode
+     *            the code of the field of the dimension
+     * @return the dimension, or -1 if the dimension is not limited
+     */
+    private static int getDimension( List<Field> listFields, String strCode )
+    {
+        for ( Field field : listFields )
+        {
+            if ( strCode.equals( field.getCode( ) ) && StringUtils.isNumeric( field.getValue( ) ) )
+            {
+                return Integer.parseInt( field.getValue( ) );
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Replace the content of a stored file by its normalized image. The file is left unchanged if it was updated or removed meanwhile.
+     * 
+     * @param task
+     *            the task of the image
+     * @param bNormalized
+     *            the normalized image
+     * @param strNewFormat
+     *            the new format of the image, or null if the format is unchanged
+     * @return true if the normalized image was stored
+     */
+    private boolean store( NormalizationTask task, byte [ ] bNormalized, String strNewFormat )
+    {
+        Plugin plugin = PluginService.getPlugin( GenericAttributesPlugin.PLUGIN_NAME );
+        FileService fileService = SpringContextService.getBean( FileService.BEAN_SERVICE );
+
+        TransactionManager.beginTransaction( plugin );
+
+        try
+        {
+            File file = FileHome.findByPrimaryKey( task._nIdFile );
+            boolean bStored = ( file != null ) && ( file.getPhysicalFile( ) != null )
+                    && ( file.getPhysicalFile( ).getIdPhysicalFile( ) == task._nIdPhysicalFile );
+
+            if ( bStored )
+            {
+                PhysicalFile physicalFile = new PhysicalFile( );
+                physicalFile.setIdPhysicalFile( task._nIdPhysicalFile );
+                physicalFile.setValue( bNormalized );
+                file.setPhysicalFile( physicalFile );
+                file.setSize( bNormalized.length );
+
+                if ( strNewFormat != null )
+                {
+                    String strTitle = StringUtils.defaultString( file.getTitle( ) );
+                    int nIndexExtension = strTitle.lastIndexOf( EXTENSION_SEPARATOR );
+                    strTitle = ( ( nIndexExtension > 0 ) ? strTitle.substring( 0, nIndexExtension ) : strTitle ) + EXTENSION_SEPARATOR + strNewFormat;
+
+                    file.setTitle( strTitle );
+                    file.setExtension( EXTENSION_SEPARATOR + strNewFormat );
+                    file.setMimeType( FileSystemUtil.getMIMEType( strTitle ) );
+                }
+
+                fileService.updateSharedFile( file );
+            }
+
+            TransactionManager.commitTransaction( plugin );
+
+            return bStored;
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin );
+            _lFailureCount.incrementAndGet( );
+            AppLogService.error( "Unable to store the normalized image of the file " + task._nIdFile, e );
+
+            return false;
+        }
+    }
+
+    /**
+     * The normalization of the image of a stored response
+     */
+    private final class NormalizationTask implements Runnable
+    {
+        private final int _nIdFile;
+        private final int _nIdPhysicalFile;
+        private final byte [ ] _bValue;
+        private final int _nIdEntry;
+        private final List<Field> _listFields;
+        private final long _lSubmitTime = System.currentTimeMillis( );
+
+        /**
+         * Constructor
+         * 
+         * @param nIdFile
+         *            the id of the file
+         * @param nIdPhysicalFile
+         *            the id of the physical file
+         * @param bValue
+         *            the image
+         * @param nIdEntry
+         *            the id of the entry
+         * @param listFields
+         *            the fields of the entry, or null if they are not loaded
+         */
+        NormalizationTask( int nIdFile, int nIdPhysicalFile, byte [ ] bValue, int nIdEntry, List<Field> listFields )
+        {
+            _nIdFile = nIdFile;
+            _nIdPhysicalFile = nIdPhysicalFile;
+            _bValue = bValue;
+            _nIdEntry = nIdEntry;
+            _listFields = listFields;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run( )
+        {
+            try
+            {
+                if ( !normalize( this ) )
+                {
+                    return;
+                }
+            }
+            catch( RuntimeException e )
+            {
+                _lFailureCount.incrementAndGet( );
+                AppLogService.error( "Unable to normalize the image of the file " + _nIdFile, e );
+
+                return;
+            }
+
+            long lLatency = System.currentTimeMillis( ) - _lSubmitTime;
+            _lNormalizedCount.incrementAndGet( );
+            _lTotalLatency.addAndGet( lLatency );
+            _lMaxLatency.accumulateAndGet( lLatency, Math::max );
+        }
+    }
+}
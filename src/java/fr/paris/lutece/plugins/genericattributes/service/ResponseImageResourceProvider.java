@@ -33,29 +33,102 @@
  */
 package fr.paris.lutece.plugins.genericattributes.service;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.genericattributes.business.FileMetadataHome;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.plugins.genericattributes.business.ResponseHome;
+import fr.paris.lutece.plugins.genericattributes.util.ImageHeader;
+import fr.paris.lutece.plugins.genericattributes.util.ImageUtils;
 import fr.paris.lutece.portal.business.file.File;
-import fr.paris.lutece.portal.business.file.FileHome;
 import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
-import fr.paris.lutece.portal.business.physicalfile.PhysicalFileHome;
 import fr.paris.lutece.portal.service.image.ImageResource;
 import fr.paris.lutece.portal.service.image.ImageResourceProvider;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.util.file.FileUtil;
+import fr.paris.lutece.util.filesystem.FileSystemUtil;
 import fr.paris.lutece.util.url.UrlItem;
 
 /**
- * Resource provider for images
+ * Resource provider for images. A provider serves either the original images, or a variant of the images downsized to fit in a square, e.g. the
+ * thumbnails. The variants are produced when they are first requested, and kept in the {@link ImageDerivativeCache}.
+ * <p>
+ * The images are decoded with a subsampling which keeps twice the pixels of the variant, by at most
+ * <code>genericattributes.image.variant.maxConcurrent</code> requests at once. The images of more than
+ * <code>genericattributes.image.variant.maxPixels</code> pixels are not decoded, and the original image is served instead of the variant, as when
+ * the decoding waits too long for the other requests.
+ * </p>
  */
 public class ResponseImageResourceProvider implements ImageResourceProvider
 {
+    /**
+     * The variant of the thumbnails
+     */
+    public static final String VARIANT_THUMB = "thumb";
+
+    /**
+     * The variant of the medium size images
+     */
+    public static final String VARIANT_MEDIUM = "medium";
+
+    private static final String PROPERTY_VARIANT_SIZE_PREFIX = "genericattributes.image.variant.";
+    private static final String PROPERTY_VARIANT_SIZE_SUFFIX = ".size";
+    private static final String PROPERTY_VARIANT_QUALITY = "genericattributes.image.variant.quality";
+    private static final String PROPERTY_VARIANT_MAX_PIXELS = "genericattributes.image.variant.maxPixels";
+    private static final String PROPERTY_VARIANT_MAX_CONCURRENT = "genericattributes.image.variant.maxConcurrent";
+    private static final int DEFAULT_THUMB_SIZE = 160;
+    private static final int DEFAULT_MEDIUM_SIZE = 640;
+    private static final int DEFAULT_QUALITY = 85;
+    private static final long DEFAULT_MAX_PIXELS = 40000000L;
+    private static final int DEFAULT_MAX_CONCURRENT = 2;
+    private static final long DECODING_WAIT_TIMEOUT = 5;
+    private static final int SUBSAMPLING_MARGIN = 2;
+    private static final float QUALITY_SCALE = 100f;
+    private static final String RESOURCE_TYPE_SEPARATOR = "_";
+    private static final String VERSION_SEPARATOR = "-";
+
+    // The decodings of all the variants share the same limit
+    private static final Semaphore DECODING_PERMITS = new Semaphore(
+            AppPropertiesService.getPropertyInt( PROPERTY_VARIANT_MAX_CONCURRENT, DEFAULT_MAX_CONCURRENT ) );
+
+    private final String _strVariant;
+    private final int _nMaxSize;
+
+    /**
+     * Constructor of the provider of the original images
+     */
+    public ResponseImageResourceProvider( )
+    {
+        this( null );
+    }
+
+    /**
+     * Constructor of the provider of a variant of the images
+     * 
+     * @param strVariant
+     *            the name of the variant, {@link #VARIANT_THUMB} or {@link #VARIANT_MEDIUM}, or null for the original images
+     */
+    public ResponseImageResourceProvider( String strVariant )
+    {
+        _strVariant = strVariant;
+        _nMaxSize = ( strVariant != null ) ? AppPropertiesService.getPropertyInt( PROPERTY_VARIANT_SIZE_PREFIX + strVariant + PROPERTY_VARIANT_SIZE_SUFFIX,
+                VARIANT_THUMB.equals( strVariant ) ? DEFAULT_THUMB_SIZE : DEFAULT_MEDIUM_SIZE ) : 0;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public String getResourceTypeId( )
     {
-        return Response.RESOURCE_TYPE;
+        return getResourceTypeId( _strVariant );
     }
 
     /**
@@ -66,24 +139,206 @@ public class ResponseImageResourceProvider implements ImageResourceProvider
     {
         Response response = ResponseHome.findByPrimaryKey( nIdResource );
 
-        if ( response.getFile( ) != null )
+        if ( ( response == null ) || ( response.getFile( ) == null ) )
         {
-            File file = FileHome.findByPrimaryKey( response.getFile( ).getIdFile( ) );
+            return null;
+        }
+
+        int nIdFile = response.getFile( ).getIdFile( );
 
-            if ( ( file.getPhysicalFile( ) != null ) && FileUtil.hasImageExtension( file.getTitle( ) ) )
+        // Read before the file, so that a variant of a file removed meanwhile is not cached
+        long lGeneration = ImageDerivativeCache.getInstance( ).getGeneration( );
+
+        // The metadata are read first : the content is read only for the files of images whose variant is not cached
+        File file = FileMetadataHome.findByPrimaryKey( nIdFile );
+
+        if ( ( file == null ) || ( file.getPhysicalFile( ) == null ) || !FileUtil.hasImageExtension( file.getTitle( ) ) )
+        {
+            return null;
+        }
+
+        String strVersion = getVersion( file );
+
+        if ( _strVariant != null )
+        {
+            ImageResource image = getCachedVariant( nIdFile, strVersion );
+
+            if ( image != null )
+            {
+                return image;
+            }
+        }
+
+        PhysicalFile physicalFile = file.getPhysicalFile( );
+        ImageResource image = new ImageResource( );
+        image.setImage( ( _strVariant != null ) ? createVariant( nIdFile, strVersion, lGeneration, physicalFile.getValue( ) ) : physicalFile.getValue( ) );
+        image.setMimeType( file.getMimeType( ) );
+
+        return image;
+    }
+
+    /**
+     * Get the variant of an image from the cache
+     * 
+     * @param nIdFile
+     *            the id of the file of the image
+     * @param strVersion
+     *            the version of the file of the image
+     * @return the variant, or null if it is not in the cache
+     */
+    private ImageResource getCachedVariant( int nIdFile, String strVersion )
+    {
+        Path path = ImageDerivativeCache.getInstance( ).get( nIdFile, _strVariant, strVersion );
+
+        if ( path != null )
+        {
+            try
             {
-                PhysicalFile physicalFile = PhysicalFileHome.findByPrimaryKey( file.getPhysicalFile( ).getIdPhysicalFile( ) );
                 ImageResource image = new ImageResource( );
-                image.setImage( physicalFile.getValue( ) );
-                image.setMimeType( file.getMimeType( ) );
+                image.setImage( Files.readAllBytes( path ) );
+                image.setMimeType( FileSystemUtil.getMIMEType( path.getFileName( ).toString( ) ) );
 
                 return image;
             }
+            catch( IOException e )
+            {
+                // The variant was evicted meanwhile : it is produced again
+                AppLogService.debug( "The image variant " + path + " is no longer available" );
+            }
         }
 
         return null;
     }
 
+    /**
+     * Create the variant of an image and put it in the cache. The variant keeps the format of the image. An image which already fits in the size of
+     * the variant is its own variant.
+     * 
+     * @param nIdFile
+     *            the id of the file of the image
+     * @param strVersion
+     *            the version of the file of the image
+     * @param lGeneration
+     *            the generation of the cache read before the file
+     * @param bValue
+     *            the image
+     * @return the variant
+     */
+    private byte [ ] createVariant( int nIdFile, String strVersion, long lGeneration, byte [ ] bValue )
+    {
+        ImageHeader header = ImageHeader.read( new ByteArrayInputStream( bValue ) );
+
+        if ( header == null )
+        {
+            return bValue;
+        }
+
+        byte [ ] bVariant = bValue;
+
+        if ( ( header.getWidth( ) > _nMaxSize ) || ( header.getHeight( ) > _nMaxSize ) )
+        {
+            if ( (long) header.getWidth( ) * header.getHeight( ) > AppPropertiesService.getPropertyLong( PROPERTY_VARIANT_MAX_PIXELS, DEFAULT_MAX_PIXELS ) )
+            {
+                AppLogService.debug( "The image of the file " + nIdFile + " is too large to create its variant " + _strVariant );
+
+                return bValue;
+            }
+
+            byte [ ] bResized = resize( nIdFile, bValue, header );
+
+            if ( bResized == null )
+            {
+                return bValue;
+            }
+
+            bVariant = bResized;
+        }
+
+        ImageDerivativeCache.getInstance( ).put( nIdFile, _strVariant, strVersion, lGeneration, header.getFormat( ), bVariant );
+
+        return bVariant;
+    }
+
+    /**
+     * Downsize an image to the size of the variant
+     * 
+     * @param nIdFile
+     *            the id of the file of the image
+     * @param bValue
+     *            the image
+     * @param header
+     *            the header of the image
+     * @return the downsized image, or null if it could not be downsized
+     */
+    private byte [ ] resize( int nIdFile, byte [ ] bValue, ImageHeader header )
+    {
+        try
+        {
+            if ( !DECODING_PERMITS.tryAcquire( DECODING_WAIT_TIMEOUT, TimeUnit.SECONDS ) )
+            {
+                AppLogService.debug( "Too many images are being decoded to create the variant " + _strVariant + " of the image of the file " + nIdFile );
+
+                return null;
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+
+            return null;
+        }
+
+        try
+        {
+            // The decoded image keeps at least twice the pixels of the variant, for the quality of the downsizing
+            int nSubsampling = Math.max( 1, Math.max( header.getWidth( ), header.getHeight( ) ) / ( SUBSAMPLING_MARGIN * _nMaxSize ) );
+            BufferedImage image = ImageUtils.read( bValue, nSubsampling );
+
+            if ( image == null )
+            {
+                return null;
+            }
+
+            float fQuality = AppPropertiesService.getPropertyInt( PROPERTY_VARIANT_QUALITY, DEFAULT_QUALITY ) / QUALITY_SCALE;
+
+            return ImageUtils.encode( ImageUtils.resize( image, _nMaxSize, _nMaxSize, header.getFormat( ) ), header.getFormat( ), fQuality );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to create the variant " + _strVariant + " of the image of the file " + nIdFile, e );
+
+            return null;
+        }
+        finally
+        {
+            DECODING_PERMITS.release( );
+        }
+    }
+
+    /**
+     * Get the version of a file, made of its metadata : the variants of the file are created again when its metadata change
+     * 
+     * @param file
+     *            the file, with its physical file
+     * @return the version
+     */
+    private static String getVersion( File file )
+    {
+        return file.getPhysicalFile( ).getIdPhysicalFile( ) + VERSION_SEPARATOR + file.getSize( ) + VERSION_SEPARATOR + file.getMimeType( );
+    }
+
+    /**
+     * Get the resource type of the images of a variant
+     * 
+     * @param strVariant
+     *            the name of the variant, or null for the original images
+     * @return the resource type
+     */
+    public static String getResourceTypeId( String strVariant )
+    {
+        return ( strVariant != null ) ? ( Response.RESOURCE_TYPE + RESOURCE_TYPE_SEPARATOR + strVariant ) : Response.RESOURCE_TYPE;
+    }
+
     /**
      * Get the URL to download an image response
      * 
@@ -92,9 +347,23 @@ public class ResponseImageResourceProvider implements ImageResourceProvider
      * @return The URl to download the image
      */
     public static String getUrlDownloadImageResponse( int nIdResponse )
+    {
+        return getUrlDownloadImageResponse( nIdResponse, null );
+    }
+
+    /**
+     * Get the URL to download a variant of an image response
+     * 
+     * @param nIdResponse
+     *            The id of the response
+     * @param strVariant
+     *            the name of the variant, or null for the original image
+     * @return The URl to download the image
+     */
+    public static String getUrlDownloadImageResponse( int nIdResponse, String strVariant )
     {
         UrlItem urlItem = new UrlItem( "image" );
-        urlItem.addParameter( "resource_type", Response.RESOURCE_TYPE );
+        urlItem.addParameter( "resource_type", getResourceTypeId( strVariant ) );
         urlItem.addParameter( "id", nIdResponse );
 
         return urlItem.getUrl( );
@@ -35,7 +35,8 @@ package fr.paris.lutece.plugins.genericattributes.service.anonymization;
 
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
-import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.plugins.genericattributes.service.file.FileService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
 
 /**
  * {@link IEntryTypeAnonymisationService} that delete the file.
@@ -51,7 +52,8 @@ public class FileDeleteAnonymizationService extends AbstractAnonymizationService
             String pattern = getPattern( entry );
             if ( pattern.contains( _wildcard ) && response.getFile( ) != null )
             {
-                FileHome.remove( response.getFile( ).getIdFile( ) );
+                FileService fileService = SpringContextService.getBean( FileService.BEAN_SERVICE );
+                fileService.removeFile( response.getFile( ).getIdFile( ) );
                 response.setFile( null );
             }
         }
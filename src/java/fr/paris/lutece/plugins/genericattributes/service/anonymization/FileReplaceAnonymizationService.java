@@ -42,8 +42,10 @@ import org.apache.commons.io.FilenameUtils;
 
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.service.file.FileService;
 import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPathService;
 
@@ -77,7 +79,8 @@ public class FileReplaceAnonymizationService extends AbstractAnonymizationServic
                 catch( IOException e )
                 {
                     AppLogService.error( "Error while replacing file", e );
-                    FileHome.remove( response.getFile( ).getIdFile( ) );
+                    FileService fileService = SpringContextService.getBean( FileService.BEAN_SERVICE );
+                    fileService.removeFile( response.getFile( ).getIdFile( ) );
                     response.setFile( null );
                 }
             }
@@ -34,7 +34,6 @@
 package fr.paris.lutece.plugins.genericattributes.service.entrytype;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -53,6 +52,7 @@ import fr.paris.lutece.plugins.genericattributes.business.Field;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.business.MandatoryError;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.util.DataUrlImage;
 import fr.paris.lutece.plugins.genericattributes.util.FileAttributesUtils;
 import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import fr.paris.lutece.portal.business.file.File;
@@ -200,14 +200,16 @@ public abstract class AbstractEntryTypeCamera extends AbstractEntryTypeImage
 
         if ( sourceBase != null )
         {
-            genAttError = doCheckforImages( sourceBase, entry, request.getLocale( ) );
+            // The image is decoded once for its validation and its persistence
+            DataUrlImage image = DataUrlImage.decode( sourceBase );
+            genAttError = doCheckforImages( sourceBase, image, entry, request.getLocale( ) );
 
             if ( genAttError != null )
             {
                 return genAttError;
             }
 
-            listResponse.add( getResponseFromImage( request, sourceBase, entry, true ) );
+            listResponse.add( getResponseFromImage( request, sourceBase, image, entry, true ) );
 
             if ( !entry.isMandatory( ) )
             {
@@ -246,6 +248,29 @@ public abstract class AbstractEntryTypeCamera extends AbstractEntryTypeImage
      * @return The created response
      */
     protected Response getResponseFromImage( HttpServletRequest request, String imageSource, Entry entry, boolean bCreatePhysicalFile )
+    {
+        DataUrlImage image = bCreatePhysicalFile ? DataUrlImage.decode( imageSource ) : null;
+
+        return getResponseFromImage( request, imageSource, image, entry, bCreatePhysicalFile );
+    }
+
+    /**
+     * Get a generic attributes response from a request and an image already decoded
+     * 
+     * @param request
+     *            the request
+     * @param imageSource
+     *            the image in base64 form
+     * @param image
+     *            the decoded image, may be null if the physical file is not created
+     * @param entry
+     *            The entry
+     * @param bCreatePhysicalFile
+     *            True to create the physical file associated with the file of the response, false otherwise. Note that the physical file will never be saved in
+     *            the database by this method, like any other created object.
+     * @return The created response, without file if the physical file must be created and the image could not be decoded
+     */
+    protected Response getResponseFromImage( HttpServletRequest request, String imageSource, DataUrlImage image, Entry entry, boolean bCreatePhysicalFile )
     {
         Response response = new Response( );
         response.setEntry( entry );
@@ -270,7 +295,8 @@ public abstract class AbstractEntryTypeCamera extends AbstractEntryTypeImage
             }
         }
 
-        if ( StringUtils.isNotBlank( imageSource ) && StringUtils.isNotEmpty( imageSource ) )
+        // An image which cannot be decoded is not stored as an empty file
+        if ( StringUtils.isNotBlank( imageSource ) && ( !bCreatePhysicalFile || ( image != null ) ) )
         {
             File file = new File( );
 
@@ -288,11 +314,9 @@ public abstract class AbstractEntryTypeCamera extends AbstractEntryTypeImage
                 file.setMimeType( FileSystemUtil.getMIMEType( file.getTitle( ) ) );
 
                 PhysicalFile physicalFile = new PhysicalFile( );
-                String base64Image = imageSource.split( "," ) [1];
-                byte [ ] imageBytes = javax.xml.bind.DatatypeConverter.parseBase64Binary( base64Image );
-                physicalFile.setValue( imageBytes );
+                physicalFile.setValue( image.getValue( ) );
                 file.setPhysicalFile( physicalFile );
-                file.setSize( imageBytes.length );
+                file.setSize( image.getSize( ) );
             }
 
             response.setFile( file );
@@ -333,43 +357,50 @@ public abstract class AbstractEntryTypeCamera extends AbstractEntryTypeImage
      */
     public GenericAttributeError doCheckforImages( String imageSource, Entry entry, Locale locale )
     {
-        BufferedImage image = null;
-        GenericAttributeError genAttError = new GenericAttributeError( );
-        genAttError.setMandatoryError( false );
-
-        Object [ ] args = {
-                entry.getTitle( )
-        };
-        genAttError.setErrorMessage( I18nService.getLocalizedString( MESSAGE_ERROR_NOT_AN_IMAGE, args, locale ) );
-        genAttError.setTitleQuestion( entry.getTitle( ) );
+        return doCheckforImages( imageSource, DataUrlImage.decode( imageSource ), entry, locale );
+    }
 
-        if ( ( imageSource != null ) && ( imageSource.split( "," ).length > 1 ) )
+    /**
+     * Do check that an uploaded source, already decoded, is an image. Only the header of the image is read to recognize its format and its
+     * dimensions, and its size is the size of the decoded source.
+     * 
+     * @param imageSource
+     *            The file imageSource
+     * @param image
+     *            The decoded imageSource
+     * @param entry
+     *            the entry
+     * @param locale
+     *            The locale
+     * @return The error if any, or null if the file is a valid image
+     */
+    protected GenericAttributeError doCheckforImages( String imageSource, DataUrlImage image, Entry entry, Locale locale )
+    {
+        if ( StringUtils.isBlank( imageSource ) )
         {
-            String base64Image = imageSource.split( "," ) [1];
-            byte [ ] imageBytes = javax.xml.bind.DatatypeConverter.parseBase64Binary( base64Image );
-            ByteArrayInputStream bis = new ByteArrayInputStream( imageBytes );
-
-            try
-            {
-                image = ImageIO.read( bis );
-                bis.close( );
-            }
-            catch( IOException e )
-            {
-                return genAttError;
-            }
+            return null;
         }
 
-        if ( ( image == null ) && StringUtils.isNotBlank( imageSource ) )
+        if ( ( image == null ) || ( image.getHeader( ) == null ) )
         {
+            GenericAttributeError genAttError = new GenericAttributeError( );
+            genAttError.setMandatoryError( false );
+
+            Object [ ] args = {
+                    entry.getTitle( )
+            };
+            genAttError.setErrorMessage( I18nService.getLocalizedString( MESSAGE_ERROR_NOT_AN_IMAGE, args, locale ) );
+            genAttError.setTitleQuestion( entry.getTitle( ) );
+
             return genAttError;
         }
 
-        return doCheckSize( image, entry, locale );
+        return doCheckSize( image.getSize( ), entry, locale );
     }
 
     /**
-     * Do check the size of image
+     * Do check the size of image. The image is encoded to measure its size: {@link #doCheckSize(int, Entry, Locale)} should be used when the encoded
+     * image is available.
      * 
      * @param image
      * @param entry
@@ -379,22 +410,13 @@ public abstract class AbstractEntryTypeCamera extends AbstractEntryTypeImage
      */
     public GenericAttributeError doCheckSize( BufferedImage image, Entry entry, Locale locale )
     {
-        int nMaxSize = Integer.parseInt( entry.getFieldByCode( FIELD_MAX_SIZE ).getValue( ) );
-
-        Field imageTypeField = entry.getFieldByCode( FIELD_IMAGE_TYPE );
-        String imageType = imageTypeField != null ? imageTypeField.getValue( ) : "png";
-
-        // If no max size defined in the db, then fetch the default max size from the
-        // properties file
-        if ( nMaxSize == GenericAttributesUtils.CONSTANT_ID_NULL )
-        {
-            nMaxSize = AppPropertiesService.getPropertyInt( FileAttributesUtils.PROPERTY_UPLOAD_FILE_DEFAULT_MAX_SIZE, 5242880 );
-        }
+        int nMaxSize = getMaxSize( entry );
 
         // If nMaxSize == -1, then no size limit
         if ( ( nMaxSize != GenericAttributesUtils.CONSTANT_ID_NULL ) && ( image != null ) )
         {
-            boolean bHasFileMaxSizeError = false;
+            Field imageTypeField = entry.getFieldByCode( FIELD_IMAGE_TYPE );
+            String imageType = imageTypeField != null ? imageTypeField.getValue( ) : "png";
             ByteArrayOutputStream tmp = new ByteArrayOutputStream( );
 
             try
@@ -415,26 +437,84 @@ public abstract class AbstractEntryTypeCamera extends AbstractEntryTypeImage
                 return error;
             }
 
-            Integer contentLength = tmp.size( );
+            return getSizeError( tmp.size( ), nMaxSize, entry, locale );
+        }
 
-            if ( contentLength > nMaxSize )
-            {
-                bHasFileMaxSizeError = true;
-            }
+        return null;
+    }
 
-            if ( bHasFileMaxSizeError )
-            {
-                Object [ ] params = {
-                        nMaxSize
-                };
-                String strMessage = I18nService.getLocalizedString( FileAttributesUtils.PROPERTY_MESSAGE_ERROR_UPLOADING_FILE_FILE_MAX_SIZE, params, locale );
-                GenericAttributeError error = new GenericAttributeError( );
-                error.setMandatoryError( false );
-                error.setTitleQuestion( entry.getTitle( ) );
-                error.setErrorMessage( strMessage );
+    /**
+     * Do check the size of an image
+     * 
+     * @param nSize
+     *            the size of the image in bytes
+     * @param entry
+     *            the entry
+     * @param locale
+     *            The locale
+     * @return The error if any, or null if not error
+     */
+    public GenericAttributeError doCheckSize( int nSize, Entry entry, Locale locale )
+    {
+        int nMaxSize = getMaxSize( entry );
 
-                return error;
-            }
+        // If nMaxSize == -1, then no size limit
+        if ( nMaxSize != GenericAttributesUtils.CONSTANT_ID_NULL )
+        {
+            return getSizeError( nSize, nMaxSize, entry, locale );
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the maximum size of the images of an entry
+     * 
+     * @param entry
+     *            the entry
+     * @return the maximum size in bytes, or -1 if there is no size limit
+     */
+    private int getMaxSize( Entry entry )
+    {
+        int nMaxSize = Integer.parseInt( entry.getFieldByCode( FIELD_MAX_SIZE ).getValue( ) );
+
+        // If no max size defined in the db, then fetch the default max size from the
+        // properties file
+        if ( nMaxSize == GenericAttributesUtils.CONSTANT_ID_NULL )
+        {
+            nMaxSize = AppPropertiesService.getPropertyInt( FileAttributesUtils.PROPERTY_UPLOAD_FILE_DEFAULT_MAX_SIZE, 5242880 );
+        }
+
+        return nMaxSize;
+    }
+
+    /**
+     * Get the error of an image larger than the maximum size
+     * 
+     * @param nSize
+     *            the size of the image
+     * @param nMaxSize
+     *            the maximum size
+     * @param entry
+     *            the entry
+     * @param locale
+     *            the locale
+     * @return The error if the image is too large, or null otherwise
+     */
+    private GenericAttributeError getSizeError( int nSize, int nMaxSize, Entry entry, Locale locale )
+    {
+        if ( nSize > nMaxSize )
+        {
+            Object [ ] params = {
+                    nMaxSize
+            };
+            String strMessage = I18nService.getLocalizedString( FileAttributesUtils.PROPERTY_MESSAGE_ERROR_UPLOADING_FILE_FILE_MAX_SIZE, params, locale );
+            GenericAttributeError error = new GenericAttributeError( );
+            error.setMandatoryError( false );
+            error.setTitleQuestion( entry.getTitle( ) );
+            error.setErrorMessage( strMessage );
+
+            return error;
         }
 
         return null;
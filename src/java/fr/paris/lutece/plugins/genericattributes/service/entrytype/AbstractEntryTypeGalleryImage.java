@@ -43,13 +43,12 @@ import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.business.FileMetadataHome;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.business.MandatoryError;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import fr.paris.lutece.portal.business.file.File;
-import fr.paris.lutece.portal.business.file.FileHome;
-import fr.paris.lutece.portal.business.physicalfile.PhysicalFileHome;
 import fr.paris.lutece.portal.service.fileimage.FileImagePublicService;
 import fr.paris.lutece.portal.service.fileupload.FileUploadService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
@@ -114,8 +113,8 @@ public abstract class AbstractEntryTypeGalleryImage extends EntryTypeService
         {
             FileImagePublicService.init( );
 
-            File file = FileHome.findByPrimaryKey( Integer.parseInt( strFileGallery ) );
-            file.getPhysicalFile( ).setValue( PhysicalFileHome.findByPrimaryKey( file.getIdFile( ) ).getValue( ) );
+            // The content of the image is read when the response is stored
+            File file = FileMetadataHome.findByPrimaryKey( Integer.parseInt( strFileGallery ) );
 
             Response response = new Response( );
             response.setEntry( entry );
@@ -37,12 +37,12 @@ import java.util.List;
 import java.util.Locale;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.xml.bind.DatatypeConverter;
 
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.business.MandatoryError;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.util.DataUrlImage;
 import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
 import fr.paris.lutece.portal.web.upload.MultipartHttpServletRequest;
@@ -95,7 +95,7 @@ public abstract class AbstractEntryTypeImage extends AbstractEntryTypeUpload
      * @param bCreatePhysicalFile
      *            True to create the physical file associated with the file of the response, false otherwise. Note that the physical file will never be saved in
      *            the database by this method, like any other created object.
-     * @return The created response
+     * @return The created response, without file if the physical file must be created and the source is blank or is not valid Base64
      */
     protected Response getResponseFromImage( String imageSource, Entry entry, boolean bCreatePhysicalFile )
     {
@@ -103,16 +103,24 @@ public abstract class AbstractEntryTypeImage extends AbstractEntryTypeUpload
         response.setEntry( entry );
 
         File file = new File( );
-        DatatypeConverter.parseBase64Binary( imageSource );
 
         file.setTitle( "crop_" + entry.getTitle( ) );
 
         if ( bCreatePhysicalFile )
         {
+            DataUrlImage image = DataUrlImage.decode( imageSource );
+
+            if ( image == null )
+            {
+                // An empty physical file must not be stored
+                return response;
+            }
+
             file.setMimeType( FileSystemUtil.getMIMEType( file.getTitle( ) ) );
 
             PhysicalFile physicalFile = new PhysicalFile( );
-            physicalFile.setValue( DatatypeConverter.parseBase64Binary( imageSource ) );
+            physicalFile.setValue( image.getValue( ) );
+            file.setSize( image.getSize( ) );
             file.setPhysicalFile( physicalFile );
         }
 
@@ -33,15 +33,13 @@
  */
 package fr.paris.lutece.plugins.genericattributes.service.entrytype;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
-import javax.imageio.ImageIO;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.fileupload.FileItem;
@@ -56,6 +54,7 @@ import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.plugins.genericattributes.service.file.FileService;
 import fr.paris.lutece.plugins.genericattributes.util.FileAttributesUtils;
+import fr.paris.lutece.plugins.genericattributes.util.ImageHeader;
 import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.business.regularexpression.RegularExpression;
 import fr.paris.lutece.portal.service.fileupload.FileUploadService;
@@ -388,7 +387,7 @@ public abstract class AbstractEntryTypeUpload extends EntryTypeService
     }
 
     /**
-     * Do check that an uploaded file is an image
+     * Do check that an uploaded file is an image. Only the header of the image is read, the pixels are not decoded.
      * 
      * @param fileItem
      *            The file item
@@ -401,21 +400,18 @@ public abstract class AbstractEntryTypeUpload extends EntryTypeService
     public GenericAttributeError doCheckforImages( FileItem fileItem, Entry entry, Locale locale )
     {
         String strFilename = FileUploadService.getFileNameOnly( fileItem );
-        BufferedImage image = null;
+        ImageHeader header = null;
 
-        try
+        try ( InputStream inputStream = fileItem.getInputStream( ) )
         {
-            if ( fileItem.get( ) != null )
-            {
-                image = ImageIO.read( new ByteArrayInputStream( fileItem.get( ) ) );
-            }
+            header = ImageHeader.read( inputStream );
         }
         catch( IOException e )
         {
             AppLogService.error( e );
         }
 
-        if ( ( image == null ) && StringUtils.isNotBlank( strFilename ) )
+        if ( ( header == null ) && StringUtils.isNotBlank( strFilename ) )
         {
             GenericAttributeError genAttError = new GenericAttributeError( );
             genAttError.setMandatoryError( false );
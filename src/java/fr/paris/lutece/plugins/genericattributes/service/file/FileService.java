@@ -33,13 +33,31 @@
  */
 package fr.paris.lutece.plugins.genericattributes.service.file;
 
+import fr.paris.lutece.plugins.genericattributes.business.FileMetadataHome;
+import fr.paris.lutece.plugins.genericattributes.business.FileReferenceHome;
+import fr.paris.lutece.plugins.genericattributes.business.LazyPhysicalFile;
+import fr.paris.lutece.plugins.genericattributes.service.ImageDerivativeCache;
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
 import fr.paris.lutece.portal.business.file.File;
 import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
 import fr.paris.lutece.portal.business.physicalfile.PhysicalFileHome;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.lang3.StringUtils;
 
 /**
  *
- * FileService
+ * FileService. The files of the responses with the same content and metadata share a single core file, whose references are counted by the
+ * plugin: the files of the responses must be created, updated and removed through this service, never directly with the core FileHome.
  *
  */
 public class FileService
@@ -49,13 +67,18 @@ public class FileService
      */
     public static final String BEAN_SERVICE = "genericattributes.fileService";
 
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte KEY_SEPARATOR = 0;
+
     /**
      * Returns an instance of a file whose identifier is specified in parameter
      * 
      * @param nKey
      *            The file primary key
      * @param bGetFileData
-     *            True to get the physical file of the file, false otherwise
+     *            True to get the physical file of the file with its content, false otherwise. The callers which may not need the content use
+     *            {@link #findMetadataByPrimaryKey(int)}
      * @return an instance of file
      */
     public File findByPrimaryKey( int nKey, boolean bGetFileData )
@@ -69,4 +92,282 @@ public class FileService
 
         return file;
     }
+
+    /**
+     * Returns the metadata of a file, without reading its content. The content is read on demand through the {@link LazyPhysicalFile} of the
+     * file.
+     * 
+     * @param nKey
+     *            The file primary key
+     * @return the file, or null if it does not exist
+     */
+    public File findMetadataByPrimaryKey( int nKey )
+    {
+        return FileMetadataHome.findByPrimaryKey( nKey );
+    }
+
+    /**
+     * Create a file of a response. If a file with the same content, title and MIME type exists, a reference to it is added and the file takes its
+     * id and the id of its physical file. Otherwise the file is created with its physical file, referenced once. Two identical files created at the
+     * same time may still get two core files.
+     * 
+     * @param file
+     *            the file to create, with its physical file
+     */
+    public void createFile( File file )
+    {
+        byte [ ] content = getContent( file );
+
+        if ( content == null )
+        {
+            FileHome.create( file );
+
+            return;
+        }
+
+        String strKey = getFileKey( file, content );
+
+        TransactionManager.beginTransaction( GenericAttributesUtils.getPlugin( ) );
+
+        try
+        {
+            if ( !acquire( file, strKey ) )
+            {
+                FileHome.create( file );
+                FileReferenceHome.create( file.getIdFile( ), strKey );
+            }
+
+            TransactionManager.commitTransaction( GenericAttributesUtils.getPlugin( ) );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( GenericAttributesUtils.getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Update the file of a response. A file shared with other responses is never changed : the reference of the response is moved to a file with
+     * the new content, whose id is set to the given file. A file referenced by this response only is updated in place, and the derivatives of its
+     * image are invalidated.
+     * 
+     * @param file
+     *            the file to update, with its physical file
+     */
+    public void updateFile( File file )
+    {
+        TransactionManager.beginTransaction( GenericAttributesUtils.getPlugin( ) );
+
+        try
+        {
+            // The release locks the reference count until the end of the transaction
+            int nReferenceCount = FileReferenceHome.release( file.getIdFile( ) );
+
+            if ( nReferenceCount > 0 )
+            {
+                PhysicalFile physicalFile = new PhysicalFile( );
+                physicalFile.setValue( getContent( file ) );
+                file.setPhysicalFile( physicalFile );
+                createFile( file );
+            }
+            else
+            {
+                FileHome.update( file );
+                ImageDerivativeCache.getInstance( ).remove( file.getIdFile( ) );
+
+                if ( nReferenceCount == 0 )
+                {
+                    FileReferenceHome.create( file.getIdFile( ), getFileKey( file, getContent( file ) ) );
+                }
+            }
+
+            TransactionManager.commitTransaction( GenericAttributesUtils.getPlugin( ) );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( GenericAttributesUtils.getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Update a file for all the responses which reference it, for a change which keeps the meaning of its content, such as the normalization of
+     * an image. The key of the file is kept, so that the files later created with the original content keep sharing it. The derivatives of the
+     * image of the file are invalidated.
+     * 
+     * @param file
+     *            the file to update, with its physical file
+     */
+    public void updateSharedFile( File file )
+    {
+        FileHome.update( file );
+        ImageDerivativeCache.getInstance( ).remove( file.getIdFile( ) );
+    }
+
+    /**
+     * Remove a reference of a response to a file. The file is removed with its physical file when its last reference is removed, and the
+     * derivatives of its image are then invalidated.
+     * 
+     * @param nIdFile
+     *            the id of the file
+     */
+    public void removeFile( int nIdFile )
+    {
+        TransactionManager.beginTransaction( GenericAttributesUtils.getPlugin( ) );
+
+        try
+        {
+            if ( FileReferenceHome.release( nIdFile ) <= 0 )
+            {
+                FileHome.remove( nIdFile );
+                ImageDerivativeCache.getInstance( ).remove( nIdFile );
+            }
+
+            TransactionManager.commitTransaction( GenericAttributesUtils.getPlugin( ) );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( GenericAttributesUtils.getPlugin( ) );
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Add a reference to an existing file with a key. A reference count whose file was removed outside this service is dropped.
+     * 
+     * @param file
+     *            the file to create, which takes the ids of the existing file
+     * @param strKey
+     *            the key of the file
+     * @return true if the file references an existing file, false if it must be created
+     */
+    private static boolean acquire( File file, String strKey )
+    {
+        int nIdFile = FileReferenceHome.acquire( strKey );
+
+        if ( nIdFile < 0 )
+        {
+            return false;
+        }
+
+        File fileExisting = FileMetadataHome.findByPrimaryKey( nIdFile );
+
+        if ( ( fileExisting == null ) || ( fileExisting.getPhysicalFile( ) == null ) )
+        {
+            FileReferenceHome.remove( nIdFile );
+
+            return false;
+        }
+
+        file.setIdFile( nIdFile );
+        file.getPhysicalFile( ).setIdPhysicalFile( fileExisting.getPhysicalFile( ).getIdPhysicalFile( ) );
+
+        return true;
+    }
+
+    /**
+     * Get the content of a file, from its physical file or else from the database
+     * 
+     * @param file
+     *            the file
+     * @return the content, or null if the file has no content
+     */
+    private static byte [ ] getContent( File file )
+    {
+        PhysicalFile physicalFile = file.getPhysicalFile( );
+
+        if ( ( physicalFile != null ) && ( physicalFile.getValue( ) != null ) )
+        {
+            return physicalFile.getValue( );
+        }
+
+        File fileStored = ( file.getIdFile( ) > 0 ) ? FileMetadataHome.findByPrimaryKey( file.getIdFile( ) ) : null;
+
+        return ( ( fileStored != null ) && ( fileStored.getPhysicalFile( ) != null ) ) ? fileStored.getPhysicalFile( ).getValue( ) : null;
+    }
+
+    /**
+     * Compute the key of a file, from its title, its MIME type and its content
+     * 
+     * @param file
+     *            the file
+     * @param content
+     *            the content of the file
+     * @return the key, in hexadecimal
+     */
+    static String getFileKey( File file, byte [ ] content )
+    {
+        MessageDigest messageDigest = getMessageDigest( );
+        messageDigest.update( StringUtils.defaultString( file.getTitle( ) ).getBytes( StandardCharsets.UTF_8 ) );
+        messageDigest.update( KEY_SEPARATOR );
+        messageDigest.update( StringUtils.defaultString( file.getMimeType( ) ).getBytes( StandardCharsets.UTF_8 ) );
+        messageDigest.update( KEY_SEPARATOR );
+
+        return digest( messageDigest, new ByteArrayInputStream( content ) );
+    }
+
+    /**
+     * Compute the digest of a content, reading it by blocks
+     * 
+     * @param inputStream
+     *            the content
+     * @return the digest, in hexadecimal
+     */
+    public static String getDigest( InputStream inputStream )
+    {
+        return digest( getMessageDigest( ), inputStream );
+    }
+
+    /**
+     * Get a new message digest
+     * 
+     * @return the message digest
+     */
+    private static MessageDigest getMessageDigest( )
+    {
+        try
+        {
+            return MessageDigest.getInstance( DIGEST_ALGORITHM );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Complete a digest with a content, reading it by blocks
+     * 
+     * @param messageDigest
+     *            the message digest
+     * @param inputStream
+     *            the content
+     * @return the digest, in hexadecimal
+     */
+    private static String digest( MessageDigest messageDigest, InputStream inputStream )
+    {
+        try
+        {
+            byte [ ] buffer = new byte [ BUFFER_SIZE];
+            int nRead;
+
+            while ( ( nRead = inputStream.read( buffer ) ) != -1 )
+            {
+                messageDigest.update( buffer, 0, nRead );
+            }
+
+            StringBuilder sbDigest = new StringBuilder( );
+
+            for ( byte b : messageDigest.digest( ) )
+            {
+                sbDigest.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+            }
+
+            return sbDigest.toString( );
+        }
+        catch( IOException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
 }
@@ -33,12 +33,9 @@
  */
 package fr.paris.lutece.plugins.genericattributes.service.upload;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,12 +48,12 @@ import org.apache.commons.lang3.StringUtils;
 import fr.paris.lutece.plugins.asynchronousupload.service.AbstractAsynchronousUploadHandler;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
+import fr.paris.lutece.plugins.genericattributes.business.GenAttFileItem;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.service.entrytype.EntryTypeServiceManager;
 import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.util.AppException;
-import fr.paris.lutece.util.filesystem.UploadUtil;
 
 /**
  * Abstract class to manage uploaded files for generic attributes entries of type files
@@ -68,10 +65,12 @@ public abstract class AbstractGenAttUploadHandler extends AbstractAsynchronousUp
 
     // Error messages
     private static final String ERROR_MESSAGE_UNKNOWN_ERROR = "genericattributes.message.unknownError";
+    private static final String ERROR_MESSAGE_SESSION_QUOTA_EXCEEDED = "genericattributes.message.uploadSessionQuotaExceeded";
+    private static final String ERROR_MESSAGE_GLOBAL_QUOTA_EXCEEDED = "genericattributes.message.uploadGlobalQuotaExceeded";
+    private static final String ERROR_MESSAGE_SESSION_EVICTED = "genericattributes.message.uploadSessionEvicted";
 
-    /** <sessionId,<fieldName,fileItems>> */
-    /** contains uploaded file items */
-    private static Map<String, Map<String, List<FileItem>>> _mapAsynchronousUpload = new ConcurrentHashMap<>( );
+    /** contains uploaded file items, by session and field name */
+    private static UploadSessionStore _uploadSessionStore = UploadSessionStore.getInstance( );
 
     /**
      * {@inheritDoc}
@@ -82,7 +81,12 @@ public abstract class AbstractGenAttUploadHandler extends AbstractAsynchronousUp
         if ( StringUtils.isNotBlank( strFieldName ) && ( strFieldName.length( ) > PREFIX_ENTRY_ID.length( ) ) )
         {
             String sessionId = getCustomSessionId( request.getSession( ) );
-            initMap( sessionId, strFieldName );
+
+            // The files uploaded before a long inactivity were evicted: the user must upload them again
+            if ( _uploadSessionStore.consumeEviction( sessionId ) )
+            {
+                return I18nService.getLocalizedString( ERROR_MESSAGE_SESSION_EVICTED, locale );
+            }
 
             String strIdEntry = getEntryIdFromFieldName( strFieldName );
 
@@ -106,7 +110,7 @@ public abstract class AbstractGenAttUploadHandler extends AbstractAsynchronousUp
                     return error.getErrorMessage( );
                 }
 
-                return null;
+                return checkQuota( sessionId, listFileItemsToUpload, locale );
             }
         }
 
@@ -124,14 +128,7 @@ public abstract class AbstractGenAttUploadHandler extends AbstractAsynchronousUp
             throw new AppException( "id field name is not provided for the current file upload" );
         }
 
-        String sessionId = getCustomSessionId( session );
-
-        initMap( sessionId, strFieldName );
-
-        // find session-related files in the map
-        Map<String, List<FileItem>> mapFileItemsSession = _mapAsynchronousUpload.get( sessionId );
-
-        return mapFileItemsSession.get( strFieldName );
+        return _uploadSessionStore.getFiles( getCustomSessionId( session ), strFieldName );
     }
 
     /**
@@ -140,39 +137,21 @@ public abstract class AbstractGenAttUploadHandler extends AbstractAsynchronousUp
     @Override
     public void addFileItemToUploadedFilesList( FileItem fileItem, String strFieldName, HttpServletRequest request )
     {
-        // This is the name that will be displayed in the form. We keep
-        // the original name, but clean it to make it cross-platform.
-        String strFileName = UploadUtil.cleanFileName( fileItem.getName( ).trim( ) );
-
         String sessionId = getCustomSessionId( request.getSession( ) );
-        initMap( sessionId, strFieldName );
-
-        // Check if this file has not already been uploaded
-        List<FileItem> uploadedFiles = getListUploadedFiles( strFieldName, request.getSession( ) );
 
-        if ( uploadedFiles != null )
+        if ( StringUtils.isBlank( strFieldName ) )
         {
-            boolean bNew = true;
-
-            if ( !uploadedFiles.isEmpty( ) )
-            {
-                Iterator<FileItem> iterUploadedFiles = uploadedFiles.iterator( );
-
-                while ( bNew && iterUploadedFiles.hasNext( ) )
-                {
-                    FileItem uploadedFile = iterUploadedFiles.next( );
-                    String strUploadedFileName = UploadUtil.cleanFileName( uploadedFile.getName( ).trim( ) );
-                    // If we find a file with the same name and the same
-                    // length, we consider that the current file has
-                    // already been uploaded
-                    bNew = !( StringUtils.equals( strUploadedFileName, strFileName ) && ( uploadedFile.getSize( ) == fileItem.getSize( ) ) );
-                }
-            }
+            throw new AppException( "id field name is not provided for the current file upload" );
+        }
 
-            if ( bNew )
-            {
-                uploadedFiles.add( fileItem );
-            }
+        try
+        {
+            addFileItem( sessionId, fileItem, strFieldName );
+        }
+        finally
+        {
+            // The size of the file is counted by the session once added, and is no longer needed once rejected
+            _uploadSessionStore.releaseReservation( sessionId, fileItem.getSize( ) );
         }
     }
 
@@ -182,7 +161,7 @@ public abstract class AbstractGenAttUploadHandler extends AbstractAsynchronousUp
         String sessionId = (String) session.getAttribute( PARAM_CUSTOM_SESSION_ID );
         if ( sessionId != null )
         {
-            _mapAsynchronousUpload.remove( sessionId );
+            _uploadSessionStore.removeSession( sessionId );
         }
 
     }
@@ -223,28 +202,82 @@ public abstract class AbstractGenAttUploadHandler extends AbstractAsynchronousUp
     }
 
     /**
-     * Init the map
+     * Add a file to the uploaded files of a field, unless a file with the same content was already uploaded
      * 
      * @param strSessionId
      *            the session id
+     * @param fileItem
+     *            the file
      * @param strFieldName
-     *            the field name
+     *            the name of the field
      */
-    private void initMap( String strSessionId, String strFieldName )
+    private void addFileItem( String strSessionId, FileItem fileItem, String strFieldName )
     {
-        // find session-related files in the map
-        Map<String, List<FileItem>> mapFileItemsSession = _mapAsynchronousUpload.get( strSessionId );
+        UploadedFileList uploadedFiles = _uploadSessionStore.getFiles( strSessionId, strFieldName );
+
+        // A file with the same content as an uploaded file is considered as
+        // already uploaded, whatever its name
+        String strDigest = UploadedFileList.getDigest( fileItem );
 
-        // create map if not exists
-        if ( mapFileItemsSession == null )
+        if ( uploadedFiles.containsDigest( strDigest ) )
         {
-            synchronized( this )
+            return;
+        }
+
+        GenAttFileItem uploadedFile;
+
+        try
+        {
+            // Large files are kept on disk until the session ends
+            uploadedFile = GenAttFileItem.spool( fileItem );
+        }
+        catch( IOException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+
+        if ( uploadedFiles.addIfAbsent( uploadedFile, strDigest ) )
+        {
+            _uploadSessionStore.updateSize( strSessionId );
+        }
+        else if ( uploadedFile != fileItem )
+        {
+            // The same file was uploaded concurrently, or the session was removed
+            uploadedFile.delete( );
+        }
+    }
+
+    /**
+     * Check that files can be added to the uploaded files of a session without exceeding the quota of the session or the budget of all the sessions
+     * 
+     * @param strSessionId
+     *            the session id
+     * @param listFileItemsToUpload
+     *            the files to upload
+     * @param locale
+     *            the locale
+     * @return the error message, or null if the files can be added and their size is reserved
+     */
+    private String checkQuota( String strSessionId, List<FileItem> listFileItemsToUpload, Locale locale )
+    {
+        long lSize = 0;
+
+        if ( listFileItemsToUpload != null )
+        {
+            for ( FileItem fileItem : listFileItemsToUpload )
             {
-                // Ignore double check locking error : assignation and instanciation of objects are separated.
-                mapFileItemsSession = _mapAsynchronousUpload.computeIfAbsent( strSessionId, s -> new ConcurrentHashMap<>( ) );
+                lSize += fileItem.getSize( );
             }
         }
 
-        mapFileItemsSession.computeIfAbsent( strFieldName, s -> new ArrayList<>( ) );
+        switch( _uploadSessionStore.checkQuota( strSessionId, lSize ) )
+        {
+            case UploadSessionStore.QUOTA_SESSION_EXCEEDED:
+                return I18nService.getLocalizedString( ERROR_MESSAGE_SESSION_QUOTA_EXCEEDED, locale );
+            case UploadSessionStore.QUOTA_GLOBAL_EXCEEDED:
+                return I18nService.getLocalizedString( ERROR_MESSAGE_GLOBAL_QUOTA_EXCEEDED, locale );
+            default:
+                return null;
+        }
     }
 }
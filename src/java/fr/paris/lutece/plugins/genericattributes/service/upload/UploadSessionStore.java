@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service.upload;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.fileupload.FileItem;
+
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Stores the files uploaded asynchronously, by session and field, within a byte budget.
+ * <p>
+ * The files of all the sessions may not exceed <code>genericattributes.upload.store.maxBytes</code> bytes, and the files of a session
+ * <code>genericattributes.upload.store.maxSessionBytes</code> bytes. The sizes count the files kept in memory and the files spooled to disk, and the
+ * bytes reserved by {@link #checkQuota(String, long)} for the files being uploaded. The sessions without upload activity for
+ * <code>genericattributes.upload.store.idleTimeout</code> seconds are evicted with their files, without waiting for the end of the HTTP session;
+ * the next upload of an evicted session is told that its files were removed (see {@link #consumeEviction(String)}).
+ * </p>
+ */
+public final class UploadSessionStore
+{
+    /**
+     * The files can be added
+     */
+    public static final int QUOTA_OK = 0;
+
+    /**
+     * The files would exceed the quota of the session
+     */
+    public static final int QUOTA_SESSION_EXCEEDED = 1;
+
+    /**
+     * The files would exceed the budget of all the sessions
+     */
+    public static final int QUOTA_GLOBAL_EXCEEDED = 2;
+
+    private static final String PROPERTY_MAX_BYTES = "genericattributes.upload.store.maxBytes";
+    private static final String PROPERTY_MAX_SESSION_BYTES = "genericattributes.upload.store.maxSessionBytes";
+    private static final String PROPERTY_IDLE_TIMEOUT = "genericattributes.upload.store.idleTimeout";
+    private static final long DEFAULT_MAX_BYTES = 536870912L;
+    private static final long DEFAULT_MAX_SESSION_BYTES = 104857600L;
+    private static final int DEFAULT_IDLE_TIMEOUT = 1800;
+    private static final long SWEEP_INTERVAL = 60000L;
+
+    // Delay after which the bytes reserved for an upload which never completed are released
+    private static final long RESERVATION_TIMEOUT = 60000L;
+
+    private static final UploadSessionStore INSTANCE = new UploadSessionStore( );
+
+    private final Map<String, UploadSession> _mapSession = new ConcurrentHashMap<>( );
+    private final Map<String, Long> _mapEvictionTime = new ConcurrentHashMap<>( );
+    private final long _lMaxBytes;
+    private final long _lMaxSessionBytes;
+    private final long _lIdleTimeout;
+    private final AtomicLong _lTotalBytes = new AtomicLong( );
+    private final AtomicLong _lEvictionCount = new AtomicLong( );
+    private final AtomicLong _lLastSweep = new AtomicLong( System.currentTimeMillis( ) );
+
+    /**
+     * Private constructor
+     */
+    private UploadSessionStore( )
+    {
+        this( AppPropertiesService.getPropertyLong( PROPERTY_MAX_BYTES, DEFAULT_MAX_BYTES ),
+                AppPropertiesService.getPropertyLong( PROPERTY_MAX_SESSION_BYTES, DEFAULT_MAX_SESSION_BYTES ),
+                AppPropertiesService.getPropertyInt( PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT ) * 1000L );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param lMaxBytes
+     *            the maximum size of the files of all the sessions
+     * @param lMaxSessionBytes
+     *            the maximum size of the files of a session
+     * @param lIdleTimeout
+     *            the delay in milliseconds after which a session without upload activity is evicted
+     */
+    UploadSessionStore( long lMaxBytes, long lMaxSessionBytes, long lIdleTimeout )
+    {
+        _lMaxBytes = lMaxBytes;
+        _lMaxSessionBytes = lMaxSessionBytes;
+        _lIdleTimeout = lIdleTimeout;
+    }
+
+    /**
+     * Get the instance of the store
+     * 
+     * @return the instance of the store
+     */
+    public static UploadSessionStore getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the files of a field of a session, creating an empty list if there is none
+     * 
+     * @param strSessionId
+     *            the id of the session
+     * @param strFieldName
+     *            the name of the field
+     * @return the files of the field
+     */
+    public UploadedFileList getFiles( String strSessionId, String strFieldName )
+    {
+        sweepIfDue( );
+
+        while ( true )
+        {
+            UploadSession session = _mapSession.computeIfAbsent( strSessionId, s -> new UploadSession( ) );
+
+            synchronized( session )
+            {
+                // A session evicted in the meantime is replaced, so that no file is added to a released session
+                if ( !session._bReleased )
+                {
+                    session._lLastAccess = System.currentTimeMillis( );
+
+                    return session._mapFiles.computeIfAbsent( strFieldName, s -> new UploadedFileList( ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether files can be added to a session, and reserve their size if they can. The reservation is released by
+     * {@link #releaseReservation(String, long)} once the files are added or rejected, or after a delay if the upload never completes.
+     * 
+     * @param strSessionId
+     *            the id of the session
+     * @param lSize
+     *            the size of the files to add
+     * @return {@link #QUOTA_OK}, {@link #QUOTA_SESSION_EXCEEDED} or {@link #QUOTA_GLOBAL_EXCEEDED}
+     */
+    public int checkQuota( String strSessionId, long lSize )
+    {
+        if ( !reserveGlobal( lSize ) )
+        {
+            // Make room by evicting the idle sessions first
+            sweep( );
+
+            if ( !reserveGlobal( lSize ) )
+            {
+                return QUOTA_GLOBAL_EXCEEDED;
+            }
+        }
+
+        while ( true )
+        {
+            UploadSession session = _mapSession.computeIfAbsent( strSessionId, s -> new UploadSession( ) );
+
+            synchronized( session )
+            {
+                if ( session._bReleased )
+                {
+                    continue;
+                }
+
+                long lNow = System.currentTimeMillis( );
+                session._lLastAccess = lNow;
+
+                if ( lNow - session._lReservationTime > RESERVATION_TIMEOUT )
+                {
+                    _lTotalBytes.addAndGet( -session._lReservedBytes );
+                    session._lReservedBytes = 0;
+                }
+
+                if ( updateSize( session ) + session._lReservedBytes + lSize > _lMaxSessionBytes )
+                {
+                    _lTotalBytes.addAndGet( -lSize );
+
+                    return QUOTA_SESSION_EXCEEDED;
+                }
+
+                session._lReservedBytes += lSize;
+                session._lReservationTime = lNow;
+
+                return QUOTA_OK;
+            }
+        }
+    }
+
+    /**
+     * Release bytes reserved by {@link #checkQuota(String, long)}, once a file is added to the session or rejected
+     * 
+     * @param strSessionId
+     *            the id of the session
+     * @param lSize
+     *            the size of the file
+     */
+    public void releaseReservation( String strSessionId, long lSize )
+    {
+        UploadSession session = _mapSession.get( strSessionId );
+
+        if ( session != null )
+        {
+            synchronized( session )
+            {
+                long lReleased = Math.min( lSize, session._lReservedBytes );
+                session._lReservedBytes -= lReleased;
+                _lTotalBytes.addAndGet( -lReleased );
+            }
+        }
+    }
+
+    /**
+     * Update the size of a session after files were added or removed
+     * 
+     * @param strSessionId
+     *            the id of the session
+     */
+    public void updateSize( String strSessionId )
+    {
+        UploadSession session = _mapSession.get( strSessionId );
+
+        if ( session != null )
+        {
+            updateSize( session );
+        }
+    }
+
+    /**
+     * Remove a session and delete its files
+     * 
+     * @param strSessionId
+     *            the id of the session
+     */
+    public void removeSession( String strSessionId )
+    {
+        UploadSession session = _mapSession.remove( strSessionId );
+        _mapEvictionTime.remove( strSessionId );
+
+        if ( session != null )
+        {
+            release( session );
+        }
+    }
+
+    /**
+     * Check whether the files of a session were evicted because the session was idle, and forget the eviction
+     * 
+     * @param strSessionId
+     *            the id of the session
+     * @return true if the files of the session were evicted since the last call
+     */
+    public boolean consumeEviction( String strSessionId )
+    {
+        return _mapEvictionTime.remove( strSessionId ) != null;
+    }
+
+    /**
+     * Get the size of the files of all the sessions, with the bytes reserved for the files being uploaded
+     * 
+     * @return the size in bytes
+     */
+    public long getTotalBytes( )
+    {
+        return _lTotalBytes.get( );
+    }
+
+    /**
+     * Get the number of sessions with uploaded files
+     * 
+     * @return the number of sessions
+     */
+    public int getSessionCount( )
+    {
+        return _mapSession.size( );
+    }
+
+    /**
+     * Get the number of sessions evicted because they were idle
+     * 
+     * @return the number of evicted sessions
+     */
+    public long getEvictionCount( )
+    {
+        return _lEvictionCount.get( );
+    }
+
+    /**
+     * Reserve bytes in the budget of all the sessions
+     * 
+     * @param lSize
+     *            the number of bytes
+     * @return true if the bytes are reserved, false if they would exceed the budget
+     */
+    private boolean reserveGlobal( long lSize )
+    {
+        while ( true )
+        {
+            long lTotalBytes = _lTotalBytes.get( );
+
+            if ( lTotalBytes + lSize > _lMaxBytes )
+            {
+                return false;
+            }
+
+            if ( _lTotalBytes.compareAndSet( lTotalBytes, lTotalBytes + lSize ) )
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Evict the idle sessions if the last sweep is old enough
+     */
+    private void sweepIfDue( )
+    {
+        long lLastSweep = _lLastSweep.get( );
+        long lNow = System.currentTimeMillis( );
+
+        if ( lNow - lLastSweep >= SWEEP_INTERVAL && _lLastSweep.compareAndSet( lLastSweep, lNow ) )
+        {
+            sweep( );
+        }
+    }
+
+    /**
+     * Evict the sessions idle for more than the idle timeout, and forget the evictions older than the idle timeout
+     */
+    void sweep( )
+    {
+        long lNow = System.currentTimeMillis( );
+        long lIdleSince = lNow - _lIdleTimeout;
+
+        for ( Map.Entry<String, UploadSession> entrySession : _mapSession.entrySet( ) )
+        {
+            UploadSession session = entrySession.getValue( );
+
+            // The idleness is checked again under the lock of the session, which getFiles holds when it accesses the session
+            synchronized( session )
+            {
+                if ( session._lLastAccess < lIdleSince && _mapSession.remove( entrySession.getKey( ), session ) )
+                {
+                    release( session );
+                    _mapEvictionTime.put( entrySession.getKey( ), lNow );
+                    _lEvictionCount.incrementAndGet( );
+                }
+            }
+        }
+
+        _mapEvictionTime.values( ).removeIf( lEvictionTime -> lEvictionTime < lIdleSince );
+    }
+
+    /**
+     * Delete the files of a removed session and remove its size and its reserved bytes from the total
+     * 
+     * @param session
+     *            the session
+     */
+    private void release( UploadSession session )
+    {
+        synchronized( session )
+        {
+            session._bReleased = true;
+            session._mapFiles.values( ).forEach( UploadedFileList::close );
+            _lTotalBytes.addAndGet( -session._lSize - session._lReservedBytes );
+            session._lSize = 0;
+            session._lReservedBytes = 0;
+        }
+    }
+
+    /**
+     * Compute the size of the files of a session, and report its change to the total. The size is computed from the lists of files, so that the
+     * files removed by the upload handlers are taken into account.
+     * 
+     * @param session
+     *            the session
+     * @return the size of the files of the session
+     */
+    private long updateSize( UploadSession session )
+    {
+        long lSize = 0;
+
+        for ( UploadedFileList listFiles : session._mapFiles.values( ) )
+        {
+            for ( FileItem fileItem : listFiles )
+            {
+                lSize += fileItem.getSize( );
+            }
+        }
+
+        synchronized( session )
+        {
+            if ( session._bReleased )
+            {
+                return 0;
+            }
+
+            _lTotalBytes.addAndGet( lSize - session._lSize );
+            session._lSize = lSize;
+        }
+
+        return lSize;
+    }
+
+    /**
+     * The uploaded files of a session
+     */
+    private static final class UploadSession
+    {
+        private final Map<String, UploadedFileList> _mapFiles = new ConcurrentHashMap<>( );
+        private volatile long _lLastAccess = System.currentTimeMillis( );
+        private long _lSize;
+        private long _lReservedBytes;
+        private long _lReservationTime;
+        private boolean _bReleased;
+    }
+}
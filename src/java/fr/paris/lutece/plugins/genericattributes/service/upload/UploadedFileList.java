@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import org.apache.commons.fileupload.FileItem;
+
+import fr.paris.lutece.plugins.genericattributes.service.file.FileService;
+import fr.paris.lutece.portal.service.util.AppException;
+
+/**
+ * The files uploaded for a field of a session. The list is thread safe, and indexes its files by the digest of their content so that duplicates
+ * are found without reading the other files. The iterators are snapshots of the list; their removals, like all the other modifications, go through
+ * the index. The digests of the added files are computed before the lock of the list is taken.
+ */
+public final class UploadedFileList extends AbstractList<FileItem> implements RandomAccess
+{
+    private final List<FileItem> _listFiles = new CopyOnWriteArrayList<>( );
+    private final Map<FileItem, String> _mapDigestByFile = new IdentityHashMap<>( );
+    private final Map<String, Integer> _mapCountByDigest = new HashMap<>( );
+    private boolean _bClosed;
+
+    /**
+     * Package private constructor, the lists are created by the {@link UploadSessionStore}
+     */
+    UploadedFileList( )
+    {
+    }
+
+    /**
+     * Compute the digest of the content of a file item
+     * 
+     * @param fileItem
+     *            the file item
+     * @return the digest of the content
+     */
+    public static String getDigest( FileItem fileItem )
+    {
+        try ( InputStream inputStream = fileItem.getInputStream( ) )
+        {
+            return FileService.getDigest( inputStream );
+        }
+        catch( IOException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Check whether the list contains a file with a given content
+     * 
+     * @param strDigest
+     *            the digest of the content
+     * @return true if a file of the list has this content
+     */
+    public synchronized boolean containsDigest( String strDigest )
+    {
+        return _mapCountByDigest.containsKey( strDigest );
+    }
+
+    /**
+     * Add a file to the list unless the list already contains a file with the same content
+     * 
+     * @param fileItem
+     *            the file to add
+     * @param strDigest
+     *            the digest of the content of the file
+     * @return true if the file was added, false if it is a duplicate or if the list is closed
+     */
+    public synchronized boolean addIfAbsent( FileItem fileItem, String strDigest )
+    {
+        if ( _bClosed || _mapCountByDigest.containsKey( strDigest ) )
+        {
+            return false;
+        }
+
+        _listFiles.add( fileItem );
+        index( fileItem, strDigest );
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileItem get( int index )
+    {
+        return _listFiles.get( index );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size( )
+    {
+        return _listFiles.size( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<FileItem> iterator( )
+    {
+        Iterator<FileItem> iterator = _listFiles.iterator( );
+
+        return new Iterator<FileItem>( )
+        {
+            private FileItem _fileItemLast;
+
+            @Override
+            public boolean hasNext( )
+            {
+                return iterator.hasNext( );
+            }
+
+            @Override
+            public FileItem next( )
+            {
+                _fileItemLast = iterator.next( );
+
+                return _fileItemLast;
+            }
+
+            @Override
+            public void remove( )
+            {
+                if ( _fileItemLast == null )
+                {
+                    throw new IllegalStateException( );
+                }
+
+                removeFile( _fileItemLast );
+                _fileItemLast = null;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add( FileItem fileItem )
+    {
+        String strDigest = getDigest( fileItem );
+
+        synchronized( this )
+        {
+            if ( _bClosed )
+            {
+                // The files of a removed session are deleted
+                fileItem.delete( );
+
+                return false;
+            }
+
+            _listFiles.add( fileItem );
+            index( fileItem, strDigest );
+
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add( int index, FileItem fileItem )
+    {
+        String strDigest = getDigest( fileItem );
+
+        synchronized( this )
+        {
+            if ( _bClosed )
+            {
+                // The files of a removed session are deleted
+                fileItem.delete( );
+
+                return;
+            }
+
+            _listFiles.add( index, fileItem );
+            index( fileItem, strDigest );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileItem set( int index, FileItem fileItem )
+    {
+        String strDigest = getDigest( fileItem );
+
+        synchronized( this )
+        {
+            FileItem fileItemOld = _listFiles.set( index, fileItem );
+            unindex( fileItemOld );
+            index( fileItem, strDigest );
+
+            return fileItemOld;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized FileItem remove( int index )
+    {
+        FileItem fileItem = _listFiles.remove( index );
+        unindex( fileItem );
+
+        return fileItem;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeIf( Predicate<? super FileItem> filter )
+    {
+        // The filter is applied to a snapshot, out of the lock
+        List<FileItem> listRemoved = new ArrayList<>( );
+
+        for ( FileItem fileItem : _listFiles )
+        {
+            if ( filter.test( fileItem ) )
+            {
+                listRemoved.add( fileItem );
+            }
+        }
+
+        boolean bRemoved = false;
+
+        for ( FileItem fileItem : listRemoved )
+        {
+            bRemoved |= removeFile( fileItem );
+        }
+
+        return bRemoved;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAll( Collection<?> collection )
+    {
+        return removeIf( collection::contains );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean retainAll( Collection<?> collection )
+    {
+        return removeIf( fileItem -> !collection.contains( fileItem ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void clear( )
+    {
+        _listFiles.clear( );
+        _mapDigestByFile.clear( );
+        _mapCountByDigest.clear( );
+    }
+
+    /**
+     * Delete the files of the list and close it, when its session is removed. The files added to a closed list are deleted.
+     */
+    synchronized void close( )
+    {
+        _bClosed = true;
+        _listFiles.forEach( FileItem::delete );
+        clear( );
+    }
+
+    /**
+     * Remove a file from the list, if it is still in the list
+     * 
+     * @param fileItem
+     *            the file
+     * @return true if the file was removed
+     */
+    private synchronized boolean removeFile( FileItem fileItem )
+    {
+        for ( int nIndex = 0; nIndex < _listFiles.size( ); nIndex++ )
+        {
+            if ( _listFiles.get( nIndex ) == fileItem )
+            {
+                _listFiles.remove( nIndex );
+                unindex( fileItem );
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Add a file to the index
+     * 
+     * @param fileItem
+     *            the added file
+     * @param strDigest
+     *            the digest of the content of the file
+     */
+    private void index( FileItem fileItem, String strDigest )
+    {
+        _mapDigestByFile.put( fileItem, strDigest );
+        _mapCountByDigest.merge( strDigest, 1, Integer::sum );
+    }
+
+    /**
+     * Remove a file from the index
+     * 
+     * @param fileItem
+     *            the removed file
+     */
+    private void unindex( FileItem fileItem )
+    {
+        String strDigest = _mapDigestByFile.remove( fileItem );
+
+        if ( strDigest != null )
+        {
+            _mapCountByDigest.computeIfPresent( strDigest, ( strKey, nCount ) -> ( nCount > 1 ) ? ( nCount - 1 ) : null );
+        }
+    }
+}
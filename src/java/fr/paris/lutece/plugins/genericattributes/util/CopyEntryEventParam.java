@@ -33,18 +33,41 @@
  */
 package fr.paris.lutece.plugins.genericattributes.util;
 
+import java.util.Collections;
+import java.util.Map;
+
 import fr.paris.lutece.portal.business.event.IEventParam;
 
 /**
- * Parameter for the Copy Event Param.
+ * Parameter for the Copy Event Param. When entries are copied together, the parameter of each copied entry also holds the mappings from the ids of
+ * all the copied entries and fields to the ids of their copies, so that a listener can process the whole copy at once.
  */
 public class CopyEntryEventParam implements IEventParam<Integer>
 {
     private final Integer _oldEntryId;
+    private final Map<Integer, Integer> _mapIdEntry;
+    private final Map<Integer, Integer> _mapIdField;
 
     public CopyEntryEventParam( Integer oldEntryId )
+    {
+        this( oldEntryId, Collections.emptyMap( ), Collections.emptyMap( ) );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param oldEntryId
+     *            the id of the copied entry
+     * @param mapIdEntry
+     *            the ids of the copies of all the entries copied together, mapped by id of the copied entry
+     * @param mapIdField
+     *            the ids of the copies of all the fields copied together, mapped by id of the copied field
+     */
+    public CopyEntryEventParam( Integer oldEntryId, Map<Integer, Integer> mapIdEntry, Map<Integer, Integer> mapIdField )
     {
         _oldEntryId = oldEntryId;
+        _mapIdEntry = Collections.unmodifiableMap( mapIdEntry );
+        _mapIdField = Collections.unmodifiableMap( mapIdField );
     }
 
     @Override
@@ -52,4 +75,20 @@ public class CopyEntryEventParam implements IEventParam<Integer>
     {
         return _oldEntryId;
     }
+
+    /**
+     * @return the ids of the copies of all the entries copied together, mapped by id of the copied entry
+     */
+    public Map<Integer, Integer> getEntryIdMap( )
+    {
+        return _mapIdEntry;
+    }
+
+    /**
+     * @return the ids of the copies of all the fields copied together, mapped by id of the copied field
+     */
+    public Map<Integer, Integer> getFieldIdMap( )
+    {
+        return _mapIdField;
+    }
 }
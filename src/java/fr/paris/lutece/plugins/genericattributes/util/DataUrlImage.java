@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * An image sent as a Base64 data URL, e.g. by a camera entry. The source is decoded in a single pass into an array of the exact size of the image,
+ * which is shared by the validation and the persistence of the image.
+ */
+public final class DataUrlImage
+{
+    /**
+     * The PNG format
+     */
+    public static final String FORMAT_PNG = "png";
+
+    /**
+     * The JPEG format
+     */
+    public static final String FORMAT_JPEG = "jpeg";
+
+    /**
+     * The GIF format
+     */
+    public static final String FORMAT_GIF = "gif";
+
+    /**
+     * The BMP format
+     */
+    public static final String FORMAT_BMP = "bmp";
+
+    /**
+     * The WebP format
+     */
+    public static final String FORMAT_WEBP = "webp";
+
+    private static final String DATA_URL_SEPARATOR = ",";
+    private static final byte [ ] SIGNATURE_PNG = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+    private static final byte [ ] SIGNATURE_JPEG = {
+            (byte) 0xFF, (byte) 0xD8, (byte) 0xFF
+    };
+    private static final byte [ ] SIGNATURE_GIF = {
+            'G', 'I', 'F', '8'
+    };
+    private static final byte [ ] SIGNATURE_BMP = {
+            'B', 'M'
+    };
+    private static final byte [ ] SIGNATURE_RIFF = {
+            'R', 'I', 'F', 'F'
+    };
+    private static final byte [ ] SIGNATURE_WEBP = {
+            'W', 'E', 'B', 'P'
+    };
+    private static final int OFFSET_WEBP = 8;
+    private static final char NON_ASCII = 0x80;
+
+    private final byte [ ] _bValue;
+    private final String _strFormat;
+    private ImageHeader _header;
+
+    /**
+     * Constructor
+     * 
+     * @param bValue
+     *            the decoded image
+     */
+    private DataUrlImage( byte [ ] bValue )
+    {
+        _bValue = bValue;
+        _strFormat = getFormat( bValue );
+    }
+
+    /**
+     * Decode an image sent as a data URL, or as a bare Base64 string. The characters which are not part of the Base64 alphabet, like line breaks,
+     * are ignored.
+     * 
+     * @param strSource
+     *            the source of the image
+     * @return the decoded image, or null if the source is blank or is not valid Base64
+     */
+    public static DataUrlImage decode( String strSource )
+    {
+        if ( strSource == null )
+        {
+            return null;
+        }
+
+        int nStart = strSource.indexOf( DATA_URL_SEPARATOR ) + 1;
+        int nSize = getDecodedSize( strSource, nStart );
+
+        if ( nSize <= 0 )
+        {
+            return null;
+        }
+
+        byte [ ] bValue = new byte [ nSize];
+
+        try ( InputStream inputStream = Base64.getMimeDecoder( ).wrap( new SourceInputStream( strSource, nStart ) ) )
+        {
+            int nOffset = 0;
+            int nRead;
+
+            while ( ( nOffset < nSize ) && ( ( nRead = inputStream.read( bValue, nOffset, nSize - nOffset ) ) != -1 ) )
+            {
+                nOffset += nRead;
+            }
+
+            if ( ( nOffset < nSize ) || ( inputStream.read( ) != -1 ) )
+            {
+                return null;
+            }
+        }
+        catch( IOException e )
+        {
+            return null;
+        }
+
+        return new DataUrlImage( bValue );
+    }
+
+    /**
+     * Get the decoded image
+     * 
+     * @return the decoded image
+     */
+    public byte [ ] getValue( )
+    {
+        return _bValue;
+    }
+
+    /**
+     * Get the size of the decoded image
+     * 
+     * @return the size in bytes
+     */
+    public int getSize( )
+    {
+        return _bValue.length;
+    }
+
+    /**
+     * Get the format of the image, sniffed from its signature
+     * 
+     * @return the format of the image, one of the FORMAT_ constants, or null if the content is not a known image format
+     */
+    public String getFormat( )
+    {
+        return _strFormat;
+    }
+
+    /**
+     * Check whether the content is an image of a known format
+     * 
+     * @return true if the content is an image
+     */
+    public boolean isImage( )
+    {
+        return _strFormat != null;
+    }
+
+    /**
+     * Get the header of the image, read without decoding its pixels
+     * 
+     * @return the header of the image, or null if the content is not an image readable by ImageIO
+     */
+    public ImageHeader getHeader( )
+    {
+        if ( ( _header == null ) && isImage( ) )
+        {
+            _header = ImageHeader.read( new ByteArrayInputStream( _bValue ) );
+        }
+
+        return _header;
+    }
+
+    /**
+     * Sniff the format of an image from its signature
+     * 
+     * @param bValue
+     *            the beginning of the image, at least 12 bytes to recognize all the formats
+     * @return the format of the image, or null if the format is unknown
+     */
+    public static String getFormat( byte [ ] bValue )
+    {
+        if ( startsWith( bValue, 0, SIGNATURE_PNG ) )
+        {
+            return FORMAT_PNG;
+        }
+
+        if ( startsWith( bValue, 0, SIGNATURE_JPEG ) )
+        {
+            return FORMAT_JPEG;
+        }
+
+        if ( startsWith( bValue, 0, SIGNATURE_GIF ) )
+        {
+            return FORMAT_GIF;
+        }
+
+        if ( startsWith( bValue, 0, SIGNATURE_RIFF ) && startsWith( bValue, OFFSET_WEBP, SIGNATURE_WEBP ) )
+        {
+            return FORMAT_WEBP;
+        }
+
+        if ( startsWith( bValue, 0, SIGNATURE_BMP ) )
+        {
+            return FORMAT_BMP;
+        }
+
+        return null;
+    }
+
+    /**
+     * Check whether an array contains a signature at a given offset
+     * 
+     * @param bValue
+     *            the array
+     * @param nOffset
+     *            the offset
+     * @param signature
+     *            the signature
+     * @return true if the array contains the signature
+     */
+    private static boolean startsWith( byte [ ] bValue, int nOffset, byte [ ] signature )
+    {
+        if ( bValue.length < nOffset + signature.length )
+        {
+            return false;
+        }
+
+        for ( int i = 0; i < signature.length; i++ )
+        {
+            if ( bValue [nOffset + i] != signature [i] )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compute the decoded size of a Base64 source, without decoding it
+     * 
+     * @param strSource
+     *            the source
+     * @param nStart
+     *            the index of the first character of the Base64 content
+     * @return the decoded size, or -1 if the source cannot be valid Base64
+     */
+    private static int getDecodedSize( String strSource, int nStart )
+    {
+        long lChars = 0;
+
+        for ( int i = nStart; i < strSource.length( ); i++ )
+        {
+            char c = strSource.charAt( i );
+
+            if ( c == '=' )
+            {
+                break;
+            }
+
+            if ( ( c >= 'A' && c <= 'Z' ) || ( c >= 'a' && c <= 'z' ) || ( c >= '0' && c <= '9' ) || c == '+' || c == '/' )
+            {
+                lChars++;
+            }
+        }
+
+        if ( lChars % 4 == 1 )
+        {
+            return -1;
+        }
+
+        return (int) ( lChars * 6 / 8 );
+    }
+
+    /**
+     * Reads the characters of a Base64 source as bytes, without copying the source
+     */
+    private static final class SourceInputStream extends InputStream
+    {
+        private final String _strSource;
+        private int _nPosition;
+
+        /**
+         * Constructor
+         * 
+         * @param strSource
+         *            the source
+         * @param nStart
+         *            the index of the first character to read
+         */
+        SourceInputStream( String strSource, int nStart )
+        {
+            _strSource = strSource;
+            _nPosition = nStart;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read( )
+        {
+            return ( _nPosition < _strSource.length( ) ) ? toByte( _strSource.charAt( _nPosition++ ) ) : -1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read( byte [ ] b, int nOffset, int nLength )
+        {
+            if ( nLength == 0 )
+            {
+                return 0;
+            }
+
+            int nCount = Math.min( nLength, _strSource.length( ) - _nPosition );
+
+            if ( nCount <= 0 )
+            {
+                return -1;
+            }
+
+            for ( int i = 0; i < nCount; i++ )
+            {
+                b [nOffset + i] = (byte) toByte( _strSource.charAt( _nPosition++ ) );
+            }
+
+            return nCount;
+        }
+
+        /**
+         * Convert a character to a byte. The characters outside of the ASCII range, which are not Base64 characters, are converted to a space to be
+         * ignored by the decoder.
+         * 
+         * @param c
+         *            the character
+         * @return the byte
+         */
+        private static int toByte( char c )
+        {
+            return ( c < NON_ASCII ) ? c : ' ';
+        }
+    }
+}
@@ -33,24 +33,48 @@
  */
 package fr.paris.lutece.plugins.genericattributes.util;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import fr.paris.lutece.plugins.genericattributes.business.ResponseHome;
+import fr.paris.lutece.plugins.genericattributes.business.SequenceHome;
 import fr.paris.lutece.plugins.genericattributes.service.entrytype.AbstractEntryTypeNumbering;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
 /**
- * Contains the map of values for {@link AbstractEntryTypeNumbering}
+ * Hands out the values for {@link AbstractEntryTypeNumbering}. The values come from the sequence of the entry stored in the database (see
+ * {@link SequenceHome}), so that the nodes of a cluster never hand out the same value. Each node allocates blocks of values and hands them out
+ * without locking; the values of a block which are not handed out before the node stops are lost. In per value mode, each value is allocated
+ * from the database when it is handed out, so that the values are handed out in order across the nodes and none is lost when a node stops. The
+ * numbering is not gap-free in these modes: a value is allocated in its own transaction, before the submission is saved, and is never reused
+ * when the submission is abandoned or rolled back. When the submission is already in a transaction of the plugin, the values are allocated by
+ * another thread, so that the rollback of the submission never releases values which may have been handed out to other submissions. In gap-free
+ * mode, each value is allocated in the transaction of the submission, which must be opened with the TransactionManager before its responses are
+ * read: the sequence stays locked until the submission is committed, so the submissions of an entry are numbered one at a time, and the rollback
+ * of a submission releases its value for the next one.
  */
 public final class EntryTypeNumberingUtil
 {
+    private static final String PROPERTY_BLOCK_SIZE = "genericattributes.numbering.blockSize";
+    private static final String PROPERTY_PER_VALUE = "genericattributes.numbering.perValue";
+    private static final String PROPERTY_GAP_FREE = "genericattributes.numbering.gapFree";
+    private static final int DEFAULT_BLOCK_SIZE = 50;
 
     private static final EntryTypeNumberingUtil INSTANCE = new EntryTypeNumberingUtil( );
-    private final Map<Integer, Integer> _valuesMap;
+    private final Map<Integer, Block> _mapBlock = new ConcurrentHashMap<>( );
+    private final Map<Integer, Object> _mapLock = new ConcurrentHashMap<>( );
+    private final int _nBlockSize;
+    private final boolean _bPerValue;
+    private final boolean _bGapFree;
 
     private EntryTypeNumberingUtil( )
     {
-        _valuesMap = new HashMap<>( );
+        _nBlockSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BLOCK_SIZE, DEFAULT_BLOCK_SIZE ) );
+        _bPerValue = AppPropertiesService.getPropertyBoolean( PROPERTY_PER_VALUE, false );
+        _bGapFree = AppPropertiesService.getPropertyBoolean( PROPERTY_GAP_FREE, false );
     }
 
     public static EntryTypeNumberingUtil getInstance( )
@@ -58,18 +82,129 @@ public final class EntryTypeNumberingUtil
         return INSTANCE;
     }
 
-    public synchronized int getNextValue( int entryId )
+    /**
+     * Get the next value of the numbering of an entry
+     * 
+     * @param entryId
+     *            the id of the entry
+     * @return the next value
+     * @throws AppException
+     *             in gap-free mode, if the current thread is not in a transaction of the plugin
+     */
+    public int getNextValue( int entryId )
     {
-        if ( _valuesMap.containsKey( entryId ) )
+        if ( _bGapFree )
         {
-            int old = _valuesMap.get( entryId );
-            _valuesMap.put( entryId, old + 1 );
+            if ( !TransactionUtils.isInTransaction( GenericAttributesUtils.getPlugin( ) ) )
+            {
+                throw new AppException( "The gap-free numbering of the entry " + entryId + " requires the submission to be saved in a transaction" );
+            }
+
+            return SequenceHome.allocateInTransaction( entryId, 1 );
+        }
+
+        if ( _bPerValue )
+        {
+            return allocate( entryId, 1 );
+        }
+
+        Block block = _mapBlock.get( entryId );
+        int nValue = ( block == null ) ? Block.EXHAUSTED : block.next( );
+
+        while ( nValue == Block.EXHAUSTED )
+        {
+            block = getNewBlock( entryId, block );
+            nValue = block.next( );
+        }
+
+        return nValue;
+    }
+
+    /**
+     * Get a new block of values, allocating it unless another thread already did
+     * 
+     * @param entryId
+     *            the id of the entry
+     * @param blockExhausted
+     *            the exhausted block, may be null
+     * @return the new block
+     */
+    private Block getNewBlock( int entryId, Block blockExhausted )
+    {
+        synchronized( _mapLock.computeIfAbsent( entryId, k -> new Object( ) ) )
+        {
+            Block block = _mapBlock.get( entryId );
+
+            if ( block == null || block == blockExhausted )
+            {
+                block = new Block( allocate( entryId, _nBlockSize ), _nBlockSize );
+                _mapBlock.put( entryId, block );
+            }
+
+            return block;
+        }
+    }
+
+    /**
+     * Allocate values of the sequence of an entry in their own transaction, by another thread if the current thread is in a transaction of the plugin
+     * 
+     * @param entryId
+     *            the id of the entry
+     * @param nCount
+     *            the number of values to allocate
+     * @return the first allocated value
+     */
+    private static int allocate( int entryId, int nCount )
+    {
+        if ( !TransactionUtils.isInTransaction( GenericAttributesUtils.getPlugin( ) ) )
+        {
+            return SequenceHome.allocate( entryId, nCount );
         }
-        else
+
+        try
         {
-            _valuesMap.put( entryId, ResponseHome.findMaxNumber( entryId ) );
+            return CompletableFuture.supplyAsync( ( ) -> SequenceHome.allocate( entryId, nCount ) ).join( );
         }
+        catch( CompletionException e )
+        {
+            throw ( e.getCause( ) instanceof AppException ) ? (AppException) e.getCause( ) : new AppException( e.getMessage( ), e );
+        }
+    }
 
-        return _valuesMap.get( entryId );
+    /**
+     * A block of consecutive values allocated in the database
+     */
+    private static final class Block
+    {
+        static final int EXHAUSTED = -1;
+
+        private final AtomicInteger _nNext;
+        private final int _nEnd;
+
+        /**
+         * Constructor
+         * 
+         * @param nFirst
+         *            the first value of the block
+         * @param nSize
+         *            the number of values of the block
+         */
+        Block( int nFirst, int nSize )
+        {
+            _nNext = new AtomicInteger( nFirst );
+            _nEnd = nFirst + nSize;
+        }
+
+        /**
+         * Hand out the next value of the block
+         * 
+         * @return the value, or {@link #EXHAUSTED} if all the values of the block have been handed out
+         */
+        int next( )
+        {
+            int nValue = _nNext.getAndIncrement( );
+
+            return ( nValue < _nEnd ) ? nValue : EXHAUSTED;
+        }
     }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * The format and the dimensions of an image, read from its header without decoding its pixels
+ */
+public final class ImageHeader
+{
+    private final String _strFormat;
+    private final int _nWidth;
+    private final int _nHeight;
+
+    /**
+     * Constructor
+     * 
+     * @param strFormat
+     *            the format
+     * @param nWidth
+     *            the width
+     * @param nHeight
+     *            the height
+     */
+    private ImageHeader( String strFormat, int nWidth, int nHeight )
+    {
+        _strFormat = strFormat;
+        _nWidth = nWidth;
+        _nHeight = nHeight;
+    }
+
+    /**
+     * Read the header of an image. Only the beginning of the stream needed to find the dimensions of the image is read, and cached in memory.
+     * 
+     * @param inputStream
+     *            the content of the image, which is not closed
+     * @return the header of the image, or null if the content is not an image readable by ImageIO
+     */
+    public static ImageHeader read( InputStream inputStream )
+    {
+        try ( ImageInputStream imageInputStream = new MemoryCacheImageInputStream( inputStream ) )
+        {
+            Iterator<ImageReader> iterReaders = ImageIO.getImageReaders( imageInputStream );
+
+            if ( !iterReaders.hasNext( ) )
+            {
+                return null;
+            }
+
+            ImageReader reader = iterReaders.next( );
+
+            try
+            {
+                reader.setInput( imageInputStream, true, true );
+
+                return new ImageHeader( reader.getFormatName( ).toLowerCase( Locale.ENGLISH ), reader.getWidth( 0 ), reader.getHeight( 0 ) );
+            }
+            finally
+            {
+                reader.dispose( );
+            }
+        }
+        catch( IOException | RuntimeException e )
+        {
+            // A truncated or corrupted header is not an image
+            return null;
+        }
+    }
+
+    /**
+     * Get the format of the image
+     * 
+     * @return the format name of the ImageIO reader of the image, in lower case
+     */
+    public String getFormat( )
+    {
+        return _strFormat;
+    }
+
+    /**
+     * Get the width of the image
+     * 
+     * @return the width in pixels
+     */
+    public int getWidth( )
+    {
+        return _nWidth;
+    }
+
+    /**
+     * Get the height of the image
+     * 
+     * @return the height in pixels
+     */
+    public int getHeight( )
+    {
+        return _nHeight;
+    }
+
+    /**
+     * Get the number of pixels of the image, which bounds the memory needed to decode it
+     * 
+     * @return the number of pixels
+     */
+    public long getPixelCount( )
+    {
+        return (long) _nWidth * _nHeight;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Utility class to decode, resize and encode images
+ */
+public final class ImageUtils
+{
+    /**
+     * The JPEG format
+     */
+    public static final String FORMAT_JPEG = "jpeg";
+
+    /**
+     * Private constructor
+     */
+    private ImageUtils( )
+    {
+        // Empty Contructor
+    }
+
+    /**
+     * Downsize an image to fit in a width and a height, keeping its ratio. The image is also drawn without alpha channel if the format has none.
+     * 
+     * @param image
+     *            the image
+     * @param nMaxWidth
+     *            the maximum width, or a negative or null value for no limit
+     * @param nMaxHeight
+     *            the maximum height, or a negative or null value for no limit
+     * @param strFormat
+     *            the format of the result
+     * @return the downsized image
+     */
+    public static BufferedImage resize( BufferedImage image, int nMaxWidth, int nMaxHeight, String strFormat )
+    {
+        double dScale = 1;
+
+        if ( ( nMaxWidth > 0 ) && ( image.getWidth( ) > nMaxWidth ) )
+        {
+            dScale = (double) nMaxWidth / image.getWidth( );
+        }
+
+        if ( ( nMaxHeight > 0 ) && ( image.getHeight( ) * dScale > nMaxHeight ) )
+        {
+            dScale = (double) nMaxHeight / image.getHeight( );
+        }
+
+        boolean bOpaque = FORMAT_JPEG.equals( strFormat );
+
+        if ( ( dScale == 1 ) && ( !bOpaque || !image.getColorModel( ).hasAlpha( ) ) )
+        {
+            return image;
+        }
+
+        int nWidth = Math.max( 1, (int) Math.round( image.getWidth( ) * dScale ) );
+        int nHeight = Math.max( 1, (int) Math.round( image.getHeight( ) * dScale ) );
+        BufferedImage resized = new BufferedImage( nWidth, nHeight, bOpaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB );
+        Graphics2D graphics = resized.createGraphics( );
+
+        try
+        {
+            graphics.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+            graphics.setRenderingHint( RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY );
+            graphics.drawImage( image, 0, 0, nWidth, nHeight, null );
+        }
+        finally
+        {
+            graphics.dispose( );
+        }
+
+        return resized;
+    }
+
+    /**
+     * Decode an image, keeping one pixel out of <code>nSubsampling</code> in each direction. The pixels which are not kept are skipped while the image
+     * is decoded, so that a large image can be decoded to a small size without holding all its pixels.
+     * 
+     * @param bValue
+     *            the encoded image
+     * @param nSubsampling
+     *            the subsampling factor, 1 to keep all the pixels
+     * @return the image, or null if there is no reader for its format
+     * @throws IOException
+     *             if the image cannot be decoded
+     */
+    public static BufferedImage read( byte [ ] bValue, int nSubsampling ) throws IOException
+    {
+        try ( ImageInputStream imageInputStream = ImageIO.createImageInputStream( new ByteArrayInputStream( bValue ) ) )
+        {
+            Iterator<ImageReader> iterReaders = ( imageInputStream != null ) ? ImageIO.getImageReaders( imageInputStream ) : null;
+
+            if ( ( iterReaders == null ) || !iterReaders.hasNext( ) )
+            {
+                return null;
+            }
+
+            ImageReader reader = iterReaders.next( );
+
+            try
+            {
+                reader.setInput( imageInputStream, true, true );
+
+                ImageReadParam param = reader.getDefaultReadParam( );
+                param.setSourceSubsampling( nSubsampling, nSubsampling, 0, 0 );
+
+                return reader.read( 0, param );
+            }
+            finally
+            {
+                reader.dispose( );
+            }
+        }
+    }
+
+    /**
+     * Encode an image without metadata
+     * 
+     * @param image
+     *            the image
+     * @param strFormat
+     *            the format
+     * @param fQuality
+     *            the quality of the compression between 0 and 1, for the JPEG format
+     * @return the encoded image, or null if there is no writer for the format
+     * @throws IOException
+     *             if the image cannot be encoded
+     */
+    public static byte [ ] encode( BufferedImage image, String strFormat, float fQuality ) throws IOException
+    {
+        Iterator<ImageWriter> iterWriters = ImageIO.getImageWritersByFormatName( strFormat );
+
+        if ( !iterWriters.hasNext( ) )
+        {
+            AppLogService.error( "No image writer for the format " + strFormat );
+
+            return null;
+        }
+
+        ImageWriter writer = iterWriters.next( );
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
+
+        try ( ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream( outputStream ) )
+        {
+            ImageWriteParam param = writer.getDefaultWriteParam( );
+
+            if ( param.canWriteCompressed( ) && FORMAT_JPEG.equals( strFormat ) )
+            {
+                param.setCompressionMode( ImageWriteParam.MODE_EXPLICIT );
+                param.setCompressionQuality( fQuality );
+            }
+
+            writer.setOutput( imageOutputStream );
+            writer.write( null, new IIOImage( image, null, null ), param );
+        }
+        finally
+        {
+            writer.dispose( );
+        }
+
+        return outputStream.toByteArray( );
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.util.sql.Transaction;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Utility class to run tasks depending on the transaction of the caller
+ */
+public final class TransactionUtils
+{
+    // The tasks queued by the current thread until the end of its TransactionManager transactions
+    private static final ThreadLocal<List<QueuedTask>> QUEUED_TASKS = ThreadLocal.withInitial( ArrayList::new );
+
+    /**
+     * Private constructor
+     */
+    private TransactionUtils( )
+    {
+        // Empty Contructor
+    }
+
+    /**
+     * Check if the current thread is in a transaction opened with the TransactionManager for the pool of a plugin
+     * 
+     * @param plugin
+     *            the plugin
+     * @return true if a transaction is opened
+     */
+    public static boolean isInTransaction( Plugin plugin )
+    {
+        return TransactionManager.getCurrentTransaction( plugin ) != null;
+    }
+
+    /**
+     * Run a task once the changes of the current thread are committed. The task is run at once when the thread is not in a transaction. In a
+     * transaction managed by Spring, the task is run after the commit, and never if the transaction is rolled back. A transaction opened with the
+     * TransactionManager has no completion callback : the task is then queued with the transaction, and run by {@link #runQueuedTasks()} once the
+     * transaction is committed, or dropped if it is rolled back. The queued tasks of the thread are also run by the next call to this method after
+     * the end of their transaction.
+     * 
+     * @param plugin
+     *            the plugin
+     * @param task
+     *            the task
+     * @return true if the task was run or will be run after the commit, false if it is queued until the caller calls {@link #runQueuedTasks()}
+     *         after its commit
+     */
+    public static boolean runAfterCommit( Plugin plugin, Runnable task )
+    {
+        runQueuedTasks( );
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void afterCommit( )
+                {
+                    task.run( );
+                }
+            } );
+
+            return true;
+        }
+
+        Transaction transaction = TransactionManager.getCurrentTransaction( plugin );
+
+        if ( transaction != null )
+        {
+            QUEUED_TASKS.get( ).add( new QueuedTask( transaction, task ) );
+
+            return false;
+        }
+
+        task.run( );
+
+        return true;
+    }
+
+    /**
+     * Run the tasks queued by the current thread whose TransactionManager transaction is committed, and drop those whose transaction is rolled back.
+     * The callers which open a TransactionManager transaction call this method once it is committed or rolled back. A failing task is logged, and
+     * does not prevent the other tasks from running.
+     */
+    public static void runQueuedTasks( )
+    {
+        List<QueuedTask> listQueuedTasks = QUEUED_TASKS.get( );
+
+        if ( listQueuedTasks.isEmpty( ) )
+        {
+            return;
+        }
+
+        // The tasks are removed from the queue before they run, as a task may queue other tasks
+        List<Runnable> listTasks = new ArrayList<>( );
+        Iterator<QueuedTask> iterQueuedTasks = listQueuedTasks.iterator( );
+
+        while ( iterQueuedTasks.hasNext( ) )
+        {
+            QueuedTask queuedTask = iterQueuedTasks.next( );
+            int nStatus = queuedTask._transaction.getStatus( );
+
+            if ( nStatus != Transaction.OPENED )
+            {
+                iterQueuedTasks.remove( );
+
+                if ( nStatus == Transaction.COMMITTED )
+                {
+                    listTasks.add( queuedTask._task );
+                }
+            }
+        }
+
+        if ( listQueuedTasks.isEmpty( ) )
+        {
+            QUEUED_TASKS.remove( );
+        }
+
+        for ( Runnable task : listTasks )
+        {
+            try
+            {
+                task.run( );
+            }
+            catch( RuntimeException e )
+            {
+                AppLogService.error( "Unable to run a task after the commit of a transaction : " + e.getMessage( ), e );
+            }
+        }
+    }
+
+    /**
+     * A task waiting for the end of a TransactionManager transaction
+     */
+    private static final class QueuedTask
+    {
+        private final Transaction _transaction;
+        private final Runnable _task;
+
+        /**
+         * Constructor
+         * 
+         * @param transaction
+         *            the transaction
+         * @param task
+         *            the task
+         */
+        QueuedTask( Transaction transaction, Runnable task )
+        {
+            _transaction = transaction;
+            _task = task;
+        }
+    }
+}
@@ -4,6 +4,11 @@ DROP TABLE IF EXISTS genatt_response;
 DROP TABLE IF EXISTS genatt_entry;
 DROP TABLE IF EXISTS genatt_entry_type;
 DROP TABLE IF EXISTS genatt_referenceitem_field;
+DROP TABLE IF EXISTS genatt_cache_version;
+DROP TABLE IF EXISTS genatt_sequence;
+DROP TABLE IF EXISTS genatt_response_stat_field;
+DROP TABLE IF EXISTS genatt_response_stat_period;
+DROP TABLE IF EXISTS genatt_file_reference;
 
 --
 -- Table structure for table genatt_entry_type
@@ -76,7 +81,7 @@ CREATE TABLE genatt_field (
 	PRIMARY KEY (id_field)
 );
 
-CREATE INDEX index_genatt_field_entry ON genatt_field (id_entry);
+CREATE INDEX index_genatt_field_entry_pos ON genatt_field (id_entry, pos);
 
 ALTER TABLE genatt_field ADD CONSTRAINT fk_genatt_field_entry FOREIGN KEY (id_entry)
 	REFERENCES genatt_entry (id_entry);
@@ -93,6 +98,7 @@ CREATE TABLE genatt_response (
 	id_file int default NULL,
 	status smallint default 1,
 	sort_order int default 0,
+	date_creation timestamp NULL default NULL,
 	PRIMARY KEY (id_response)
 );
 
@@ -119,3 +125,57 @@ CREATE TABLE genatt_referenceitem_field (
 	id_item int default 0 NOT NULL,
 	PRIMARY KEY( id_field )
 );
+
+--
+-- Table structure for table genatt_cache_version
+--
+CREATE TABLE genatt_cache_version (
+	id_resource int default 0 NOT NULL,
+	resource_type VARCHAR(255) NOT NULL,
+	version int default 0 NOT NULL,
+	PRIMARY KEY (id_resource,resource_type)
+);
+
+--
+-- Table structure for table genatt_sequence
+--
+CREATE TABLE genatt_sequence (
+	id_entry int default 0 NOT NULL,
+	next_value int default 1 NOT NULL,
+	PRIMARY KEY (id_entry)
+);
+
+--
+-- Table structure for table genatt_response_stat_field
+--
+CREATE TABLE genatt_response_stat_field (
+	id_field int default 0 NOT NULL,
+	id_entry int default 0 NOT NULL,
+	number_response int default 0 NOT NULL,
+	PRIMARY KEY (id_field)
+);
+CREATE INDEX index_genatt_response_stat_field_entry ON genatt_response_stat_field (id_entry);
+
+--
+-- Table structure for table genatt_response_stat_period
+--
+CREATE TABLE genatt_response_stat_period (
+	id_field int default 0 NOT NULL,
+	period smallint default 0 NOT NULL,
+	date_period date NOT NULL,
+	id_entry int default 0 NOT NULL,
+	number_response int default 0 NOT NULL,
+	PRIMARY KEY (id_field,period,date_period)
+);
+CREATE INDEX index_genatt_response_stat_period_entry ON genatt_response_stat_period (id_entry, period, date_period);
+
+--
+-- Table structure for table genatt_file_reference
+--
+CREATE TABLE genatt_file_reference (
+	id_file int default 0 NOT NULL,
+	file_key VARCHAR(64) NOT NULL,
+	reference_count int default 1 NOT NULL,
+	PRIMARY KEY (id_file)
+);
+CREATE INDEX index_genatt_file_reference_key ON genatt_file_reference (file_key);
@@ -0,0 +1,68 @@
+--
+-- Table structure for table genatt_cache_version
+--
+CREATE TABLE genatt_cache_version (
+	id_resource int default 0 NOT NULL,
+	resource_type VARCHAR(255) NOT NULL,
+	version int default 0 NOT NULL,
+	PRIMARY KEY (id_resource,resource_type)
+);
+
+--
+-- The positions of the fields are allocated per entry
+--
+CREATE INDEX index_genatt_field_entry_pos ON genatt_field (id_entry, pos);
+DROP INDEX index_genatt_field_entry ON genatt_field;
+
+--
+-- Table structure for table genatt_sequence
+--
+CREATE TABLE genatt_sequence (
+	id_entry int default 0 NOT NULL,
+	next_value int default 1 NOT NULL,
+	PRIMARY KEY (id_entry)
+);
+
+--
+-- Creation date of the responses, for the response counters by period
+--
+ALTER TABLE genatt_response ADD COLUMN date_creation timestamp NULL default NULL;
+
+--
+-- Table structure for table genatt_response_stat_field
+--
+CREATE TABLE genatt_response_stat_field (
+	id_field int default 0 NOT NULL,
+	id_entry int default 0 NOT NULL,
+	number_response int default 0 NOT NULL,
+	PRIMARY KEY (id_field)
+);
+CREATE INDEX index_genatt_response_stat_field_entry ON genatt_response_stat_field (id_entry);
+
+--
+-- Table structure for table genatt_response_stat_period
+--
+CREATE TABLE genatt_response_stat_period (
+	id_field int default 0 NOT NULL,
+	period smallint default 0 NOT NULL,
+	date_period date NOT NULL,
+	id_entry int default 0 NOT NULL,
+	number_response int default 0 NOT NULL,
+	PRIMARY KEY (id_field,period,date_period)
+);
+CREATE INDEX index_genatt_response_stat_period_entry ON genatt_response_stat_period (id_entry, period, date_period);
+
+INSERT INTO genatt_response_stat_field ( id_field, id_entry, number_response )
+	SELECT field.id_field, field.id_entry, COUNT( resp.id_response ) FROM genatt_field field
+	INNER JOIN genatt_response resp ON ( resp.id_field = field.id_field ) GROUP BY field.id_field, field.id_entry;
+
+--
+-- Table structure for table genatt_file_reference
+--
+CREATE TABLE genatt_file_reference (
+	id_file int default 0 NOT NULL,
+	file_key VARCHAR(64) NOT NULL,
+	reference_count int default 1 NOT NULL,
+	PRIMARY KEY (id_file)
+);
+CREATE INDEX index_genatt_file_reference_key ON genatt_file_reference (file_key);
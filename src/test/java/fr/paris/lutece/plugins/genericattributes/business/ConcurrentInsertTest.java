@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Concurrent inserts of responses and fields : the inserts are not serialized in the JVM, and none of them may be lost or share its id with
+ * another one
+ */
+public class ConcurrentInsertTest extends AbstractEntryTest
+{
+    private static final String TITLE = "Title";
+    private static final String RESPONSE_VALUE = "response_value";
+    private static final int THREAD_COUNT = 4;
+    private static final int INSERT_COUNT = 100;
+
+    private Entry _entry;
+
+    public void testConcurrentResponseInserts( ) throws Exception
+    {
+        List<Integer> listId = run( ( ) -> {
+            Response response = new Response( );
+            response.setEntry( _entry );
+            response.setResponseValue( RESPONSE_VALUE );
+            ResponseHome.create( response );
+
+            return response.getIdResponse( );
+        } );
+
+        assertEquals( INSERT_COUNT, new HashSet<>( listId ).size( ) );
+
+        ResponseFilter filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+        assertEquals( INSERT_COUNT, ResponseHome.getResponseList( filter ).size( ) );
+    }
+
+    public void testConcurrentFieldInserts( ) throws Exception
+    {
+        List<Integer> listId = run( ( ) -> {
+            Field field = new Field( );
+            field.setParentEntry( _entry );
+            field.setTitle( TITLE );
+
+            return FieldHome.create( field );
+        } );
+
+        assertEquals( INSERT_COUNT, new HashSet<>( listId ).size( ) );
+
+        // The fields sharing a position are ordered by creation
+        List<Field> listField = FieldHome.getFieldListByIdEntry( _entry.getIdEntry( ) );
+        Set<Integer> setIdField = new HashSet<>( );
+        assertEquals( INSERT_COUNT, listField.size( ) );
+
+        for ( int i = 0; i < listField.size( ); i++ )
+        {
+            assertTrue( setIdField.add( listField.get( i ).getIdField( ) ) );
+
+            if ( i > 0 )
+            {
+                Field fieldPrevious = listField.get( i - 1 );
+                Field field = listField.get( i );
+                assertTrue( ( fieldPrevious.getPosition( ) < field.getPosition( ) )
+                        || ( fieldPrevious.getPosition( ) == field.getPosition( ) && fieldPrevious.getIdField( ) < field.getIdField( ) ) );
+            }
+        }
+    }
+
+    /**
+     * Run the inserts in concurrent threads
+     * 
+     * @param insert
+     *            an insert, returning the id of the created object
+     * @return the ids of the created objects
+     * @throws Exception
+     *             if an insert fails
+     */
+    private List<Integer> run( Callable<Integer> insert ) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( THREAD_COUNT );
+        List<Future<Integer>> listFuture = new ArrayList<>( INSERT_COUNT );
+        List<Integer> listId = new ArrayList<>( INSERT_COUNT );
+
+        try
+        {
+            for ( int i = 0; i < INSERT_COUNT; i++ )
+            {
+                listFuture.add( executor.submit( insert ) );
+            }
+
+            for ( Future<Integer> future : listFuture )
+            {
+                listId.add( future.get( ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown( );
+        }
+
+        return listId;
+    }
+
+    @Override
+    public void setUp( ) throws Exception
+    {
+        super.setUp( );
+
+        EntryType entryType = EntryTypeHome.findByPrimaryKey( _nEntryTypeTextPrimaryKey );
+        _entry = createEntry( null, TITLE, entryType );
+    }
+
+    @Override
+    public void tearDown( ) throws Exception
+    {
+        EntryHome.remove( _entry.getIdEntry( ) );
+
+        super.tearDown( );
+    }
+}
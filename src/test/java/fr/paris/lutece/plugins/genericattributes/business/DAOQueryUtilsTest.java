@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class DAOQueryUtilsTest extends LuteceTestCase
+{
+    private static final String QUERY = "SELECT 1";
+
+    public void testGetBucketSize( )
+    {
+        assertEquals( 4, DAOQueryUtils.getBucketSize( 1 ) );
+        assertEquals( 4, DAOQueryUtils.getBucketSize( 4 ) );
+        assertEquals( 8, DAOQueryUtils.getBucketSize( 5 ) );
+        assertEquals( 128, DAOQueryUtils.getBucketSize( 100 ) );
+    }
+
+    public void testGetPlaceholders( )
+    {
+        assertEquals( "?", DAOQueryUtils.getPlaceholders( 1 ) );
+        assertEquals( "?,?,?,?", DAOQueryUtils.getPlaceholders( 4 ) );
+    }
+
+    public void testGetShape( )
+    {
+        assertEquals( 0, DAOQueryUtils.getShape( false, false, false ) );
+        assertEquals( 5, DAOQueryUtils.getShape( true, false, true ) );
+    }
+
+    public void testGetChunks( )
+    {
+        List<Integer> listId = new ArrayList<>( );
+
+        for ( int i = DAOQueryUtils.MAX_CHUNK_SIZE + 10; i > 0; i-- )
+        {
+            listId.add( i );
+        }
+
+        listId.add( 1 );
+
+        List<List<Integer>> listChunk = DAOQueryUtils.getChunks( listId );
+        assertEquals( 2, listChunk.size( ) );
+        assertEquals( DAOQueryUtils.MAX_CHUNK_SIZE, listChunk.get( 0 ).size( ) );
+        assertEquals( 10, listChunk.get( 1 ).size( ) );
+        assertEquals( Integer.valueOf( DAOQueryUtils.MAX_CHUNK_SIZE + 10 ), listChunk.get( 0 ).get( 0 ) );
+        assertEquals( Integer.valueOf( 1 ), listChunk.get( 1 ).get( 9 ) );
+    }
+
+    public void testGetQueryBuildsOncePerShape( )
+    {
+        Map<Integer, String> mapQueryByShape = new HashMap<>( );
+        int [ ] nBuildCount = {
+                0
+        };
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            String strQuery = DAOQueryUtils.getQuery( mapQueryByShape, 1, ( ) -> {
+                nBuildCount [0]++;
+
+                return QUERY;
+            } );
+            assertEquals( QUERY, strQuery );
+        }
+
+        assertEquals( 1, nBuildCount [0] );
+    }
+}
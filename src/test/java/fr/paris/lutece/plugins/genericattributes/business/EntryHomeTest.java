@@ -36,9 +36,15 @@ package fr.paris.lutece.plugins.genericattributes.business;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.genericattributes.service.FormDefinitionCacheService;
 import fr.paris.lutece.plugins.genericattributes.service.GenericAttributesPlugin;
+import fr.paris.lutece.portal.business.event.ResourceEvent;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.util.sql.TransactionManager;
 
 /**
  * Test class for the EntryHome
@@ -197,6 +203,137 @@ public class EntryHomeTest extends AbstractEntryTest
         }
     }
 
+    /**
+     * Test the remove method of the EntryHome for a group whose entries have conditional questions
+     */
+    public void testRemoveEntryWithConditionalQuestion( )
+    {
+        Field field = FieldHome.getFieldListByIdEntry( _nIdEntry ).get( 0 );
+        Entry entryConditional = manageCreateEntry( null, TITLE_2, 1, 2 );
+        entryConditional.setFieldDepend( field );
+        EntryHome.update( entryConditional );
+        listEntry.add( entryConditional );
+
+        int [ ] progress = {
+                0, 0
+        };
+        EntryHome.remove( _nIdEntryGroup, ( nRemovedResponses, nTotalResponses ) -> {
+            progress [0] = nRemovedResponses;
+            progress [1] = nTotalResponses;
+        } );
+
+        checkEntryRemoving( _nIdEntryGroup );
+        checkEntryRemoving( _nIdEntry );
+        checkEntryRemoving( _nIdEntry2 );
+        checkEntryRemoving( entryConditional.getIdEntry( ) );
+        assertEquals( NUMBER_RESPONSE_ENTRY_ONE + NUMBER_RESPONSE_ENTRY_TWO + 2, progress [1] );
+        assertEquals( progress [1], progress [0] );
+    }
+
+    /**
+     * Test that the removal by chunks fails inside a transaction of the caller, and that the simple removal joins it
+     */
+    public void testRemoveInTransaction( )
+    {
+        TransactionManager.beginTransaction( _plugin );
+
+        try
+        {
+            EntryHome.remove( _nIdEntry, null );
+            fail( );
+        }
+        catch( AppException e )
+        {
+            // The chunks would join the transaction of the caller
+            assertNotNull( EntryHome.findByPrimaryKey( _nIdEntry ) );
+        }
+
+        try
+        {
+            EntryHome.remove( _nIdEntry );
+            TransactionManager.commitTransaction( _plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( _plugin );
+            throw e;
+        }
+
+        checkEntryRemoving( _nIdEntry );
+    }
+
+    /**
+     * Test the copy of a group with its children, their fields and a conditional question
+     */
+    public void testCopy( )
+    {
+        Field field = FieldHome.getFieldListByIdEntry( _nIdEntry ).get( 0 );
+        Entry entryConditional = manageCreateEntry( null, TITLE_2, 1, 0 );
+        entryConditional.setFieldDepend( field );
+        EntryHome.update( entryConditional );
+        listEntry.add( entryConditional );
+
+        Entry entryGroupCopy = EntryHome.copy( _entryDAO.load( _nIdEntryGroup, _plugin ) );
+        listEntry.add( entryGroupCopy );
+
+        EntryFilter entryFilter = new EntryFilter( );
+        entryFilter.setIdEntryParent( entryGroupCopy.getIdEntry( ) );
+        List<Entry> listEntryChildren = _entryDAO.selectEntryListByFilter( entryFilter, _plugin );
+        listEntry.addAll( listEntryChildren );
+        assertEquals( 2, listEntryChildren.size( ) );
+
+        Entry entryOneCopy = listEntryChildren.stream( ).filter( e -> TITLE_1.equals( e.getTitle( ) ) ).findFirst( ).orElse( null );
+        assertNotNull( entryOneCopy );
+        List<Field> listFieldCopy = FieldHome.getFieldListByIdEntry( entryOneCopy.getIdEntry( ) );
+        assertEquals( NUMBER_FIELDS_ENTRY_ONE, listFieldCopy.size( ) );
+
+        entryFilter = new EntryFilter( );
+        entryFilter.setIdFieldDepend( listFieldCopy.get( 0 ).getIdField( ) );
+        List<Entry> listConditionalCopy = _entryDAO.selectEntryListByFilter( entryFilter, _plugin );
+        listEntry.addAll( listConditionalCopy );
+        assertEquals( 1, listConditionalCopy.size( ) );
+        assertEquals( 1, FieldHome.getFieldListByIdEntry( listConditionalCopy.get( 0 ).getIdEntry( ) ).size( ) );
+    }
+
+    /**
+     * Test the numbers of conditional questions of a list of entries spanning several chunks of ids
+     */
+    public void testNumberConditionalQuestionByChunks( )
+    {
+        Entry entryGroup = _entryDAO.load( _nIdEntryGroup, _plugin );
+        Entry entryLast = null;
+
+        for ( int i = 0; i < DAOQueryUtils.MAX_CHUNK_SIZE; i++ )
+        {
+            entryLast = createEntry( entryGroup, TITLE_2, EntryTypeHome.findByPrimaryKey( _nEntryTypeTextPrimaryKey ) );
+            listEntry.add( entryLast );
+        }
+
+        createField( entryLast );
+
+        for ( int nIdEntryDepend : new int [ ] {
+                _nIdEntry, entryLast.getIdEntry( )
+        } )
+        {
+            Entry entryConditional = manageCreateEntry( null, TITLE_1, 0, 0 );
+            entryConditional.setFieldDepend( FieldHome.getFieldListByIdEntry( nIdEntryDepend ).get( 0 ) );
+            EntryHome.update( entryConditional );
+            listEntry.add( entryConditional );
+        }
+
+        EntryFilter entryFilter = new EntryFilter( );
+        entryFilter.setIdEntryParent( _nIdEntryGroup );
+        List<Entry> listEntryChildren = _entryDAO.selectEntryListByFilter( entryFilter, _plugin );
+
+        assertEquals( DAOQueryUtils.MAX_CHUNK_SIZE + 2, listEntryChildren.size( ) );
+
+        for ( Entry entry : listEntryChildren )
+        {
+            boolean bConditional = ( entry.getIdEntry( ) == _nIdEntry ) || ( entry.getIdEntry( ) == entryLast.getIdEntry( ) );
+            assertEquals( bConditional ? 1 : 0, entry.getNumberConditionalQuestion( ) );
+        }
+    }
+
     public void testFindByPrimaryKeyList( )
     {
         List<Integer> idList = new ArrayList<>( );
@@ -220,6 +357,111 @@ public class EntryHomeTest extends AbstractEntryTest
         assertEquals( TITLE_2, entry.getTitle( ) );
     }
 
+    public void testGetFormDefinition( )
+    {
+        FormDefinition formDefinition = EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+
+        Entry entryGroup = formDefinition.getEntry( _nIdEntryGroup );
+        assertNotNull( entryGroup );
+        assertTrue( formDefinition.getRootEntries( ).contains( entryGroup ) );
+        assertEquals( 2, entryGroup.getChildren( ).size( ) );
+
+        Entry entryOne = formDefinition.getEntry( _nIdEntry );
+        assertFalse( formDefinition.getRootEntries( ).contains( entryOne ) );
+        assertEquals( NUMBER_FIELDS_ENTRY_ONE, entryOne.getFields( ).size( ) );
+        assertEquals( NUMBER_FIELDS_ENTRY_TWO, formDefinition.getEntry( _nIdEntry2 ).getFields( ).size( ) );
+
+        for ( Field field : entryOne.getFields( ) )
+        {
+            assertTrue( formDefinition.getField( field.getIdField( ) ) == field );
+            assertTrue( field.getConditionalQuestions( ).isEmpty( ) );
+        }
+    }
+
+    public void testFormDefinitionCache( )
+    {
+        FormDefinitionCacheService cacheService = FormDefinitionCacheService.getInstance( );
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+        long lHitCount = cacheService.getHitCount( );
+
+        // Modifying what the cache hands out must not alter the cache
+        Entry entry = EntryHome.getFormDefinition( 0, StringUtils.EMPTY ).getEntry( _nIdEntry );
+        entry.setTitle( TITLE_2 );
+        entry.getFields( ).clear( );
+
+        Entry entryCached = EntryHome.findByPrimaryKey( _nIdEntry );
+        assertEquals( TITLE_1, entryCached.getTitle( ) );
+        assertEquals( NUMBER_FIELDS_ENTRY_ONE, entryCached.getFields( ).size( ) );
+        assertEquals( lHitCount + 2, cacheService.getHitCount( ) );
+
+        // Updating the entry must invalidate the cache
+        entryCached.setTitle( TITLE_2 );
+        EntryHome.update( entryCached );
+        assertEquals( TITLE_2, EntryHome.getFormDefinition( 0, StringUtils.EMPTY ).getEntry( _nIdEntry ).getTitle( ) );
+    }
+
+    public void testFormDefinitionCacheEntityCopy( )
+    {
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+
+        // The entries and fields read by id are copies of the cached ones
+        Entry entry = EntryHome.findByPrimaryKey( _nIdEntry );
+        Field field = entry.getFields( ).get( 0 );
+        String strFieldTitle = field.getTitle( );
+        int nRegularExpressionCount = field.getRegularExpressionList( ).size( );
+        entry.setTitle( TITLE_2 );
+        entry.getFields( ).clear( );
+        field.setTitle( TITLE_2 );
+        field.getRegularExpressionList( ).clear( );
+
+        Entry entryCached = EntryHome.findByPrimaryKey( _nIdEntry );
+        assertEquals( TITLE_1, entryCached.getTitle( ) );
+        assertEquals( NUMBER_FIELDS_ENTRY_ONE, entryCached.getFields( ).size( ) );
+        assertNotSame( entry, entryCached );
+
+        Field fieldCached = FieldHome.findByPrimaryKey( field.getIdField( ) );
+        assertNotSame( field, fieldCached );
+        assertEquals( strFieldTitle, fieldCached.getTitle( ) );
+        assertEquals( nRegularExpressionCount, fieldCached.getRegularExpressionList( ).size( ) );
+    }
+
+    public void testFormDefinitionCacheEvent( )
+    {
+        FormDefinitionCacheService cacheService = FormDefinitionCacheService.getInstance( );
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+        long lMissCount = cacheService.getMissCount( );
+
+        // An event on a resource of another type does not invalidate the form definition
+        ResourceEvent event = new ResourceEvent( );
+        event.setIdResource( "0" );
+        event.setTypeResource( "OTHER_RESOURCE_TYPE" );
+        cacheService.updatedResource( event );
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+        assertEquals( lMissCount, cacheService.getMissCount( ) );
+
+        // An event on the resource invalidates its form definition
+        event.setTypeResource( StringUtils.EMPTY );
+        cacheService.updatedResource( event );
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+        assertEquals( lMissCount + 1, cacheService.getMissCount( ) );
+    }
+
+    public void testFormDefinitionCacheVersion( ) throws InterruptedException
+    {
+        FormDefinitionCacheService cacheService = FormDefinitionCacheService.getInstance( );
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+        long lMissCount = cacheService.getMissCount( );
+
+        // A modification made by another node only increments the version stored in the database
+        CacheVersionHome.increment( 0, StringUtils.EMPTY );
+        Thread.sleep( cacheService.getVersionCheckDelay( ) + 1 );
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+        assertEquals( lMissCount + 1, cacheService.getMissCount( ) );
+
+        EntryHome.getFormDefinition( 0, StringUtils.EMPTY );
+        assertEquals( lMissCount + 1, cacheService.getMissCount( ) );
+    }
+
     /**
      * Check if all data linked to the entry with the specified identifier has been correctly removed
      * 
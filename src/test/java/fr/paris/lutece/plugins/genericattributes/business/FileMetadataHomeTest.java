@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test class for the FileMetadataHome and the LazyPhysicalFile
+ */
+public class FileMetadataHomeTest extends LuteceTestCase
+{
+    private static final String TITLE = "file.txt";
+    private static final String MIME_TYPE = "text/plain";
+    private static final byte [ ] CONTENT = "content".getBytes( StandardCharsets.UTF_8 );
+    private static final int ID_FILE_MISSING = -1;
+
+    private final List<Integer> _listIdFile = new ArrayList<>( );
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        for ( int nIdFile : _listIdFile )
+        {
+            if ( FileHome.findByPrimaryKey( nIdFile ) != null )
+            {
+                FileHome.remove( nIdFile );
+            }
+        }
+
+        super.tearDown( );
+    }
+
+    /**
+     * Test that the metadata of files are read by their ids, without their content
+     */
+    public void testFindByIdList( )
+    {
+        File file1 = createFile( );
+        File file2 = createFile( );
+
+        assertTrue( FileMetadataHome.findByIdList( Collections.emptyList( ) ).isEmpty( ) );
+
+        List<File> listFiles = FileMetadataHome.findByIdList( Arrays.asList( file1.getIdFile( ), ID_FILE_MISSING, file2.getIdFile( ) ) );
+        assertEquals( 2, listFiles.size( ) );
+
+        for ( File file : listFiles )
+        {
+            assertTrue( ( file.getIdFile( ) == file1.getIdFile( ) ) || ( file.getIdFile( ) == file2.getIdFile( ) ) );
+            assertEquals( TITLE, file.getTitle( ) );
+            assertEquals( MIME_TYPE, file.getMimeType( ) );
+            assertEquals( CONTENT.length, file.getSize( ) );
+            assertTrue( file.getPhysicalFile( ) instanceof LazyPhysicalFile );
+            assertFalse( ( (LazyPhysicalFile) file.getPhysicalFile( ) ).isLoaded( ) );
+        }
+
+        assertNull( FileMetadataHome.findByPrimaryKey( ID_FILE_MISSING ) );
+    }
+
+    /**
+     * Test that the content is read at the first call to getValue, and streamed by read without being kept
+     */
+    public void testGetValueAndRead( )
+    {
+        File file = createFile( );
+        LazyPhysicalFile physicalFile = (LazyPhysicalFile) FileMetadataHome.findByPrimaryKey( file.getIdFile( ) ).getPhysicalFile( );
+
+        assertEquals( file.getPhysicalFile( ).getIdPhysicalFile( ), physicalFile.getIdPhysicalFile( ) );
+        assertTrue( Arrays.equals( CONTENT, physicalFile.read( IOUtils::toByteArray ) ) );
+        assertFalse( physicalFile.isLoaded( ) );
+
+        byte [ ] bValue = physicalFile.getValue( );
+        assertTrue( Arrays.equals( CONTENT, bValue ) );
+        assertTrue( physicalFile.isLoaded( ) );
+        assertSame( bValue, physicalFile.getValue( ) );
+        assertTrue( Arrays.equals( CONTENT, physicalFile.read( IOUtils::toByteArray ) ) );
+    }
+
+    /**
+     * Test that the content of a removed physical file cannot be read, unless it is in memory
+     */
+    public void testReadAfterRemoval( )
+    {
+        File file = createFile( );
+        LazyPhysicalFile physicalFileLoaded = (LazyPhysicalFile) FileMetadataHome.findByPrimaryKey( file.getIdFile( ) ).getPhysicalFile( );
+        physicalFileLoaded.getValue( );
+        LazyPhysicalFile physicalFile = (LazyPhysicalFile) FileMetadataHome.findByPrimaryKey( file.getIdFile( ) ).getPhysicalFile( );
+
+        FileHome.remove( file.getIdFile( ) );
+
+        try
+        {
+            physicalFile.getValue( );
+            fail( "The content of a removed physical file should not be read" );
+        }
+        catch( AppException e )
+        {
+            assertFalse( physicalFile.isLoaded( ) );
+        }
+
+        try
+        {
+            physicalFile.read( IOUtils::toByteArray );
+            fail( "The content of a removed physical file should not be streamed" );
+        }
+        catch( AppException e )
+        {
+            // Expected
+        }
+
+        assertTrue( Arrays.equals( CONTENT, physicalFileLoaded.getValue( ) ) );
+    }
+
+    /**
+     * Test that a serialized physical file holds its content
+     * 
+     * @throws Exception
+     *             if an error occurs
+     */
+    public void testSerialization( ) throws Exception
+    {
+        File file = createFile( );
+        LazyPhysicalFile physicalFile = (LazyPhysicalFile) FileMetadataHome.findByPrimaryKey( file.getIdFile( ) ).getPhysicalFile( );
+        byte [ ] bSerialized = serialize( physicalFile );
+
+        FileHome.remove( file.getIdFile( ) );
+
+        try ( ObjectInputStream inputStream = new ObjectInputStream( new ByteArrayInputStream( bSerialized ) ) )
+        {
+            LazyPhysicalFile physicalFileCopy = (LazyPhysicalFile) inputStream.readObject( );
+
+            assertTrue( physicalFileCopy.isLoaded( ) );
+            assertTrue( Arrays.equals( CONTENT, physicalFileCopy.getValue( ) ) );
+        }
+    }
+
+    /**
+     * Serialize an object
+     * 
+     * @param object
+     *            the object
+     * @return the serialized object
+     * @throws IOException
+     *             if an error occurs
+     */
+    private static byte [ ] serialize( Object object ) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
+
+        try ( ObjectOutputStream objectOutputStream = new ObjectOutputStream( outputStream ) )
+        {
+            objectOutputStream.writeObject( object );
+        }
+
+        return outputStream.toByteArray( );
+    }
+
+    /**
+     * Create a file with its physical file
+     * 
+     * @return the file
+     */
+    private File createFile( )
+    {
+        PhysicalFile physicalFile = new PhysicalFile( );
+        physicalFile.setValue( CONTENT );
+
+        File file = new File( );
+        file.setTitle( TITLE );
+        file.setMimeType( MIME_TYPE );
+        file.setSize( CONTENT.length );
+        file.setPhysicalFile( physicalFile );
+        file.setIdFile( FileHome.create( file ) );
+        _listIdFile.add( file.getIdFile( ) );
+
+        return file;
+    }
+}
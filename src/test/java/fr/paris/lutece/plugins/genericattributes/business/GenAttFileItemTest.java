@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.io.IOUtils;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test class for the GenAttFileItem
+ */
+public class GenAttFileItemTest extends LuteceTestCase
+{
+    private static final String FIELD_NAME = "field";
+    private static final String FILE_NAME = "file.bin";
+    private static final String CONTENT_TYPE = "application/octet-stream";
+    private static final String SPOOL_FILE_PREFIX = "genatt-upload-";
+    private static final int SMALL_SIZE = 100;
+    private static final int LARGE_SIZE = 200000;
+
+    /**
+     * Test that a small item is kept in memory
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testSpoolSmallItem( ) throws IOException
+    {
+        byte [ ] content = getContent( SMALL_SIZE );
+        GenAttFileItem item = GenAttFileItem.spool( getFileItem( content ) );
+
+        assertTrue( item.isInMemory( ) );
+        assertEquals( SMALL_SIZE, item.getSize( ) );
+        assertEquals( FILE_NAME, item.getName( ) );
+        assertEquals( FIELD_NAME, item.getFieldName( ) );
+        assertTrue( Arrays.equals( content, item.get( ) ) );
+
+        // A generic attributes item is not spooled again
+        assertSame( item, GenAttFileItem.spool( item ) );
+    }
+
+    /**
+     * Test that a large item is spooled to a temporary file, read once, and that the file is removed by delete
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testSpoolLargeItem( ) throws IOException
+    {
+        byte [ ] content = getContent( LARGE_SIZE );
+        Set<File> setSpoolFileBefore = getSpoolFiles( );
+        GenAttFileItem item = GenAttFileItem.spool( getFileItem( content ) );
+        Set<File> setSpoolFile = getSpoolFiles( );
+        setSpoolFile.removeAll( setSpoolFileBefore );
+
+        assertFalse( item.isInMemory( ) );
+        assertEquals( LARGE_SIZE, item.getSize( ) );
+        assertEquals( 1, setSpoolFile.size( ) );
+
+        byte [ ] value = item.get( );
+        assertTrue( Arrays.equals( content, value ) );
+
+        // The spooled file is not read again while the content is in memory
+        assertSame( value, item.get( ) );
+
+        try ( InputStream inputStream = item.getInputStream( ) )
+        {
+            assertTrue( Arrays.equals( content, IOUtils.toByteArray( inputStream ) ) );
+        }
+
+        item.delete( );
+
+        assertFalse( setSpoolFile.iterator( ).next( ).exists( ) );
+        assertNull( item.get( ) );
+    }
+
+    /**
+     * Test the write of an item in memory and of a spooled item
+     * 
+     * @throws Exception
+     *             if an error occurs
+     */
+    public void testWrite( ) throws Exception
+    {
+        for ( int nSize : new int [ ] {
+                SMALL_SIZE, LARGE_SIZE
+        } )
+        {
+            byte [ ] content = getContent( nSize );
+            GenAttFileItem item = GenAttFileItem.spool( getFileItem( content ) );
+            File file = File.createTempFile( "genatt-test-", ".tmp" );
+
+            try
+            {
+                item.write( file );
+                assertTrue( Arrays.equals( content, Files.readAllBytes( file.toPath( ) ) ) );
+            }
+            finally
+            {
+                item.delete( );
+                Files.deleteIfExists( file.toPath( ) );
+            }
+        }
+    }
+
+    /**
+     * Get an uploaded file item
+     * 
+     * @param content
+     *            the content of the item
+     * @return the file item
+     * @throws IOException
+     *             if an error occurs
+     */
+    private static FileItem getFileItem( byte [ ] content ) throws IOException
+    {
+        FileItem fileItem = new DiskFileItemFactory( ).createItem( FIELD_NAME, CONTENT_TYPE, false, FILE_NAME );
+
+        try ( OutputStream outputStream = fileItem.getOutputStream( ) )
+        {
+            outputStream.write( content );
+        }
+
+        return fileItem;
+    }
+
+    /**
+     * Get a random content
+     * 
+     * @param nSize
+     *            the size of the content
+     * @return the content
+     */
+    private static byte [ ] getContent( int nSize )
+    {
+        byte [ ] content = new byte [ nSize];
+        new Random( nSize ).nextBytes( content );
+
+        return content;
+    }
+
+    /**
+     * Get the spooled files of the temporary directory
+     * 
+     * @return the spooled files
+     */
+    private static Set<File> getSpoolFiles( )
+    {
+        Set<File> setFile = new HashSet<>( );
+        File [ ] files = new File( System.getProperty( "java.io.tmpdir" ) ).listFiles( ( dir, name ) -> name.startsWith( SPOOL_FILE_PREFIX ) );
+
+        if ( files != null )
+        {
+            setFile.addAll( Arrays.asList( files ) );
+        }
+
+        return setFile;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Contention benchmark of the response and field inserts : the same number of inserts is run with an increasing number of threads, and the
+ * throughput of each run is logged. The inserts must not be serialized in the JVM, so the throughput is expected to grow with the number of threads
+ * until the database is saturated. The benchmark is long, so it only runs when the system property <code>genericattributes.benchmark</code> is set
+ * to true; the correctness of the concurrent inserts is checked by {@link ConcurrentInsertTest}.
+ */
+public class InsertContentionTest extends AbstractEntryTest
+{
+    private static final String TITLE = "Title";
+    private static final String RESPONSE_VALUE = "response_value";
+    private static final int [ ] THREAD_COUNTS = {
+            1, 2, 4, 8
+    };
+    private static final int INSERTS_PER_RUN = 400;
+    private static final String PROPERTY_BENCHMARK = "genericattributes.benchmark";
+
+    private Entry _entry;
+
+    public void testConcurrentResponseInserts( ) throws Exception
+    {
+        if ( !Boolean.getBoolean( PROPERTY_BENCHMARK ) )
+        {
+            return;
+        }
+
+        for ( int nThreadCount : THREAD_COUNTS )
+        {
+            List<Integer> listId = run( nThreadCount, ( ) -> {
+                Response response = new Response( );
+                response.setEntry( _entry );
+                response.setResponseValue( RESPONSE_VALUE );
+                ResponseHome.create( response );
+
+                return response.getIdResponse( );
+            }, "responses" );
+
+            assertEquals( INSERTS_PER_RUN, new HashSet<>( listId ).size( ) );
+        }
+    }
+
+    public void testConcurrentFieldInserts( ) throws Exception
+    {
+        if ( !Boolean.getBoolean( PROPERTY_BENCHMARK ) )
+        {
+            return;
+        }
+
+        for ( int nThreadCount : THREAD_COUNTS )
+        {
+            List<Integer> listId = run( nThreadCount, ( ) -> {
+                Field field = new Field( );
+                field.setParentEntry( _entry );
+                field.setTitle( TITLE );
+
+                return FieldHome.create( field );
+            }, "fields" );
+
+            assertEquals( INSERTS_PER_RUN, new HashSet<>( listId ).size( ) );
+        }
+
+        assertEquals( INSERTS_PER_RUN * THREAD_COUNTS.length, FieldHome.getFieldListByIdEntry( _entry.getIdEntry( ) ).size( ) );
+    }
+
+    /**
+     * Run the inserts of a run with the given number of threads and log the throughput
+     * 
+     * @param nThreadCount
+     *            the number of threads
+     * @param insert
+     *            an insert, returning the id of the created object
+     * @param strLabel
+     *            the label of the inserted objects
+     * @return the ids of the created objects
+     * @throws Exception
+     *             if an insert fails
+     */
+    private List<Integer> run( int nThreadCount, Callable<Integer> insert, String strLabel ) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( nThreadCount );
+        List<Future<Integer>> listFuture = new ArrayList<>( INSERTS_PER_RUN );
+        List<Integer> listId = new ArrayList<>( INSERTS_PER_RUN );
+
+        try
+        {
+            long lStart = System.nanoTime( );
+
+            for ( int i = 0; i < INSERTS_PER_RUN; i++ )
+            {
+                listFuture.add( executor.submit( insert ) );
+            }
+
+            for ( Future<Integer> future : listFuture )
+            {
+                listId.add( future.get( ) );
+            }
+
+            long lDuration = Math.max( 1, System.nanoTime( ) - lStart );
+            AppLogService.info( "Inserted " + INSERTS_PER_RUN + " " + strLabel + " with " + nThreadCount + " threads : "
+                    + ( INSERTS_PER_RUN * 1_000_000_000L / lDuration ) + " inserts/s" );
+        }
+        finally
+        {
+            executor.shutdown( );
+        }
+
+        return listId;
+    }
+
+    @Override
+    public void setUp( ) throws Exception
+    {
+        super.setUp( );
+
+        EntryType entryType = EntryTypeHome.findByPrimaryKey( _nEntryTypeTextPrimaryKey );
+        _entry = createEntry( null, TITLE, entryType );
+    }
+
+    @Override
+    public void tearDown( ) throws Exception
+    {
+        EntryHome.remove( _entry.getIdEntry( ) );
+
+        super.tearDown( );
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
+
+/**
+ * Test class for the ResponseHome
+ */
+public class ResponseHomeTest extends AbstractEntryTest
+{
+    // Constants
+    private static final int NUMBER_FIELDS = 2;
+    private static final int NUMBER_RESPONSES = 3;
+    private static final String TITLE = "Title";
+    private static final String RESPONSE_VALUE = "value_";
+    private static final String FILE_TITLE = "file.txt";
+    private static final String FILE_MIME_TYPE = "text/plain";
+    private static final byte [ ] FILE_CONTENT = "content".getBytes( StandardCharsets.UTF_8 );
+    private static final int ID_FILE_MISSING = -1;
+
+    // Variables
+    private Entry _entry;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setUp( ) throws Exception
+    {
+        super.setUp( );
+
+        _entry = manageCreateEntry( null, TITLE, NUMBER_FIELDS, 0 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tearDown( ) throws Exception
+    {
+        super.tearDown( );
+
+        for ( Response response : getResponses( ) )
+        {
+            ResponseHome.remove( response.getIdResponse( ) );
+        }
+
+        for ( Field field : FieldHome.getFieldListByIdEntry( _entry.getIdEntry( ) ) )
+        {
+            FieldHome.remove( field.getIdField( ) );
+        }
+
+        _entryDAO.delete( _entry.getIdEntry( ), _plugin );
+        removeEntryType( _nEntryTypeGroupPrimaryKey );
+        removeEntryType( _nEntryTypeTextPrimaryKey );
+    }
+
+    /**
+     * Test the creation of the responses of a submission in one batch
+     */
+    public void testCreateAll( )
+    {
+        Field field = FieldHome.getFieldListByIdEntry( _entry.getIdEntry( ) ).get( 0 );
+        List<Response> listResponse = new ArrayList<>( );
+
+        for ( int i = 0; i < NUMBER_RESPONSES; i++ )
+        {
+            Response response = new Response( );
+            response.setEntry( _entry );
+            response.setResponseValue( RESPONSE_VALUE + i );
+            response.setIterationNumber( i );
+            response.setField( field );
+            listResponse.add( response );
+        }
+
+        ResponseHome.createAll( listResponse );
+
+        // Each response gets its own generated id, in the order of the list
+        Set<Integer> setIdResponse = new HashSet<>( );
+
+        for ( int i = 0; i < NUMBER_RESPONSES; i++ )
+        {
+            Response response = listResponse.get( i );
+            assertTrue( response.getIdResponse( ) > 0 );
+            assertTrue( setIdResponse.add( response.getIdResponse( ) ) );
+
+            Response responseStored = ResponseHome.findByPrimaryKey( response.getIdResponse( ) );
+            assertNotNull( responseStored );
+            assertEquals( RESPONSE_VALUE + i, responseStored.getResponseValue( ) );
+            assertEquals( i, responseStored.getIterationNumber( ) );
+            assertEquals( _entry.getIdEntry( ), responseStored.getEntry( ).getIdEntry( ) );
+            assertEquals( field.getIdField( ), responseStored.getField( ).getIdField( ) );
+        }
+
+        assertEquals( NUMBER_RESPONSES, getResponses( ).size( ) );
+    }
+
+    /**
+     * Test the creation of an empty list of responses
+     */
+    public void testCreateAllEmpty( )
+    {
+        ResponseHome.createAll( new ArrayList<>( ) );
+
+        assertTrue( getResponses( ).isEmpty( ) );
+    }
+
+    /**
+     * Test the pages of the responses, loaded after the last id of the previous page
+     */
+    public void testResponsePageIterator( )
+    {
+        List<Response> listResponse = createResponses( 5 );
+        ResponseFilter filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+
+        List<Integer> listPageSize = new ArrayList<>( );
+        List<Integer> listIdResponse = new ArrayList<>( );
+        Iterator<List<Response>> iterator = ResponseHome.getResponsePageIterator( filter, 2 );
+
+        while ( iterator.hasNext( ) )
+        {
+            List<Response> listPage = iterator.next( );
+            listPageSize.add( listPage.size( ) );
+            listPage.forEach( response -> listIdResponse.add( response.getIdResponse( ) ) );
+        }
+
+        assertEquals( Arrays.asList( 2, 2, 1 ), listPageSize );
+        assertEquals( listResponse.stream( ).map( Response::getIdResponse ).collect( Collectors.toList( ) ), listIdResponse );
+
+        // The filter of the caller is left unchanged
+        assertFalse( filter.containsAfterId( ) );
+        assertFalse( filter.containsLimit( ) );
+
+        try
+        {
+            iterator.next( );
+            fail( );
+        }
+        catch( NoSuchElementException e )
+        {
+            // The last page has been read
+        }
+    }
+
+    /**
+     * Test the pages of the responses after an id
+     */
+    public void testResponsePageIteratorAfterId( )
+    {
+        List<Response> listResponse = createResponses( 3 );
+        ResponseFilter filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+        filter.setAfterId( listResponse.get( 0 ).getIdResponse( ) );
+
+        Iterator<List<Response>> iterator = ResponseHome.getResponsePageIterator( filter, 10 );
+        List<Response> listPage = iterator.next( );
+
+        assertEquals( 2, listPage.size( ) );
+        assertEquals( listResponse.get( 1 ).getIdResponse( ), listPage.get( 0 ).getIdResponse( ) );
+        assertFalse( iterator.hasNext( ) );
+        assertEquals( listResponse.get( 0 ).getIdResponse( ), filter.getAfterId( ) );
+    }
+
+    /**
+     * Test that the metadata of the files of responses are loaded in one query, without their content
+     */
+    public void testLoadFileMetadata( )
+    {
+        PhysicalFile physicalFile = new PhysicalFile( );
+        physicalFile.setValue( FILE_CONTENT );
+
+        File file = new File( );
+        file.setTitle( FILE_TITLE );
+        file.setMimeType( FILE_MIME_TYPE );
+        file.setSize( FILE_CONTENT.length );
+        file.setPhysicalFile( physicalFile );
+        int nIdFile = FileHome.create( file );
+
+        try
+        {
+            Response responseWithFile = new Response( );
+            responseWithFile.setFile( new File( ) );
+            responseWithFile.getFile( ).setIdFile( nIdFile );
+
+            Response responseWithMissingFile = new Response( );
+            File fileMissing = new File( );
+            fileMissing.setIdFile( ID_FILE_MISSING );
+            responseWithMissingFile.setFile( fileMissing );
+
+            Response responseWithoutFile = new Response( );
+
+            ResponseHome.loadFileMetadata( Arrays.asList( responseWithFile, responseWithMissingFile, responseWithoutFile ) );
+
+            File fileLoaded = responseWithFile.getFile( );
+            assertEquals( nIdFile, fileLoaded.getIdFile( ) );
+            assertEquals( FILE_TITLE, fileLoaded.getTitle( ) );
+            assertEquals( FILE_MIME_TYPE, fileLoaded.getMimeType( ) );
+            assertEquals( FILE_CONTENT.length, fileLoaded.getSize( ) );
+            assertFalse( ( (LazyPhysicalFile) fileLoaded.getPhysicalFile( ) ).isLoaded( ) );
+            assertTrue( Arrays.equals( FILE_CONTENT, fileLoaded.getPhysicalFile( ).getValue( ) ) );
+
+            // The file which does not exist is left as it was
+            assertSame( fileMissing, responseWithMissingFile.getFile( ) );
+            assertNull( responseWithoutFile.getFile( ) );
+        }
+        finally
+        {
+            FileHome.remove( nIdFile );
+        }
+    }
+
+    /**
+     * Test that the streamed responses of an entry are all read, and share a single instance of their entry
+     */
+    public void testStreamResponses( )
+    {
+        List<Response> listResponse = createResponses( NUMBER_RESPONSES );
+        ResponseFilter filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+
+        List<Response> listStreamed = new ArrayList<>( );
+        ResponseHome.streamResponses( filter, listStreamed::add );
+
+        assertEquals( listResponse.stream( ).map( Response::getIdResponse ).collect( Collectors.toSet( ) ),
+                listStreamed.stream( ).map( Response::getIdResponse ).collect( Collectors.toSet( ) ) );
+
+        Entry entry = listStreamed.get( 0 ).getEntry( );
+        assertEquals( _entry.getIdEntry( ), entry.getIdEntry( ) );
+
+        for ( Response response : listStreamed )
+        {
+            assertSame( entry, response.getEntry( ) );
+        }
+    }
+
+    /**
+     * Test the criteria of the responses read by the DAO one by one
+     */
+    public void testSelectByFilter( )
+    {
+        Field field = FieldHome.getFieldListByIdEntry( _entry.getIdEntry( ) ).get( 0 );
+        List<Response> listResponse = createResponses( NUMBER_RESPONSES );
+        Response responseWithField = new Response( );
+        responseWithField.setEntry( _entry );
+        responseWithField.setField( field );
+        responseWithField.setResponseValue( RESPONSE_VALUE );
+        ResponseHome.create( responseWithField );
+
+        IResponseDAO dao = new ResponseDAO( );
+        List<Response> listSelected = new ArrayList<>( );
+
+        ResponseFilter filter = new ResponseFilter( );
+        filter.setIdField( field.getIdField( ) );
+        dao.selectByFilter( filter, listSelected::add, _plugin );
+
+        assertEquals( 1, listSelected.size( ) );
+        assertEquals( responseWithField.getIdResponse( ), listSelected.get( 0 ).getIdResponse( ) );
+        assertEquals( field.getIdField( ), listSelected.get( 0 ).getField( ).getIdField( ) );
+
+        listSelected.clear( );
+        filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+        filter.setResponseValue( RESPONSE_VALUE + 1 );
+        dao.selectByFilter( filter, listSelected::add, _plugin );
+
+        assertEquals( 1, listSelected.size( ) );
+        assertEquals( listResponse.get( 1 ).getIdResponse( ), listSelected.get( 0 ).getIdResponse( ) );
+
+        listSelected.clear( );
+        filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+        filter.setAfterId( listResponse.get( 0 ).getIdResponse( ) );
+        filter.setLimit( 2 );
+        dao.selectByFilter( filter, listSelected::add, _plugin );
+
+        assertEquals( Arrays.asList( listResponse.get( 1 ).getIdResponse( ), listResponse.get( 2 ).getIdResponse( ) ),
+                listSelected.stream( ).map( Response::getIdResponse ).collect( Collectors.toList( ) ) );
+    }
+
+    /**
+     * Create responses of the entry of the test
+     * 
+     * @param nCount
+     *            the number of responses
+     * @return the responses
+     */
+    private List<Response> createResponses( int nCount )
+    {
+        List<Response> listResponse = new ArrayList<>( );
+
+        for ( int i = 0; i < nCount; i++ )
+        {
+            Response response = new Response( );
+            response.setEntry( _entry );
+            response.setResponseValue( RESPONSE_VALUE + i );
+            listResponse.add( response );
+        }
+
+        ResponseHome.createAll( listResponse );
+
+        return listResponse;
+    }
+
+    /**
+     * Get the responses of the entry of the test
+     * 
+     * @return the responses
+     */
+    private List<Response> getResponses( )
+    {
+        ResponseFilter filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+
+        return ResponseHome.getResponseList( filter );
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.genericattributes.business.ResponseStatisticHome.StatisticKey;
+import fr.paris.lutece.plugins.genericattributes.util.TransactionUtils;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Test class for the ResponseStatisticHome
+ */
+public class ResponseStatisticHomeTest extends AbstractEntryTest
+{
+    // Constants
+    private static final int NUMBER_FIELDS = 2;
+    private static final String TITLE = "Title";
+    private static final String RESPONSE_VALUE = "value";
+    private static final int NUMBER_THREADS = 8;
+    private static final long TIMEOUT = 60;
+
+    // Variables
+    private Entry _entry;
+    private Field _field1;
+    private Field _field2;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setUp( ) throws Exception
+    {
+        super.setUp( );
+
+        _entry = manageCreateEntry( null, TITLE, NUMBER_FIELDS, 0 );
+
+        List<Field> listField = FieldHome.getFieldListByIdEntry( _entry.getIdEntry( ) );
+        _field1 = listField.get( 0 );
+        _field2 = listField.get( 1 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tearDown( ) throws Exception
+    {
+        super.tearDown( );
+
+        ResponseFilter filter = new ResponseFilter( );
+        filter.setIdEntry( _entry.getIdEntry( ) );
+
+        for ( Response response : ResponseHome.getResponseList( filter ) )
+        {
+            ResponseHome.remove( response.getIdResponse( ) );
+        }
+
+        ResponseStatisticHome.removeByEntryIdList( Collections.singletonList( _entry.getIdEntry( ) ) );
+
+        for ( Field field : FieldHome.getFieldListByIdEntry( _entry.getIdEntry( ) ) )
+        {
+            FieldHome.remove( field.getIdField( ) );
+        }
+
+        _entryDAO.delete( _entry.getIdEntry( ), _plugin );
+        removeEntryType( _nEntryTypeGroupPrimaryKey );
+        removeEntryType( _nEntryTypeTextPrimaryKey );
+    }
+
+    /**
+     * Test the first day of the periods of a date
+     */
+    public void testGetPeriodStart( )
+    {
+        // A thursday
+        Timestamp date = Timestamp.valueOf( "2024-03-14 15:30:00" );
+
+        assertEquals( Date.valueOf( "2024-03-14" ), ResponseStatisticHome.getPeriodStart( date, ResponseStatisticHome.PERIOD_DAY ) );
+        assertEquals( Date.valueOf( "2024-03-11" ), ResponseStatisticHome.getPeriodStart( date, ResponseStatisticHome.PERIOD_WEEK ) );
+        assertEquals( Date.valueOf( "2024-03-01" ), ResponseStatisticHome.getPeriodStart( date, ResponseStatisticHome.PERIOD_MONTH ) );
+
+        // The weeks start on monday, and end on sunday
+        assertEquals( Date.valueOf( "2024-03-11" ),
+                ResponseStatisticHome.getPeriodStart( Timestamp.valueOf( "2024-03-11 00:00:00" ), ResponseStatisticHome.PERIOD_WEEK ) );
+        assertEquals( Date.valueOf( "2024-03-11" ),
+                ResponseStatisticHome.getPeriodStart( Timestamp.valueOf( "2024-03-17 23:59:59" ), ResponseStatisticHome.PERIOD_WEEK ) );
+
+        // A week may start in the previous month, or in the previous year
+        assertEquals( Date.valueOf( "2023-12-25" ),
+                ResponseStatisticHome.getPeriodStart( Timestamp.valueOf( "2024-01-01 12:00:00" ), ResponseStatisticHome.PERIOD_WEEK ) );
+    }
+
+    /**
+     * Test the equality and the order of the keys of the counters
+     */
+    public void testStatisticKey( )
+    {
+        Date dateMarch = Date.valueOf( "2024-03-01" );
+        Date dateApril = Date.valueOf( "2024-04-01" );
+
+        // The entry is not part of the identity of a counter
+        assertEquals( new StatisticKey( 1, 10, ResponseStatisticHome.PERIOD_MONTH, dateMarch ),
+                new StatisticKey( 1, 20, ResponseStatisticHome.PERIOD_MONTH, dateMarch ) );
+        assertEquals( new StatisticKey( 1, 10, ResponseStatisticHome.PERIOD_MONTH, dateMarch ).hashCode( ),
+                new StatisticKey( 1, 20, ResponseStatisticHome.PERIOD_MONTH, dateMarch ).hashCode( ) );
+        assertFalse( new StatisticKey( 1, 10, ResponseStatisticHome.PERIOD_MONTH, dateMarch )
+                .equals( new StatisticKey( 1, 10, ResponseStatisticHome.PERIOD_MONTH, dateApril ) ) );
+
+        // The counters are locked by field, then period, then first day, the total counter first
+        List<StatisticKey> listKey = new ArrayList<>( );
+        listKey.add( new StatisticKey( 2, 10, ResponseStatisticHome.PERIOD_DAY, dateMarch ) );
+        listKey.add( new StatisticKey( 1, 10, ResponseStatisticHome.PERIOD_MONTH, dateApril ) );
+        listKey.add( new StatisticKey( 1, 10, ResponseStatisticHome.PERIOD_MONTH, dateMarch ) );
+        listKey.add( new StatisticKey( 1, 10, 0, null ) );
+        listKey.add( new StatisticKey( 1, 10, ResponseStatisticHome.PERIOD_DAY, dateApril ) );
+
+        Map<StatisticKey, Integer> mapIncrement = new TreeMap<>( );
+        listKey.forEach( key -> mapIncrement.merge( key, 1, Integer::sum ) );
+        mapIncrement.merge( new StatisticKey( 1, 10, 0, null ), 1, Integer::sum );
+
+        List<StatisticKey> listSorted = new ArrayList<>( mapIncrement.keySet( ) );
+        assertEquals( 5, listSorted.size( ) );
+        assertEquals( listKey.get( 3 ), listSorted.get( 0 ) );
+        assertEquals( listKey.get( 4 ), listSorted.get( 1 ) );
+        assertEquals( listKey.get( 2 ), listSorted.get( 2 ) );
+        assertEquals( listKey.get( 1 ), listSorted.get( 3 ) );
+        assertEquals( listKey.get( 0 ), listSorted.get( 4 ) );
+        assertEquals( Integer.valueOf( 2 ), mapIncrement.get( listKey.get( 3 ) ) );
+    }
+
+    /**
+     * Test the counters through the creation, the change of field and the removal of responses
+     */
+    public void testIncrements( )
+    {
+        Response response1 = createResponse( _field1 );
+        createResponse( _field1 );
+
+        assertEquals( 2, getCount( _field1 ) );
+        assertEquals( 0, getCount( _field2 ) );
+        assertEquals( 2, getCountOfToday( _field1, ResponseStatisticHome.PERIOD_DAY ) );
+        assertEquals( 2, getCountOfToday( _field1, ResponseStatisticHome.PERIOD_MONTH ) );
+
+        response1.setField( _field2 );
+        ResponseHome.update( response1 );
+
+        assertEquals( 1, getCount( _field1 ) );
+        assertEquals( 1, getCount( _field2 ) );
+        assertEquals( 1, getCountOfToday( _field2, ResponseStatisticHome.PERIOD_WEEK ) );
+
+        ResponseHome.remove( response1.getIdResponse( ) );
+
+        assertEquals( 1, getCount( _field1 ) );
+        assertEquals( 0, getCount( _field2 ) );
+        assertEquals( 0, getCountOfToday( _field2, ResponseStatisticHome.PERIOD_WEEK ) );
+    }
+
+    /**
+     * Test that the removal of the responses of entries by chunks removes them from the counters
+     */
+    public void testRemoveByEntryIdList( )
+    {
+        createResponse( _field1 );
+        createResponse( _field1 );
+        createResponse( _field2 );
+
+        ResponseHome.removeByEntryIdList( Collections.singletonList( _entry.getIdEntry( ) ), null );
+
+        assertEquals( 0, getCount( _field1 ) );
+        assertEquals( 0, getCount( _field2 ) );
+        assertEquals( 0, getCountOfToday( _field1, ResponseStatisticHome.PERIOD_DAY ) );
+        assertEquals( 0, getCountOfToday( _field2, ResponseStatisticHome.PERIOD_MONTH ) );
+
+        createResponse( _field1 );
+
+        assertEquals( 1, getCount( _field1 ) );
+        assertEquals( 1, getCountOfToday( _field1, ResponseStatisticHome.PERIOD_WEEK ) );
+    }
+
+    /**
+     * Test that the counters are not updated in the transaction of the caller, but once it is committed, and never if it is rolled back
+     */
+    public void testIncrementsInCallerTransaction( )
+    {
+        createResponse( _field1 );
+
+        TransactionManager.beginTransaction( _plugin );
+
+        try
+        {
+            createResponse( _field1 );
+            createResponse( _field2 );
+
+            // The counters are not locked by the transaction of the caller
+            assertEquals( 1, getCount( _field1 ) );
+        }
+        finally
+        {
+            TransactionManager.rollBack( _plugin );
+        }
+
+        TransactionUtils.runQueuedTasks( );
+
+        assertEquals( 1, getCount( _field1 ) );
+        assertEquals( 0, getCount( _field2 ) );
+
+        TransactionManager.beginTransaction( _plugin );
+        createResponse( _field1 );
+        createResponse( _field2 );
+        TransactionManager.commitTransaction( _plugin );
+
+        assertEquals( 1, getCount( _field1 ) );
+
+        TransactionUtils.runQueuedTasks( );
+
+        assertEquals( 2, getCount( _field1 ) );
+        assertEquals( 1, getCount( _field2 ) );
+        assertEquals( 1, getCountOfToday( _field2, ResponseStatisticHome.PERIOD_DAY ) );
+    }
+
+    /**
+     * Test that concurrent first responses to a field create its counters once, and are all counted
+     * 
+     * @throws Exception
+     *             if an error occurs
+     */
+    public void testConcurrentFirstIncrements( ) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( NUMBER_THREADS );
+        CyclicBarrier barrier = new CyclicBarrier( NUMBER_THREADS );
+        List<Future<Response>> listFutures = new ArrayList<>( );
+
+        try
+        {
+            for ( int i = 0; i < NUMBER_THREADS; i++ )
+            {
+                listFutures.add( executor.submit( ( ) -> {
+                    barrier.await( TIMEOUT, TimeUnit.SECONDS );
+
+                    return createResponse( _field2 );
+                } ) );
+            }
+
+            for ( Future<Response> future : listFutures )
+            {
+                assertTrue( future.get( TIMEOUT, TimeUnit.SECONDS ).getIdResponse( ) > 0 );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow( );
+        }
+
+        assertEquals( NUMBER_THREADS, getCount( _field2 ) );
+        assertEquals( NUMBER_THREADS, getCountOfToday( _field2, ResponseStatisticHome.PERIOD_DAY ) );
+        assertEquals( NUMBER_THREADS, getCountOfToday( _field2, ResponseStatisticHome.PERIOD_WEEK ) );
+        assertEquals( NUMBER_THREADS, getCountOfToday( _field2, ResponseStatisticHome.PERIOD_MONTH ) );
+    }
+
+    /**
+     * Create a response to a field of the entry of the test
+     * 
+     * @param field
+     *            the field
+     * @return the response
+     */
+    private Response createResponse( Field field )
+    {
+        Response response = new Response( );
+        response.setEntry( _entry );
+        response.setField( field );
+        response.setResponseValue( RESPONSE_VALUE );
+        ResponseHome.create( response );
+
+        return response;
+    }
+
+    /**
+     * Get the total counter of a field
+     * 
+     * @param field
+     *            the field
+     * @return the number of responses of the field
+     */
+    private int getCount( Field field )
+    {
+        for ( StatisticEntrySubmit statistic : ResponseStatisticHome.findByIdEntry( _entry.getIdEntry( ) ) )
+        {
+            if ( statistic.getIdField( ) == field.getIdField( ) )
+            {
+                return statistic.getNumberResponse( );
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Get the counter of a field for the period of today
+     * 
+     * @param field
+     *            the field
+     * @param nPeriod
+     *            the period
+     * @return the number of responses of the field in the period of today
+     */
+    private int getCountOfToday( Field field, int nPeriod )
+    {
+        Date datePeriod = ResponseStatisticHome.getPeriodStart( Timestamp.valueOf( LocalDate.now( ).atStartOfDay( ) ), nPeriod );
+
+        for ( StatisticEntrySubmit statistic : ResponseStatisticHome.findByIdEntryAndPeriod( _entry.getIdEntry( ), nPeriod ) )
+        {
+            if ( statistic.getIdField( ) == field.getIdField( ) && datePeriod.equals( statistic.getDateBucket( ) ) )
+            {
+                return statistic.getNumberResponse( );
+            }
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.business;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Test class for the SequenceHome
+ */
+public class SequenceHomeTest extends AbstractEntryTest
+{
+    // Constants
+    private static final String TITLE = "Title";
+    private static final int BLOCK_SIZE = 5;
+    private static final int MAX_NUMBER = 41;
+    private static final int NUMBER_THREADS = 8;
+    private static final long TIMEOUT = 60;
+
+    // Variables
+    private Entry _entry;
+    private Response _response;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setUp( ) throws Exception
+    {
+        super.setUp( );
+
+        _entry = manageCreateEntry( null, TITLE, 0, 0 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tearDown( ) throws Exception
+    {
+        super.tearDown( );
+
+        if ( _response != null )
+        {
+            ResponseHome.remove( _response.getIdResponse( ) );
+        }
+
+        SequenceHome.remove( _entry.getIdEntry( ) );
+        _entryDAO.delete( _entry.getIdEntry( ), _plugin );
+        removeEntryType( _nEntryTypeGroupPrimaryKey );
+        removeEntryType( _nEntryTypeTextPrimaryKey );
+    }
+
+    /**
+     * Test that the blocks of values of a sequence follow each other
+     */
+    public void testAllocate( )
+    {
+        int nFirst = SequenceHome.allocate( _entry.getIdEntry( ), BLOCK_SIZE );
+
+        assertEquals( 1, nFirst );
+        assertEquals( nFirst + BLOCK_SIZE, SequenceHome.allocate( _entry.getIdEntry( ), 1 ) );
+        assertEquals( nFirst + BLOCK_SIZE + 1, SequenceHome.allocate( _entry.getIdEntry( ), BLOCK_SIZE ) );
+    }
+
+    /**
+     * Test that a new sequence starts after the greatest value of the responses of the entry
+     */
+    public void testAllocateAfterMaxNumber( )
+    {
+        _response = new Response( );
+        _response.setEntry( _entry );
+        _response.setResponseValue( String.valueOf( MAX_NUMBER ) );
+        ResponseHome.create( _response );
+
+        assertEquals( MAX_NUMBER + 1, SequenceHome.allocate( _entry.getIdEntry( ), BLOCK_SIZE ) );
+    }
+
+    /**
+     * Test that removing the sequence of an entry restarts it
+     */
+    public void testRemove( )
+    {
+        SequenceHome.allocate( _entry.getIdEntry( ), BLOCK_SIZE );
+        SequenceHome.remove( _entry.getIdEntry( ) );
+
+        assertEquals( 1, SequenceHome.allocate( _entry.getIdEntry( ), BLOCK_SIZE ) );
+    }
+
+    /**
+     * Test that the values can not be allocated in their own transaction inside a transaction of the caller
+     */
+    public void testAllocateRefusedInCallerTransaction( )
+    {
+        TransactionManager.beginTransaction( _plugin );
+
+        try
+        {
+            SequenceHome.allocate( _entry.getIdEntry( ), BLOCK_SIZE );
+            fail( "The allocation must be refused in a transaction of the caller" );
+        }
+        catch( AppException e )
+        {
+            // Expected
+        }
+        finally
+        {
+            TransactionManager.rollBack( _plugin );
+        }
+    }
+
+    /**
+     * Test that the values allocated in a transaction of the caller, creating the sequence or not, are released by its rollback
+     */
+    public void testAllocateInTransaction( )
+    {
+        TransactionManager.beginTransaction( _plugin );
+        assertEquals( 1, SequenceHome.allocateInTransaction( _entry.getIdEntry( ), 1 ) );
+        TransactionManager.rollBack( _plugin );
+
+        TransactionManager.beginTransaction( _plugin );
+        assertEquals( 1, SequenceHome.allocateInTransaction( _entry.getIdEntry( ), 1 ) );
+        TransactionManager.commitTransaction( _plugin );
+
+        TransactionManager.beginTransaction( _plugin );
+        assertEquals( 2, SequenceHome.allocateInTransaction( _entry.getIdEntry( ), 1 ) );
+        TransactionManager.rollBack( _plugin );
+
+        assertEquals( 2, SequenceHome.allocate( _entry.getIdEntry( ), 1 ) );
+    }
+
+    /**
+     * Test that concurrent first allocations create the sequence once and never allocate the same value twice
+     * 
+     * @throws Exception
+     *             if an error occurs
+     */
+    public void testConcurrentFirstAllocations( ) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( NUMBER_THREADS );
+        CyclicBarrier barrier = new CyclicBarrier( NUMBER_THREADS );
+        List<Future<Integer>> listFutures = new ArrayList<>( );
+        TreeSet<Integer> setValues = new TreeSet<>( );
+
+        try
+        {
+            for ( int i = 0; i < NUMBER_THREADS; i++ )
+            {
+                listFutures.add( executor.submit( ( ) -> {
+                    barrier.await( TIMEOUT, TimeUnit.SECONDS );
+
+                    return SequenceHome.allocateInTransaction( _entry.getIdEntry( ), 1 );
+                } ) );
+            }
+
+            for ( Future<Integer> future : listFutures )
+            {
+                setValues.add( future.get( TIMEOUT, TimeUnit.SECONDS ) );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow( );
+        }
+
+        assertEquals( NUMBER_THREADS, setValues.size( ) );
+        assertEquals( Integer.valueOf( 1 ), setValues.first( ) );
+        assertEquals( Integer.valueOf( NUMBER_THREADS ), setValues.last( ) );
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import fr.paris.lutece.plugins.genericattributes.service.EntryEventPublisher.EventType;
+import fr.paris.lutece.plugins.genericattributes.util.GenericAttributesUtils;
+import fr.paris.lutece.plugins.genericattributes.util.TransactionUtils;
+import fr.paris.lutece.portal.business.event.ResourceEvent;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.test.LuteceTestCase;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Test class for the EntryEventPublisher
+ */
+public class EntryEventPublisherTest extends LuteceTestCase
+{
+    private static final String TYPE_RESOURCE = "GENERIC_ATTRIBUTES_TEST";
+    private static final String ID_BLOCKING = "1";
+    private static final long LONG_DELAY = 60000;
+    private static final long WAIT_DELAY = 5000;
+
+    private final List<String> _listFired = Collections.synchronizedList( new ArrayList<>( ) );
+    private final CountDownLatch _latchBlocking = new CountDownLatch( 1 );
+    private final CountDownLatch _latchBlocked = new CountDownLatch( 1 );
+
+    /**
+     * Test that the events are fired in the caller thread when the publication is synchronous
+     */
+    public void testSynchronous( )
+    {
+        EntryEventPublisher publisher = new EntryEventPublisher( false, LONG_DELAY, 1, 0, this::record );
+
+        publisher.publishAdded( getEvent( "2" ) );
+        publisher.publishUpdated( getEvent( "2" ) );
+        publisher.publishUpdated( getEvent( "2" ) );
+
+        assertEquals( Arrays.asList( "ADDED_2", "UPDATED_2", "UPDATED_2" ), _listFired );
+        assertEquals( 0, publisher.getCoalescedCount( ) );
+    }
+
+    /**
+     * Test that the events published in a transaction are fired once it is committed, and never if it is rolled back
+     */
+    public void testPublishedAfterCommit( )
+    {
+        EntryEventPublisher publisher = new EntryEventPublisher( false, LONG_DELAY, 1, 0, this::record );
+        Plugin plugin = GenericAttributesUtils.getPlugin( );
+
+        TransactionManager.beginTransaction( plugin );
+        publisher.publishAdded( getEvent( "2" ) );
+        TransactionManager.rollBack( plugin );
+        TransactionUtils.runQueuedTasks( );
+
+        assertTrue( _listFired.isEmpty( ) );
+
+        TransactionManager.beginTransaction( plugin );
+        publisher.publishAdded( getEvent( "3" ) );
+        publisher.publishUpdated( getEvent( "3" ) );
+
+        assertTrue( _listFired.isEmpty( ) );
+
+        TransactionManager.commitTransaction( plugin );
+        TransactionUtils.runQueuedTasks( );
+
+        assertEquals( Arrays.asList( "ADDED_3", "UPDATED_3" ), _listFired );
+    }
+
+    /**
+     * Test that the updates of a resource are merged only when no other event of the resource was published in between
+     */
+    public void testCoalesceKeepsOrder( )
+    {
+        EntryEventPublisher publisher = new EntryEventPublisher( true, LONG_DELAY, 10, 0, this::record );
+
+        publisher.publishUpdated( getEvent( "2" ) );
+        publisher.publishUpdated( getEvent( "3" ) );
+        publisher.publishUpdated( getEvent( "2" ) );
+        publisher.publishDeleted( getEvent( "2" ) );
+        publisher.publishAdded( getEvent( "4" ) );
+        publisher.publishUpdated( getEvent( "4" ) );
+        publisher.shutdown( );
+
+        assertEquals( Arrays.asList( "UPDATED_2", "DELETED_2" ), getFired( "2" ) );
+        assertEquals( Arrays.asList( "ADDED_4", "UPDATED_4" ), getFired( "4" ) );
+        assertEquals( Arrays.asList( "UPDATED_3" ), getFired( "3" ) );
+        assertEquals( 1, publisher.getCoalescedCount( ) );
+        assertEquals( 5, publisher.getPublishedCount( ) );
+    }
+
+    /**
+     * Test that the shutdown fires the queued events, and that the events published afterwards are fired in the caller thread
+     */
+    public void testShutdownDrainsQueue( )
+    {
+        EntryEventPublisher publisher = new EntryEventPublisher( true, LONG_DELAY, 10, 0, this::record );
+
+        publisher.publishAdded( getEvent( "2" ) );
+        publisher.publishAdded( getEvent( "3" ) );
+        publisher.shutdown( );
+
+        assertEquals( Arrays.asList( "ADDED_2", "ADDED_3" ), _listFired );
+        assertEquals( 0, publisher.getQueueSize( ) );
+        assertFalse( publisher.isAsync( ) );
+
+        publisher.publishDeleted( getEvent( "2" ) );
+
+        assertEquals( Arrays.asList( "ADDED_2", "ADDED_3", "DELETED_2" ), _listFired );
+    }
+
+    /**
+     * Test that an event is fired in the caller thread when the queue is full, unless an earlier event of the same resource is still queued
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    public void testFullQueueKeepsOrder( ) throws InterruptedException
+    {
+        EntryEventPublisher publisher = new EntryEventPublisher( true, 0, 1, 0, this::record );
+
+        // The background thread is blocked by the first event, the second one fills the queue
+        publisher.publishAdded( getEvent( ID_BLOCKING ) );
+        assertTrue( _latchBlocked.await( WAIT_DELAY, TimeUnit.MILLISECONDS ) );
+        publisher.publishUpdated( getEvent( "2" ) );
+
+        // No event of the resource 3 is queued : the caller fires it
+        publisher.publishUpdated( getEvent( "3" ) );
+        assertEquals( Arrays.asList( "ADDED_1", "UPDATED_3" ), _listFired );
+        assertEquals( 1, publisher.getCallerRunsCount( ) );
+
+        // An update of the resource 2 is queued : the caller waits for room in the queue
+        Thread thread = new Thread( ( ) -> publisher.publishDeleted( getEvent( "2" ) ) );
+        thread.start( );
+        thread.join( 200 );
+        assertTrue( thread.isAlive( ) );
+
+        _latchBlocking.countDown( );
+        thread.join( WAIT_DELAY );
+        publisher.shutdown( );
+
+        assertEquals( Arrays.asList( "UPDATED_2", "DELETED_2" ), getFired( "2" ) );
+        assertEquals( 1, publisher.getCallerRunsCount( ) );
+    }
+
+    /**
+     * Record a fired event, blocking on the events of the blocking resource
+     * 
+     * @param type
+     *            the kind of event
+     * @param event
+     *            the event
+     */
+    private void record( EventType type, ResourceEvent event )
+    {
+        _listFired.add( type + "_" + event.getIdResource( ) );
+
+        if ( ID_BLOCKING.equals( event.getIdResource( ) ) )
+        {
+            _latchBlocked.countDown( );
+
+            try
+            {
+                _latchBlocking.await( WAIT_DELAY, TimeUnit.MILLISECONDS );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+        }
+    }
+
+    /**
+     * Get the events fired for a resource
+     * 
+     * @param strIdResource
+     *            the id of the resource
+     * @return the events, in the order they were fired
+     */
+    private List<String> getFired( String strIdResource )
+    {
+        synchronized( _listFired )
+        {
+            return _listFired.stream( ).filter( s -> s.endsWith( "_" + strIdResource ) ).collect( Collectors.toList( ) );
+        }
+    }
+
+    /**
+     * Get an event
+     * 
+     * @param strIdResource
+     *            the id of the resource
+     * @return the event
+     */
+    private static ResourceEvent getEvent( String strIdResource )
+    {
+        ResourceEvent event = new ResourceEvent( );
+        event.setIdResource( strIdResource );
+        event.setTypeResource( TYPE_RESOURCE );
+
+        return event;
+    }
+}
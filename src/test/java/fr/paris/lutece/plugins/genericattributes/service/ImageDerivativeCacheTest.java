@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test class for the ImageDerivativeCache
+ */
+public class ImageDerivativeCacheTest extends LuteceTestCase
+{
+    private static final String VARIANT = "thumb";
+    private static final String OTHER_VARIANT = "medium";
+    private static final String VERSION = "1-100-image/png";
+    private static final String OTHER_VERSION = "2-120-image/png";
+    private static final String FORMAT = "png";
+    private static final long MAX_BYTES = 300L;
+    private static final long NO_EXPIRATION = 3600000L;
+    private static final int SIZE = 100;
+
+    private Path _baseDirectory;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        _baseDirectory = Files.createTempDirectory( "genatt-image-cache-test-" );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        try ( Stream<Path> stream = Files.walk( _baseDirectory ) )
+        {
+            stream.sorted( Comparator.reverseOrder( ) ).forEach( path -> path.toFile( ).delete( ) );
+        }
+
+        super.tearDown( );
+    }
+
+    /**
+     * Test the put, the get and the removal of variants
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testPutGetRemove( ) throws IOException
+    {
+        ImageDerivativeCache cache = new ImageDerivativeCache( _baseDirectory, MAX_BYTES, NO_EXPIRATION );
+        byte [ ] bValue = getContent( SIZE );
+
+        assertNull( cache.get( 1, VARIANT, VERSION ) );
+        cache.put( 1, VARIANT, VERSION, cache.getGeneration( ), FORMAT, bValue );
+        cache.put( 1, OTHER_VARIANT, VERSION, cache.getGeneration( ), FORMAT, bValue );
+        cache.put( 11, VARIANT, VERSION, cache.getGeneration( ), FORMAT, bValue );
+
+        Path path = cache.get( 1, VARIANT, VERSION );
+        assertNotNull( path );
+        assertTrue( Arrays.equals( bValue, Files.readAllBytes( path ) ) );
+        assertEquals( 3 * SIZE, cache.getTotalBytes( ) );
+        assertEquals( 1, cache.getHitCount( ) );
+        assertEquals( 1, cache.getMissCount( ) );
+
+        // The variants of the file 11 are kept
+        cache.remove( 1 );
+        assertFalse( Files.exists( path ) );
+        assertNull( cache.get( 1, VARIANT, VERSION ) );
+        assertNull( cache.get( 1, OTHER_VARIANT, VERSION ) );
+        assertNotNull( cache.get( 11, VARIANT, VERSION ) );
+        assertEquals( SIZE, cache.getTotalBytes( ) );
+
+        cache.shutdown( );
+    }
+
+    /**
+     * Test that the least recently used variants are evicted when the cache exceeds its size
+     */
+    public void testEviction( )
+    {
+        ImageDerivativeCache cache = new ImageDerivativeCache( _baseDirectory, MAX_BYTES, NO_EXPIRATION );
+
+        for ( int nIdFile = 1; nIdFile <= 3; nIdFile++ )
+        {
+            cache.put( nIdFile, VARIANT, VERSION, cache.getGeneration( ), FORMAT, getContent( SIZE ) );
+        }
+
+        // The file 2 becomes the least recently used
+        Path path2 = cache.get( 2, VARIANT, VERSION );
+        assertNotNull( cache.get( 3, VARIANT, VERSION ) );
+        Path path1 = cache.get( 1, VARIANT, VERSION );
+
+        cache.put( 4, VARIANT, VERSION, cache.getGeneration( ), FORMAT, getContent( SIZE ) );
+
+        assertEquals( MAX_BYTES, cache.getTotalBytes( ) );
+        assertNull( cache.get( 2, VARIANT, VERSION ) );
+        assertFalse( Files.exists( path2 ) );
+        assertTrue( Files.exists( path1 ) );
+        assertNotNull( cache.get( 3, VARIANT, VERSION ) );
+        assertNotNull( cache.get( 4, VARIANT, VERSION ) );
+
+        // A variant larger than the cache is not kept
+        cache.put( 5, VARIANT, VERSION, cache.getGeneration( ), FORMAT, getContent( (int) MAX_BYTES + 1 ) );
+        assertEquals( 0, cache.getTotalBytes( ) );
+        assertNull( cache.get( 5, VARIANT, VERSION ) );
+
+        cache.shutdown( );
+    }
+
+    /**
+     * Test that a variant is only returned for the version of the file it was created from, and before it expires
+     * 
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    public void testVersionAndExpiration( ) throws InterruptedException
+    {
+        ImageDerivativeCache cache = new ImageDerivativeCache( _baseDirectory, MAX_BYTES, NO_EXPIRATION );
+        cache.put( 1, VARIANT, VERSION, cache.getGeneration( ), FORMAT, getContent( SIZE ) );
+
+        assertNull( cache.get( 1, VARIANT, OTHER_VERSION ) );
+        assertNull( cache.get( 1, VARIANT, VERSION ) );
+        assertEquals( 0, cache.getTotalBytes( ) );
+        cache.shutdown( );
+
+        ImageDerivativeCache cacheExpiring = new ImageDerivativeCache( _baseDirectory, MAX_BYTES, 1L );
+        cacheExpiring.put( 1, VARIANT, VERSION, cacheExpiring.getGeneration( ), FORMAT, getContent( SIZE ) );
+        Thread.sleep( 10 );
+
+        assertNull( cacheExpiring.get( 1, VARIANT, VERSION ) );
+        assertEquals( 0, cacheExpiring.getTotalBytes( ) );
+        cacheExpiring.shutdown( );
+    }
+
+    /**
+     * Test that a variant created from a file removed meanwhile is not stored
+     */
+    public void testPutAfterRemove( )
+    {
+        ImageDerivativeCache cache = new ImageDerivativeCache( _baseDirectory, MAX_BYTES, NO_EXPIRATION );
+        long lGeneration = cache.getGeneration( );
+
+        cache.remove( 1 );
+        cache.put( 1, VARIANT, VERSION, lGeneration, FORMAT, getContent( SIZE ) );
+
+        assertNull( cache.get( 1, VARIANT, VERSION ) );
+        assertEquals( 0, cache.getTotalBytes( ) );
+        assertEquals( 1, countFiles( cache.getDirectory( ) ) );
+
+        cache.shutdown( );
+    }
+
+    /**
+     * Test that only the directories of the stopped caches are removed
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testDirectories( ) throws IOException
+    {
+        Path fileOther = Files.write( _baseDirectory.resolve( "other.png" ), getContent( SIZE ) );
+        ImageDerivativeCache cacheRunning = new ImageDerivativeCache( _baseDirectory, MAX_BYTES, NO_EXPIRATION );
+        cacheRunning.put( 1, VARIANT, VERSION, cacheRunning.getGeneration( ), FORMAT, getContent( SIZE ) );
+        Path directoryRunning = cacheRunning.getDirectory( );
+
+        // The directory of a stale cache, whose marker file is not locked
+        Path directoryStale = Files.createDirectory( _baseDirectory.resolve( "run-stale" ) );
+        Files.createFile( directoryStale.resolve( ".lock" ) );
+        Files.write( directoryStale.resolve( "1_thumb.png" ), getContent( SIZE ) );
+
+        ImageDerivativeCache cache = new ImageDerivativeCache( _baseDirectory, MAX_BYTES, NO_EXPIRATION );
+
+        assertFalse( Files.exists( directoryStale ) );
+        assertTrue( Files.exists( fileOther ) );
+        assertTrue( Files.isDirectory( directoryRunning ) );
+        assertNotNull( cacheRunning.get( 1, VARIANT, VERSION ) );
+        assertFalse( directoryRunning.equals( cache.getDirectory( ) ) );
+
+        cacheRunning.shutdown( );
+        assertFalse( Files.exists( directoryRunning ) );
+        assertNull( cacheRunning.get( 1, VARIANT, VERSION ) );
+
+        cache.shutdown( );
+        assertTrue( Files.exists( fileOther ) );
+    }
+
+    /**
+     * Count the files of a directory
+     * 
+     * @param directory
+     *            the directory
+     * @return the number of files
+     */
+    private static int countFiles( Path directory )
+    {
+        int nCount = 0;
+
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream( directory ) )
+        {
+            for ( Path path : stream )
+            {
+                nCount++;
+            }
+        }
+        catch( IOException e )
+        {
+            fail( e.getMessage( ) );
+        }
+
+        return nCount;
+    }
+
+    /**
+     * Get a content
+     * 
+     * @param nSize
+     *            the size of the content
+     * @return the content
+     */
+    private static byte [ ] getContent( int nSize )
+    {
+        byte [ ] content = new byte [ nSize];
+        Arrays.fill( content, (byte) nSize );
+
+        return content;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import fr.paris.lutece.plugins.genericattributes.util.ImageHeader;
+import fr.paris.lutece.plugins.genericattributes.util.ImageUtils;
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class ImageNormalizationServiceTest extends LuteceTestCase
+{
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+    private static final float QUALITY = 0.85f;
+
+    public void testNormalizeResize( ) throws IOException
+    {
+        byte [ ] bValue = getImage( );
+        ImageHeader header = ImageHeader.read( new ByteArrayInputStream( bValue ) );
+
+        byte [ ] bNormalized = ImageNormalizationService.normalize( bValue, header, 150, -1, ImageUtils.FORMAT_JPEG, QUALITY, Long.MAX_VALUE );
+
+        assertNotNull( bNormalized );
+
+        ImageHeader headerNormalized = ImageHeader.read( new ByteArrayInputStream( bNormalized ) );
+        assertEquals( ImageUtils.FORMAT_JPEG, headerNormalized.getFormat( ) );
+        assertEquals( 150, headerNormalized.getWidth( ) );
+        assertEquals( 100, headerNormalized.getHeight( ) );
+    }
+
+    public void testNormalizeWithinLimits( ) throws IOException
+    {
+        byte [ ] bValue = getImage( );
+        ImageHeader header = ImageHeader.read( new ByteArrayInputStream( bValue ) );
+
+        byte [ ] bNormalized = ImageNormalizationService.normalize( bValue, header, WIDTH, HEIGHT, "png", QUALITY, Long.MAX_VALUE );
+        ImageHeader headerNormalized = ImageHeader.read( new ByteArrayInputStream( bNormalized ) );
+
+        assertEquals( "png", headerNormalized.getFormat( ) );
+        assertEquals( WIDTH, headerNormalized.getWidth( ) );
+        assertEquals( HEIGHT, headerNormalized.getHeight( ) );
+    }
+
+    public void testNormalizeTooManyPixels( ) throws IOException
+    {
+        byte [ ] bValue = getImage( );
+        ImageHeader header = ImageHeader.read( new ByteArrayInputStream( bValue ) );
+
+        assertEquals( (long) WIDTH * HEIGHT, header.getPixelCount( ) );
+        assertNull( ImageNormalizationService.normalize( bValue, header, 150, 100, ImageUtils.FORMAT_JPEG, QUALITY, header.getPixelCount( ) - 1 ) );
+        assertNotNull( ImageNormalizationService.normalize( bValue, header, 150, 100, ImageUtils.FORMAT_JPEG, QUALITY, header.getPixelCount( ) ) );
+    }
+
+    public void testShutdown( )
+    {
+        ImageNormalizationService service = ImageNormalizationService.getInstance( );
+        service.shutdown( );
+
+        assertEquals( 0, service.getQueueSize( ) );
+        assertEquals( 0, service.getActiveCount( ) );
+    }
+
+    private byte [ ] getImage( ) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
+        ImageIO.write( new BufferedImage( WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB ), "png", outputStream );
+
+        return outputStream.toByteArray( );
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service.file;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import fr.paris.lutece.plugins.genericattributes.business.FileReferenceHome;
+import fr.paris.lutece.plugins.genericattributes.business.LazyPhysicalFile;
+import fr.paris.lutece.portal.business.file.File;
+import fr.paris.lutece.portal.business.file.FileHome;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFile;
+import fr.paris.lutece.portal.business.physicalfile.PhysicalFileHome;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test class for the FileService
+ */
+public class FileServiceTest extends LuteceTestCase
+{
+    private static final String TITLE = "file.txt";
+    private static final String TITLE_OTHER = "other.txt";
+    private static final String MIME_TYPE = "text/plain";
+    private static final byte [ ] CONTENT = "content".getBytes( StandardCharsets.UTF_8 );
+    private static final byte [ ] CONTENT_UPDATED = "updated content".getBytes( StandardCharsets.UTF_8 );
+
+    private final FileService _fileService = new FileService( );
+
+    /**
+     * Test that files with the same content and metadata share a single file, removed with its last reference only
+     */
+    public void testIdenticalFilesAreShared( )
+    {
+        byte [ ] content = getUniqueContent( );
+        File file1 = createFile( TITLE, content );
+        File file2 = createFile( TITLE, content );
+        int nIdPhysicalFile = file1.getPhysicalFile( ).getIdPhysicalFile( );
+
+        assertEquals( file1.getIdFile( ), file2.getIdFile( ) );
+        assertEquals( nIdPhysicalFile, file2.getPhysicalFile( ).getIdPhysicalFile( ) );
+        assertEquals( 2, FileReferenceHome.getReferenceCount( file1.getIdFile( ) ) );
+
+        _fileService.removeFile( file1.getIdFile( ) );
+
+        assertNotNull( FileHome.findByPrimaryKey( file2.getIdFile( ) ) );
+        assertTrue( Arrays.equals( content, PhysicalFileHome.findByPrimaryKey( nIdPhysicalFile ).getValue( ) ) );
+
+        _fileService.removeFile( file2.getIdFile( ) );
+
+        assertNull( FileHome.findByPrimaryKey( file2.getIdFile( ) ) );
+        assertNull( PhysicalFileHome.findByPrimaryKey( nIdPhysicalFile ) );
+        assertEquals( -1, FileReferenceHome.getReferenceCount( file2.getIdFile( ) ) );
+    }
+
+    /**
+     * Test that files with the same content but another title are not shared
+     */
+    public void testFilesWithOtherTitlesAreNotShared( )
+    {
+        byte [ ] content = getUniqueContent( );
+        File file1 = createFile( TITLE, content );
+        File file2 = createFile( TITLE_OTHER, content );
+
+        try
+        {
+            assertTrue( file1.getIdFile( ) != file2.getIdFile( ) );
+            assertEquals( TITLE_OTHER, FileHome.findByPrimaryKey( file2.getIdFile( ) ).getTitle( ) );
+        }
+        finally
+        {
+            _fileService.removeFile( file1.getIdFile( ) );
+            _fileService.removeFile( file2.getIdFile( ) );
+        }
+    }
+
+    /**
+     * Test that the update of a shared file moves the updated reference to a new file, and leaves the other references unchanged
+     */
+    public void testUpdateSharedFile( )
+    {
+        byte [ ] content = getUniqueContent( );
+        File file1 = createFile( TITLE, content );
+        File file2 = createFile( TITLE, content );
+
+        try
+        {
+            file1.getPhysicalFile( ).setValue( CONTENT_UPDATED );
+            file1.setSize( CONTENT_UPDATED.length );
+            _fileService.updateFile( file1 );
+
+            assertTrue( file1.getIdFile( ) != file2.getIdFile( ) );
+            assertTrue( Arrays.equals( CONTENT_UPDATED, PhysicalFileHome.findByPrimaryKey( file1.getPhysicalFile( ).getIdPhysicalFile( ) ).getValue( ) ) );
+            assertTrue( Arrays.equals( content, PhysicalFileHome.findByPrimaryKey( file2.getPhysicalFile( ).getIdPhysicalFile( ) ).getValue( ) ) );
+            assertEquals( 1, FileReferenceHome.getReferenceCount( file2.getIdFile( ) ) );
+        }
+        finally
+        {
+            _fileService.removeFile( file1.getIdFile( ) );
+            _fileService.removeFile( file2.getIdFile( ) );
+        }
+    }
+
+    /**
+     * Test that the update of a file referenced once is done in place, and that the file is then shared with the files of its new content
+     */
+    public void testUpdateFile( )
+    {
+        byte [ ] content = getUniqueContent( );
+        byte [ ] contentUpdated = getUniqueContent( );
+        File file1 = createFile( TITLE, content );
+        int nIdFile = file1.getIdFile( );
+        File file2 = null;
+
+        try
+        {
+            file1.getPhysicalFile( ).setValue( contentUpdated );
+            file1.setSize( contentUpdated.length );
+            _fileService.updateFile( file1 );
+
+            assertEquals( nIdFile, file1.getIdFile( ) );
+            assertTrue( Arrays.equals( contentUpdated, PhysicalFileHome.findByPrimaryKey( file1.getPhysicalFile( ).getIdPhysicalFile( ) ).getValue( ) ) );
+
+            file2 = createFile( TITLE, contentUpdated );
+
+            assertEquals( nIdFile, file2.getIdFile( ) );
+        }
+        finally
+        {
+            _fileService.removeFile( file1.getIdFile( ) );
+
+            if ( file2 != null )
+            {
+                _fileService.removeFile( file2.getIdFile( ) );
+            }
+        }
+    }
+
+    /**
+     * Test that a file removed outside the service is not shared anymore
+     */
+    public void testFileRemovedByTheCore( )
+    {
+        byte [ ] content = getUniqueContent( );
+        File file1 = createFile( TITLE, content );
+        FileHome.remove( file1.getIdFile( ) );
+
+        File file2 = createFile( TITLE, content );
+
+        try
+        {
+            assertTrue( file1.getIdFile( ) != file2.getIdFile( ) );
+            assertTrue( Arrays.equals( content, PhysicalFileHome.findByPrimaryKey( file2.getPhysicalFile( ).getIdPhysicalFile( ) ).getValue( ) ) );
+            assertEquals( -1, FileReferenceHome.getReferenceCount( file1.getIdFile( ) ) );
+        }
+        finally
+        {
+            _fileService.removeFile( file2.getIdFile( ) );
+        }
+    }
+
+    /**
+     * Test the removal of a file with its physical file
+     */
+    public void testRemoveFile( )
+    {
+        File file = createFile( TITLE, getUniqueContent( ) );
+        int nIdPhysicalFile = file.getPhysicalFile( ).getIdPhysicalFile( );
+
+        _fileService.removeFile( file.getIdFile( ) );
+
+        assertNull( FileHome.findByPrimaryKey( file.getIdFile( ) ) );
+        assertNull( PhysicalFileHome.findByPrimaryKey( nIdPhysicalFile ) );
+    }
+
+    /**
+     * Test that the file data are read eagerly when they are requested, and on demand with the metadata of the file
+     */
+    public void testFindByPrimaryKey( )
+    {
+        byte [ ] content = getUniqueContent( );
+        File file = createFile( TITLE, content );
+
+        try
+        {
+            File fileWithData = _fileService.findByPrimaryKey( file.getIdFile( ), true );
+            assertFalse( fileWithData.getPhysicalFile( ) instanceof LazyPhysicalFile );
+            assertTrue( Arrays.equals( content, fileWithData.getPhysicalFile( ).getValue( ) ) );
+
+            File fileMetadata = _fileService.findMetadataByPrimaryKey( file.getIdFile( ) );
+            assertEquals( TITLE, fileMetadata.getTitle( ) );
+            assertFalse( ( (LazyPhysicalFile) fileMetadata.getPhysicalFile( ) ).isLoaded( ) );
+            assertTrue( Arrays.equals( content, fileMetadata.getPhysicalFile( ).getValue( ) ) );
+
+            assertEquals( TITLE, _fileService.findByPrimaryKey( file.getIdFile( ), false ).getTitle( ) );
+        }
+        finally
+        {
+            _fileService.removeFile( file.getIdFile( ) );
+        }
+    }
+
+    /**
+     * Test the digest of a content
+     */
+    public void testGetDigest( )
+    {
+        String strDigest = FileService.getDigest( new ByteArrayInputStream( CONTENT ) );
+
+        assertEquals( 64, strDigest.length( ) );
+        assertEquals( strDigest, FileService.getDigest( new ByteArrayInputStream( CONTENT ) ) );
+        assertFalse( strDigest.equals( FileService.getDigest( new ByteArrayInputStream( CONTENT_UPDATED ) ) ) );
+    }
+
+    /**
+     * Get a content which is not shared with the files of the other tests
+     * 
+     * @return the content
+     */
+    private static byte [ ] getUniqueContent( )
+    {
+        return UUID.randomUUID( ).toString( ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Create a file through the FileService
+     * 
+     * @param strTitle
+     *            the title of the file
+     * @param content
+     *            the content of the file
+     * @return the file
+     */
+    private File createFile( String strTitle, byte [ ] content )
+    {
+        PhysicalFile physicalFile = new PhysicalFile( );
+        physicalFile.setValue( content );
+
+        File file = new File( );
+        file.setTitle( strTitle );
+        file.setMimeType( MIME_TYPE );
+        file.setSize( content.length );
+        file.setPhysicalFile( physicalFile );
+        _fileService.createFile( file );
+
+        return file;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service.upload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+
+import fr.paris.lutece.plugins.genericattributes.business.GenAttFileItem;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test class for the UploadSessionStore
+ */
+public class UploadSessionStoreTest extends LuteceTestCase
+{
+    private static final String SESSION_ID = "session";
+    private static final String OTHER_SESSION_ID = "otherSession";
+    private static final String FIELD_NAME = "attribute1";
+    private static final String FILE_NAME = "file.bin";
+    private static final String CONTENT_TYPE = "application/octet-stream";
+    private static final long MAX_BYTES = 1000L;
+    private static final long MAX_SESSION_BYTES = 600L;
+    private static final long NO_TIMEOUT = 3600000L;
+    private static final long SHORT_TIMEOUT = 1L;
+
+    /**
+     * Test that the size checked by checkQuota is reserved until it is released
+     */
+    public void testReservation( )
+    {
+        UploadSessionStore store = new UploadSessionStore( MAX_BYTES, MAX_SESSION_BYTES, NO_TIMEOUT );
+
+        assertEquals( UploadSessionStore.QUOTA_OK, store.checkQuota( SESSION_ID, 400 ) );
+        assertEquals( 400, store.getTotalBytes( ) );
+
+        // The reserved bytes count in the quota of the session and in the budget of all the sessions
+        assertEquals( UploadSessionStore.QUOTA_SESSION_EXCEEDED, store.checkQuota( SESSION_ID, 300 ) );
+        assertEquals( 400, store.getTotalBytes( ) );
+        assertEquals( UploadSessionStore.QUOTA_OK, store.checkQuota( OTHER_SESSION_ID, 500 ) );
+        assertEquals( UploadSessionStore.QUOTA_GLOBAL_EXCEEDED, store.checkQuota( OTHER_SESSION_ID, 100 + 1 ) );
+        assertEquals( 900, store.getTotalBytes( ) );
+
+        store.releaseReservation( SESSION_ID, 400 );
+        store.releaseReservation( OTHER_SESSION_ID, 500 );
+        assertEquals( 0, store.getTotalBytes( ) );
+
+        // A release does not free more than the reserved bytes
+        store.releaseReservation( SESSION_ID, 400 );
+        assertEquals( 0, store.getTotalBytes( ) );
+    }
+
+    /**
+     * Test that the added files are counted once their reservation is released
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testAddFiles( ) throws IOException
+    {
+        UploadSessionStore store = new UploadSessionStore( MAX_BYTES, MAX_SESSION_BYTES, NO_TIMEOUT );
+        FileItem fileItem = getFileItem( 400 );
+
+        assertEquals( UploadSessionStore.QUOTA_OK, store.checkQuota( SESSION_ID, fileItem.getSize( ) ) );
+        store.getFiles( SESSION_ID, FIELD_NAME ).add( fileItem );
+        store.updateSize( SESSION_ID );
+        store.releaseReservation( SESSION_ID, fileItem.getSize( ) );
+
+        assertEquals( 400, store.getTotalBytes( ) );
+        assertEquals( UploadSessionStore.QUOTA_SESSION_EXCEEDED, store.checkQuota( SESSION_ID, 300 ) );
+
+        store.getFiles( SESSION_ID, FIELD_NAME ).clear( );
+        store.updateSize( SESSION_ID );
+        assertEquals( 0, store.getTotalBytes( ) );
+
+        store.getFiles( SESSION_ID, FIELD_NAME ).add( fileItem );
+        store.updateSize( SESSION_ID );
+        store.removeSession( SESSION_ID );
+        assertEquals( 0, store.getTotalBytes( ) );
+        assertEquals( 0, store.getSessionCount( ) );
+    }
+
+    /**
+     * Test that an idle session is evicted with its files and reserved bytes, and that the eviction is reported once
+     * 
+     * @throws Exception
+     *             if an error occurs
+     */
+    public void testEviction( ) throws Exception
+    {
+        UploadSessionStore store = new UploadSessionStore( MAX_BYTES * 1000, MAX_SESSION_BYTES * 1000, SHORT_TIMEOUT );
+        GenAttFileItem fileItem = GenAttFileItem.spool( getFileItem( 200000 ) );
+        UploadedFileList listFiles = store.getFiles( SESSION_ID, FIELD_NAME );
+        listFiles.add( fileItem );
+        store.updateSize( SESSION_ID );
+        assertEquals( UploadSessionStore.QUOTA_OK, store.checkQuota( SESSION_ID, 1000 ) );
+
+        Thread.sleep( 10 );
+        store.sweep( );
+
+        assertEquals( 1, store.getEvictionCount( ) );
+        assertEquals( 0, store.getSessionCount( ) );
+        assertEquals( 0, store.getTotalBytes( ) );
+        assertNull( fileItem.get( ) );
+        assertFalse( store.consumeEviction( OTHER_SESSION_ID ) );
+        assertTrue( store.consumeEviction( SESSION_ID ) );
+        assertFalse( store.consumeEviction( SESSION_ID ) );
+
+        // A file added to the list of the evicted session is deleted
+        GenAttFileItem fileItemLate = GenAttFileItem.spool( getFileItem( 200001 ) );
+        assertFalse( listFiles.addIfAbsent( fileItemLate, UploadedFileList.getDigest( fileItemLate ) ) );
+        listFiles.add( fileItemLate );
+        assertTrue( listFiles.isEmpty( ) );
+        assertNull( fileItemLate.get( ) );
+
+        // A release after the eviction does not change the total
+        store.releaseReservation( SESSION_ID, 1000 );
+        assertEquals( 0, store.getTotalBytes( ) );
+
+        // The evicted session is replaced by an empty one
+        UploadedFileList listNewFiles = store.getFiles( SESSION_ID, FIELD_NAME );
+        assertNotSame( listFiles, listNewFiles );
+        assertTrue( listNewFiles.isEmpty( ) );
+        assertEquals( 1, store.getSessionCount( ) );
+    }
+
+    /**
+     * Test that a session accessed recently is not evicted
+     */
+    public void testNoEvictionOfActiveSession( )
+    {
+        UploadSessionStore store = new UploadSessionStore( MAX_BYTES, MAX_SESSION_BYTES, NO_TIMEOUT );
+        store.getFiles( SESSION_ID, FIELD_NAME );
+        store.sweep( );
+
+        assertEquals( 0, store.getEvictionCount( ) );
+        assertEquals( 1, store.getSessionCount( ) );
+        assertFalse( store.consumeEviction( SESSION_ID ) );
+    }
+
+    /**
+     * Test that the global budget is freed by evicting the idle sessions before refusing files
+     * 
+     * @throws Exception
+     *             if an error occurs
+     */
+    public void testEvictionOnGlobalQuota( ) throws Exception
+    {
+        UploadSessionStore store = new UploadSessionStore( MAX_BYTES, MAX_SESSION_BYTES, SHORT_TIMEOUT );
+        store.getFiles( SESSION_ID, FIELD_NAME ).add( getFileItem( 500 ) );
+        store.updateSize( SESSION_ID );
+
+        Thread.sleep( 10 );
+
+        assertEquals( UploadSessionStore.QUOTA_OK, store.checkQuota( OTHER_SESSION_ID, 600 ) );
+        assertEquals( 1, store.getEvictionCount( ) );
+        assertEquals( 600, store.getTotalBytes( ) );
+    }
+
+    /**
+     * Get an uploaded file item with a random content
+     * 
+     * @param nSize
+     *            the size of the content
+     * @return the file item
+     * @throws IOException
+     *             if an error occurs
+     */
+    private static FileItem getFileItem( int nSize ) throws IOException
+    {
+        byte [ ] content = new byte [ nSize];
+        new Random( nSize ).nextBytes( content );
+
+        FileItem fileItem = new DiskFileItemFactory( ).createItem( FIELD_NAME, CONTENT_TYPE, false, FILE_NAME );
+
+        try ( OutputStream outputStream = fileItem.getOutputStream( ) )
+        {
+            outputStream.write( content );
+        }
+
+        return fileItem;
+    }
+}
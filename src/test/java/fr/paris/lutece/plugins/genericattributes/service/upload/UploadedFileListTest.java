@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.service.upload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test class for the UploadedFileList
+ */
+public class UploadedFileListTest extends LuteceTestCase
+{
+    private static final String FIELD_NAME = "attribute1";
+    private static final String FILE_NAME = "file.txt";
+    private static final String CONTENT_TYPE = "text/plain";
+    private static final String CONTENT_1 = "content 1";
+    private static final String CONTENT_2 = "content 2";
+    private static final String CONTENT_3 = "content 3";
+
+    /**
+     * Test that the files added through the List interface are indexed by their content
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testAddAndSet( ) throws IOException
+    {
+        UploadedFileList listFiles = new UploadedFileList( );
+        FileItem fileItem1 = getFileItem( CONTENT_1 );
+
+        assertTrue( listFiles.add( fileItem1 ) );
+        assertTrue( listFiles.containsDigest( UploadedFileList.getDigest( fileItem1 ) ) );
+        assertFalse( listFiles.addIfAbsent( getFileItem( CONTENT_1 ), UploadedFileList.getDigest( fileItem1 ) ) );
+
+        FileItem fileItem2 = getFileItem( CONTENT_2 );
+        assertSame( fileItem1, listFiles.set( 0, fileItem2 ) );
+        assertFalse( listFiles.containsDigest( UploadedFileList.getDigest( fileItem1 ) ) );
+        assertTrue( listFiles.containsDigest( UploadedFileList.getDigest( fileItem2 ) ) );
+
+        listFiles.add( 0, fileItem1 );
+        assertEquals( Arrays.asList( fileItem1, fileItem2 ), listFiles );
+    }
+
+    /**
+     * Test the removal through an iterator
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testIteratorRemove( ) throws IOException
+    {
+        UploadedFileList listFiles = getList( CONTENT_1, CONTENT_2, CONTENT_3 );
+        FileItem fileItem2 = listFiles.get( 1 );
+        Iterator<FileItem> iterator = listFiles.iterator( );
+
+        try
+        {
+            iterator.remove( );
+            fail( "The removal before next should fail" );
+        }
+        catch( IllegalStateException e )
+        {
+            // Expected
+        }
+
+        iterator.next( );
+        iterator.next( );
+        iterator.remove( );
+
+        assertEquals( 2, listFiles.size( ) );
+        assertFalse( listFiles.contains( fileItem2 ) );
+        assertFalse( listFiles.containsDigest( UploadedFileList.getDigest( fileItem2 ) ) );
+
+        // The iterator is a snapshot
+        assertTrue( iterator.hasNext( ) );
+        iterator.next( );
+        iterator.remove( );
+        assertEquals( 1, listFiles.size( ) );
+
+        // The removal through the Collection interface uses the iterator
+        assertTrue( listFiles.remove( listFiles.get( 0 ) ) );
+        assertTrue( listFiles.isEmpty( ) );
+        assertFalse( listFiles.containsDigest( UploadedFileList.getDigest( getFileItem( CONTENT_1 ) ) ) );
+    }
+
+    /**
+     * Test removeIf, removeAll and retainAll
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testBulkRemove( ) throws IOException
+    {
+        UploadedFileList listFiles = getList( CONTENT_1, CONTENT_2, CONTENT_3 );
+        FileItem fileItem1 = listFiles.get( 0 );
+        FileItem fileItem2 = listFiles.get( 1 );
+        FileItem fileItem3 = listFiles.get( 2 );
+
+        assertTrue( listFiles.removeIf( fileItem -> fileItem == fileItem1 ) );
+        assertFalse( listFiles.removeIf( fileItem -> fileItem == fileItem1 ) );
+        assertFalse( listFiles.containsDigest( UploadedFileList.getDigest( fileItem1 ) ) );
+
+        assertTrue( listFiles.removeAll( Collections.singleton( fileItem2 ) ) );
+        assertFalse( listFiles.containsDigest( UploadedFileList.getDigest( fileItem2 ) ) );
+        assertEquals( Collections.singletonList( fileItem3 ), listFiles );
+
+        assertTrue( listFiles.retainAll( Collections.emptyList( ) ) );
+        assertTrue( listFiles.isEmpty( ) );
+        assertFalse( listFiles.containsDigest( UploadedFileList.getDigest( fileItem3 ) ) );
+
+        // A removed content can be uploaded again
+        assertTrue( listFiles.addIfAbsent( fileItem3, UploadedFileList.getDigest( fileItem3 ) ) );
+    }
+
+    /**
+     * Test that the files of a closed list are deleted
+     * 
+     * @throws IOException
+     *             if an error occurs
+     */
+    public void testClose( ) throws IOException
+    {
+        UploadedFileList listFiles = getList( CONTENT_1 );
+        listFiles.close( );
+
+        assertTrue( listFiles.isEmpty( ) );
+
+        FileItem fileItem = getFileItem( CONTENT_2 );
+        assertFalse( listFiles.add( fileItem ) );
+        assertFalse( listFiles.addIfAbsent( fileItem, UploadedFileList.getDigest( fileItem ) ) );
+        assertTrue( listFiles.isEmpty( ) );
+    }
+
+    /**
+     * Get a list of files
+     * 
+     * @param contents
+     *            the contents of the files
+     * @return the list
+     * @throws IOException
+     *             if an error occurs
+     */
+    private static UploadedFileList getList( String... contents ) throws IOException
+    {
+        UploadedFileList listFiles = new UploadedFileList( );
+
+        for ( String strContent : contents )
+        {
+            FileItem fileItem = getFileItem( strContent );
+            assertTrue( listFiles.addIfAbsent( fileItem, UploadedFileList.getDigest( fileItem ) ) );
+        }
+
+        return listFiles;
+    }
+
+    /**
+     * Get an uploaded file item
+     * 
+     * @param strContent
+     *            the content of the item
+     * @return the file item
+     * @throws IOException
+     *             if an error occurs
+     */
+    private static FileItem getFileItem( String strContent ) throws IOException
+    {
+        FileItem fileItem = new DiskFileItemFactory( ).createItem( FIELD_NAME, CONTENT_TYPE, false, FILE_NAME );
+
+        try ( OutputStream outputStream = fileItem.getOutputStream( ) )
+        {
+            outputStream.write( strContent.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        return fileItem;
+    }
+}
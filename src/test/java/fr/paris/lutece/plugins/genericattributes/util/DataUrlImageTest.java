@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.util;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class DataUrlImageTest extends LuteceTestCase
+{
+    private static final String PREFIX_PNG = "data:image/png;base64,";
+    private static final byte [ ] PNG = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'
+    };
+
+    public void testDecodeDataUrl( )
+    {
+        for ( int nLength = PNG.length - 3; nLength <= PNG.length; nLength++ )
+        {
+            byte [ ] bValue = Arrays.copyOf( PNG, nLength );
+            DataUrlImage image = DataUrlImage.decode( PREFIX_PNG + Base64.getEncoder( ).encodeToString( bValue ) );
+
+            assertNotNull( image );
+            assertEquals( nLength, image.getSize( ) );
+            assertTrue( Arrays.equals( bValue, image.getValue( ) ) );
+            assertEquals( DataUrlImage.FORMAT_PNG, image.getFormat( ) );
+        }
+    }
+
+    public void testDecodeIgnoresLineBreaksAndMissingPadding( )
+    {
+        String strSource = Base64.getMimeEncoder( 8, "\r\n".getBytes( ) ).encodeToString( PNG );
+        assertTrue( Arrays.equals( PNG, DataUrlImage.decode( strSource ).getValue( ) ) );
+
+        strSource = Base64.getEncoder( ).withoutPadding( ).encodeToString( Arrays.copyOf( PNG, 11 ) );
+        assertTrue( Arrays.equals( Arrays.copyOf( PNG, 11 ), DataUrlImage.decode( strSource ).getValue( ) ) );
+    }
+
+    public void testDecodeInvalid( )
+    {
+        assertNull( DataUrlImage.decode( null ) );
+        assertNull( DataUrlImage.decode( PREFIX_PNG ) );
+        assertNull( DataUrlImage.decode( PREFIX_PNG + "A" ) );
+
+        DataUrlImage image = DataUrlImage.decode( PREFIX_PNG + Base64.getEncoder( ).encodeToString( "not an image".getBytes( ) ) );
+        assertNotNull( image );
+        assertFalse( image.isImage( ) );
+    }
+
+    public void testGetFormat( )
+    {
+        assertEquals( DataUrlImage.FORMAT_JPEG, DataUrlImage.getFormat( new byte [ ] {
+                (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0
+        } ) );
+        assertEquals( DataUrlImage.FORMAT_GIF, DataUrlImage.getFormat( "GIF89a".getBytes( ) ) );
+        assertEquals( DataUrlImage.FORMAT_WEBP, DataUrlImage.getFormat( "RIFF\0\0\0\0WEBPVP8 ".getBytes( ) ) );
+        assertEquals( DataUrlImage.FORMAT_BMP, DataUrlImage.getFormat( "BM".getBytes( ) ) );
+        assertNull( DataUrlImage.getFormat( "RIFF\0\0\0\0WAVE".getBytes( ) ) );
+        assertNull( DataUrlImage.getFormat( new byte [ 0] ) );
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.genericattributes.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class ImageHeaderTest extends LuteceTestCase
+{
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 20;
+
+    public void testRead( ) throws IOException
+    {
+        byte [ ] bValue = getImage( "png" );
+        ImageHeader header = ImageHeader.read( new ByteArrayInputStream( bValue ) );
+
+        assertNotNull( header );
+        assertEquals( "png", header.getFormat( ) );
+        assertEquals( WIDTH, header.getWidth( ) );
+        assertEquals( HEIGHT, header.getHeight( ) );
+    }
+
+    public void testReadInvalid( ) throws IOException
+    {
+        assertNull( ImageHeader.read( new ByteArrayInputStream( "not an image".getBytes( ) ) ) );
+        assertNull( ImageHeader.read( new ByteArrayInputStream( Arrays.copyOf( getImage( "png" ), 10 ) ) ) );
+    }
+
+    private byte [ ] getImage( String strFormat ) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
+        ImageIO.write( new BufferedImage( WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB ), strFormat, outputStream );
+
+        return outputStream.toByteArray( );
+    }
+}